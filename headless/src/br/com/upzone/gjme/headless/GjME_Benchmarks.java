@@ -0,0 +1,451 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.headless;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.util.Hashtable;
+
+import javax.microedition.lcdui.Image;
+
+import br.com.upzone.gjme.layer.GjME_FonteTilesChunks;
+import br.com.upzone.gjme.layer.GjME_IOrigemMapa;
+import br.com.upzone.gjme.layer.GjME_TiledLayer;
+import br.com.upzone.gjme.personagem.GjME_Personagem;
+import br.com.upzone.gjme.personagem.acao.GjME_Acao;
+import br.com.upzone.gjme.personagem.acao.GjME_TabelaAcoes;
+import br.com.upzone.gjme.tela.GjME_AtualizacaoParalela;
+import br.com.upzone.gjme.tela.GjME_Tela;
+
+/**
+ * Medições de desempenho dos caminhos críticos do framework na JVM desktop.
+ *
+ * Cada caso é aquecido e depois medido em várias iterações; cada iteração
+ * repete a operação até ocupar aproximadamente o tempo alvo. O resultado é um
+ * array JSON com a média, o mínimo e o desvio padrão em nanosegundos por
+ * operação, gravado no arquivo informado como primeiro argumento (ou na saída
+ * padrão), para que regressões sejam comparadas entre builds. Casos que
+ * comparam formatos de dados também informam o tamanho do formato em bytes.
+ *
+ * Casos medidos:
+ *   empilharAcao: empilha uma ação com uma cadeia de pré e pós ações de
+ *     profundidade P e esvazia a pilha;
+ *   buscarAcaoTabela e buscarAcaoHashtable: busca de cada uma de A ações, como
+ *     em empilharAcao(), em cada um de 100 personagens em tela, na
+ *     GjME_TabelaAcoes e no Hashtable com chaves Integer utilizado
+ *     anteriormente;
+ *   nextFrame e atualizarPersonagem: uma chamada para cada um de N personagens;
+ *   atualizarPersonagemFx: atualizarPersonagem() de N personagens com a física
+ *     em ponto fixo, para comparação com a física inteira;
+ *   atualizarLayers: uma atualização de uma tela com N personagens, uma tiled
+ *     layer fixa e uma com rolagem;
+ *   posicionarTiles: criação de uma tiled layer com um mapa de L x L tiles;
+ *   decodificarRLE e construirMatriz: leitura de todos os blocos de 16 x 16
+ *     tiles de um mapa de fase de L x L tiles gravado com CODIFICACAO_RLE, e
+ *     construção do mesmo mapa como int[][]; os bytes são o tamanho do
+ *     recurso RLE e o da matriz;
+ *   atualizacaoParalela: atualização de 4000 personagens divididos entre T
+ *     threads por GjME_AtualizacaoParalela.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @final
+ */
+public final class GjME_Benchmarks {
+
+  /**
+   * Iterações de aquecimento de cada caso.
+   */
+  private static final int ITERACOES_AQUECIMENTO = 5;
+  /**
+   * Iterações medidas de cada caso.
+   */
+  private static final int ITERACOES_MEDIDAS = 10;
+  /**
+   * Duração aproximada de cada iteração em nanosegundos.
+   */
+  private static final long TEMPO_ITERACAO = 100000000L;
+
+  /**
+   * Personagens em tela nos casos de busca de ações.
+   */
+  private static final int PERSONAGENS_BUSCA = 100;
+
+  /**
+   * Acumula resultados das operações para que não sejam eliminadas pelo JIT.
+   */
+  private static int iSumidouro = 0;
+
+  /**
+   * Caso de medição.
+   */
+  private abstract static class Caso {
+    private final String sNome;
+    private final int iParametro;
+    /**
+     * Tamanho em bytes do formato de dados medido, ou -1 se não se aplica.
+     */
+    private final int iBytes;
+
+    private Caso(String sNome, int iParametro) {
+      this(sNome, iParametro, -1);
+    }
+
+    private Caso(String sNome, int iParametro, int iBytes) {
+      this.sNome = sNome;
+      this.iParametro = iParametro;
+      this.iBytes = iBytes;
+    }
+
+    /**
+     * Executa a operação medida uma vez.
+     */
+    abstract void executar() throws Exception;
+  }
+
+  /**
+   * Personagem utilizado nas medições, com ações 0..iProfundidade encadeadas
+   * por pré-ações e uma pós-ação na ação 0.
+   */
+  private static final class PersonagemBench extends GjME_Personagem {
+    private PersonagemBench(Image img, int iX, int iY, int iProfundidade) {
+      super(img, 16, 16, iX, iY, 240, 320);
+      for (int i = 0; i <= iProfundidade + 1; i++) {
+        int iPre = GjME_Personagem.ACAO_INVALIDA, iPos = GjME_Personagem.ACAO_INVALIDA;
+        if ((0 == i) && (iProfundidade > 0)) {
+          iPre = 1;
+          iPos = iProfundidade + 1;
+        } else if ((i > 0) && (i < iProfundidade)) { iPre = i + 1; }
+        this.adicionarAcao(i, new GjME_Acao(0, 3, GjME_Acao.ANIMACAO_CONTINUA, iPre, iPos) {
+          public void executar(GjME_Personagem prs) {}
+        });
+      }
+      this.iVelX = 1;
+    }
+
+    /**
+     * Passa a usar a física em ponto fixo; a velocidade inicial em iVelX é
+     * adotada na primeira atualização.
+     */
+    private void ativarFisicaFixa() { this.bFisicaFixa = true; }
+  }
+
+  /**
+   * Tela utilizada na medição de atualizarLayers().
+   */
+  private static final class TelaBench extends GjME_Tela {
+    private TelaBench(Image img, int iPersonagens) {
+      int[][] iarMapa = GjME_Benchmarks.mapa(64);
+      GjME_TiledLayer tlFundo = new GjME_TiledLayer(iarMapa, img, 16, 16);
+      GjME_TiledLayer tlRolagem = new GjME_TiledLayer(iarMapa, img, 16, 16);
+      tlRolagem.defineAreaVisivel(0, 0, this.getWidth(), this.getHeight());
+      tlRolagem.setComportamento(GjME_TiledLayer.TL_ROLAGEM_X);
+      tlRolagem.defineVelocidadeRolagem(2);
+      for (int i = 0; i < iPersonagens; i++) {
+        PersonagemBench prs = new PersonagemBench(img, (i * 13) % 240, (i * 29) % 320, 0);
+        prs.empilharAcao(GjME_Personagem.ACAO_AGUARDAR);
+        this.adicionarLayer(prs);
+      }
+      this.adicionarLayer(tlRolagem);
+      this.adicionarLayer(tlFundo);
+    }
+
+    public void processarInput() {}
+  }
+
+  /**
+   * Não deve ser instanciada.
+   */
+  private GjME_Benchmarks() {}
+
+  public static void main(String[] args) throws Exception {
+    final Image img = GjME_Benchmarks.spriteSheet();
+    Caso[] casos = new Caso[32];
+    int iQtd = 0;
+
+    int[] iarProfundidades = {1, 4, 8, 13};
+    for (int i = 0; i < iarProfundidades.length; i++) {
+      final PersonagemBench prs = new PersonagemBench(img, 0, 0, iarProfundidades[i]);
+      casos[iQtd++] = new Caso("empilharAcao", iarProfundidades[i]) {
+        void executar() {
+          prs.empilharAcao(GjME_Personagem.ACAO_AGUARDAR);
+          prs.reiniciar();
+        }
+      };
+    }
+
+    int[] iarAcoes = {8, 32};
+    for (int i = 0; i < iarAcoes.length; i++) {
+      final int iQtdAcoes = iarAcoes[i];
+      // -- Uma tabela e um Hashtable por personagem em tela, como em adicionarAcao()
+      final GjME_TabelaAcoes[] tbls = new GjME_TabelaAcoes[GjME_Benchmarks.PERSONAGENS_BUSCA];
+      final Hashtable[] hsts = new Hashtable[GjME_Benchmarks.PERSONAGENS_BUSCA];
+      for (int k = 0; k < tbls.length; k++) {
+        tbls[k] = new GjME_TabelaAcoes(iQtdAcoes);
+        hsts[k] = new Hashtable();
+        for (int j = 0; j < iQtdAcoes; j++) {
+          GjME_Acao acao = new GjME_Acao(0, 3) {
+            public void executar(GjME_Personagem prs) {}
+          };
+          tbls[k].adicionar(j, acao);
+          hsts[k].put(new Integer(j), acao);
+        }
+      }
+      casos[iQtd++] = new Caso("buscarAcaoTabela", iQtdAcoes) {
+        void executar() {
+          for (int k = 0; k < tbls.length; k++) {
+            for (int j = 0; j < iQtdAcoes; j++) {
+              if (null != tbls[k].retornar(j)) { GjME_Benchmarks.iSumidouro++; }
+            }
+          }
+        }
+      };
+      casos[iQtd++] = new Caso("buscarAcaoHashtable", iQtdAcoes) {
+        void executar() {
+          for (int k = 0; k < hsts.length; k++) {
+            for (int j = 0; j < iQtdAcoes; j++) {
+              if (null != (GjME_Acao) hsts[k].get(new Integer(j))) { GjME_Benchmarks.iSumidouro++; }
+            }
+          }
+        }
+      };
+    }
+
+    int[] iarPersonagens = {10, 100, 1000};
+    for (int i = 0; i < iarPersonagens.length; i++) {
+      final PersonagemBench[] prs = new PersonagemBench[iarPersonagens[i]];
+      for (int j = 0; j < prs.length; j++) {
+        prs[j] = new PersonagemBench(img, j, j, 0);
+        prs[j].empilharAcao(GjME_Personagem.ACAO_AGUARDAR);
+      }
+      casos[iQtd++] = new Caso("nextFrame", prs.length) {
+        void executar() {
+          for (int j = 0; j < prs.length; j++) { prs[j].nextFrame(); }
+          GjME_Benchmarks.iSumidouro += prs[0].getFrame();
+        }
+      };
+      casos[iQtd++] = new Caso("atualizarPersonagem", prs.length) {
+        void executar() {
+          for (int j = 0; j < prs.length; j++) { prs[j].atualizarPersonagem(); }
+          GjME_Benchmarks.iSumidouro += prs[0].getX();
+        }
+      };
+      final PersonagemBench[] prsFx = new PersonagemBench[iarPersonagens[i]];
+      for (int j = 0; j < prsFx.length; j++) {
+        prsFx[j] = new PersonagemBench(img, j, j, 0);
+        prsFx[j].ativarFisicaFixa();
+        prsFx[j].empilharAcao(GjME_Personagem.ACAO_AGUARDAR);
+      }
+      casos[iQtd++] = new Caso("atualizarPersonagemFx", prsFx.length) {
+        void executar() {
+          for (int j = 0; j < prsFx.length; j++) { prsFx[j].atualizarPersonagem(); }
+          GjME_Benchmarks.iSumidouro += prsFx[0].getX();
+        }
+      };
+    }
+
+    final Method mtdAtualizar = GjME_Tela.class.getDeclaredMethod("atualizarLayers", new Class[0]);
+    mtdAtualizar.setAccessible(true);
+    int[] iarTelas = {10, 100};
+    for (int i = 0; i < iarTelas.length; i++) {
+      final TelaBench tela = new TelaBench(img, iarTelas[i]);
+      casos[iQtd++] = new Caso("atualizarLayers", iarTelas[i]) {
+        void executar() throws Exception { mtdAtualizar.invoke(tela, (Object[]) null); }
+      };
+    }
+
+    int[] iarMapas = {64, 256, 512};
+    for (int i = 0; i < iarMapas.length; i++) {
+      final int[][] iarMapa = GjME_Benchmarks.mapa(iarMapas[i]);
+      casos[iQtd++] = new Caso("posicionarTiles", iarMapas[i]) {
+        void executar() {
+          GjME_Benchmarks.iSumidouro += new GjME_TiledLayer(iarMapa, img, 16, 16).getColumns();
+        }
+      };
+    }
+
+    for (int i = 0; i < iarMapas.length; i++) {
+      final int iLado = iarMapas[i];
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      GjME_ConversorMapa.gravar(GjME_Benchmarks.mapaFase(iLado), 16, 16,
+              GjME_FonteTilesChunks.CODIFICACAO_RLE, baos);
+      final byte[] btMapa = baos.toByteArray();
+      final GjME_IOrigemMapa orgMapa = new GjME_IOrigemMapa() {
+        public InputStream abrir() { return new ByteArrayInputStream(btMapa); }
+      };
+      casos[iQtd++] = new Caso("decodificarRLE", iLado, btMapa.length) {
+        void executar() throws Exception {
+          // -- Uma célula de cada bloco, na ordem do recurso, lê todos os blocos
+          GjME_FonteTilesChunks fnt = new GjME_FonteTilesChunks(orgMapa, 1);
+          for (int l = 0; l < iLado; l += 16) {
+            for (int c = 0; c < iLado; c += 16) { GjME_Benchmarks.iSumidouro += fnt.retornaTile(c, l); }
+          }
+          fnt.fechar();
+        }
+      };
+      casos[iQtd++] = new Caso("construirMatriz", iLado, iLado * iLado * 4) {
+        void executar() {
+          GjME_Benchmarks.iSumidouro += GjME_Benchmarks.mapaFase(iLado)[iLado - 1][0];
+        }
+      };
+    }
+
+    int[] iarThreads = {1, 2, 4, 8};
+    final PersonagemBench[] prsParalelos = new PersonagemBench[4000];
+    for (int j = 0; j < prsParalelos.length; j++) {
+      prsParalelos[j] = new PersonagemBench(img, j % 240, j % 320, 0);
+      prsParalelos[j].empilharAcao(GjME_Personagem.ACAO_AGUARDAR);
+    }
+    GjME_AtualizacaoParalela[] parAtualizacoes = new GjME_AtualizacaoParalela[iarThreads.length];
+    for (int i = 0; i < iarThreads.length; i++) {
+      final GjME_AtualizacaoParalela par = new GjME_AtualizacaoParalela(iarThreads[i]);
+      parAtualizacoes[i] = par;
+      casos[iQtd++] = new Caso("atualizacaoParalela", iarThreads[i]) {
+        void executar() {
+          par.atualizar(prsParalelos, prsParalelos.length);
+          GjME_Benchmarks.iSumidouro += prsParalelos[0].getX();
+        }
+      };
+    }
+
+    StringBuffer sb = new StringBuffer("[\n");
+    for (int i = 0; i < iQtd; i++) {
+      if (i > 0) { sb.append(",\n"); }
+      GjME_Benchmarks.medir(casos[i], sb);
+      System.err.println(casos[i].sNome + "(" + casos[i].iParametro + ") ok");
+    }
+    sb.append("\n]\n");
+    for (int i = 0; i < parAtualizacoes.length; i++) { parAtualizacoes[i].encerrar(); }
+
+    Writer wr = (args.length > 0) ? (Writer) new FileWriter(args[0]) : null;
+    if (null == wr) {
+      System.out.print(sb.toString());
+    } else {
+      try { wr.write(sb.toString()); } finally { wr.close(); }
+    }
+    // -- Consome o sumidouro para que o JIT não descarte as operações medidas
+    if (0 == GjME_Benchmarks.iSumidouro) { System.err.println(); }
+  }
+
+  /**
+   * Mede um caso e acrescenta seu resultado, em JSON, ao buffer.
+   */
+  private static void medir(Caso caso, StringBuffer sb) throws Exception {
+    // -- Calibra a quantidade de operações por iteração durante o aquecimento
+    int iOperacoes = 1;
+    for (int i = 0; i < GjME_Benchmarks.ITERACOES_AQUECIMENTO; i++) {
+      long lTempo = GjME_Benchmarks.iteracao(caso, iOperacoes);
+      if (lTempo > 0) {
+        iOperacoes = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+                (long) iOperacoes * GjME_Benchmarks.TEMPO_ITERACAO / lTempo));
+      }
+    }
+    double[] darNsPorOperacao = new double[GjME_Benchmarks.ITERACOES_MEDIDAS];
+    double dSoma = 0, dMinimo = Double.MAX_VALUE;
+    for (int i = 0; i < darNsPorOperacao.length; i++) {
+      darNsPorOperacao[i] = (double) GjME_Benchmarks.iteracao(caso, iOperacoes) / iOperacoes;
+      dSoma += darNsPorOperacao[i];
+      dMinimo = Math.min(dMinimo, darNsPorOperacao[i]);
+    }
+    double dMedia = dSoma / darNsPorOperacao.length, dVariancia = 0;
+    for (int i = 0; i < darNsPorOperacao.length; i++) {
+      dVariancia += (darNsPorOperacao[i] - dMedia) * (darNsPorOperacao[i] - dMedia);
+    }
+    double dDesvio = Math.sqrt(dVariancia / darNsPorOperacao.length);
+    sb.append("  {\"benchmark\": \"").append(caso.sNome)
+      .append("\", \"parametro\": ").append(caso.iParametro)
+      .append(", \"operacoesPorIteracao\": ").append(iOperacoes)
+      .append(", \"iteracoes\": ").append(darNsPorOperacao.length)
+      .append(", \"nsPorOperacao\": ").append(Math.round(dMedia))
+      .append(", \"nsMinimo\": ").append(Math.round(dMinimo))
+      .append(", \"desvio\": ").append(Math.round(dDesvio));
+    if (caso.iBytes >= 0) { sb.append(", \"bytes\": ").append(caso.iBytes); }
+    sb.append('}');
+  }
+
+  /**
+   * Executa uma iteração com a quantidade de operações informada.
+   * @return Duração em nanosegundos.
+   */
+  private static long iteracao(Caso caso, int iOperacoes) throws Exception {
+    long lInicio = System.nanoTime();
+    for (int i = 0; i < iOperacoes; i++) { caso.executar(); }
+    return System.nanoTime() - lInicio;
+  }
+
+  /**
+   * Cria uma sprite sheet 64x32 com oito frames de 16x16.
+   */
+  private static Image spriteSheet() {
+    int[] iarPixels = new int[64 * 32];
+    for (int i = 0; i < iarPixels.length; i++) {
+      iarPixels[i] = (0 == (i % 7)) ? 0 : (0xFF000000 | (i * 0x010203));
+    }
+    return Image.createRGBImage(iarPixels, 64, 32, true);
+  }
+
+  /**
+   * Cria um mapa quadrado com os oito tiles da sprite sheet.
+   */
+  private static int[][] mapa(int iLado) {
+    int[][] iarMapa = new int[iLado][iLado];
+    for (int j = 0; j < iLado; j++) {
+      for (int i = 0; i < iLado; i++) { iarMapa[j][i] = (i * 7 + j * 3) % 9; }
+    }
+    return iarMapa;
+  }
+
+  /**
+   * Cria um mapa quadrado como o de uma fase: céu vazio, chão e plataformas.
+   */
+  private static int[][] mapaFase(int iLado) {
+    int[][] iarMapa = new int[iLado][iLado];
+    int iChao = iLado * 3 / 4;
+    for (int j = iChao; j < iLado; j++) {
+      for (int i = 0; i < iLado; i++) { iarMapa[j][i] = (j == iChao) ? 2 : 1; }
+    }
+    for (int i = 0; i < iLado; i += 8) {
+      int iLinha = (i * 5) % iChao;
+      for (int k = i; k < Math.min(i + 5, iLado); k++) { iarMapa[iLinha][k] = 3; }
+    }
+    return iarMapa;
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.headless;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Hashtable;
+import java.util.StringTokenizer;
+import java.util.Vector;
+
+import br.com.upzone.gjme.layer.GjME_FonteTilesChunks;
+
+/**
+ * Converte as matrizes de tiles das fases para o formato em blocos lido por
+ * GjME_FonteTilesChunks.
+ *
+ * Executado fora do aparelho, na preparação dos recursos que vão no JAR; por
+ * isso não faz parte das classes do framework. A entrada é um arquivo texto com
+ * uma linha do mapa por linha e os tiles separados por espaços ou vírgulas:
+ *   java -cp out br.com.upzone.gjme.headless.GjME_ConversorMapa
+ *       fase1.txt fase1.map [rle] [largura altura]
+ * A largura e a altura dos blocos, em tiles, são 16 por padrão.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @see GjME_FonteTilesChunks
+ * @final
+ */
+public final class GjME_ConversorMapa {
+
+  /**
+   * Não deve ser instanciada.
+   */
+  private GjME_ConversorMapa() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Uso: GjME_ConversorMapa entrada.txt saida.map [rle] [largura altura]");
+      System.exit(1);
+    }
+    int iArg = 2,
+        iCodificacao = GjME_FonteTilesChunks.CODIFICACAO_BRUTA;
+    if ((args.length > iArg) && "rle".equalsIgnoreCase(args[iArg])) {
+      iCodificacao = GjME_FonteTilesChunks.CODIFICACAO_RLE;
+      iArg++;
+    }
+    int iLarguraChunk = (args.length > iArg) ? Integer.parseInt(args[iArg]) : 16,
+        iAlturaChunk = (args.length > iArg + 1) ? Integer.parseInt(args[iArg + 1]) : iLarguraChunk;
+
+    OutputStream os = new FileOutputStream(args[1]);
+    try {
+      GjME_ConversorMapa.gravar(GjME_ConversorMapa.lerTexto(args[0]), iLarguraChunk, iAlturaChunk,
+              iCodificacao, os);
+    } finally { os.close(); }
+  }
+
+  /**
+   * Lê um mapa em texto, uma linha do mapa por linha do arquivo.
+   * @throws IllegalArgumentException Se o mapa estiver vazio ou as linhas tiverem tamanhos diferentes.
+   */
+  private static int[][] lerTexto(String sArquivo) throws IOException {
+    Vector vctLinhas = new Vector();
+    BufferedReader br = new BufferedReader(new FileReader(sArquivo));
+    try {
+      for (String sLinha = br.readLine(); null != sLinha; sLinha = br.readLine()) {
+        StringTokenizer stk = new StringTokenizer(sLinha, " \t,;");
+        if (0 == stk.countTokens()) { continue; }
+        int[] iarLinha = new int[stk.countTokens()];
+        for (int i = 0; i < iarLinha.length; i++) { iarLinha[i] = Integer.parseInt(stk.nextToken()); }
+        if (!vctLinhas.isEmpty() && (((int[]) vctLinhas.elementAt(0)).length != iarLinha.length)) {
+          throw new IllegalArgumentException("Linha " + (vctLinhas.size() + 1) + " com tamanho diferente.");
+        }
+        vctLinhas.addElement(iarLinha);
+      }
+    } finally { br.close(); }
+    if (vctLinhas.isEmpty()) { throw new IllegalArgumentException("Mapa vazio: " + sArquivo); }
+    int[][] iarTiles = new int[vctLinhas.size()][];
+    vctLinhas.copyInto(iarTiles);
+    return iarTiles;
+  }
+
+  /**
+   * Grava um mapa no formato em blocos, sem compressão.
+   * @see GjME_ConversorMapa.gravar(int[][], int, int, int, OutputStream)
+   */
+  public static void gravar(int[][] iarTiles, int iLarguraChunk, int iAlturaChunk,
+          OutputStream os) throws IOException {
+    GjME_ConversorMapa.gravar(iarTiles, iLarguraChunk, iAlturaChunk,
+            GjME_FonteTilesChunks.CODIFICACAO_BRUTA, os);
+  }
+
+  /**
+   * Grava um mapa no formato em blocos.
+   * @param iarTiles Matriz [linha][coluna] com os tiles do mapa;
+   * @param iLarguraChunk Largura dos blocos, em tiles;
+   * @param iAlturaChunk Altura dos blocos, em tiles;
+   * @param iCodificacao CODIFICACAO_BRUTA ou CODIFICACAO_RLE;
+   * @param os Destino do mapa gravado.
+   * @throws IOException Em caso de falha na gravação.
+   * @throws IllegalArgumentException Se o mapa tiver mais tiles distintos que a paleta comporta.
+   */
+  public static void gravar(int[][] iarTiles, int iLarguraChunk, int iAlturaChunk,
+          int iCodificacao, OutputStream os) throws IOException {
+    int iColunas = iarTiles[0].length,
+        iLinhas = iarTiles.length,
+        iChunksPorLinha = (iColunas + iLarguraChunk - 1) / iLarguraChunk,
+        iQtdChunks = iChunksPorLinha * ((iLinhas + iAlturaChunk - 1) / iAlturaChunk);
+    boolean bRLE = (GjME_FonteTilesChunks.CODIFICACAO_RLE == iCodificacao);
+    if (!bRLE && (GjME_FonteTilesChunks.CODIFICACAO_BRUTA != iCodificacao)) {
+      throw new IllegalArgumentException("Codificação de blocos desconhecida: " + iCodificacao);
+    }
+
+    // -- Monta a paleta com os tiles distintos, na ordem em que aparecem
+    Hashtable hstPaleta = new Hashtable();
+    int[] iarPaleta = new int[0];
+    if (bRLE) {
+      iarPaleta = new int[65535];
+      int iQtdPaleta = 0;
+      for (int iLin = 0; iLin < iLinhas; iLin++) {
+        for (int iCol = 0; iCol < iColunas; iCol++) {
+          Integer objTile = new Integer(iarTiles[iLin][iCol]);
+          if (!hstPaleta.containsKey(objTile)) {
+            if (iQtdPaleta == iarPaleta.length) {
+              throw new IllegalArgumentException("Mapa com mais de 65535 tiles distintos.");
+            }
+            hstPaleta.put(objTile, new Integer(iQtdPaleta));
+            iarPaleta[iQtdPaleta++] = objTile.intValue();
+          }
+        }
+      }
+      // -- Tiles vazios completam os blocos da borda
+      if (!hstPaleta.containsKey(new Integer(0)) && (iQtdPaleta < iarPaleta.length)) {
+        hstPaleta.put(new Integer(0), new Integer(iQtdPaleta));
+        iarPaleta[iQtdPaleta++] = 0;
+      }
+      int[] iarPaletaFinal = new int[iQtdPaleta];
+      System.arraycopy(iarPaleta, 0, iarPaletaFinal, 0, iQtdPaleta);
+      iarPaleta = iarPaletaFinal;
+    }
+    boolean bIndiceCurto = (iarPaleta.length > 256);
+
+    // -- Codifica os blocos
+    int[] iarDeslocamentos = new int[iQtdChunks];
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream dosDados = new DataOutputStream(baos);
+    int[] iarTilesChunk = new int[iLarguraChunk * iAlturaChunk];
+    for (int iChunk = 0; iChunk < iQtdChunks; iChunk++) {
+      iarDeslocamentos[iChunk] = dosDados.size();
+      int iColInicial = (iChunk % iChunksPorLinha) * iLarguraChunk,
+          iLinInicial = (iChunk / iChunksPorLinha) * iAlturaChunk,
+          k = 0;
+      for (int iLin = iLinInicial; iLin < iLinInicial + iAlturaChunk; iLin++) {
+        for (int iCol = iColInicial; iCol < iColInicial + iLarguraChunk; iCol++) {
+          iarTilesChunk[k++] = ((iLin < iLinhas) && (iCol < iColunas)) ? iarTiles[iLin][iCol] : 0;
+        }
+      }
+      if (!bRLE) {
+        for (int i = 0; i < iarTilesChunk.length; i++) { dosDados.writeShort(iarTilesChunk[i]); }
+        continue;
+      }
+      for (int i = 0; i < iarTilesChunk.length;) {
+        int iRepeticoes = 1;
+        while ((i + iRepeticoes < iarTilesChunk.length) && (iRepeticoes < 256)
+               && (iarTilesChunk[i + iRepeticoes] == iarTilesChunk[i])) {
+          iRepeticoes++;
+        }
+        int iIndice = ((Integer)hstPaleta.get(new Integer(iarTilesChunk[i]))).intValue();
+        dosDados.writeByte(iRepeticoes - 1);
+        if (bIndiceCurto) {
+          dosDados.writeShort(iIndice);
+        } else { dosDados.writeByte(iIndice); }
+        i += iRepeticoes;
+      }
+    }
+    dosDados.flush();
+
+    DataOutputStream dos = new DataOutputStream(os);
+    dos.writeInt(GjME_FonteTilesChunks.ASSINATURA);
+    dos.writeByte(GjME_FonteTilesChunks.VERSAO);
+    dos.writeByte(bRLE ? GjME_FonteTilesChunks.CODIFICACAO_RLE : GjME_FonteTilesChunks.CODIFICACAO_BRUTA);
+    dos.writeInt(iColunas);
+    dos.writeInt(iLinhas);
+    dos.writeShort(iLarguraChunk);
+    dos.writeShort(iAlturaChunk);
+    if (bRLE) {
+      dos.writeShort(iarPaleta.length);
+      for (int i = 0; i < iarPaleta.length; i++) { dos.writeShort(iarPaleta[i]); }
+    }
+    for (int i = 0; i < iQtdChunks; i++) { dos.writeInt(iarDeslocamentos[i]); }
+    dos.write(baos.toByteArray());
+    dos.flush();
+  }
+}
@@ -0,0 +1,128 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.headless;
+
+import br.com.upzone.gjme.tela.GjME_Tela;
+
+import java.util.zip.CRC32;
+
+/**
+ * Executa uma tela do game na JVM desktop, sobre a implementação headless do LCDUI.
+ *
+ * A tela é conduzida frame a frame com GjME_Tela.avancarFrame(), sem threads e
+ * sem esperar pelo relógio, e ao final é impressa uma linha no formato
+ * chave=valor com o tempo médio por frame, as chamadas a flushGraphics(), os
+ * pixels enviados ao display e um CRC32 do display, que muda quando o desenho
+ * muda. Também pode ser usado dentro de profilers.
+ *
+ * Compilação e execução (a partir da raiz do projeto, com o jogo no classpath):
+ *   javac -encoding UTF-8 -d out $(find headless/src src -name "*.java")
+ *   java -cp out:jogo br.com.upzone.gjme.headless.GjME_ExecutorHeadless
+ *       br.com.exemplo.TelaFase1 1000 100
+ * A resolução da tela é definida com -Dgjme.largura e -Dgjme.altura.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @final
+ */
+public final class GjME_ExecutorHeadless {
+
+  /**
+   * Não deve ser instanciada.
+   */
+  private GjME_ExecutorHeadless() {}
+
+  /**
+   * Executa uma quantidade de frames de uma tela.
+   * @param tela Tela a ser executada;
+   * @param iFrames Quantidade de frames;
+   * @return Tempo total de execução em nanosegundos.
+   */
+  public static long executar(GjME_Tela tela, int iFrames) {
+    long lInicio = System.nanoTime();
+    for (int i = 0; i < iFrames; i++) { tela.avancarFrame(); }
+    return System.nanoTime() - lInicio;
+  }
+
+  /**
+   * Calcula o CRC32 do display simulado da tela.
+   * @param tela Tela executada;
+   * @return CRC32 dos pixels exibidos.
+   */
+  public static long checksumDisplay(GjME_Tela tela) {
+    int[] iarDisplay = tela.retornaDisplay();
+    CRC32 crc = new CRC32();
+    for (int i = 0; i < iarDisplay.length; i++) {
+      int iPixel = iarDisplay[i];
+      crc.update(iPixel >>> 24);
+      crc.update(iPixel >>> 16);
+      crc.update(iPixel >>> 8);
+      crc.update(iPixel);
+    }
+    return crc.getValue();
+  }
+
+  /**
+   * Argumentos: classe da tela (com construtor público sem parâmetros),
+   * quantidade de frames medidos (padrão 1000) e de frames de aquecimento
+   * (padrão 100).
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("Uso: GjME_ExecutorHeadless <classe da tela> [frames] [aquecimento]");
+      System.exit(2);
+    }
+    int iFrames = (args.length > 1) ? Integer.parseInt(args[1]) : 1000,
+        iAquecimento = (args.length > 2) ? Integer.parseInt(args[2]) : 100;
+    GjME_Tela tela = (GjME_Tela) Class.forName(args[0]).newInstance();
+
+    GjME_ExecutorHeadless.executar(tela, iAquecimento);
+    int iFlushesAntes = tela.retornaQtdFlushes();
+    long lPixelsAntes = tela.retornaPixelsEnviados();
+    long lTempo = GjME_ExecutorHeadless.executar(tela, iFrames);
+
+    StringBuffer sb = new StringBuffer();
+    sb.append("tela=").append(args[0])
+      .append(" frames=").append(iFrames)
+      .append(" nsPorFrame=").append((iFrames > 0) ? lTempo / iFrames : 0)
+      .append(" flushes=").append(tela.retornaQtdFlushes() - iFlushesAntes)
+      .append(" pixelsEnviados=").append(tela.retornaPixelsEnviados() - lPixelsAntes)
+      .append(" checksum=").append(Long.toHexString(GjME_ExecutorHeadless.checksumDisplay(tela)));
+    System.out.println(sb.toString());
+    // -- Encerra threads auxiliares da tela, como as de GjME_AtualizacaoParalela
+    tela.stop();
+  }
+}
@@ -0,0 +1,160 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package javax.microedition.lcdui;
+
+/**
+ * Implementação headless de javax.microedition.lcdui.Canvas.
+ *
+ * Não existe teclado no modo headless: os eventos são injetados com
+ * simularTeclaPressionada() e simularTeclaSolta(), métodos exclusivos desta
+ * implementação, que chamam keyPressed() e keyReleased() como o sistema faria.
+ * As teclas numéricas 2, 4, 5, 6 e 8 e os códigos negativos -1 a -5 (padrão de
+ * vários aparelhos para as setas e o botão central) são mapeados para as ações
+ * de game.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ */
+public abstract class Canvas extends Displayable {
+
+  public static final int UP = 1;
+  public static final int DOWN = 6;
+  public static final int LEFT = 2;
+  public static final int RIGHT = 5;
+  public static final int FIRE = 8;
+  public static final int GAME_A = 9;
+  public static final int GAME_B = 10;
+  public static final int GAME_C = 11;
+  public static final int GAME_D = 12;
+
+  public static final int KEY_NUM0 = 48;
+  public static final int KEY_NUM1 = 49;
+  public static final int KEY_NUM2 = 50;
+  public static final int KEY_NUM3 = 51;
+  public static final int KEY_NUM4 = 52;
+  public static final int KEY_NUM5 = 53;
+  public static final int KEY_NUM6 = 54;
+  public static final int KEY_NUM7 = 55;
+  public static final int KEY_NUM8 = 56;
+  public static final int KEY_NUM9 = 57;
+  public static final int KEY_STAR = 42;
+  public static final int KEY_POUND = 35;
+
+  private boolean bTelaCheia = false;
+
+  protected Canvas() {}
+
+  public boolean isDoubleBuffered() { return true; }
+
+  public boolean hasPointerEvents() { return false; }
+
+  public boolean hasPointerMotionEvents() { return false; }
+
+  public boolean hasRepeatEvents() { return false; }
+
+  public void setFullScreenMode(boolean mode) { this.bTelaCheia = mode; }
+
+  /**
+   * Indica se o modo de tela cheia foi solicitado; exclusivo do modo headless.
+   */
+  public boolean telaCheia() { return this.bTelaCheia; }
+
+  public int getKeyCode(int gameAction) {
+    switch (gameAction) {
+      case Canvas.UP: return -1;
+      case Canvas.DOWN: return -2;
+      case Canvas.LEFT: return -3;
+      case Canvas.RIGHT: return -4;
+      case Canvas.FIRE: return -5;
+      case Canvas.GAME_A: return Canvas.KEY_NUM1;
+      case Canvas.GAME_B: return Canvas.KEY_NUM3;
+      case Canvas.GAME_C: return Canvas.KEY_NUM7;
+      case Canvas.GAME_D: return Canvas.KEY_NUM9;
+      default: throw new IllegalArgumentException();
+    }
+  }
+
+  public int getGameAction(int keyCode) {
+    switch (keyCode) {
+      case -1: case Canvas.KEY_NUM2: return Canvas.UP;
+      case -2: case Canvas.KEY_NUM8: return Canvas.DOWN;
+      case -3: case Canvas.KEY_NUM4: return Canvas.LEFT;
+      case -4: case Canvas.KEY_NUM6: return Canvas.RIGHT;
+      case -5: case Canvas.KEY_NUM5: return Canvas.FIRE;
+      case Canvas.KEY_NUM1: return Canvas.GAME_A;
+      case Canvas.KEY_NUM3: return Canvas.GAME_B;
+      case Canvas.KEY_NUM7: return Canvas.GAME_C;
+      case Canvas.KEY_NUM9: return Canvas.GAME_D;
+      default: return 0;
+    }
+  }
+
+  public String getKeyName(int keyCode) { return String.valueOf(keyCode); }
+
+  protected void keyPressed(int keyCode) {}
+
+  protected void keyReleased(int keyCode) {}
+
+  protected void keyRepeated(int keyCode) {}
+
+  protected void pointerPressed(int x, int y) {}
+
+  protected void pointerReleased(int x, int y) {}
+
+  protected void pointerDragged(int x, int y) {}
+
+  protected void showNotify() {}
+
+  protected void hideNotify() {}
+
+  protected abstract void paint(Graphics g);
+
+  public final void repaint() {}
+
+  public final void repaint(int x, int y, int width, int height) {}
+
+  public final void serviceRepaints() {}
+
+  /**
+   * Entrega um evento de tecla pressionada ao canvas; exclusivo do modo headless.
+   */
+  public void simularTeclaPressionada(int keyCode) { this.keyPressed(keyCode); }
+
+  /**
+   * Entrega um evento de tecla solta ao canvas; exclusivo do modo headless.
+   */
+  public void simularTeclaSolta(int keyCode) { this.keyReleased(keyCode); }
+}
@@ -0,0 +1,73 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package javax.microedition.lcdui;
+
+/**
+ * Implementação headless de javax.microedition.lcdui.Displayable.
+ *
+ * O tamanho da tela é lido das propriedades de sistema gjme.largura e
+ * gjme.altura (padrão 240x320).
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ */
+public abstract class Displayable {
+
+  /**
+   * Largura da tela simulada.
+   */
+  static final int LARGURA_TELA = Integer.getInteger("gjme.largura", 240).intValue();
+  /**
+   * Altura da tela simulada.
+   */
+  static final int ALTURA_TELA = Integer.getInteger("gjme.altura", 320).intValue();
+
+  private String sTitulo;
+
+  Displayable() {}
+
+  public int getWidth() { return Displayable.LARGURA_TELA; }
+
+  public int getHeight() { return Displayable.ALTURA_TELA; }
+
+  public String getTitle() { return this.sTitulo; }
+
+  public void setTitle(String s) { this.sTitulo = s; }
+
+  public boolean isShown() { return true; }
+
+  protected void sizeChanged(int w, int h) {}
+}
@@ -0,0 +1,121 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package javax.microedition.lcdui;
+
+/**
+ * Implementação headless de javax.microedition.lcdui.Font com métricas fixas.
+ *
+ * Todos os caracteres têm a mesma largura, proporcional ao tamanho da fonte,
+ * permitindo calcular layouts de texto sem fontes do sistema.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ */
+public final class Font {
+
+  public static final int FACE_SYSTEM = 0;
+  public static final int FACE_MONOSPACE = 32;
+  public static final int FACE_PROPORTIONAL = 64;
+
+  public static final int STYLE_PLAIN = 0;
+  public static final int STYLE_BOLD = 1;
+  public static final int STYLE_ITALIC = 2;
+  public static final int STYLE_UNDERLINED = 4;
+
+  public static final int SIZE_SMALL = 8;
+  public static final int SIZE_MEDIUM = 0;
+  public static final int SIZE_LARGE = 16;
+
+  public static final int FONT_STATIC_TEXT = 0;
+  public static final int FONT_INPUT_TEXT = 1;
+
+  private static final Font fntPadrao = new Font(Font.FACE_SYSTEM, Font.STYLE_PLAIN, Font.SIZE_MEDIUM);
+
+  private final int iFace;
+  private final int iEstilo;
+  private final int iTamanho;
+  /**
+   * Largura de cada caractere em pixels.
+   */
+  private final int iLarguraCaractere;
+  /**
+   * Altura da linha em pixels.
+   */
+  private final int iAlturaLinha;
+
+  private Font(int iFace, int iEstilo, int iTamanho) {
+    this.iFace = iFace;
+    this.iEstilo = iEstilo;
+    this.iTamanho = iTamanho;
+    switch (iTamanho) {
+      case Font.SIZE_SMALL: this.iLarguraCaractere = 5; this.iAlturaLinha = 10; break;
+      case Font.SIZE_LARGE: this.iLarguraCaractere = 8; this.iAlturaLinha = 16; break;
+      default: this.iLarguraCaractere = 6; this.iAlturaLinha = 13;
+    }
+  }
+
+  public static Font getDefaultFont() { return Font.fntPadrao; }
+
+  public static Font getFont(int fontSpecifier) { return Font.fntPadrao; }
+
+  public static Font getFont(int face, int style, int size) { return new Font(face, style, size); }
+
+  public int getFace() { return this.iFace; }
+
+  public int getStyle() { return this.iEstilo; }
+
+  public int getSize() { return this.iTamanho; }
+
+  public boolean isPlain() { return Font.STYLE_PLAIN == this.iEstilo; }
+
+  public boolean isBold() { return 0 != (this.iEstilo & Font.STYLE_BOLD); }
+
+  public boolean isItalic() { return 0 != (this.iEstilo & Font.STYLE_ITALIC); }
+
+  public boolean isUnderlined() { return 0 != (this.iEstilo & Font.STYLE_UNDERLINED); }
+
+  public int getHeight() { return this.iAlturaLinha; }
+
+  public int getBaselinePosition() { return this.iAlturaLinha - 2; }
+
+  public int charWidth(char ch) { return this.iLarguraCaractere; }
+
+  public int charsWidth(char[] ch, int offset, int length) { return length * this.iLarguraCaractere; }
+
+  public int stringWidth(String str) { return str.length() * this.iLarguraCaractere; }
+
+  public int substringWidth(String str, int offset, int len) { return len * this.iLarguraCaractere; }
+}
@@ -0,0 +1,336 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package javax.microedition.lcdui;
+
+import javax.microedition.lcdui.game.Sprite;
+
+/**
+ * Implementação headless de javax.microedition.lcdui.Graphics sobre um int[] ARGB.
+ *
+ * Implementa as primitivas utilizadas pelo framework: retângulos, linhas,
+ * imagens (com as transformações de Sprite), arrays RGB, translação e clip.
+ * Textos não são rasterizados, pois não há fontes no modo headless; apenas a
+ * fonte e as âncoras são validadas.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ */
+public class Graphics {
+
+  public static final int HCENTER = 1;
+  public static final int VCENTER = 2;
+  public static final int LEFT = 4;
+  public static final int RIGHT = 8;
+  public static final int TOP = 16;
+  public static final int BOTTOM = 32;
+  public static final int BASELINE = 64;
+
+  public static final int SOLID = 0;
+  public static final int DOTTED = 1;
+
+  /**
+   * Pixels da superfície de desenho.
+   */
+  private final int[] iarDestino;
+  /**
+   * Largura da superfície de desenho.
+   */
+  private final int iLargura;
+  /**
+   * Altura da superfície de desenho.
+   */
+  private final int iAltura;
+
+  private int iTransX = 0;
+  private int iTransY = 0;
+
+  /**
+   * Clip em coordenadas absolutas da superfície; iClipX2 e iClipY2 são exclusivos.
+   */
+  private int iClipX1, iClipY1, iClipX2, iClipY2;
+
+  private int iCor = 0;
+  private int iEstiloTraco = Graphics.SOLID;
+  private Font fnt = Font.getDefaultFont();
+
+  /**
+   * Cria um Graphics para uma superfície de pixels.
+   */
+  Graphics(int[] iarDestino, int iLargura, int iAltura) {
+    this.iarDestino = iarDestino;
+    this.iLargura = iLargura;
+    this.iAltura = iAltura;
+    this.iClipX2 = iLargura;
+    this.iClipY2 = iAltura;
+  }
+
+  // -- Translação e clip ------------------------------------------------------
+  public void translate(int x, int y) {
+    this.iTransX += x;
+    this.iTransY += y;
+  }
+
+  public int getTranslateX() { return this.iTransX; }
+
+  public int getTranslateY() { return this.iTransY; }
+
+  public void setClip(int x, int y, int width, int height) {
+    this.iClipX1 = Math.max(0, x + this.iTransX);
+    this.iClipY1 = Math.max(0, y + this.iTransY);
+    this.iClipX2 = (int) Math.min(this.iLargura, (long) x + this.iTransX + width);
+    this.iClipY2 = (int) Math.min(this.iAltura, (long) y + this.iTransY + height);
+  }
+
+  public void clipRect(int x, int y, int width, int height) {
+    this.iClipX1 = Math.max(this.iClipX1, x + this.iTransX);
+    this.iClipY1 = Math.max(this.iClipY1, y + this.iTransY);
+    this.iClipX2 = (int) Math.min(this.iClipX2, (long) x + this.iTransX + width);
+    this.iClipY2 = (int) Math.min(this.iClipY2, (long) y + this.iTransY + height);
+  }
+
+  public int getClipX() { return this.iClipX1 - this.iTransX; }
+
+  public int getClipY() { return this.iClipY1 - this.iTransY; }
+
+  public int getClipWidth() { return Math.max(0, this.iClipX2 - this.iClipX1); }
+
+  public int getClipHeight() { return Math.max(0, this.iClipY2 - this.iClipY1); }
+
+  // -- Cor, fonte e traço -----------------------------------------------------
+  public void setColor(int RGB) { this.iCor = RGB & 0x00FFFFFF; }
+
+  public void setColor(int red, int green, int blue) {
+    if (((red | green | blue) & ~0xFF) != 0) { throw new IllegalArgumentException(); }
+    this.iCor = (red << 16) | (green << 8) | blue;
+  }
+
+  public int getColor() { return this.iCor; }
+
+  public int getRedComponent() { return (this.iCor >> 16) & 0xFF; }
+
+  public int getGreenComponent() { return (this.iCor >> 8) & 0xFF; }
+
+  public int getBlueComponent() { return this.iCor & 0xFF; }
+
+  public void setGrayScale(int value) { this.setColor(value, value, value); }
+
+  public int getGrayScale() {
+    return (this.getRedComponent() + this.getGreenComponent() + this.getBlueComponent()) / 3;
+  }
+
+  public void setFont(Font font) { this.fnt = (null == font) ? Font.getDefaultFont() : font; }
+
+  public Font getFont() { return this.fnt; }
+
+  public void setStrokeStyle(int style) {
+    if ((Graphics.SOLID != style) && (Graphics.DOTTED != style)) {
+      throw new IllegalArgumentException();
+    }
+    this.iEstiloTraco = style;
+  }
+
+  public int getStrokeStyle() { return this.iEstiloTraco; }
+
+  // -- Primitivas -------------------------------------------------------------
+  public void fillRect(int x, int y, int width, int height) {
+    int x1 = Math.max(this.iClipX1, x + this.iTransX),
+        y1 = Math.max(this.iClipY1, y + this.iTransY),
+        x2 = Math.min(this.iClipX2, x + this.iTransX + width),
+        y2 = Math.min(this.iClipY2, y + this.iTransY + height);
+    int iPixel = 0xFF000000 | this.iCor;
+    for (int j = y1; j < y2; j++) {
+      int iBase = j * this.iLargura;
+      for (int i = x1; i < x2; i++) { this.iarDestino[iBase + i] = iPixel; }
+    }
+  }
+
+  /**
+   * Desenha o contorno de um retângulo, que cobre width + 1 por height + 1 pixels.
+   */
+  public void drawRect(int x, int y, int width, int height) {
+    if ((width < 0) || (height < 0)) { return; }
+    this.drawLine(x, y, x + width, y);
+    this.drawLine(x, y + height, x + width, y + height);
+    this.drawLine(x, y, x, y + height);
+    this.drawLine(x + width, y, x + width, y + height);
+  }
+
+  public void drawLine(int x1, int y1, int x2, int y2) {
+    int dx = Math.abs(x2 - x1), dy = -Math.abs(y2 - y1),
+        sx = (x1 < x2) ? 1 : -1, sy = (y1 < y2) ? 1 : -1,
+        err = dx + dy, iPasso = 0;
+    while (true) {
+      if ((Graphics.SOLID == this.iEstiloTraco) || (0 == (iPasso++ & 2))) {
+        this.plotar(x1 + this.iTransX, y1 + this.iTransY, 0xFF000000 | this.iCor);
+      }
+      if ((x1 == x2) && (y1 == y2)) { return; }
+      int e2 = 2 * err;
+      if (e2 >= dy) { err += dy; x1 += sx; }
+      if (e2 <= dx) { err += dx; y1 += sy; }
+    }
+  }
+
+  public void drawImage(Image img, int x, int y, int anchor) {
+    this.drawRegion(img, 0, 0, img.getWidth(), img.getHeight(), Sprite.TRANS_NONE,
+            x, y, anchor);
+  }
+
+  /**
+   * Desenha uma região de uma imagem aplicando uma das transformações de Sprite.
+   */
+  public void drawRegion(Image src, int x_src, int y_src, int width, int height,
+          int transform, int x_dest, int y_dest, int anchor) {
+    if ((x_src < 0) || (y_src < 0) || (width < 0) || (height < 0)
+            || (x_src + width > src.getWidth()) || (y_src + height > src.getHeight())
+            || (transform < 0) || (transform > 7)) {
+      throw new IllegalArgumentException();
+    }
+    boolean bTroca = Graphics.trocaDimensoes(transform);
+    int iLarguraDest = bTroca ? height : width,
+        iAlturaDest = bTroca ? width : height;
+    int x0 = Graphics.ancorarX(x_dest, iLarguraDest, anchor) + this.iTransX,
+        y0 = Graphics.ancorarY(y_dest, iAlturaDest, anchor, 0) + this.iTransY;
+    int x1 = Math.max(this.iClipX1, x0), y1 = Math.max(this.iClipY1, y0),
+        x2 = Math.min(this.iClipX2, x0 + iLarguraDest),
+        y2 = Math.min(this.iClipY2, y0 + iAlturaDest);
+    int[] iarOrigem = src.iarPixels;
+    int iLarguraOrigem = src.getWidth();
+    for (int j = y1; j < y2; j++) {
+      for (int i = x1; i < x2; i++) {
+        int dx = i - x0, dy = j - y0;
+        int sx = x_src + Graphics.origemX(transform, dx, dy, width, height),
+            sy = y_src + Graphics.origemY(transform, dx, dy, width, height);
+        this.mesclar(j * this.iLargura + i, iarOrigem[sy * iLarguraOrigem + sx]);
+      }
+    }
+  }
+
+  public void drawRGB(int[] rgbData, int offset, int scanlength, int x, int y,
+          int width, int height, boolean processAlpha) {
+    int x0 = x + this.iTransX, y0 = y + this.iTransY;
+    int x1 = Math.max(this.iClipX1, x0), y1 = Math.max(this.iClipY1, y0),
+        x2 = Math.min(this.iClipX2, x0 + width), y2 = Math.min(this.iClipY2, y0 + height);
+    for (int j = y1; j < y2; j++) {
+      for (int i = x1; i < x2; i++) {
+        int iPixel = rgbData[offset + (j - y0) * scanlength + (i - x0)];
+        this.mesclar(j * this.iLargura + i, processAlpha ? iPixel : (0xFF000000 | iPixel));
+      }
+    }
+  }
+
+  // -- Textos (não rasterizados) ----------------------------------------------
+  public void drawString(String str, int x, int y, int anchor) {
+    if (null == str) { throw new NullPointerException(); }
+    Graphics.ancorarX(x, this.fnt.stringWidth(str), anchor);
+  }
+
+  public void drawSubstring(String str, int offset, int len, int x, int y, int anchor) {
+    this.drawString(str.substring(offset, offset + len), x, y, anchor);
+  }
+
+  public void drawChar(char character, int x, int y, int anchor) {
+    Graphics.ancorarX(x, this.fnt.charWidth(character), anchor);
+  }
+
+  public void drawChars(char[] data, int offset, int length, int x, int y, int anchor) {
+    this.drawString(new String(data, offset, length), x, y, anchor);
+  }
+
+  // -- Auxiliares -------------------------------------------------------------
+  private void plotar(int x, int y, int iPixel) {
+    if ((x >= this.iClipX1) && (x < this.iClipX2) && (y >= this.iClipY1) && (y < this.iClipY2)) {
+      this.iarDestino[y * this.iLargura + x] = iPixel;
+    }
+  }
+
+  /**
+   * Escreve um pixel ARGB respeitando a transparência.
+   */
+  private void mesclar(int iPos, int iPixel) {
+    int a = iPixel >>> 24;
+    if (0xFF == a) {
+      this.iarDestino[iPos] = iPixel;
+    } else if (0 != a) {
+      int d = this.iarDestino[iPos], na = 0xFF - a;
+      int r = (((iPixel >> 16) & 0xFF) * a + ((d >> 16) & 0xFF) * na) / 0xFF,
+          g = (((iPixel >> 8) & 0xFF) * a + ((d >> 8) & 0xFF) * na) / 0xFF,
+          b = ((iPixel & 0xFF) * a + (d & 0xFF) * na) / 0xFF;
+      this.iarDestino[iPos] = 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+  }
+
+  static int ancorarX(int x, int iLargura, int anchor) {
+    if (0 != (anchor & Graphics.HCENTER)) { return x - iLargura / 2; }
+    if (0 != (anchor & Graphics.RIGHT)) { return x - iLargura; }
+    return x;
+  }
+
+  static int ancorarY(int y, int iAltura, int anchor, int iBaseline) {
+    if (0 != (anchor & Graphics.VCENTER)) { return y - iAltura / 2; }
+    if (0 != (anchor & Graphics.BOTTOM)) { return y - iAltura; }
+    if (0 != (anchor & Graphics.BASELINE)) { return y - iBaseline; }
+    return y;
+  }
+
+  /**
+   * Indica se a transformação troca largura e altura (rotações de 90 e 270 graus).
+   */
+  static boolean trocaDimensoes(int transform) { return transform >= 4; }
+
+  /**
+   * Coordenada X na região de origem do pixel (dx, dy) da região transformada.
+   */
+  static int origemX(int transform, int dx, int dy, int iLargura, int iAltura) {
+    switch (transform) {
+      case Sprite.TRANS_MIRROR: case Sprite.TRANS_ROT180: return iLargura - 1 - dx;
+      case Sprite.TRANS_ROT90: case Sprite.TRANS_MIRROR_ROT270: return dy;
+      case Sprite.TRANS_ROT270: case Sprite.TRANS_MIRROR_ROT90: return iLargura - 1 - dy;
+      default: return dx;
+    }
+  }
+
+  /**
+   * Coordenada Y na região de origem do pixel (dx, dy) da região transformada.
+   */
+  static int origemY(int transform, int dx, int dy, int iLargura, int iAltura) {
+    switch (transform) {
+      case Sprite.TRANS_MIRROR_ROT180: case Sprite.TRANS_ROT180: return iAltura - 1 - dy;
+      case Sprite.TRANS_ROT90: case Sprite.TRANS_MIRROR_ROT90: return iAltura - 1 - dx;
+      case Sprite.TRANS_ROT270: case Sprite.TRANS_MIRROR_ROT270: return dx;
+      default: return dy;
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package javax.microedition.lcdui;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Implementação headless de javax.microedition.lcdui.Image para a JVM desktop.
+ *
+ * Os pixels são mantidos em um int[] ARGB. Imagens imutáveis são decodificadas
+ * com javax.imageio, disponível apenas no desktop.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ */
+public class Image {
+
+  /**
+   * Pixels da imagem no formato 0xAARRGGBB, linha a linha.
+   */
+  final int[] iarPixels;
+  /**
+   * Largura da imagem.
+   */
+  private final int iLargura;
+  /**
+   * Altura da imagem.
+   */
+  private final int iAltura;
+  /**
+   * Indica se a imagem pode ser alterada com getGraphics().
+   */
+  private final boolean bMutavel;
+
+  private Image(int[] iarPixels, int iLargura, int iAltura, boolean bMutavel) {
+    this.iarPixels = iarPixels;
+    this.iLargura = iLargura;
+    this.iAltura = iAltura;
+    this.bMutavel = bMutavel;
+  }
+
+  /**
+   * Cria uma imagem mutável preenchida de branco.
+   */
+  public static Image createImage(int width, int height) {
+    if ((width <= 0) || (height <= 0)) { throw new IllegalArgumentException(); }
+    int[] iarPixels = new int[width * height];
+    for (int i = 0; i < iarPixels.length; i++) { iarPixels[i] = 0xFFFFFFFF; }
+    return new Image(iarPixels, width, height, true);
+  }
+
+  /**
+   * Cria uma cópia imutável de uma imagem.
+   */
+  public static Image createImage(Image source) {
+    if (!source.bMutavel) { return source; }
+    return new Image((int[]) source.iarPixels.clone(), source.iLargura, source.iAltura, false);
+  }
+
+  /**
+   * Decodifica uma imagem a partir de um recurso do classpath.
+   */
+  public static Image createImage(String name) throws IOException {
+    InputStream is = Image.class.getResourceAsStream(name);
+    if (null == is) { throw new IOException("Recurso não encontrado: " + name); }
+    try {
+      return Image.createImage(is);
+    } finally {
+      is.close();
+    }
+  }
+
+  /**
+   * Decodifica uma imagem a partir de um array de bytes.
+   */
+  public static Image createImage(byte[] imageData, int imageOffset, int imageLength) {
+    try {
+      return Image.createImage(new ByteArrayInputStream(imageData, imageOffset, imageLength));
+    } catch (IOException ioex) {
+      throw new IllegalArgumentException(ioex.getMessage());
+    }
+  }
+
+  /**
+   * Decodifica uma imagem a partir de um stream.
+   */
+  public static Image createImage(InputStream stream) throws IOException {
+    java.awt.image.BufferedImage bi = javax.imageio.ImageIO.read(stream);
+    if (null == bi) { throw new IOException("Formato de imagem não suportado."); }
+    int iLargura = bi.getWidth(),
+        iAltura = bi.getHeight();
+    int[] iarPixels = new int[iLargura * iAltura];
+    bi.getRGB(0, 0, iLargura, iAltura, iarPixels, 0, iLargura);
+    return new Image(iarPixels, iLargura, iAltura, false);
+  }
+
+  /**
+   * Cria uma imagem imutável com uma região transformada de outra imagem.
+   */
+  public static Image createImage(Image image, int x, int y, int width, int height,
+          int transform) {
+    if ((x < 0) || (y < 0) || (width <= 0) || (height <= 0)
+            || (x + width > image.iLargura) || (y + height > image.iAltura)) {
+      throw new IllegalArgumentException();
+    }
+    boolean bTroca = Graphics.trocaDimensoes(transform);
+    int iLargura = bTroca ? height : width,
+        iAltura = bTroca ? width : height;
+    int[] iarPixels = new int[iLargura * iAltura];
+    for (int dy = 0; dy < iAltura; dy++) {
+      for (int dx = 0; dx < iLargura; dx++) {
+        int sx = Graphics.origemX(transform, dx, dy, width, height),
+            sy = Graphics.origemY(transform, dx, dy, width, height);
+        iarPixels[dy * iLargura + dx] = image.iarPixels[(y + sy) * image.iLargura + x + sx];
+      }
+    }
+    return new Image(iarPixels, iLargura, iAltura, false);
+  }
+
+  /**
+   * Cria uma imagem imutável a partir de pixels ARGB.
+   */
+  public static Image createRGBImage(int[] rgb, int width, int height, boolean processAlpha) {
+    if ((width <= 0) || (height <= 0)) { throw new IllegalArgumentException(); }
+    int[] iarPixels = new int[width * height];
+    for (int i = 0; i < iarPixels.length; i++) {
+      iarPixels[i] = processAlpha ? rgb[i] : (rgb[i] | 0xFF000000);
+    }
+    return new Image(iarPixels, width, height, false);
+  }
+
+  /**
+   * Retorna um Graphics que desenha sobre esta imagem.
+   * @throws IllegalStateException Se a imagem for imutável.
+   */
+  public Graphics getGraphics() {
+    if (!this.bMutavel) { throw new IllegalStateException(); }
+    return new Graphics(this.iarPixels, this.iLargura, this.iAltura);
+  }
+
+  public int getWidth() { return this.iLargura; }
+
+  public int getHeight() { return this.iAltura; }
+
+  public boolean isMutable() { return this.bMutavel; }
+
+  /**
+   * Copia pixels ARGB de uma região da imagem.
+   */
+  public void getRGB(int[] rgbData, int offset, int scanlength, int x, int y,
+          int width, int height) {
+    if ((x < 0) || (y < 0) || (x + width > this.iLargura) || (y + height > this.iAltura)) {
+      throw new IllegalArgumentException();
+    }
+    for (int j = 0; j < height; j++) {
+      System.arraycopy(this.iarPixels, (y + j) * this.iLargura + x,
+              rgbData, offset + j * scanlength, width);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package javax.microedition.lcdui.game;
+
+import javax.microedition.lcdui.Canvas;
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+
+/**
+ * Implementação headless de javax.microedition.lcdui.game.GameCanvas.
+ *
+ * O buffer de desenho é uma Image mutável do tamanho da tela. flushGraphics()
+ * copia o buffer (ou parte dele) para um int[] que representa o display, e
+ * contabiliza as chamadas e os pixels enviados para que os testes de
+ * desempenho possam avaliar o desenho parcial.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ */
+public abstract class GameCanvas extends Canvas {
+
+  public static final int UP_PRESSED = 1 << Canvas.UP;
+  public static final int DOWN_PRESSED = 1 << Canvas.DOWN;
+  public static final int LEFT_PRESSED = 1 << Canvas.LEFT;
+  public static final int RIGHT_PRESSED = 1 << Canvas.RIGHT;
+  public static final int FIRE_PRESSED = 1 << Canvas.FIRE;
+  public static final int GAME_A_PRESSED = 1 << Canvas.GAME_A;
+  public static final int GAME_B_PRESSED = 1 << Canvas.GAME_B;
+  public static final int GAME_C_PRESSED = 1 << Canvas.GAME_C;
+  public static final int GAME_D_PRESSED = 1 << Canvas.GAME_D;
+
+  /**
+   * Buffer onde o game desenha.
+   */
+  private final Image imgBuffer;
+  /**
+   * Pixels exibidos no display simulado.
+   */
+  private final int[] iarDisplay;
+
+  /**
+   * Teclas pressionadas no momento.
+   */
+  private int iTeclasPressionadas = 0;
+  /**
+   * Teclas pressionadas desde a última chamada a getKeyStates().
+   */
+  private int iTeclasTravadas = 0;
+
+  /**
+   * Quantidade de chamadas a flushGraphics().
+   */
+  private int iQtdFlushes = 0;
+  /**
+   * Soma das áreas enviadas ao display em pixels.
+   */
+  private long lPixelsEnviados = 0;
+
+  protected GameCanvas(boolean suppressKeyEvents) {
+    this.imgBuffer = Image.createImage(this.getWidth(), this.getHeight());
+    this.iarDisplay = new int[this.getWidth() * this.getHeight()];
+  }
+
+  protected Graphics getGraphics() { return this.imgBuffer.getGraphics(); }
+
+  public int getKeyStates() {
+    int iEstados = this.iTeclasPressionadas | this.iTeclasTravadas;
+    this.iTeclasTravadas = 0;
+    return iEstados;
+  }
+
+  public void paint(Graphics g) {
+    g.drawImage(this.imgBuffer, 0, 0, Graphics.TOP | Graphics.LEFT);
+  }
+
+  public void flushGraphics() {
+    this.flushGraphics(0, 0, this.getWidth(), this.getHeight());
+  }
+
+  public void flushGraphics(int x, int y, int width, int height) {
+    int x1 = Math.max(0, x), y1 = Math.max(0, y),
+        x2 = Math.min(this.getWidth(), x + width),
+        y2 = Math.min(this.getHeight(), y + height);
+    this.iQtdFlushes++;
+    if ((x2 <= x1) || (y2 <= y1)) { return; }
+    this.imgBuffer.getRGB(this.iarDisplay, y1 * this.getWidth() + x1, this.getWidth(),
+            x1, y1, x2 - x1, y2 - y1);
+    this.lPixelsEnviados += (long) (x2 - x1) * (y2 - y1);
+  }
+
+  public void simularTeclaPressionada(int keyCode) {
+    int iAcao = this.getGameAction(keyCode);
+    if (0 != iAcao) {
+      this.iTeclasPressionadas |= 1 << iAcao;
+      this.iTeclasTravadas |= 1 << iAcao;
+    }
+    super.simularTeclaPressionada(keyCode);
+  }
+
+  public void simularTeclaSolta(int keyCode) {
+    int iAcao = this.getGameAction(keyCode);
+    if (0 != iAcao) { this.iTeclasPressionadas &= ~(1 << iAcao); }
+    super.simularTeclaSolta(keyCode);
+  }
+
+  /**
+   * Retorna os pixels do display simulado; exclusivo do modo headless.
+   */
+  public int[] retornaDisplay() { return this.iarDisplay; }
+
+  /**
+   * Retorna a quantidade de chamadas a flushGraphics(); exclusivo do modo headless.
+   */
+  public int retornaQtdFlushes() { return this.iQtdFlushes; }
+
+  /**
+   * Retorna a soma das áreas enviadas ao display; exclusivo do modo headless.
+   */
+  public long retornaPixelsEnviados() { return this.lPixelsEnviados; }
+}
@@ -0,0 +1,105 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package javax.microedition.lcdui.game;
+
+import java.util.Vector;
+
+import javax.microedition.lcdui.Graphics;
+
+/**
+ * Implementação headless de javax.microedition.lcdui.game.LayerManager.
+ *
+ * A layer de índice 0 é a mais próxima do usuário e é desenhada por último.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ */
+public class LayerManager {
+
+  private final Vector vctLayers = new Vector();
+
+  private int iJanelaX = 0;
+  private int iJanelaY = 0;
+  private int iJanelaLargura = Integer.MAX_VALUE;
+  private int iJanelaAltura = Integer.MAX_VALUE;
+
+  public LayerManager() {}
+
+  public void append(Layer l) {
+    if (null == l) { throw new NullPointerException(); }
+    this.vctLayers.removeElement(l);
+    this.vctLayers.addElement(l);
+  }
+
+  public void insert(Layer l, int index) {
+    if (null == l) { throw new NullPointerException(); }
+    this.vctLayers.removeElement(l);
+    if ((index < 0) || (index > this.vctLayers.size())) {
+      throw new IndexOutOfBoundsException();
+    }
+    this.vctLayers.insertElementAt(l, index);
+  }
+
+  public void remove(Layer l) {
+    if (null == l) { throw new NullPointerException(); }
+    this.vctLayers.removeElement(l);
+  }
+
+  public Layer getLayerAt(int index) { return (Layer) this.vctLayers.elementAt(index); }
+
+  public int getSize() { return this.vctLayers.size(); }
+
+  public void setViewWindow(int x, int y, int width, int height) {
+    if ((width < 0) || (height < 0)) { throw new IllegalArgumentException(); }
+    this.iJanelaX = x;
+    this.iJanelaY = y;
+    this.iJanelaLargura = width;
+    this.iJanelaAltura = height;
+  }
+
+  public void paint(Graphics g, int x, int y) {
+    int iClipX = g.getClipX(), iClipY = g.getClipY(),
+        iClipLargura = g.getClipWidth(), iClipAltura = g.getClipHeight();
+    g.translate(x - this.iJanelaX, y - this.iJanelaY);
+    g.clipRect(this.iJanelaX, this.iJanelaY, this.iJanelaLargura, this.iJanelaAltura);
+    for (int i = this.vctLayers.size() - 1; i >= 0; i--) {
+      Layer lyr = (Layer) this.vctLayers.elementAt(i);
+      if (lyr.isVisible()) { lyr.paint(g); }
+    }
+    g.translate(this.iJanelaX - x, this.iJanelaY - y);
+    g.setClip(iClipX, iClipY, iClipLargura, iClipAltura);
+  }
+}
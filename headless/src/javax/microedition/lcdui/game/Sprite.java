@@ -0,0 +1,373 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package javax.microedition.lcdui.game;
+
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+
+/**
+ * Implementação headless de javax.microedition.lcdui.game.Sprite.
+ *
+ * Implementa frames, seqüências, pixel de referência, transformações e
+ * colisões por retângulo e por pixel conforme a especificação do MIDP 2.0.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ */
+public class Sprite extends Layer {
+
+  public static final int TRANS_NONE = 0;
+  public static final int TRANS_MIRROR_ROT180 = 1;
+  public static final int TRANS_MIRROR = 2;
+  public static final int TRANS_ROT180 = 3;
+  public static final int TRANS_MIRROR_ROT270 = 4;
+  public static final int TRANS_ROT90 = 5;
+  public static final int TRANS_ROT270 = 6;
+  public static final int TRANS_MIRROR_ROT90 = 7;
+
+  private Image img;
+  private int iLarguraFrame;
+  private int iAlturaFrame;
+  private int iQtdFramesBrutos;
+  /**
+   * Seqüência de frames; null indica a seqüência padrão (todos os frames em ordem).
+   */
+  private int[] iarSequencia = null;
+  private int iFrame = 0;
+
+  private int iRefX = 0;
+  private int iRefY = 0;
+  private int iTransformacao = Sprite.TRANS_NONE;
+
+  private int iColisaoX;
+  private int iColisaoY;
+  private int iColisaoLargura;
+  private int iColisaoAltura;
+
+  public Sprite(Image image) {
+    this(image, image.getWidth(), image.getHeight());
+  }
+
+  public Sprite(Image image, int frameWidth, int frameHeight) {
+    super(frameWidth, frameHeight);
+    this.trocarImagem(image, frameWidth, frameHeight);
+    this.defineCollisionRectangle(0, 0, frameWidth, frameHeight);
+  }
+
+  public Sprite(Sprite s) {
+    super(s.iLargura, s.iAltura);
+    this.img = s.img;
+    this.iLarguraFrame = s.iLarguraFrame;
+    this.iAlturaFrame = s.iAlturaFrame;
+    this.iQtdFramesBrutos = s.iQtdFramesBrutos;
+    this.iarSequencia = (null == s.iarSequencia) ? null : (int[]) s.iarSequencia.clone();
+    this.iFrame = s.iFrame;
+    this.iRefX = s.iRefX;
+    this.iRefY = s.iRefY;
+    this.iTransformacao = s.iTransformacao;
+    this.iColisaoX = s.iColisaoX;
+    this.iColisaoY = s.iColisaoY;
+    this.iColisaoLargura = s.iColisaoLargura;
+    this.iColisaoAltura = s.iColisaoAltura;
+    this.iX = s.iX;
+    this.iY = s.iY;
+    this.bVisivel = s.bVisivel;
+  }
+
+  // -- Pixel de referência ----------------------------------------------------
+  public void defineReferencePixel(int x, int y) {
+    this.iRefX = x;
+    this.iRefY = y;
+  }
+
+  public void setRefPixelPosition(int x, int y) {
+    this.iX = x - this.transformadoX(this.iTransformacao, this.iRefX, this.iRefY);
+    this.iY = y - this.transformadoY(this.iTransformacao, this.iRefX, this.iRefY);
+  }
+
+  public int getRefPixelX() {
+    return this.iX + this.transformadoX(this.iTransformacao, this.iRefX, this.iRefY);
+  }
+
+  public int getRefPixelY() {
+    return this.iY + this.transformadoY(this.iTransformacao, this.iRefX, this.iRefY);
+  }
+
+  // -- Frames -----------------------------------------------------------------
+  public void setFrame(int sequenceIndex) {
+    if ((sequenceIndex < 0) || (sequenceIndex >= this.getFrameSequenceLength())) {
+      throw new IndexOutOfBoundsException();
+    }
+    this.iFrame = sequenceIndex;
+  }
+
+  public final int getFrame() { return this.iFrame; }
+
+  public int getRawFrameCount() { return this.iQtdFramesBrutos; }
+
+  public int getFrameSequenceLength() {
+    return (null == this.iarSequencia) ? this.iQtdFramesBrutos : this.iarSequencia.length;
+  }
+
+  public void nextFrame() { this.iFrame = (this.iFrame + 1) % this.getFrameSequenceLength(); }
+
+  public void prevFrame() {
+    int iTamanho = this.getFrameSequenceLength();
+    this.iFrame = (this.iFrame + iTamanho - 1) % iTamanho;
+  }
+
+  public void setFrameSequence(int[] sequence) {
+    if (null == sequence) {
+      this.iarSequencia = null;
+    } else {
+      if (0 == sequence.length) { throw new IllegalArgumentException(); }
+      for (int i = 0; i < sequence.length; i++) {
+        if ((sequence[i] < 0) || (sequence[i] >= this.iQtdFramesBrutos)) {
+          throw new ArrayIndexOutOfBoundsException();
+        }
+      }
+      this.iarSequencia = (int[]) sequence.clone();
+    }
+    this.iFrame = 0;
+  }
+
+  public void setImage(Image img, int frameWidth, int frameHeight) {
+    int iRefMundoX = this.getRefPixelX(), iRefMundoY = this.getRefPixelY();
+    boolean bMesmoTamanho = (frameWidth == this.iLarguraFrame) && (frameHeight == this.iAlturaFrame);
+    int iQtdAnterior = this.iQtdFramesBrutos;
+    this.trocarImagem(img, frameWidth, frameHeight);
+    if (this.iQtdFramesBrutos < iQtdAnterior) {
+      this.iarSequencia = null;
+      this.iFrame = 0;
+    }
+    if (!bMesmoTamanho) {
+      this.defineCollisionRectangle(0, 0, frameWidth, frameHeight);
+      this.atualizarDimensoes();
+      this.setRefPixelPosition(iRefMundoX, iRefMundoY);
+    }
+  }
+
+  // -- Transformação ----------------------------------------------------------
+  public void setTransform(int transform) {
+    if ((transform < 0) || (transform > 7)) { throw new IllegalArgumentException(); }
+    int iRefMundoX = this.getRefPixelX(), iRefMundoY = this.getRefPixelY();
+    this.iTransformacao = transform;
+    this.atualizarDimensoes();
+    this.setRefPixelPosition(iRefMundoX, iRefMundoY);
+  }
+
+  // -- Colisão ----------------------------------------------------------------
+  public void defineCollisionRectangle(int x, int y, int width, int height) {
+    if ((width < 0) || (height < 0)) { throw new IllegalArgumentException(); }
+    this.iColisaoX = x;
+    this.iColisaoY = y;
+    this.iColisaoLargura = width;
+    this.iColisaoAltura = height;
+  }
+
+  public final boolean collidesWith(Sprite s, boolean pixelLevel) {
+    if (!this.bVisivel || !s.bVisivel) { return false; }
+    int[] iarA = new int[4], iarB = new int[4];
+    if (!this.limitesColisao(iarA) || !s.limitesColisao(iarB) || !Sprite.intersecao(iarA, iarB)) {
+      return false;
+    }
+    if (!pixelLevel) { return true; }
+    int[] iarPixelsA = this.pixelsFrame(), iarPixelsB = s.pixelsFrame();
+    for (int y = iarA[1]; y < iarA[3]; y++) {
+      for (int x = iarA[0]; x < iarA[2]; x++) {
+        if (this.opaco(iarPixelsA, x, y) && s.opaco(iarPixelsB, x, y)) { return true; }
+      }
+    }
+    return false;
+  }
+
+  public final boolean collidesWith(TiledLayer t, boolean pixelLevel) {
+    if (!this.bVisivel || !t.bVisivel) { return false; }
+    int[] iarA = new int[4];
+    int[] iarB = {t.iX, t.iY, t.iX + t.iLargura, t.iY + t.iAltura};
+    if (!this.limitesColisao(iarA) || !Sprite.intersecao(iarA, iarB)) { return false; }
+    int[] iarPixels = pixelLevel ? this.pixelsFrame() : null, iarPixel = new int[1];
+    for (int y = iarA[1]; y < iarA[3]; y++) {
+      for (int x = iarA[0]; x < iarA[2]; x++) {
+        if ((!pixelLevel || this.opaco(iarPixels, x, y)) && t.ocupado(x, y, pixelLevel, iarPixel)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  public final boolean collidesWith(Image image, int x, int y, boolean pixelLevel) {
+    if (!this.bVisivel) { return false; }
+    int[] iarA = new int[4];
+    int[] iarB = {x, y, x + image.getWidth(), y + image.getHeight()};
+    if (!this.limitesColisao(iarA) || !Sprite.intersecao(iarA, iarB)) { return false; }
+    if (!pixelLevel) { return true; }
+    int[] iarPixels = this.pixelsFrame(), iarPixel = new int[1];
+    for (int j = iarA[1]; j < iarA[3]; j++) {
+      for (int i = iarA[0]; i < iarA[2]; i++) {
+        image.getRGB(iarPixel, 0, 1, i - x, j - y, 1, 1);
+        if (this.opaco(iarPixels, i, j) && (0 != (iarPixel[0] >>> 24))) { return true; }
+      }
+    }
+    return false;
+  }
+
+  // -- Desenho ----------------------------------------------------------------
+  public final void paint(Graphics g) {
+    if (!this.bVisivel) { return; }
+    int iFrameBruto = this.frameBruto();
+    int iColunas = this.img.getWidth() / this.iLarguraFrame;
+    g.drawRegion(this.img, (iFrameBruto % iColunas) * this.iLarguraFrame,
+            (iFrameBruto / iColunas) * this.iAlturaFrame, this.iLarguraFrame,
+            this.iAlturaFrame, this.iTransformacao, this.iX, this.iY,
+            Graphics.TOP | Graphics.LEFT);
+  }
+
+  // -- Auxiliares -------------------------------------------------------------
+  private void trocarImagem(Image image, int frameWidth, int frameHeight) {
+    if ((frameWidth < 1) || (frameHeight < 1)
+            || (0 != image.getWidth() % frameWidth) || (0 != image.getHeight() % frameHeight)) {
+      throw new IllegalArgumentException();
+    }
+    this.img = image;
+    this.iLarguraFrame = frameWidth;
+    this.iAlturaFrame = frameHeight;
+    this.iQtdFramesBrutos = (image.getWidth() / frameWidth) * (image.getHeight() / frameHeight);
+  }
+
+  private void atualizarDimensoes() {
+    boolean bTroca = this.iTransformacao >= 4;
+    this.iLargura = bTroca ? this.iAlturaFrame : this.iLarguraFrame;
+    this.iAltura = bTroca ? this.iLarguraFrame : this.iAlturaFrame;
+  }
+
+  private int frameBruto() {
+    return (null == this.iarSequencia) ? this.iFrame : this.iarSequencia[this.iFrame];
+  }
+
+  /**
+   * Calcula os limites do retângulo de colisão transformado, em coordenadas
+   * absolutas {x1, y1, x2, y2} com x2 e y2 exclusivos.
+   * @return Falso se o retângulo de colisão estiver vazio.
+   */
+  private boolean limitesColisao(int[] iarLimites) {
+    if ((0 == this.iColisaoLargura) || (0 == this.iColisaoAltura)) { return false; }
+    int x1 = this.iColisaoX, y1 = this.iColisaoY,
+        x2 = this.iColisaoX + this.iColisaoLargura - 1,
+        y2 = this.iColisaoY + this.iColisaoAltura - 1;
+    int ax = this.transformadoX(this.iTransformacao, x1, y1),
+        ay = this.transformadoY(this.iTransformacao, x1, y1),
+        bx = this.transformadoX(this.iTransformacao, x2, y2),
+        by = this.transformadoY(this.iTransformacao, x2, y2);
+    iarLimites[0] = this.iX + Math.min(ax, bx);
+    iarLimites[1] = this.iY + Math.min(ay, by);
+    iarLimites[2] = this.iX + Math.max(ax, bx) + 1;
+    iarLimites[3] = this.iY + Math.max(ay, by) + 1;
+    // -- O retângulo de colisão é limitado ao frame
+    iarLimites[0] = Math.max(iarLimites[0], this.iX);
+    iarLimites[1] = Math.max(iarLimites[1], this.iY);
+    iarLimites[2] = Math.min(iarLimites[2], this.iX + this.iLargura);
+    iarLimites[3] = Math.min(iarLimites[3], this.iY + this.iAltura);
+    return (iarLimites[0] < iarLimites[2]) && (iarLimites[1] < iarLimites[3]);
+  }
+
+  /**
+   * Reduz iarA à interseção com iarB.
+   * @return Falso se não houver interseção.
+   */
+  private static boolean intersecao(int[] iarA, int[] iarB) {
+    iarA[0] = Math.max(iarA[0], iarB[0]);
+    iarA[1] = Math.max(iarA[1], iarB[1]);
+    iarA[2] = Math.min(iarA[2], iarB[2]);
+    iarA[3] = Math.min(iarA[3], iarB[3]);
+    return (iarA[0] < iarA[2]) && (iarA[1] < iarA[3]);
+  }
+
+  /**
+   * Copia os pixels (não transformados) do frame atual.
+   */
+  private int[] pixelsFrame() {
+    int[] iarPixels = new int[this.iLarguraFrame * this.iAlturaFrame];
+    int iFrameBruto = this.frameBruto(), iColunas = this.img.getWidth() / this.iLarguraFrame;
+    this.img.getRGB(iarPixels, 0, this.iLarguraFrame, (iFrameBruto % iColunas) * this.iLarguraFrame,
+            (iFrameBruto / iColunas) * this.iAlturaFrame, this.iLarguraFrame, this.iAlturaFrame);
+    return iarPixels;
+  }
+
+  /**
+   * Indica se o pixel de coordenadas absolutas informado é opaco no frame atual.
+   */
+  private boolean opaco(int[] iarPixels, int x, int y) {
+    int dx = x - this.iX, dy = y - this.iY, w = this.iLarguraFrame, h = this.iAlturaFrame;
+    int sx, sy;
+    switch (this.iTransformacao) {
+      case Sprite.TRANS_MIRROR: sx = w - 1 - dx; sy = dy; break;
+      case Sprite.TRANS_ROT180: sx = w - 1 - dx; sy = h - 1 - dy; break;
+      case Sprite.TRANS_MIRROR_ROT180: sx = dx; sy = h - 1 - dy; break;
+      case Sprite.TRANS_ROT90: sx = dy; sy = h - 1 - dx; break;
+      case Sprite.TRANS_ROT270: sx = w - 1 - dy; sy = dx; break;
+      case Sprite.TRANS_MIRROR_ROT90: sx = w - 1 - dy; sy = h - 1 - dx; break;
+      case Sprite.TRANS_MIRROR_ROT270: sx = dy; sy = dx; break;
+      default: sx = dx; sy = dy;
+    }
+    return 0 != (iarPixels[sy * w + sx] >>> 24);
+  }
+
+  /**
+   * Coordenada X, no frame transformado, do pixel (x, y) do frame original.
+   */
+  private int transformadoX(int iTransformacao, int x, int y) {
+    switch (iTransformacao) {
+      case Sprite.TRANS_MIRROR: case Sprite.TRANS_ROT180: return this.iLarguraFrame - 1 - x;
+      case Sprite.TRANS_ROT90: case Sprite.TRANS_MIRROR_ROT90: return this.iAlturaFrame - 1 - y;
+      case Sprite.TRANS_ROT270: case Sprite.TRANS_MIRROR_ROT270: return y;
+      default: return x;
+    }
+  }
+
+  /**
+   * Coordenada Y, no frame transformado, do pixel (x, y) do frame original.
+   */
+  private int transformadoY(int iTransformacao, int x, int y) {
+    switch (iTransformacao) {
+      case Sprite.TRANS_ROT180: case Sprite.TRANS_MIRROR_ROT180: return this.iAlturaFrame - 1 - y;
+      case Sprite.TRANS_ROT90: case Sprite.TRANS_MIRROR_ROT270: return x;
+      case Sprite.TRANS_ROT270: case Sprite.TRANS_MIRROR_ROT90: return this.iLarguraFrame - 1 - x;
+      default: return y;
+    }
+  }
+}
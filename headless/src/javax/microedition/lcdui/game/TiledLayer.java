@@ -0,0 +1,220 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package javax.microedition.lcdui.game;
+
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+
+/**
+ * Implementação headless de javax.microedition.lcdui.game.TiledLayer.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ */
+public class TiledLayer extends Layer {
+
+  private final int iColunas;
+  private final int iLinhas;
+  /**
+   * Tiles das células, linha a linha.
+   */
+  private final int[] iarCelulas;
+
+  private Image imgTileset;
+  private int iLarguraTile;
+  private int iAlturaTile;
+  private int iQtdTiles;
+
+  /**
+   * Tiles estáticos associados a cada tile animado; o tile animado -n fica na posição n - 1.
+   */
+  private int[] iarAnimados = new int[4];
+  private int iQtdAnimados = 0;
+
+  public TiledLayer(int columns, int rows, Image image, int tileWidth, int tileHeight) {
+    super(columns * tileWidth, rows * tileHeight);
+    if ((columns < 1) || (rows < 1)) { throw new IllegalArgumentException(); }
+    this.iColunas = columns;
+    this.iLinhas = rows;
+    this.iarCelulas = new int[columns * rows];
+    this.trocarTileset(image, tileWidth, tileHeight);
+  }
+
+  public int createAnimatedTile(int staticTileIndex) {
+    this.validarTileEstatico(staticTileIndex);
+    if (this.iQtdAnimados == this.iarAnimados.length) {
+      int[] iarNovos = new int[this.iarAnimados.length * 2];
+      System.arraycopy(this.iarAnimados, 0, iarNovos, 0, this.iQtdAnimados);
+      this.iarAnimados = iarNovos;
+    }
+    this.iarAnimados[this.iQtdAnimados++] = staticTileIndex;
+    return -this.iQtdAnimados;
+  }
+
+  public void setAnimatedTile(int animatedTileIndex, int staticTileIndex) {
+    this.validarTileAnimado(animatedTileIndex);
+    this.validarTileEstatico(staticTileIndex);
+    this.iarAnimados[-animatedTileIndex - 1] = staticTileIndex;
+  }
+
+  public int getAnimatedTile(int animatedTileIndex) {
+    this.validarTileAnimado(animatedTileIndex);
+    return this.iarAnimados[-animatedTileIndex - 1];
+  }
+
+  public void setCell(int col, int row, int tileIndex) {
+    this.validarCelula(col, row);
+    this.validarTile(tileIndex);
+    this.iarCelulas[row * this.iColunas + col] = tileIndex;
+  }
+
+  public int getCell(int col, int row) {
+    this.validarCelula(col, row);
+    return this.iarCelulas[row * this.iColunas + col];
+  }
+
+  public void fillCells(int col, int row, int numCols, int numRows, int tileIndex) {
+    if ((numCols < 0) || (numRows < 0)) { throw new IllegalArgumentException(); }
+    if ((0 == numCols) || (0 == numRows)) { return; }
+    this.validarCelula(col, row);
+    this.validarCelula(col + numCols - 1, row + numRows - 1);
+    this.validarTile(tileIndex);
+    for (int j = row; j < row + numRows; j++) {
+      for (int i = col; i < col + numCols; i++) {
+        this.iarCelulas[j * this.iColunas + i] = tileIndex;
+      }
+    }
+  }
+
+  public final int getCellWidth() { return this.iLarguraTile; }
+
+  public final int getCellHeight() { return this.iAlturaTile; }
+
+  public final int getColumns() { return this.iColunas; }
+
+  public final int getRows() { return this.iLinhas; }
+
+  public void setStaticTileSet(Image image, int tileWidth, int tileHeight) {
+    int iQtdAnterior = this.iQtdTiles;
+    this.trocarTileset(image, tileWidth, tileHeight);
+    this.iLargura = this.iColunas * tileWidth;
+    this.iAltura = this.iLinhas * tileHeight;
+    // -- Com menos tiles, as células e os tiles animados deixam de ser válidos
+    if (this.iQtdTiles < iQtdAnterior) {
+      for (int i = 0; i < this.iarCelulas.length; i++) { this.iarCelulas[i] = 0; }
+      this.iQtdAnimados = 0;
+    }
+  }
+
+  public final void paint(Graphics g) {
+    if (!this.bVisivel) { return; }
+    int iColIni = Math.max(0, (g.getClipX() - this.iX) / this.iLarguraTile),
+        iLinIni = Math.max(0, (g.getClipY() - this.iY) / this.iAlturaTile),
+        iColFim = Math.min(this.iColunas - 1,
+                (g.getClipX() + g.getClipWidth() - 1 - this.iX) / this.iLarguraTile),
+        iLinFim = Math.min(this.iLinhas - 1,
+                (g.getClipY() + g.getClipHeight() - 1 - this.iY) / this.iAlturaTile);
+    int iColunasTileset = this.imgTileset.getWidth() / this.iLarguraTile;
+    for (int j = iLinIni; j <= iLinFim; j++) {
+      for (int i = iColIni; i <= iColFim; i++) {
+        int iTile = this.tileEstatico(this.iarCelulas[j * this.iColunas + i]);
+        if (0 == iTile) { continue; }
+        iTile--;
+        g.drawRegion(this.imgTileset,
+                (iTile % iColunasTileset) * this.iLarguraTile,
+                (iTile / iColunasTileset) * this.iAlturaTile,
+                this.iLarguraTile, this.iAlturaTile, Sprite.TRANS_NONE,
+                this.iX + i * this.iLarguraTile, this.iY + j * this.iAlturaTile,
+                Graphics.TOP | Graphics.LEFT);
+      }
+    }
+  }
+
+  /**
+   * Retorna o tile estático de uma célula, resolvendo tiles animados.
+   */
+  int tileEstatico(int iTile) {
+    return (iTile < 0) ? this.iarAnimados[-iTile - 1] : iTile;
+  }
+
+  /**
+   * Indica se o pixel de coordenadas absolutas informado pertence a um tile
+   * não vazio; se bPixel for verdadeiro, o pixel também deve ser opaco.
+   */
+  boolean ocupado(int x, int y, boolean bPixel, int[] iarPixel) {
+    int dx = x - this.iX, dy = y - this.iY;
+    if ((dx < 0) || (dy < 0) || (dx >= this.iLargura) || (dy >= this.iAltura)) { return false; }
+    int iTile = this.tileEstatico(
+            this.iarCelulas[(dy / this.iAlturaTile) * this.iColunas + dx / this.iLarguraTile]);
+    if (0 == iTile) { return false; }
+    if (!bPixel) { return true; }
+    iTile--;
+    int iColunasTileset = this.imgTileset.getWidth() / this.iLarguraTile;
+    this.imgTileset.getRGB(iarPixel, 0, 1,
+            (iTile % iColunasTileset) * this.iLarguraTile + dx % this.iLarguraTile,
+            (iTile / iColunasTileset) * this.iAlturaTile + dy % this.iAlturaTile, 1, 1);
+    return 0 != (iarPixel[0] >>> 24);
+  }
+
+  private void trocarTileset(Image image, int tileWidth, int tileHeight) {
+    if ((tileWidth < 1) || (tileHeight < 1)
+            || (0 != image.getWidth() % tileWidth) || (0 != image.getHeight() % tileHeight)) {
+      throw new IllegalArgumentException();
+    }
+    this.imgTileset = image;
+    this.iLarguraTile = tileWidth;
+    this.iAlturaTile = tileHeight;
+    this.iQtdTiles = (image.getWidth() / tileWidth) * (image.getHeight() / tileHeight);
+  }
+
+  private void validarCelula(int col, int row) {
+    if ((col < 0) || (row < 0) || (col >= this.iColunas) || (row >= this.iLinhas)) {
+      throw new IndexOutOfBoundsException();
+    }
+  }
+
+  private void validarTile(int iTile) {
+    if (iTile < 0) { this.validarTileAnimado(iTile); } else { this.validarTileEstatico(iTile); }
+  }
+
+  private void validarTileEstatico(int iTile) {
+    if ((iTile < 0) || (iTile > this.iQtdTiles)) { throw new IndexOutOfBoundsException(); }
+  }
+
+  private void validarTileAnimado(int iTile) {
+    if ((iTile >= 0) || (-iTile > this.iQtdAnimados)) { throw new IndexOutOfBoundsException(); }
+  }
+}
@@ -0,0 +1,353 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import javax.microedition.lcdui.Image;
+
+/**
+ * Cache de imagens (sprite sheets e tilesets) compartilhado por todas as telas.
+ *
+ * As imagens são identificadas pelo caminho do recurso no JAR. Cada pedido
+ * incrementa um contador de referências e cada liberação o decrementa. Imagens
+ * sem referências continuam no cache, assim a próxima tela que utilizar a mesma
+ * imagem não precisa decodificar o PNG novamente. Quando a memória estimada das
+ * imagens ultrapassa o orçamento, as imagens sem referências menos usadas
+ * recentemente são descartadas. Imagens em uso nunca são descartadas, então o
+ * orçamento pode ser ultrapassado se todas estiverem referenciadas.
+ *
+ * O cache também guarda cópias espelhadas das sprite sheets, identificadas
+ * pela imagem original e pela largura dos frames, para personagens que trocam
+ * de direção sem usar Sprite.TRANS_MIRROR. Elas seguem as mesmas regras de referências e orçamento.
+ *
+ * A memória de cada imagem é estimada como largura * altura * 4 bytes, o
+ * tamanho da imagem decodificada na maioria dos aparelhos.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @final
+ */
+public final class GjME_CacheImagens {
+
+  /**
+   * Orçamento padrão, em bytes, para as imagens do cache.
+   */
+  public static final int ORCAMENTO_PADRAO = 512 * 1024;
+
+  /**
+   * Imagens armazenadas, indexadas pelo caminho do recurso ou, no caso das
+   * cópias espelhadas, por uma ChaveEspelhada.
+   */
+  private static final Hashtable tblImagens = new Hashtable();
+
+  /**
+   * Orçamento, em bytes, para as imagens do cache.
+   */
+  private static int iOrcamento = GjME_CacheImagens.ORCAMENTO_PADRAO;
+  /**
+   * Memória estimada, em bytes, das imagens armazenadas.
+   */
+  private static int iBytesUsados = 0;
+  /**
+   * Contador incrementado a cada acesso, utilizado para encontrar a imagem
+   * menos usada recentemente.
+   */
+  private static int iRelogio = 0;
+
+  /**
+   * Quantidade de pedidos atendidos sem decodificar a imagem.
+   */
+  private static int iAcertos = 0;
+  /**
+   * Quantidade de pedidos que precisaram decodificar a imagem.
+   */
+  private static int iFalhas = 0;
+
+  /**
+   * Entrada do cache.
+   */
+  private static final class Entrada {
+    /**
+     * Imagem decodificada.
+     */
+    private final Image img;
+    /**
+     * Memória estimada da imagem em bytes.
+     */
+    private final int iBytes;
+    /**
+     * Quantidade de referências à imagem.
+     */
+    private int iReferencias = 0;
+    /**
+     * Valor do relógio no último acesso à imagem.
+     */
+    private int iUltimoUso = 0;
+
+    private Entrada(Image img) {
+      this.img = img;
+      this.iBytes = img.getWidth() * img.getHeight() * 4;
+    }
+  }
+
+  /**
+   * Chave de uma cópia espelhada: a mesma sprite sheet espelhada com outra
+   * largura de frame é outra imagem.
+   */
+  private static final class ChaveEspelhada {
+    private final Image img;
+    private final int iLarguraFrame;
+
+    private ChaveEspelhada(Image img, int iLarguraFrame) {
+      this.img = img;
+      this.iLarguraFrame = iLarguraFrame;
+    }
+
+    public boolean equals(Object obj) {
+      if (!(obj instanceof ChaveEspelhada)) { return false; }
+      ChaveEspelhada chv = (ChaveEspelhada) obj;
+      return (this.img == chv.img) && (this.iLarguraFrame == chv.iLarguraFrame);
+    }
+
+    public int hashCode() { return this.img.hashCode() * 31 + this.iLarguraFrame; }
+  }
+
+  /**
+   * Não deve ser instanciada.
+   */
+  private GjME_CacheImagens() {}
+
+  /**
+   * Retorna a imagem de um recurso, decodificando-a apenas se não estiver no cache.
+   *
+   * Cada chamada deve ser acompanhada de uma chamada a liberar() quando a
+   * imagem não for mais utilizada.
+   * @param sCaminho Caminho do recurso no JAR. Ex: "/img/heroi.png";
+   * @return A imagem.
+   * @throws IOException Se o recurso não puder ser lido.
+   * @see GjME_CacheImagens.liberar()
+   */
+  public static synchronized Image obter(String sCaminho) throws IOException {
+    Entrada ent = (Entrada) GjME_CacheImagens.tblImagens.get(sCaminho);
+    if (null == ent) {
+      GjME_CacheImagens.iFalhas++;
+      ent = new Entrada(Image.createImage(sCaminho));
+      GjME_CacheImagens.tblImagens.put(sCaminho, ent);
+      GjME_CacheImagens.iBytesUsados += ent.iBytes;
+    } else {
+      GjME_CacheImagens.iAcertos++;
+    }
+    ent.iReferencias++;
+    ent.iUltimoUso = ++GjME_CacheImagens.iRelogio;
+    GjME_CacheImagens.descartarExcedente();
+    return ent.img;
+  }
+
+  /**
+   * Libera uma referência à imagem de um recurso.
+   *
+   * A imagem continua no cache até que seja necessário liberar memória.
+   * Caminhos que não estão no cache são ignorados.
+   * @param sCaminho Caminho do recurso no JAR.
+   */
+  public static synchronized void liberar(String sCaminho) {
+    Entrada ent = (Entrada) GjME_CacheImagens.tblImagens.get(sCaminho);
+    if ((null != ent) && (ent.iReferencias > 0)) {
+      ent.iReferencias--;
+      GjME_CacheImagens.descartarExcedente();
+    }
+  }
+
+  /**
+   * Retorna uma cópia da sprite sheet com cada frame espelhado horizontalmente,
+   * criando-a apenas se não estiver no cache.
+   *
+   * Os frames mantêm a posição na sprite sheet, então o mesmo índice de frame
+   * exibe o frame original ou o espelhado conforme a imagem utilizada. Cada
+   * chamada deve ser acompanhada de uma chamada a liberarEspelhada() com a
+   * mesma largura de frame.
+   * @param img Sprite sheet original;
+   * @param iLarguraFrame Largura dos frames em pixels;
+   * @return A sprite sheet espelhada.
+   * @see GjME_CacheImagens.liberarEspelhada()
+   */
+  public static synchronized Image obterEspelhada(Image img, int iLarguraFrame) {
+    ChaveEspelhada chv = new ChaveEspelhada(img, iLarguraFrame);
+    Entrada ent = (Entrada) GjME_CacheImagens.tblImagens.get(chv);
+    if (null == ent) {
+      GjME_CacheImagens.iFalhas++;
+      ent = new Entrada(GjME_CacheImagens.espelharFrames(img, iLarguraFrame));
+      GjME_CacheImagens.tblImagens.put(chv, ent);
+      GjME_CacheImagens.iBytesUsados += ent.iBytes;
+    } else {
+      GjME_CacheImagens.iAcertos++;
+    }
+    ent.iReferencias++;
+    ent.iUltimoUso = ++GjME_CacheImagens.iRelogio;
+    GjME_CacheImagens.descartarExcedente();
+    return ent.img;
+  }
+
+  /**
+   * Libera uma referência à cópia espelhada de uma sprite sheet.
+   * @param img Sprite sheet original;
+   * @param iLarguraFrame Largura dos frames informada em obterEspelhada().
+   * @see GjME_CacheImagens.obterEspelhada()
+   */
+  public static synchronized void liberarEspelhada(Image img, int iLarguraFrame) {
+    Entrada ent = (Entrada) GjME_CacheImagens.tblImagens.get(new ChaveEspelhada(img, iLarguraFrame));
+    if ((null != ent) && (ent.iReferencias > 0)) {
+      ent.iReferencias--;
+      GjME_CacheImagens.descartarExcedente();
+    }
+  }
+
+  /**
+   * Espelha horizontalmente cada frame de uma sprite sheet, sem mudá-lo de lugar.
+   *
+   * Image.createRGBImage() exige todos os pixels em um único array, e imagens
+   * mutáveis não têm transparência; por isso o pico de memória é o array com
+   * a imagem inteira mais a imagem criada a partir dele. A origem é lida uma
+   * linha por vez, para não somar uma terceira cópia.
+   */
+  private static Image espelharFrames(Image img, int iLarguraFrame) {
+    int iLargura = img.getWidth(),
+        iAltura = img.getHeight();
+    int[] iarOrigem = new int[iLargura],
+          iarPixels = new int[iLargura * iAltura];
+    for (int y = 0; y < iAltura; y++) {
+      img.getRGB(iarOrigem, 0, iLargura, 0, y, iLargura, 1);
+      int iBase = y * iLargura;
+      for (int x = 0; x < iLargura; x++) {
+        int iInicioFrame = x - (x % iLarguraFrame);
+        iarPixels[iBase + x] = iarOrigem[iInicioFrame + iLarguraFrame - 1 - (x - iInicioFrame)];
+      }
+    }
+    return Image.createRGBImage(iarPixels, iLargura, iAltura, true);
+  }
+
+  /**
+   * Define o orçamento, em bytes, para as imagens do cache.
+   *
+   * Se o novo orçamento for menor que a memória utilizada, imagens sem
+   * referências são descartadas imediatamente.
+   * @param iBytes Orçamento em bytes.
+   */
+  public static synchronized void defineOrcamento(int iBytes) {
+    GjME_CacheImagens.iOrcamento = iBytes;
+    GjME_CacheImagens.descartarExcedente();
+  }
+
+  /**
+   * Descarta todas as imagens sem referências, independente do orçamento.
+   *
+   * Útil antes de carregar uma fase com muitas imagens novas.
+   */
+  public static synchronized void limpar() {
+    Enumeration enm = GjME_CacheImagens.tblImagens.keys();
+    while (enm.hasMoreElements()) {
+      Object chave = enm.nextElement();
+      Entrada ent = (Entrada) GjME_CacheImagens.tblImagens.get(chave);
+      if (0 == ent.iReferencias) { GjME_CacheImagens.remover(chave, ent); }
+    }
+  }
+
+  /**
+   * Descarta as imagens sem referências menos usadas recentemente até que a
+   * memória utilizada caiba no orçamento.
+   */
+  private static void descartarExcedente() {
+    while (GjME_CacheImagens.iBytesUsados > GjME_CacheImagens.iOrcamento) {
+      Object chaveLRU = null;
+      Entrada entLRU = null;
+      Enumeration enm = GjME_CacheImagens.tblImagens.keys();
+      while (enm.hasMoreElements()) {
+        Object chave = enm.nextElement();
+        Entrada ent = (Entrada) GjME_CacheImagens.tblImagens.get(chave);
+        if ((0 == ent.iReferencias)
+                && ((null == entLRU) || (ent.iUltimoUso < entLRU.iUltimoUso))) {
+          chaveLRU = chave;
+          entLRU = ent;
+        }
+      }
+      // -- Todas as imagens restantes estão em uso
+      if (null == entLRU) { return; }
+      GjME_CacheImagens.remover(chaveLRU, entLRU);
+    }
+  }
+
+  /**
+   * Remove uma entrada do cache.
+   */
+  private static void remover(Object chave, Entrada ent) {
+    GjME_CacheImagens.tblImagens.remove(chave);
+    GjME_CacheImagens.iBytesUsados -= ent.iBytes;
+  }
+
+  // -- Estatísticas -----------------------------------------------------------
+  /**
+   * Retorna a memória estimada, em bytes, das imagens armazenadas.
+   * @return Bytes utilizados.
+   */
+  public static synchronized int retornaBytesUsados() { return GjME_CacheImagens.iBytesUsados; }
+
+  /**
+   * Retorna o orçamento, em bytes, para as imagens do cache.
+   * @return Orçamento em bytes.
+   */
+  public static synchronized int retornaOrcamento() { return GjME_CacheImagens.iOrcamento; }
+
+  /**
+   * Retorna a quantidade de imagens armazenadas.
+   * @return Quantidade de imagens.
+   */
+  public static synchronized int retornaQtdImagens() { return GjME_CacheImagens.tblImagens.size(); }
+
+  /**
+   * Retorna a quantidade de pedidos atendidos sem decodificar a imagem.
+   * @return Quantidade de acertos.
+   */
+  public static synchronized int retornaAcertos() { return GjME_CacheImagens.iAcertos; }
+
+  /**
+   * Retorna a quantidade de pedidos que precisaram decodificar a imagem.
+   * @return Quantidade de falhas.
+   */
+  public static synchronized int retornaFalhas() { return GjME_CacheImagens.iFalhas; }
+}
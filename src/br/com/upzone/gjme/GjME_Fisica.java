@@ -58,6 +58,43 @@ public final class GjME_Fisica {
    */
   public static final int VELOCIDADE_MEDIA = 7;
 
+  // -- Ponto fixo ---------------------------------------------------------------
+  /**
+   * Quantidade de bits da parte fracionária dos valores em ponto fixo (16.16).
+   *
+   * Valores em ponto fixo permitem deslocamentos e acelerações menores que um
+   * pixel sem utilizar float, que é lento ou inexistente em CLDC 1.0.
+   */
+  public static final int FX_BITS = 16;
+
+  /**
+   * O valor 1 em ponto fixo.
+   */
+  public static final int FX_UM = 1 << GjME_Fisica.FX_BITS;
+
+  /**
+   * Duração, em milisegundos, do frame em que as constantes são expressas.
+   *
+   * As velocidades e acelerações são dadas em pixels por frame de referência;
+   * frames com outra duração são escalados por passoTempoFx().
+   */
+  public static final int DURACAO_REFERENCIA = 100;
+
+  /**
+   * GRAVIDADE em ponto fixo.
+   */
+  public static final int GRAVIDADE_FX = GjME_Fisica.GRAVIDADE << GjME_Fisica.FX_BITS;
+
+  /**
+   * ATRITO em ponto fixo.
+   */
+  public static final int ATRITO_FX = GjME_Fisica.ATRITO << GjME_Fisica.FX_BITS;
+
+  /**
+   * VELOCIDADE_MEDIA em ponto fixo.
+   */
+  public static final int VELOCIDADE_MEDIA_FX = GjME_Fisica.VELOCIDADE_MEDIA << GjME_Fisica.FX_BITS;
+
   /**
    * Indica o lado direto.
    *
@@ -84,4 +121,54 @@ public final class GjME_Fisica {
    * Deslocamento negativo no eixo Y.
    */
   public final static int CIMA = 3;
+
+  // -- Operações em ponto fixo ------------------------------------------------
+  /**
+   * Converte um inteiro para ponto fixo.
+   * @param i Valor inteiro;
+   * @return Valor em ponto fixo.
+   */
+  public static int paraFx(int i) { return i << GjME_Fisica.FX_BITS; }
+
+  /**
+   * Converte um valor em ponto fixo para inteiro, arredondando para baixo.
+   * @param iFx Valor em ponto fixo;
+   * @return Valor inteiro.
+   */
+  public static int deFx(int iFx) { return iFx >> GjME_Fisica.FX_BITS; }
+
+  /**
+   * Cria um valor em ponto fixo a partir de uma fração.
+   * @param iNumerador Numerador da fração;
+   * @param iDenominador Denominador da fração;
+   * @return Valor em ponto fixo. Ex: fracaoFx(1, 4) é 0,25.
+   */
+  public static int fracaoFx(int iNumerador, int iDenominador) {
+    return (int)(((long)iNumerador << GjME_Fisica.FX_BITS) / iDenominador);
+  }
+
+  /**
+   * Multiplica dois valores em ponto fixo.
+   * @return Produto em ponto fixo.
+   */
+  public static int multiplicarFx(int iA, int iB) {
+    return (int)(((long)iA * iB) >> GjME_Fisica.FX_BITS);
+  }
+
+  /**
+   * Divide dois valores em ponto fixo.
+   * @return Quociente em ponto fixo.
+   */
+  public static int dividirFx(int iA, int iB) {
+    return (int)(((long)iA << GjME_Fisica.FX_BITS) / iB);
+  }
+
+  /**
+   * Calcula o passo de tempo de um frame em relação ao frame de referência.
+   * @param iDuracaoFrame Duração do frame em milisegundos;
+   * @return Passo de tempo em ponto fixo (FX_UM para frames de DURACAO_REFERENCIA).
+   */
+  public static int passoTempoFx(int iDuracaoFrame) {
+    return GjME_Fisica.fracaoFx(iDuracaoFrame, GjME_Fisica.DURACAO_REFERENCIA);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,365 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.colisao;
+
+import br.com.upzone.gjme.personagem.GjME_Personagem;
+
+/**
+ * Grade uniforme para a fase ampla da detecção de colisões entre personagens.
+ *
+ * A área do game é dividida em células quadradas e cada personagem é
+ * associado às células que seu retângulo ocupa. A grade permite encontrar os
+ * pares de personagens cujos retângulos se sobrepõem, e os vizinhos de uma
+ * região, testando apenas personagens que dividem células, em vez de testar
+ * todos contra todos. Os pares encontrados podem então passar por testes
+ * precisos como Sprite.collidesWith().
+ *
+ * A grade é reconstruída a cada frame pela tela, sem alocar memória enquanto
+ * a quantidade de personagens não ultrapassa as maiores quantidades já vistas.
+ * Personagens fora da área são associados às células da borda.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @see br.com.upzone.gjme.tela.GjME_Tela
+ * @final
+ */
+public final class GjME_GradeColisao {
+
+  /**
+   * Coordenada X da área coberta pela grade.
+   */
+  private final int iOrigemX;
+  /**
+   * Coordenada Y da área coberta pela grade.
+   */
+  private final int iOrigemY;
+  /**
+   * Largura e altura das células, em pixels.
+   */
+  private final int iTamanhoCelula;
+  /**
+   * Quantidade de colunas de células.
+   */
+  private final int iColunas;
+  /**
+   * Quantidade de linhas de células.
+   */
+  private final int iLinhas;
+
+  /**
+   * Personagens inseridos na grade.
+   */
+  private GjME_Personagem[] prsObjetos;
+  /**
+   * Quantidade de personagens inseridos.
+   */
+  private int iQtdObjetos = 0;
+  /**
+   * Retângulo de cada personagem: x1, y1, x2 e y2 (exclusivos).
+   */
+  private int[] iarLimites;
+  /**
+   * Células ocupadas por cada personagem: coluna e linha iniciais e finais.
+   */
+  private int[] iarCelulas;
+
+  /**
+   * Início das entradas de cada célula em iarEntradas; a última posição
+   * indica o total de entradas.
+   */
+  private final int[] iarInicioCelula;
+  /**
+   * Contagem auxiliar por célula utilizada na montagem da grade.
+   */
+  private final int[] iarContagem;
+  /**
+   * Índices dos personagens de cada célula, agrupados por célula.
+   */
+  private int[] iarEntradas = new int[64];
+
+  /**
+   * Pares de índices de personagens que se sobrepõem.
+   */
+  private int[] iarPares = new int[64];
+  /**
+   * Quantidade de pares encontrados.
+   */
+  private int iQtdPares = 0;
+
+  /**
+   * Marca de visita por personagem, utilizada para não repetir vizinhos.
+   */
+  private int[] iarMarcas;
+  /**
+   * Marca da consulta atual.
+   */
+  private int iMarcaAtual = 0;
+
+  /**
+   * Cria uma grade de colisão.
+   * @param iX Coordenada X da área coberta;
+   * @param iY Coordenada Y da área coberta;
+   * @param iLargura Largura da área coberta;
+   * @param iAltura Altura da área coberta;
+   * @param iTamanhoCelula Tamanho das células; geralmente próximo ao tamanho
+   *   dos maiores personagens;
+   * @param iCapacidade Quantidade de personagens prevista.
+   */
+  public GjME_GradeColisao(int iX, int iY, int iLargura, int iAltura,
+          int iTamanhoCelula, int iCapacidade) {
+    this.iOrigemX = iX;
+    this.iOrigemY = iY;
+    this.iTamanhoCelula = Math.max(1, iTamanhoCelula);
+    this.iColunas = Math.max(1, (iLargura + this.iTamanhoCelula - 1) / this.iTamanhoCelula);
+    this.iLinhas = Math.max(1, (iAltura + this.iTamanhoCelula - 1) / this.iTamanhoCelula);
+    this.iarInicioCelula = new int[this.iColunas * this.iLinhas + 1];
+    this.iarContagem = new int[this.iColunas * this.iLinhas];
+    this.alocarObjetos(Math.max(1, iCapacidade));
+  }
+
+  // -- Montagem ---------------------------------------------------------------
+  /**
+   * Reconstrói a grade com a posição atual dos personagens.
+   *
+   * Personagens invisíveis são ignorados.
+   * @param prs Personagens a inserir;
+   * @param iQtd Quantidade de posições válidas em prs.
+   */
+  public void atualizar(GjME_Personagem[] prs, int iQtd) {
+    if (iQtd > this.prsObjetos.length) { this.alocarObjetos(Math.max(iQtd, this.prsObjetos.length * 2)); }
+    for (int i = 0; i < this.iarContagem.length; i++) { this.iarContagem[i] = 0; }
+    for (int i = 0; i < this.iQtdObjetos; i++) { this.prsObjetos[i] = null; }
+    this.iQtdObjetos = 0;
+    this.iQtdPares = 0;
+
+    // -- Registra os retângulos e conta as entradas de cada célula
+    int iTotal = 0;
+    for (int i = 0; i < iQtd; i++) {
+      GjME_Personagem p = prs[i];
+      if ((null == p) || !p.isVisible()) { continue; }
+      int o = this.iQtdObjetos++,
+          iL = o * 4;
+      this.prsObjetos[o] = p;
+      this.iarLimites[iL] = p.getX();
+      this.iarLimites[iL + 1] = p.getY();
+      this.iarLimites[iL + 2] = p.getX() + p.getWidth();
+      this.iarLimites[iL + 3] = p.getY() + p.getHeight();
+      this.iarCelulas[iL] = this.coluna(this.iarLimites[iL]);
+      this.iarCelulas[iL + 1] = this.linha(this.iarLimites[iL + 1]);
+      this.iarCelulas[iL + 2] = this.coluna(this.iarLimites[iL + 2] - 1);
+      this.iarCelulas[iL + 3] = this.linha(this.iarLimites[iL + 3] - 1);
+      for (int iLin = this.iarCelulas[iL + 1]; iLin <= this.iarCelulas[iL + 3]; iLin++) {
+        for (int iCol = this.iarCelulas[iL]; iCol <= this.iarCelulas[iL + 2]; iCol++) {
+          this.iarContagem[iLin * this.iColunas + iCol]++;
+          iTotal++;
+        }
+      }
+    }
+
+    // -- Calcula o início de cada célula e distribui as entradas
+    if (iTotal > this.iarEntradas.length) { this.iarEntradas = new int[Math.max(iTotal, this.iarEntradas.length * 2)]; }
+    int iInicio = 0;
+    for (int c = 0; c < this.iarContagem.length; c++) {
+      this.iarInicioCelula[c] = iInicio;
+      iInicio += this.iarContagem[c];
+      this.iarContagem[c] = this.iarInicioCelula[c];
+    }
+    this.iarInicioCelula[this.iarContagem.length] = iInicio;
+    for (int o = 0; o < this.iQtdObjetos; o++) {
+      int iL = o * 4;
+      for (int iLin = this.iarCelulas[iL + 1]; iLin <= this.iarCelulas[iL + 3]; iLin++) {
+        for (int iCol = this.iarCelulas[iL]; iCol <= this.iarCelulas[iL + 2]; iCol++) {
+          this.iarEntradas[this.iarContagem[iLin * this.iColunas + iCol]++] = o;
+        }
+      }
+    }
+  }
+
+  // -- Consultas --------------------------------------------------------------
+  /**
+   * Calcula os pares de personagens cujos retângulos se sobrepõem.
+   *
+   * Cada par é informado uma única vez, mesmo que os personagens dividam mais
+   * de uma célula.
+   * @return Quantidade de pares encontrados.
+   * @see GjME_GradeColisao.retornaPersonagemPar()
+   */
+  public int calcularPares() {
+    this.iQtdPares = 0;
+    int iQtdCelulas = this.iarContagem.length;
+    for (int c = 0; c < iQtdCelulas; c++) {
+      int iFim = this.iarInicioCelula[c + 1];
+      for (int i = this.iarInicioCelula[c]; i < iFim; i++) {
+        int a = this.iarEntradas[i];
+        for (int j = i + 1; j < iFim; j++) {
+          int b = this.iarEntradas[j];
+          if (!this.sobrepoe(a, b)) { continue; }
+          // -- O par só é informado na primeira célula que os dois dividem
+          int iCol = Math.max(this.iarCelulas[a * 4], this.iarCelulas[b * 4]),
+              iLin = Math.max(this.iarCelulas[a * 4 + 1], this.iarCelulas[b * 4 + 1]);
+          if (iLin * this.iColunas + iCol != c) { continue; }
+          if (this.iQtdPares * 2 == this.iarPares.length) {
+            int[] iarNovos = new int[this.iarPares.length * 2];
+            System.arraycopy(this.iarPares, 0, iarNovos, 0, this.iarPares.length);
+            this.iarPares = iarNovos;
+          }
+          this.iarPares[this.iQtdPares * 2] = a;
+          this.iarPares[this.iQtdPares * 2 + 1] = b;
+          this.iQtdPares++;
+        }
+      }
+    }
+    return this.iQtdPares;
+  }
+
+  /**
+   * Retorna a quantidade de pares encontrados pela última chamada a calcularPares().
+   * @return Quantidade de pares.
+   */
+  public int retornaQtdPares() { return this.iQtdPares; }
+
+  /**
+   * Retorna um dos personagens de um par.
+   * @param iPar Índice do par, entre 0 e retornaQtdPares() - 1;
+   * @param iLado 0 para o primeiro personagem do par, 1 para o segundo;
+   * @return Personagem do par.
+   */
+  public GjME_Personagem retornaPersonagemPar(int iPar, int iLado) {
+    return this.prsObjetos[this.iarPares[iPar * 2 + iLado]];
+  }
+
+  /**
+   * Preenche um array com os personagens que sobrepõem uma região.
+   * @param iX Coordenada X da região;
+   * @param iY Coordenada Y da região;
+   * @param iLargura Largura da região;
+   * @param iAltura Altura da região;
+   * @param prsExcluido Personagem que não deve ser retornado (pode ser null);
+   * @param prsResultado Destino dos personagens encontrados;
+   * @return Quantidade de personagens colocados em prsResultado.
+   */
+  public int consultarVizinhos(int iX, int iY, int iLargura, int iAltura,
+          GjME_Personagem prsExcluido, GjME_Personagem[] prsResultado) {
+    if ((iLargura <= 0) || (iAltura <= 0)) { return 0; }
+    int iX2 = iX + iLargura,
+        iY2 = iY + iAltura,
+        iQtd = 0,
+        iMarca = this.proximaMarca();
+    for (int iLin = this.linha(iY); iLin <= this.linha(iY2 - 1); iLin++) {
+      for (int iCol = this.coluna(iX); iCol <= this.coluna(iX2 - 1); iCol++) {
+        int c = iLin * this.iColunas + iCol,
+            iFim = this.iarInicioCelula[c + 1];
+        for (int i = this.iarInicioCelula[c]; i < iFim; i++) {
+          int o = this.iarEntradas[i];
+          if (this.iarMarcas[o] == iMarca) { continue; }
+          this.iarMarcas[o] = iMarca;
+          int iL = o * 4;
+          if ((this.prsObjetos[o] != prsExcluido)
+              && (this.iarLimites[iL] < iX2) && (iX < this.iarLimites[iL + 2])
+              && (this.iarLimites[iL + 1] < iY2) && (iY < this.iarLimites[iL + 3])
+              && (iQtd < prsResultado.length)) {
+            prsResultado[iQtd++] = this.prsObjetos[o];
+          }
+        }
+      }
+    }
+    return iQtd;
+  }
+
+  /**
+   * Preenche um array com os personagens que sobrepõem uma região ao redor de
+   * um personagem.
+   * @param prs Personagem central, que não faz parte do resultado;
+   * @param iDistancia Distância em pixels somada a cada lado do personagem;
+   * @param prsResultado Destino dos personagens encontrados;
+   * @return Quantidade de personagens colocados em prsResultado.
+   */
+  public int consultarVizinhos(GjME_Personagem prs, int iDistancia, GjME_Personagem[] prsResultado) {
+    return this.consultarVizinhos(prs.getX() - iDistancia, prs.getY() - iDistancia,
+            prs.getWidth() + 2 * iDistancia, prs.getHeight() + 2 * iDistancia, prs, prsResultado);
+  }
+
+  // -- Auxiliares -------------------------------------------------------------
+  /**
+   * Indica se os retângulos de dois personagens da grade se sobrepõem.
+   */
+  private boolean sobrepoe(int a, int b) {
+    int iA = a * 4,
+        iB = b * 4;
+    return (this.iarLimites[iA] < this.iarLimites[iB + 2])
+        && (this.iarLimites[iB] < this.iarLimites[iA + 2])
+        && (this.iarLimites[iA + 1] < this.iarLimites[iB + 3])
+        && (this.iarLimites[iB + 1] < this.iarLimites[iA + 3]);
+  }
+
+  /**
+   * Retorna a coluna de células de uma coordenada X, limitada à grade.
+   */
+  private int coluna(int iX) {
+    int iCol = (iX - this.iOrigemX) / this.iTamanhoCelula;
+    return Math.max(0, Math.min(iCol, this.iColunas - 1));
+  }
+
+  /**
+   * Retorna a linha de células de uma coordenada Y, limitada à grade.
+   */
+  private int linha(int iY) {
+    int iLin = (iY - this.iOrigemY) / this.iTamanhoCelula;
+    return Math.max(0, Math.min(iLin, this.iLinhas - 1));
+  }
+
+  /**
+   * Avança a marca de consulta, limpando as marcas quando ela volta a zero.
+   */
+  private int proximaMarca() {
+    if (++this.iMarcaAtual == 0) {
+      for (int i = 0; i < this.iarMarcas.length; i++) { this.iarMarcas[i] = 0; }
+      this.iMarcaAtual = 1;
+    }
+    return this.iMarcaAtual;
+  }
+
+  /**
+   * Aloca os arrays por personagem com uma nova capacidade.
+   */
+  private void alocarObjetos(int iCapacidade) {
+    this.prsObjetos = new GjME_Personagem[iCapacidade];
+    this.iarLimites = new int[iCapacidade * 4];
+    this.iarCelulas = new int[iCapacidade * 4];
+    this.iarMarcas = new int[iCapacidade];
+    this.iQtdObjetos = 0;
+  }
+}
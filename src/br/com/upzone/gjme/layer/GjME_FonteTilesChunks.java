@@ -0,0 +1,537 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.layer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fonte de tiles que lê o mapa de um recurso dividido em blocos (chunks).
+ *
+ * O mapa é dividido em blocos retangulares de tamanho fixo. Apenas o cabeçalho
+ * do recurso é lido na criação da fonte; os blocos são lidos sob demanda,
+ * quando a tiled layer consulta uma célula, e guardados em uma quantidade fixa
+ * de posições de memória. Quando todas as posições estão ocupadas, o bloco
+ * utilizado há mais tempo (que já saiu da tela) é descartado. Assim, o mapa
+ * pode ser maior que a memória do aparelho e o tempo de início da fase não
+ * depende do tamanho do mapa.
+ *
+ * O mapa é lido de um GjME_IOrigemMapa (por padrão, um recurso do JAR). Os
+ * streams ficam abertos entre as leituras e são lidos sempre para frente, um
+ * por linha de blocos visível (QTD_CURSORES): os blocos estão gravados linha a
+ * linha, então ao rolar o mapa para a direita ou para baixo cada bloco novo
+ * está adiante de um dos streams. Um stream só é reaberto quando o bloco está
+ * antes de todos eles.
+ *
+ * Formato do recurso (big-endian, como em DataOutputStream):
+ *   int   assinatura (GjME_FonteTilesChunks.ASSINATURA);
+ *   byte  versão do formato;
+ *   byte  codificação dos blocos;
+ *   int   colunas do mapa;
+ *   int   linhas do mapa;
+ *   short largura dos blocos, em tiles;
+ *   short altura dos blocos, em tiles;
+ *   short tamanho da paleta e short[] paleta (apenas na codificação RLE);
+ *   int[] deslocamento de cada bloco a partir do fim do cabeçalho, em bytes;
+ *   dados dos blocos, linha a linha.
+ * Os blocos da borda do mapa são completados com tiles vazios.
+ *
+ * Na codificação bruta cada tile ocupa um short. Na codificação RLE os tiles
+ * são substituídos pelo seu índice na paleta e cada bloco é uma seqüência de
+ * repetições: um byte com a quantidade de repetições menos um, seguido do
+ * índice na paleta (um byte, ou um short se a paleta tiver mais de 256
+ * tiles). Mapas com grandes áreas de um mesmo tile ficam muito menores no JAR
+ * e são decodificados direto para a memória do bloco, sem matrizes
+ * intermediárias.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @see br.com.upzone.gjme.headless.GjME_ConversorMapa
+ * @final
+ */
+public final class GjME_FonteTilesChunks implements GjME_IFonteTiles {
+
+  /**
+   * Assinatura dos recursos de mapa em blocos ("GjMC").
+   */
+  public static final int ASSINATURA = 0x476A4D43;
+
+  /**
+   * Versão do formato gravada por esta classe.
+   */
+  public static final int VERSAO = 1;
+
+  /**
+   * Blocos gravados sem compressão, um short por tile.
+   */
+  public static final int CODIFICACAO_BRUTA = 0;
+
+  /**
+   * Blocos gravados com paleta e compressão por repetição (RLE).
+   */
+  public static final int CODIFICACAO_RLE = 1;
+
+  /**
+   * Tamanho do cabeçalho fixo, antes da tabela de deslocamentos.
+   */
+  private static final int TAMANHO_CABECALHO = 18;
+
+  /**
+   * Quantidade de streams mantidos abertos, cada um em uma posição do mapa.
+   *
+   * A janela de uma tiled layer costuma cobrir duas linhas de blocos, cujos
+   * blocos se intercalam no recurso.
+   */
+  private static final int QTD_CURSORES = 2;
+
+  // -- Propriedades -----------------------------------------------------------
+  /**
+   * Origem dos bytes do mapa.
+   */
+  private final GjME_IOrigemMapa orgMapa;
+  /**
+   * Descrição do mapa nas mensagens de erro (ex: caminho do recurso).
+   */
+  private final String sDescricao;
+
+  /**
+   * Streams mantidos abertos entre as leituras dos blocos; null se fechados.
+   */
+  private final InputStream[] isarCursores = new InputStream[GjME_FonteTilesChunks.QTD_CURSORES];
+  /**
+   * Posição de cada stream a partir do início do mapa, em bytes.
+   */
+  private final long[] larPosicoes = new long[GjME_FonteTilesChunks.QTD_CURSORES];
+  /**
+   * Momento do último uso de cada stream, no relógio de iRelogio.
+   */
+  private final int[] iarUsoCursores = new int[GjME_FonteTilesChunks.QTD_CURSORES];
+
+  /**
+   * Quantidade de colunas do mapa.
+   */
+  private final int iColunas;
+  /**
+   * Quantidade de linhas do mapa.
+   */
+  private final int iLinhas;
+  /**
+   * Largura dos blocos, em tiles.
+   */
+  private final int iLarguraChunk;
+  /**
+   * Altura dos blocos, em tiles.
+   */
+  private final int iAlturaChunk;
+  /**
+   * Quantidade de blocos em cada linha de blocos do mapa.
+   */
+  private final int iChunksPorLinha;
+  /**
+   * Codificação dos blocos no recurso.
+   */
+  private final int iCodificacao;
+
+  /**
+   * Tiles referenciados pelos índices da codificação RLE.
+   */
+  private final short[] sarPaleta;
+  /**
+   * Quantidade de bytes de cada índice na paleta (1 ou 2).
+   */
+  private final int iBytesIndice;
+
+  /**
+   * Deslocamento de cada bloco a partir do início dos dados.
+   */
+  private final int[] iarDeslocamentos;
+  /**
+   * Posição do início dos dados no recurso.
+   */
+  private final int iInicioDados;
+
+  /**
+   * Tiles dos blocos em memória, um bloco por posição.
+   */
+  private final short[][] sarChunks;
+  /**
+   * Bloco armazenado em cada posição de memória, ou -1 se a posição estiver livre.
+   */
+  private final int[] iarChunkPorPosicao;
+  /**
+   * Momento do último uso de cada posição de memória.
+   */
+  private final int[] iarUltimoUso;
+  /**
+   * Relógio lógico utilizado para escolher o bloco descartado.
+   */
+  private int iRelogio = 0;
+  /**
+   * Posição de memória consultada por último.
+   */
+  private int iPosicaoAtual = 0;
+
+  /**
+   * Área de leitura dos bytes de um bloco.
+   */
+  private final byte[] btBuffer;
+
+  /**
+   * Quantidade de blocos lidos do recurso desde a criação da fonte.
+   */
+  private int iChunksLidos = 0;
+
+  /**
+   * Cria uma fonte de tiles lendo o cabeçalho de um mapa em blocos de um recurso do JAR.
+   * @param sRecurso Caminho do recurso no JAR, ex: "/fase1.gjc";
+   * @param iQtdChunksMemoria Quantidade de blocos mantidos em memória. Deve
+   *   cobrir a janela da tiled layer (geralmente 4 a 6 blocos);
+   * @throws IOException Se o recurso não existir ou não estiver no formato esperado.
+   */
+  public GjME_FonteTilesChunks(final String sRecurso, int iQtdChunksMemoria) throws IOException {
+    this(new GjME_IOrigemMapa() {
+      public InputStream abrir() throws IOException {
+        InputStream is = GjME_FonteTilesChunks.class.getResourceAsStream(sRecurso);
+        if (null == is) { throw new IOException("Recurso não encontrado: " + sRecurso); }
+        return is;
+      }
+    }, sRecurso, iQtdChunksMemoria);
+  }
+
+  /**
+   * Cria uma fonte de tiles lendo o cabeçalho de um mapa em blocos de uma origem qualquer.
+   * @param orgMapa Origem dos bytes do mapa;
+   * @param iQtdChunksMemoria Quantidade de blocos mantidos em memória;
+   * @throws IOException Se o mapa não puder ser aberto ou não estiver no formato esperado.
+   */
+  public GjME_FonteTilesChunks(GjME_IOrigemMapa orgMapa, int iQtdChunksMemoria) throws IOException {
+    this(orgMapa, "mapa", iQtdChunksMemoria);
+  }
+
+  /**
+   * Cria uma fonte de tiles a partir de um stream que só pode ser lido uma vez.
+   *
+   * O stream é lido por inteiro e o mapa fica em memória ainda codificado;
+   * apenas os blocos em uso são decodificados. Com a codificação RLE isto
+   * costuma ocupar uma fração da matriz completa do mapa.
+   * @param is Stream com o mapa, fechado ao final da leitura;
+   * @param iQtdChunksMemoria Quantidade de blocos mantidos em memória;
+   * @throws IOException Em caso de falha na leitura ou se o mapa não estiver no formato esperado.
+   */
+  public GjME_FonteTilesChunks(InputStream is, int iQtdChunksMemoria) throws IOException {
+    this(GjME_FonteTilesChunks.origemMemoria(is), "stream", iQtdChunksMemoria);
+  }
+
+  /**
+   * Lê o cabeçalho do mapa e prepara as posições de memória dos blocos.
+   */
+  private GjME_FonteTilesChunks(GjME_IOrigemMapa orgMapa, String sDescricao,
+          int iQtdChunksMemoria) throws IOException {
+    this.orgMapa = orgMapa;
+    this.sDescricao = sDescricao;
+    DataInputStream dis = new DataInputStream(orgMapa.abrir());
+    try {
+      if ((GjME_FonteTilesChunks.ASSINATURA != dis.readInt())
+          || (GjME_FonteTilesChunks.VERSAO != dis.readByte())) {
+        throw new IOException("Formato de mapa inválido: " + sDescricao);
+      }
+      this.iCodificacao = dis.readByte();
+      this.iColunas = dis.readInt();
+      this.iLinhas = dis.readInt();
+      this.iLarguraChunk = dis.readShort();
+      this.iAlturaChunk = dis.readShort();
+      int iTamanhoCabecalho = GjME_FonteTilesChunks.TAMANHO_CABECALHO;
+      if (GjME_FonteTilesChunks.CODIFICACAO_RLE == this.iCodificacao) {
+        this.sarPaleta = new short[dis.readUnsignedShort()];
+        for (int i = 0; i < this.sarPaleta.length; i++) {
+          this.sarPaleta[i] = dis.readShort();
+        }
+        iTamanhoCabecalho += 2 + 2 * this.sarPaleta.length;
+      } else if (GjME_FonteTilesChunks.CODIFICACAO_BRUTA == this.iCodificacao) {
+        this.sarPaleta = null;
+      } else {
+        throw new IOException("Codificação de blocos desconhecida: " + this.iCodificacao);
+      }
+      this.iBytesIndice = ((null != this.sarPaleta) && (this.sarPaleta.length > 256)) ? 2 : 1;
+      this.iChunksPorLinha = (this.iColunas + this.iLarguraChunk - 1) / this.iLarguraChunk;
+      int iQtdChunks = this.iChunksPorLinha * ((this.iLinhas + this.iAlturaChunk - 1) / this.iAlturaChunk);
+      this.iarDeslocamentos = new int[iQtdChunks];
+      for (int i = 0; i < iQtdChunks; i++) {
+        this.iarDeslocamentos[i] = dis.readInt();
+      }
+      this.iInicioDados = iTamanhoCabecalho + 4 * iQtdChunks;
+    } finally {
+      dis.close();
+    }
+
+    int iTilesPorChunk = this.iLarguraChunk * this.iAlturaChunk;
+    iQtdChunksMemoria = Math.max(1, iQtdChunksMemoria);
+    this.sarChunks = new short[iQtdChunksMemoria][iTilesPorChunk];
+    this.iarChunkPorPosicao = new int[iQtdChunksMemoria];
+    this.iarUltimoUso = new int[iQtdChunksMemoria];
+    for (int i = 0; i < iQtdChunksMemoria; i++) { this.iarChunkPorPosicao[i] = -1; }
+    // -- No pior caso do RLE, cada tile é uma repetição com seu próprio índice
+    this.btBuffer = new byte[(GjME_FonteTilesChunks.CODIFICACAO_RLE == this.iCodificacao)
+            ? iTilesPorChunk * (1 + this.iBytesIndice) : iTilesPorChunk * 2];
+  }
+
+  // -- GjME_IFonteTiles -------------------------------------------------------
+  public int retornaTile(int iColuna, int iLinha) {
+    int iChunk = (iLinha / this.iAlturaChunk) * this.iChunksPorLinha + (iColuna / this.iLarguraChunk);
+    int iPosicao = this.iPosicaoAtual;
+    if (this.iarChunkPorPosicao[iPosicao] != iChunk) {
+      iPosicao = this.localizarChunk(iChunk);
+      this.iPosicaoAtual = iPosicao;
+    }
+    this.iarUltimoUso[iPosicao] = ++this.iRelogio;
+    return this.sarChunks[iPosicao][(iLinha % this.iAlturaChunk) * this.iLarguraChunk
+            + (iColuna % this.iLarguraChunk)];
+  }
+
+  public int retornaColunas() { return this.iColunas; }
+
+  public int retornaLinhas() { return this.iLinhas; }
+
+  /**
+   * Retorna a quantidade de blocos lidos do recurso desde a criação da fonte.
+   *
+   * Se o valor cresce continuamente com a câmera parada, a quantidade de
+   * blocos em memória é menor que a janela da tiled layer.
+   * @return Quantidade de blocos lidos.
+   */
+  public int retornaChunksLidos() { return this.iChunksLidos; }
+
+  /**
+   * Fecha os streams mantidos abertos entre as leituras dos blocos.
+   *
+   * Deve ser chamado quando a fase termina; se algum bloco ainda for lido
+   * depois disso, o mapa é reaberto.
+   */
+  public void fechar() {
+    for (int i = 0; i < this.isarCursores.length; i++) { this.fecharCursor(i); }
+  }
+
+  /**
+   * Fecha um dos streams de leitura.
+   */
+  private void fecharCursor(int iCursor) {
+    if (null == this.isarCursores[iCursor]) { return; }
+    try {
+      this.isarCursores[iCursor].close();
+    } catch (IOException ioex) {
+      // -- O stream é descartado de qualquer forma
+    }
+    this.isarCursores[iCursor] = null;
+  }
+
+  // -- Leitura dos blocos -----------------------------------------------------
+  /**
+   * Retorna a posição de memória de um bloco, lendo-o do recurso se necessário.
+   * @param iChunk Índice do bloco;
+   * @return Posição de memória do bloco.
+   */
+  private int localizarChunk(int iChunk) {
+    int iDescartar = 0;
+    for (int i = 0; i < this.iarChunkPorPosicao.length; i++) {
+      if (this.iarChunkPorPosicao[i] == iChunk) { return i; }
+      if (this.iarUltimoUso[i] < this.iarUltimoUso[iDescartar]) { iDescartar = i; }
+    }
+    // -- A posição só volta a nomear um bloco depois de uma leitura completa
+    this.iarChunkPorPosicao[iDescartar] = -1;
+    try {
+      this.lerChunk(iChunk, this.sarChunks[iDescartar]);
+    } catch (IOException ioex) {
+      // -- A posição dos streams é desconhecida após a falha
+      this.fechar();
+      throw new IllegalStateException("Erro ao ler o bloco " + iChunk + " de "
+              + this.sDescricao + ": " + ioex.getMessage());
+    }
+    this.iarChunkPorPosicao[iDescartar] = iChunk;
+    this.iChunksLidos++;
+    return iDescartar;
+  }
+
+  /**
+   * Lê um bloco do recurso.
+   * @param iChunk Índice do bloco;
+   * @param sarTiles Destino dos tiles do bloco.
+   * @throws IOException Em caso de falha na leitura.
+   */
+  private void lerChunk(int iChunk, short[] sarTiles) throws IOException {
+    int iCursor = this.posicionar(this.iInicioDados + this.iarDeslocamentos[iChunk]);
+    InputStream is = this.isarCursores[iCursor];
+    switch (this.iCodificacao) {
+      case GjME_FonteTilesChunks.CODIFICACAO_BRUTA:
+        GjME_FonteTilesChunks.lerCompleto(is, this.btBuffer, this.btBuffer.length);
+        this.larPosicoes[iCursor] += this.btBuffer.length;
+        for (int i = 0, j = 0; i < sarTiles.length; i++, j += 2) {
+          sarTiles[i] = (short)((this.btBuffer[j] << 8) | (this.btBuffer[j + 1] & 0xFF));
+        }
+        break;
+      case GjME_FonteTilesChunks.CODIFICACAO_RLE:
+        // -- Lê exatamente o bloco; o último vai até o fim do mapa
+        int iQtdBytes;
+        if (iChunk + 1 < this.iarDeslocamentos.length) {
+          iQtdBytes = this.iarDeslocamentos[iChunk + 1] - this.iarDeslocamentos[iChunk];
+          if ((iQtdBytes < 0) || (iQtdBytes > this.btBuffer.length)) {
+            throw new IOException("Deslocamento de bloco inválido.");
+          }
+          GjME_FonteTilesChunks.lerCompleto(is, this.btBuffer, iQtdBytes);
+        } else { iQtdBytes = GjME_FonteTilesChunks.lerDisponivel(is, this.btBuffer); }
+        this.larPosicoes[iCursor] += iQtdBytes;
+        this.decodificarRLE(iQtdBytes, sarTiles);
+        break;
+      default:
+        throw new IOException("Codificação de blocos desconhecida: " + this.iCodificacao);
+    }
+  }
+
+  /**
+   * Posiciona um dos streams de leitura em uma posição do mapa.
+   *
+   * É escolhido o stream mais próximo que ainda está antes da posição, que é
+   * alcançada pulando bytes; se todos já passaram dela, o stream usado há
+   * mais tempo é reaberto.
+   * @param lPosicao Posição a partir do início do mapa, em bytes;
+   * @return Índice do stream posicionado em isarCursores.
+   * @throws IOException Se o mapa não puder ser aberto ou terminar antes da posição.
+   */
+  private int posicionar(long lPosicao) throws IOException {
+    int iCursor = -1, iReabrir = 0;
+    for (int i = 0; i < this.isarCursores.length; i++) {
+      if ((null != this.isarCursores[i]) && (this.larPosicoes[i] <= lPosicao)
+          && ((-1 == iCursor) || (this.larPosicoes[i] > this.larPosicoes[iCursor]))) {
+        iCursor = i;
+      }
+      if ((null == this.isarCursores[i])
+          || ((null != this.isarCursores[iReabrir])
+              && (this.iarUsoCursores[i] < this.iarUsoCursores[iReabrir]))) {
+        iReabrir = i;
+      }
+    }
+    if (-1 == iCursor) {
+      iCursor = iReabrir;
+      this.fecharCursor(iCursor);
+      this.isarCursores[iCursor] = this.orgMapa.abrir();
+      this.larPosicoes[iCursor] = 0;
+    }
+    GjME_FonteTilesChunks.pular(this.isarCursores[iCursor], lPosicao - this.larPosicoes[iCursor]);
+    this.larPosicoes[iCursor] = lPosicao;
+    this.iarUsoCursores[iCursor] = this.iRelogio;
+    return iCursor;
+  }
+
+  /**
+   * Decodifica as repetições de um bloco RLE já lido em btBuffer.
+   * @param iQtdBytes Quantidade de bytes válidos em btBuffer;
+   * @param sarTiles Destino dos tiles do bloco.
+   * @throws IOException Se os dados terminarem antes de completar o bloco.
+   */
+  private void decodificarRLE(int iQtdBytes, short[] sarTiles) throws IOException {
+    byte[] bt = this.btBuffer;
+    int iBytesRepeticao = 1 + this.iBytesIndice;
+    int j = 0;
+    for (int i = 0; i < sarTiles.length;) {
+      if (j + iBytesRepeticao > iQtdBytes) { throw new IOException("Fim inesperado do mapa."); }
+      int iRepeticoes = (bt[j++] & 0xFF) + 1,
+          iIndice = bt[j++] & 0xFF;
+      if (2 == this.iBytesIndice) { iIndice = (iIndice << 8) | (bt[j++] & 0xFF); }
+      short sTile = this.sarPaleta[iIndice];
+      int iFim = Math.min(i + iRepeticoes, sarTiles.length);
+      while (i < iFim) { sarTiles[i++] = sTile; }
+    }
+  }
+
+  /**
+   * Lê um stream por inteiro e retorna uma origem que reabre os bytes lidos.
+   */
+  private static GjME_IOrigemMapa origemMemoria(InputStream is) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      byte[] bt = new byte[512];
+      for (int i = is.read(bt); i >= 0; i = is.read(bt)) { baos.write(bt, 0, i); }
+    } finally {
+      is.close();
+    }
+    final byte[] btMapa = baos.toByteArray();
+    return new GjME_IOrigemMapa() {
+      public InputStream abrir() { return new ByteArrayInputStream(btMapa); }
+    };
+  }
+
+  /**
+   * Avança o stream uma quantidade exata de bytes.
+   */
+  private static void pular(InputStream is, long lBytes) throws IOException {
+    while (lBytes > 0) {
+      long lPulados = is.skip(lBytes);
+      if (lPulados <= 0) {
+        if (is.read() < 0) { throw new IOException("Fim inesperado do mapa."); }
+        lPulados = 1;
+      }
+      lBytes -= lPulados;
+    }
+  }
+
+  /**
+   * Lê do stream uma quantidade exata de bytes.
+   */
+  private static void lerCompleto(InputStream is, byte[] btDestino, int iQtd) throws IOException {
+    int iLidos = 0;
+    while (iLidos < iQtd) {
+      int i = is.read(btDestino, iLidos, iQtd - iLidos);
+      if (i < 0) { throw new IOException("Fim inesperado do mapa."); }
+      iLidos += i;
+    }
+  }
+
+  /**
+   * Lê do stream até encher o destino ou chegar ao fim do stream.
+   * @return Quantidade de bytes lidos.
+   */
+  private static int lerDisponivel(InputStream is, byte[] btDestino) throws IOException {
+    int iLidos = 0;
+    while (iLidos < btDestino.length) {
+      int i = is.read(btDestino, iLidos, btDestino.length - iLidos);
+      if (i < 0) { break; }
+      iLidos += i;
+    }
+    return iLidos;
+  }
+}
@@ -36,16 +36,37 @@
  */
 package br.com.upzone.gjme.layer;
 
+import java.io.IOException;
+
+import javax.microedition.lcdui.Graphics;
 import javax.microedition.lcdui.Image;
 
+import javax.microedition.lcdui.game.Layer;
 import javax.microedition.lcdui.game.TiledLayer;
 
+import br.com.upzone.gjme.GjME_CacheImagens;
+import br.com.upzone.gjme.GjME_IAtualizavel;
+
 /**
  * Implementação de uma tiledlayer para o game, com funções de auxílio.
  *
+ * A tiled layer funciona como uma janela sobre um mapa fornecido por um
+ * GjME_IFonteTiles. Uma câmera indica qual ponto do mapa aparece no canto
+ * superior esquerdo da área visível; conforme a câmera se desloca, a layer é
+ * reposicionada e, quando a área visível sai da janela, a janela é recentrada
+ * e suas células são relidas da fonte. Assim, a memória e o custo por frame
+ * dependem apenas do tamanho da janela, e não do tamanho do mapa.
+ *
+ * Por isso as coordenadas de setCell(), fillCells() e getCell() são as das
+ * células da janela, e não as do mapa: a célula (c, l) da janela exibe o tile
+ * (retornaColunaOrigem() + c, retornaLinhaOrigem() + l) do mapa. Com o
+ * construtor de matriz e sem rolagem as duas coincidem. As alterações feitas
+ * nas células são guardadas por tile do mapa e reaplicadas sempre que a janela
+ * é preenchida novamente.
+ *
  * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
  */
-public final class GjME_TiledLayer extends TiledLayer {
+public final class GjME_TiledLayer extends TiledLayer implements GjME_IAtualizavel {
 
   /**
    * Tiled layer que não apresenta rolagem.
@@ -64,6 +85,28 @@ public final class GjME_TiledLayer extends TiledLayer {
    */
   public static final int TL_SEGUIDORA = 4;
 
+  // -- Propriedades dos tiles -------------------------------------------------
+  /**
+   * Tile sólido: bloqueia o deslocamento em todas as direções.
+   */
+  public static final int TILE_SOLIDO = 1;
+  /**
+   * Plataforma: bloqueia apenas quem desce sobre ela (atravessável por baixo).
+   */
+  public static final int TILE_PLATAFORMA = 2;
+  /**
+   * Tile perigoso (espinhos, lava, etc.).
+   */
+  public static final int TILE_PERIGO = 4;
+  /**
+   * Propriedade livre para uso do game (escadas, água, etc.).
+   */
+  public static final int TILE_ESPECIAL = 8;
+  /**
+   * Quantidade de propriedades de tiles, uma por bit.
+   */
+  private static final int QTD_PROPRIEDADES = 4;
+
   /**
    * Indica o comportamento atual da tiled layer.
    *
@@ -76,51 +119,1128 @@ public final class GjME_TiledLayer extends TiledLayer {
   private int iComportamento = GjME_TiledLayer.TL_FIXA;
 
   /**
-   * 
+   * Contador de alterações no conteúdo das células da tiled layer.
+   *
+   * É incrementado a cada chamada de setCell(), fillCells(), setAnimatedTile()
+   * ou setStaticTileSet(), permitindo que a tela detecte que a layer precisa
+   * ser redesenhada e que a imagem pré-desenhada seja refeita.
+   */
+  private int iAlteracoesVisuais = 0;
+
+  // -- Mapa de propriedades ---------------------------------------------------
+  /**
+   * Propriedades (constantes TILE_) de cada tile estático, indexadas pelo tile.
+   */
+  private int[] iarPropriedadesTile = new int[0];
+  /**
+   * Propriedades de cada tile animado, indexadas pelo tile sem sinal.
+   */
+  private int[] iarPropriedadesTileAnimado = new int[0];
+
+  /**
+   * Planos de bits das células da janela, um plano por propriedade.
+   *
+   * Cada linha da janela ocupa iPalavrasPorLinha inteiros, com o bit
+   * (coluna & 31) da palavra (coluna >> 5) ligado quando a célula possui a
+   * propriedade. Assim, uma faixa de colunas é testada com poucas operações.
+   */
+  private int[] iarPlanos;
+  /**
+   * Quantidade de inteiros por linha em cada plano de bits.
+   */
+  private int iPalavrasPorLinha;
+
+  // -- Alterações das células ------------------------------------------------
+  /**
+   * Tiles do mapa alterados por setCell(), fillCells() ou defineTileMapa(), em
+   * ordem crescente de (linha * colunas do mapa + coluna).
+   *
+   * A fonte dos tiles é apenas lida; as alterações ficam aqui e são
+   * reaplicadas por posicionarTiles(), para não se perderem ao recentrar a janela.
+   */
+  private int[] iarEdicoesCelula = new int[0];
+  /**
+   * Tile de cada alteração, na mesma posição de iarEdicoesCelula.
+   */
+  private int[] iarEdicoesTile = new int[0];
+  /**
+   * Quantidade de alterações guardadas.
+   */
+  private int iQtdEdicoes = 0;
+
+  // -- Janela e câmera --------------------------------------------------------
+  /**
+   * Fonte com os tiles do mapa completo.
+   */
+  private final GjME_IFonteTiles fntTiles;
+
+  /**
+   * Coluna do mapa exibida na primeira coluna da janela.
+   */
+  private int iColunaOrigem = 0;
+  /**
+   * Linha do mapa exibida na primeira linha da janela.
+   */
+  private int iLinhaOrigem = 0;
+
+  /**
+   * Coordenada X, em pixels do mapa, exibida no canto esquerdo da área visível.
+   */
+  private int iCameraX = 0;
+  /**
+   * Coordenada Y, em pixels do mapa, exibida no topo da área visível.
+   */
+  private int iCameraY = 0;
+
+  /**
+   * Coordenada X da área visível na tela.
+   */
+  private int iAreaX = 0;
+  /**
+   * Coordenada Y da área visível na tela.
+   */
+  private int iAreaY = 0;
+  /**
+   * Largura da área visível na tela.
+   */
+  private int iLarguraVisivel;
+  /**
+   * Altura da área visível na tela.
+   */
+  private int iAlturaVisivel;
+
+  /**
+   * Deslocamento da câmera, em pixels por frame, nas rolagens contínuas.
+   */
+  private int iVelocidadeRolagem = 1;
+
+  /**
+   * Layer acompanhada no comportamento GjME_TiledLayer.TL_SEGUIDORA.
+   */
+  private Layer lyrSeguida = null;
+  /**
+   * Posição X na tela em que a layer seguida é mantida.
+   */
+  private int iAncoraX = 0;
+  /**
+   * Posição Y na tela em que a layer seguida é mantida.
+   */
+  private int iAncoraY = 0;
+
+  /**
+   * Deslocamento da câmera no eixo X na última atualização.
+   */
+  private int iDeslocamentoX = 0;
+  /**
+   * Deslocamento da câmera no eixo Y na última atualização.
+   */
+  private int iDeslocamentoY = 0;
+
+  /**
+   * Caminho do tileset obtido de GjME_CacheImagens ou null se a imagem foi
+   * informada diretamente.
+   * @see GjME_TiledLayer.liberarImagem()
+   */
+  private String sCaminhoImagem = null;
+
+  /**
+   * Tileset atual, guardado porque TiledLayer não o expõe.
+   * @see GjME_Cena
+   */
+  private Image imgTileset;
+
+  // -- Imagem pré-desenhada ---------------------------------------------------
+  /**
+   * Indica se a janela é desenhada a partir de uma imagem pré-desenhada.
+   * @see GjME_TiledLayer.defineCache()
+   */
+  private boolean bCache = false;
+  /**
+   * Janela inteira desenhada em uma única imagem, com transparência.
+   */
+  private Image imgCache = null;
+  /**
+   * Pixels utilizados na montagem de imgCache, mantidos para as próximas montagens.
+   */
+  private int[] iarPixelsCache = null;
+  /**
+   * Valor de iAlteracoesVisuais quando imgCache foi montada.
+   */
+  private int iAlteracoesCache = 0;
+
+  /**
+   * Cria uma tiled layer com o mapa completo em memória.
+   *
+   * A janela tem o tamanho do mapa. Para utilizar os comportamentos de rolagem
+   * deve ser definida uma área visível menor que o mapa.
+   * @param iarTiles Matriz bidimensional com as configurações da tiled layer;
    * @param imgTileset Imagem com o tileset para criação da tiled layer;
-   * @param iTileWidth Largura dos tiles da tiled layer;
-   * @param iTileHeight Altura dos tiles da tiled layer;
-   * @return Referência para tiled layer já adicionada ao layer managem.
+   * @param iLarguraTile Largura dos tiles da tiled layer;
+   * @param iAlturaTile Altura dos tiles da tiled layer;
+   * @see GjME_TiledLayer.defineAreaVisivel()
    */
-  public GjME_TiledLayer (int[][] iarTiles, Image imgTileset, int iLarguratile, int iAlturaTile) {
-    super(iarTiles[0].length, iarTiles.length, imgTileset, iLarguratile, iAlturaTile);
-    this.posicionarTiles(iarTiles);
+  public GjME_TiledLayer (int[][] iarTiles, Image imgTileset, int iLarguraTile, int iAlturaTile) {
+    this(new GjME_FonteTilesMatriz(iarTiles), iarTiles[0].length, iarTiles.length,
+            imgTileset, iLarguraTile, iAlturaTile);
+  }
+
+  /**
+   * Cria uma tiled layer que mantém apenas uma janela do mapa em memória.
+   *
+   * A janela cobre a área visível mais uma margem de tiles em cada lado. Quanto
+   * maior a margem, menos vezes a janela precisa ser recentrada.
+   * @param fntTiles Fonte com os tiles do mapa;
+   * @param imgTileset Imagem com o tileset para criação da tiled layer;
+   * @param iLarguraTile Largura dos tiles da tiled layer;
+   * @param iAlturaTile Altura dos tiles da tiled layer;
+   * @param iLarguraVisivel Largura da área visível na tela;
+   * @param iAlturaVisivel Altura da área visível na tela;
+   * @param iMargem Quantidade de tiles extras em cada lado da janela.
+   */
+  public GjME_TiledLayer(GjME_IFonteTiles fntTiles, Image imgTileset, int iLarguraTile,
+          int iAlturaTile, int iLarguraVisivel, int iAlturaVisivel, int iMargem) {
+    this(fntTiles, (iLarguraVisivel + iLarguraTile - 1) / iLarguraTile + 1 + 2 * iMargem,
+            (iAlturaVisivel + iAlturaTile - 1) / iAlturaTile + 1 + 2 * iMargem,
+            imgTileset, iLarguraTile, iAlturaTile);
+    this.iLarguraVisivel = iLarguraVisivel;
+    this.iAlturaVisivel = iAlturaVisivel;
+  }
+
+  /**
+   * Cria uma tiled layer com o mapa completo em memória e o tileset obtido de
+   * GjME_CacheImagens.
+   * @param iarTiles Matriz bidimensional com as configurações da tiled layer;
+   * @param sCaminhoTileset Caminho do tileset no JAR;
+   * @param iLarguraTile Largura dos tiles da tiled layer;
+   * @param iAlturaTile Altura dos tiles da tiled layer;
+   * @throws IOException Se o tileset não puder ser lido.
+   * @see GjME_TiledLayer.liberarImagem()
+   */
+  public GjME_TiledLayer(int[][] iarTiles, String sCaminhoTileset, int iLarguraTile,
+          int iAlturaTile) throws IOException {
+    this(iarTiles, GjME_CacheImagens.obter(sCaminhoTileset), iLarguraTile, iAlturaTile);
+    this.sCaminhoImagem = sCaminhoTileset;
+  }
+
+  /**
+   * Cria uma tiled layer que mantém apenas uma janela do mapa em memória, com
+   * o tileset obtido de GjME_CacheImagens.
+   * @param fntTiles Fonte com os tiles do mapa;
+   * @param sCaminhoTileset Caminho do tileset no JAR;
+   * @param iLarguraTile Largura dos tiles da tiled layer;
+   * @param iAlturaTile Altura dos tiles da tiled layer;
+   * @param iLarguraVisivel Largura da área visível na tela;
+   * @param iAlturaVisivel Altura da área visível na tela;
+   * @param iMargem Quantidade de tiles extras em cada lado da janela.
+   * @throws IOException Se o tileset não puder ser lido.
+   * @see GjME_TiledLayer.liberarImagem()
+   */
+  public GjME_TiledLayer(GjME_IFonteTiles fntTiles, String sCaminhoTileset, int iLarguraTile,
+          int iAlturaTile, int iLarguraVisivel, int iAlturaVisivel, int iMargem)
+          throws IOException {
+    this(fntTiles, GjME_CacheImagens.obter(sCaminhoTileset), iLarguraTile, iAlturaTile,
+            iLarguraVisivel, iAlturaVisivel, iMargem);
+    this.sCaminhoImagem = sCaminhoTileset;
+  }
+
+  /**
+   * Cria a janela da tiled layer e a preenche a partir da origem do mapa.
+   */
+  private GjME_TiledLayer(GjME_IFonteTiles fntTiles, int iColunas, int iLinhas,
+          Image imgTileset, int iLarguraTile, int iAlturaTile) {
+    super(iColunas, iLinhas, imgTileset, iLarguraTile, iAlturaTile);
+    this.imgTileset = imgTileset;
+    this.fntTiles = fntTiles;
+    this.iPalavrasPorLinha = (iColunas + 31) >> 5;
+    this.iarPlanos = new int[GjME_TiledLayer.QTD_PROPRIEDADES * iLinhas * this.iPalavrasPorLinha];
+    this.iLarguraVisivel = iColunas * iLarguraTile;
+    this.iAlturaVisivel = iLinhas * iAlturaTile;
+    this.posicionarTiles();
+  }
+
+  /**
+   * Troca o tileset da tiled layer.
+   *
+   * @see javax.microedition.lcdui.game.TiledLayer.setStaticTileSet();
+   */
+  public void setStaticTileSet(Image img, int iLarguraTile, int iAlturaTile) {
+    super.setStaticTileSet(img, iLarguraTile, iAlturaTile);
+    this.imgTileset = img;
+    this.iAlteracoesVisuais++;
+  }
+
+  /**
+   * Retorna o tileset atual.
+   * @return Imagem do tileset.
+   */
+  public Image retornaTileset() { return this.imgTileset; }
+
+  /**
+   * Libera a referência ao tileset obtido de GjME_CacheImagens.
+   *
+   * Não faz nada se a imagem foi informada diretamente ou se já foi liberada.
+   * @see GjME_CacheImagens.liberar()
+   */
+  public void liberarImagem() {
+    if (null != this.sCaminhoImagem) {
+      GjME_CacheImagens.liberar(this.sCaminhoImagem);
+      this.sCaminhoImagem = null;
+    }
   }
 
   /**
    * Define o comportamento da tiled layer.
    * 
    * Se o comportamento informado não for válido, é atribuído o comportamento
-   * GjME_TiledLayer.TL_FIXA.
+   * GjME_TiledLayer.TL_FIXA. Como a repetição do mapa depende do comportamento,
+   * a janela é preenchida novamente quando ele muda.
+   *
+   * Nas rolagens contínuas a janela precisa de ao menos um tile além da área
+   * visível no eixo da rolagem. Com o construtor de matriz, cuja janela tem o
+   * tamanho do mapa, defina antes uma área visível menor que o mapa.
+   * @throws IllegalStateException Se a janela não cobrir a área visível mais um tile no eixo da rolagem.
+   * @see GjME_TiledLayer.defineAreaVisivel()
    */
   public void setComportamento(int iComp) {
-    if ((iComp >= GjME_TiledLayer.TL_FIXA) && (iComp <= GjME_TiledLayer.TL_SEGUIDORA)) {
+    if ((iComp < GjME_TiledLayer.TL_FIXA) || (iComp > GjME_TiledLayer.TL_SEGUIDORA)) {
+      iComp = GjME_TiledLayer.TL_FIXA;
+    }
+    this.validarRolagem(iComp, this.iLarguraVisivel, this.iAlturaVisivel);
+    if (iComp != this.iComportamento) {
       this.iComportamento = iComp;
-    } else { this.iComportamento = GjME_TiledLayer.TL_FIXA; }
+      // -- O cache só é usado em TL_FIXA
+      this.imgCache = null;
+      this.iarPixelsCache = null;
+      this.posicionarTiles();
+    }
+  }
+
+  /**
+   * Retorna o comportamento atual da tiled layer.
+   * @return Uma das constantes TL_.
+   */
+  public int retornaComportamento() { return this.iComportamento; }
+
+  /**
+   * Altera o tile de uma célula da janela e registra a alteração visual.
+   *
+   * A coluna e a linha são da janela (ver a descrição da classe). A alteração é
+   * guardada para o tile do mapa exibido na célula e continua valendo quando a
+   * janela é recentrada; células da janela fora do mapa são alteradas apenas
+   * até a janela ser preenchida novamente.
+   * @see javax.microedition.lcdui.game.TiledLayer.setCell();
+   * @see GjME_TiledLayer.defineTileMapa()
+   */
+  public void setCell(int iCol, int iLin, int iTile) {
+    super.setCell(iCol, iLin, iTile);
+    this.marcarPropriedades(iCol, iLin, this.propriedadesTile(iTile));
+    this.guardarEdicaoJanela(iCol, iLin, iTile);
+    this.iAlteracoesVisuais++;
+  }
+
+  /**
+   * Preenche uma região de células da janela com um tile e registra a alteração visual.
+   *
+   * As coordenadas e a persistência das alterações seguem setCell().
+   * @see javax.microedition.lcdui.game.TiledLayer.fillCells();
+   */
+  public void fillCells(int iCol, int iLin, int iQtdColunas, int iQtdLinhas, int iTile) {
+    super.fillCells(iCol, iLin, iQtdColunas, iQtdLinhas, iTile);
+    int iPropriedades = this.propriedadesTile(iTile);
+    for (int iL = iLin; iL < iLin + iQtdLinhas; iL++) {
+      for (int iC = iCol; iC < iCol + iQtdColunas; iC++) {
+        this.marcarPropriedades(iC, iL, iPropriedades);
+        this.guardarEdicaoJanela(iC, iL, iTile);
+      }
+    }
+    this.iAlteracoesVisuais++;
+  }
+
+  /**
+   * Altera o tile de uma célula do mapa, em coordenadas do mapa.
+   *
+   * A alteração é guardada e reaplicada sempre que a janela é preenchida; se o
+   * tile estiver na janela, as células que o exibem são atualizadas na hora.
+   * @param iColuna Coluna do mapa, entre 0 e a quantidade de colunas do mapa - 1;
+   * @param iLinha Linha do mapa, entre 0 e a quantidade de linhas do mapa - 1;
+   * @param iTile Índice do tile, no formato aceito por setCell().
+   * @throws IndexOutOfBoundsException Se a célula estiver fora do mapa.
+   */
+  public void defineTileMapa(int iColuna, int iLinha, int iTile) {
+    if ((iColuna < 0) || (iLinha < 0) || (iColuna >= this.fntTiles.retornaColunas())
+        || (iLinha >= this.fntTiles.retornaLinhas())) {
+      throw new IndexOutOfBoundsException("Célula fora do mapa: " + iColuna + ", " + iLinha);
+    }
+    this.guardarEdicao(iColuna, iLinha, iTile);
+    this.aplicarEdicao(iColuna, iLinha, iTile);
+    this.iAlteracoesVisuais++;
+  }
+
+  /**
+   * Retorna a coluna do mapa exibida na primeira coluna da janela.
+   *
+   * Nos eixos com rolagem contínua o valor pode estar fora do mapa; a coluna
+   * exibida é então o resto da divisão pela quantidade de colunas do mapa.
+   * @return Coluna do mapa.
+   */
+  public int retornaColunaOrigem() { return this.iColunaOrigem; }
+
+  /**
+   * Retorna a linha do mapa exibida na primeira linha da janela.
+   * @return Linha do mapa.
+   * @see GjME_TiledLayer.retornaColunaOrigem()
+   */
+  public int retornaLinhaOrigem() { return this.iLinhaOrigem; }
+
+  /**
+   * Altera o tile exibido por um tile animado e registra a alteração visual.
+   * @see javax.microedition.lcdui.game.TiledLayer.setAnimatedTile();
+   */
+  public void setAnimatedTile(int iIndiceAnimado, int iTileEstatico) {
+    super.setAnimatedTile(iIndiceAnimado, iTileEstatico);
+    this.iAlteracoesVisuais++;
+  }
+
+  /**
+   * Retorna o contador de alterações visuais da tiled layer.
+   * @return Contador de alterações visuais.
+   * @see GjME_TiledLayer.iAlteracoesVisuais
+   */
+  public int retornaAlteracoesVisuais() { return this.iAlteracoesVisuais; }
+
+  /**
+   * Preenche as células da janela com os tiles do mapa a partir da origem atual.
+   *
+   * Nos eixos com rolagem contínua o mapa se repete; nos demais, células fora
+   * do mapa ficam vazias.
+   */
+  private void posicionarTiles() {
+    int iColunas = this.getColumns(),
+        iLinhas = this.getRows(),
+        iColunasMapa = this.fntTiles.retornaColunas(),
+        iLinhasMapa = this.fntTiles.retornaLinhas();
+    boolean bRepetirX = (GjME_TiledLayer.TL_ROLAGEM_X == this.iComportamento),
+            bRepetirY = (GjME_TiledLayer.TL_ROLAGEM_Y == this.iComportamento);
+    for (int i = 0; i < this.iarPlanos.length; i++) { this.iarPlanos[i] = 0; }
+    // -- Percorre linha a linha, na mesma ordem em que as fontes armazenam os tiles
+    for (int iLin = 0; iLin < iLinhas; iLin++) {
+      int iLinMapa = this.iLinhaOrigem + iLin;
+      if (bRepetirY) { iLinMapa = GjME_TiledLayer.modulo(iLinMapa, iLinhasMapa); }
+      boolean bLinhaValida = (iLinMapa >= 0) && (iLinMapa < iLinhasMapa);
+      for (int iCol = 0; iCol < iColunas; iCol++) {
+        int iColMapa = this.iColunaOrigem + iCol;
+        if (bRepetirX) { iColMapa = GjME_TiledLayer.modulo(iColMapa, iColunasMapa); }
+        int iTile = 0;
+        if (bLinhaValida && (iColMapa >= 0) && (iColMapa < iColunasMapa)) {
+          iTile = this.fntTiles.retornaTile(iColMapa, iLinMapa);
+        }
+        super.setCell(iCol, iLin, iTile);
+        int iPropriedades = this.propriedadesTile(iTile);
+        if (0 != iPropriedades) { this.marcarPropriedades(iCol, iLin, iPropriedades); }
+      }
+    }
+    // -- Reaplica as alterações feitas nas células
+    for (int i = 0; i < this.iQtdEdicoes; i++) {
+      this.aplicarEdicao(this.iarEdicoesCelula[i] % iColunasMapa,
+              this.iarEdicoesCelula[i] / iColunasMapa, this.iarEdicoesTile[i]);
+    }
+    this.iAlteracoesVisuais++;
+  }
+
+  /**
+   * Guarda a alteração de uma célula da janela para o tile do mapa que ela exibe.
+   *
+   * Células fora do mapa não são guardadas.
+   */
+  private void guardarEdicaoJanela(int iCol, int iLin, int iTile) {
+    int iColunasMapa = this.fntTiles.retornaColunas(),
+        iLinhasMapa = this.fntTiles.retornaLinhas(),
+        iColMapa = this.iColunaOrigem + iCol,
+        iLinMapa = this.iLinhaOrigem + iLin;
+    if (GjME_TiledLayer.TL_ROLAGEM_X == this.iComportamento) {
+      iColMapa = GjME_TiledLayer.modulo(iColMapa, iColunasMapa);
+    }
+    if (GjME_TiledLayer.TL_ROLAGEM_Y == this.iComportamento) {
+      iLinMapa = GjME_TiledLayer.modulo(iLinMapa, iLinhasMapa);
+    }
+    if ((iColMapa >= 0) && (iLinMapa >= 0) && (iColMapa < iColunasMapa) && (iLinMapa < iLinhasMapa)) {
+      this.guardarEdicao(iColMapa, iLinMapa, iTile);
+    }
+  }
+
+  /**
+   * Guarda a alteração de um tile do mapa, substituindo uma alteração anterior.
+   */
+  private void guardarEdicao(int iColMapa, int iLinMapa, int iTile) {
+    int iCelula = iLinMapa * this.fntTiles.retornaColunas() + iColMapa,
+        iInicio = 0,
+        iFim = this.iQtdEdicoes - 1;
+    // -- Busca binária pela célula
+    while (iInicio <= iFim) {
+      int iMeio = (iInicio + iFim) >>> 1;
+      if (this.iarEdicoesCelula[iMeio] < iCelula) {
+        iInicio = iMeio + 1;
+      } else if (this.iarEdicoesCelula[iMeio] > iCelula) {
+        iFim = iMeio - 1;
+      } else {
+        this.iarEdicoesTile[iMeio] = iTile;
+        return;
+      }
+    }
+    if (this.iQtdEdicoes == this.iarEdicoesCelula.length) {
+      int iTamanho = Math.max(8, this.iQtdEdicoes * 2);
+      this.iarEdicoesCelula = GjME_TiledLayer.garantirTamanho(this.iarEdicoesCelula, iTamanho);
+      this.iarEdicoesTile = GjME_TiledLayer.garantirTamanho(this.iarEdicoesTile, iTamanho);
+    }
+    System.arraycopy(this.iarEdicoesCelula, iInicio, this.iarEdicoesCelula, iInicio + 1, this.iQtdEdicoes - iInicio);
+    System.arraycopy(this.iarEdicoesTile, iInicio, this.iarEdicoesTile, iInicio + 1, this.iQtdEdicoes - iInicio);
+    this.iarEdicoesCelula[iInicio] = iCelula;
+    this.iarEdicoesTile[iInicio] = iTile;
+    this.iQtdEdicoes++;
+  }
+
+  /**
+   * Exibe um tile do mapa em todas as células da janela que o mostram.
+   *
+   * Nos eixos com rolagem contínua uma janela maior que o mapa mostra o mesmo
+   * tile em mais de uma célula.
+   */
+  private void aplicarEdicao(int iColMapa, int iLinMapa, int iTile) {
+    int iColunas = this.getColumns(),
+        iLinhas = this.getRows(),
+        iCol = iColMapa - this.iColunaOrigem,
+        iLin = iLinMapa - this.iLinhaOrigem,
+        iPassoCol = iColunas,
+        iPassoLin = iLinhas,
+        iPropriedades = this.propriedadesTile(iTile);
+    if (GjME_TiledLayer.TL_ROLAGEM_X == this.iComportamento) {
+      iPassoCol = this.fntTiles.retornaColunas();
+      iCol = GjME_TiledLayer.modulo(iCol, iPassoCol);
+    }
+    if (GjME_TiledLayer.TL_ROLAGEM_Y == this.iComportamento) {
+      iPassoLin = this.fntTiles.retornaLinhas();
+      iLin = GjME_TiledLayer.modulo(iLin, iPassoLin);
+    }
+    for (int iL = iLin; (iL >= 0) && (iL < iLinhas); iL += iPassoLin) {
+      for (int iC = iCol; (iC >= 0) && (iC < iColunas); iC += iPassoCol) {
+        super.setCell(iC, iL, iTile);
+        this.marcarPropriedades(iC, iL, iPropriedades);
+      }
+    }
+  }
+
+  /**
+   * Atualiza a tiled layer a cada frame do game.
+   * @see GjME_TiledLayer.atualizarPosicionamento()
+   */
+  public void atualizar() { this.atualizarPosicionamento(); }
+
+  /**
+   * Desloca a câmera de acordo com o comportamento da tiled layer.
+   *
+   * TL_ROLAGEM_X e TL_ROLAGEM_Y deslocam a câmera continuamente e o mapa se
+   * repete ao chegar no fim. TL_SEGUIDORA absorve o deslocamento da layer
+   * seguida, mantendo-a na posição da tela em que estava ao ser definida.
+   * @see GjME_TiledLayer.seguir()
+   */
+  public void atualizarPosicionamento() { this.atualizarPosicionamento(1); }
+
+  /**
+   * Desloca a câmera avançando, de uma só vez, o tempo de várias atualizações.
+   *
+   * Nos comportamentos de rolagem a câmera anda iPassos vezes a velocidade de
+   * rolagem; usado pela tela quando atualizações são puladas sob carga.
+   * @param iPassos Quantidade de atualizações representadas.
+   * @see GjME_TiledLayer.atualizarPosicionamento()
+   */
+  public void atualizarPosicionamento(int iPassos) {
+    int iCameraAnteriorX = this.iCameraX,
+        iCameraAnteriorY = this.iCameraY;
+    switch (this.iComportamento) {
+      case GjME_TiledLayer.TL_FIXA: break;
+      case GjME_TiledLayer.TL_ROLAGEM_X:
+        this.moverCamera(this.iVelocidadeRolagem * iPassos, 0);
+        break;
+      case GjME_TiledLayer.TL_ROLAGEM_Y:
+        this.moverCamera(0, this.iVelocidadeRolagem * iPassos);
+        break;
+      case GjME_TiledLayer.TL_SEGUIDORA:
+        if (null != this.lyrSeguida) {
+          this.moverCamera(this.lyrSeguida.getX() - this.iAncoraX,
+                  this.lyrSeguida.getY() - this.iAncoraY);
+          // -- A parte do deslocamento absorvida pela câmera é desfeita na layer seguida
+          this.lyrSeguida.move(iCameraAnteriorX - this.iCameraX,
+                  iCameraAnteriorY - this.iCameraY);
+        }
+        break;
+      default: break;
+    }
+    this.iDeslocamentoX = this.iCameraX - iCameraAnteriorX;
+    this.iDeslocamentoY = this.iCameraY - iCameraAnteriorY;
   }
 
+  // -- Imagem pré-desenhada ---------------------------------------------------
   /**
-   * Posiciona os tiles para montar a tiled layer.
-   * @param iarTiles Matrix bidimensional com as configurações da tiled layer;
+   * Ativa ou desativa o desenho da janela a partir de uma imagem pré-desenhada.
+   *
+   * Com o cache ativo, a tela desenha a layer com um único drawImage() no lugar
+   * de um drawRegion() por célula. A imagem é montada na primeira vez em que é
+   * desenhada e refeita sempre que as células mudam: por setCell(),
+   * fillCells(), setAnimatedTile() ou quando a janela é recentrada por
+   * posicionarCamera(). A imagem ocupa 4 bytes por pixel da janela, além de um
+   * buffer de mesmo tamanho usado na montagem.
+   * O cache só é usado enquanto o comportamento for TL_FIXA: nas rolagens a
+   * janela é recentrada continuamente e cada recentragem refaria a imagem
+   * inteira, então a layer é desenhada célula a célula e a memória do cache é
+   * liberada. Indicado para fundos de tela cheia; não compensa em layers com
+   * tiles animados trocados a cada frame.
+   * @param bCache true para ativar o cache; false o desativa e libera a memória.
+   * @see GjME_TiledLayer.usaCache()
+   * @see GjME_Tela
    */
-  private void posicionarTiles(int iarTiles[][]) {
-    int iColunas = iarTiles[0].length,
-        iLinhas = iarTiles.length;
-    // -- Preenchendo a Tiled layer com os tiles da fase de acordo com iarTiles
-    for (int iCol = 0; iCol < iColunas; iCol++) {
-      for (int iLin = 0; iLin < iLinhas; iLin++) {
-        this.setCell(iCol, iLin, iarTiles[iLin][iCol]);
+  public void defineCache(boolean bCache) {
+    this.bCache = bCache;
+    if (!bCache) {
+      this.imgCache = null;
+      this.iarPixelsCache = null;
+    }
+  }
+
+  /**
+   * Indica se a layer é desenhada a partir da imagem pré-desenhada.
+   * @return true se o cache estiver ativo e o comportamento for TL_FIXA.
+   * @see GjME_TiledLayer.defineCache()
+   */
+  public boolean usaCache() {
+    return this.bCache && (GjME_TiledLayer.TL_FIXA == this.iComportamento);
+  }
+
+  /**
+   * Retorna a janela pré-desenhada, montando-a novamente se as células mudaram.
+   *
+   * Deve ser chamado pela thread do game. A imagem é imutável e pode ser
+   * desenhada por outra thread.
+   * @return Imagem com a janela inteira ou null se o cache não estiver em uso.
+   * @see GjME_TiledLayer.usaCache()
+   */
+  public Image retornaCache() {
+    if (!this.usaCache()) { return null; }
+    if ((null == this.imgCache) || (this.iAlteracoesCache != this.iAlteracoesVisuais)) {
+      this.montarCache();
+    }
+    return this.imgCache;
+  }
+
+  /**
+   * Desenha a layer a partir da imagem pré-desenhada.
+   * @param g Recurso de desenho do sistema;
+   * @return false se o cache não estiver em uso e nada foi desenhado.
+   */
+  public boolean desenharCache(Graphics g) {
+    Image img = this.retornaCache();
+    if (null == img) { return false; }
+    g.drawImage(img, this.getX(), this.getY(), Graphics.TOP | Graphics.LEFT);
+    return true;
+  }
+
+  /**
+   * Copia os pixels de cada célula do tileset e cria imgCache.
+   *
+   * Células vazias permanecem transparentes; tiles animados são resolvidos
+   * para o tile estático que exibem no momento.
+   */
+  private void montarCache() {
+    int iLarguraTile = this.getCellWidth(),
+        iAlturaTile = this.getCellHeight(),
+        iColunas = this.getColumns(),
+        iLinhas = this.getRows(),
+        iLargura = iColunas * iLarguraTile,
+        iAltura = iLinhas * iAlturaTile;
+    int[] iarPixels = this.iarPixelsCache;
+    if ((null == iarPixels) || (iarPixels.length != iLargura * iAltura)) {
+      iarPixels = this.iarPixelsCache = new int[iLargura * iAltura];
+    } else {
+      for (int i = 0; i < iarPixels.length; i++) { iarPixels[i] = 0; }
+    }
+    Image img = this.imgTileset;
+    int iColunasTileset = img.getWidth() / iLarguraTile;
+    for (int iLin = 0; iLin < iLinhas; iLin++) {
+      for (int iCol = 0; iCol < iColunas; iCol++) {
+        int iTile = this.getCell(iCol, iLin);
+        if (iTile < 0) { iTile = this.getAnimatedTile(iTile); }
+        if (0 == iTile) { continue; }
+        iTile--;
+        img.getRGB(iarPixels, iLin * iAlturaTile * iLargura + iCol * iLarguraTile, iLargura,
+                (iTile % iColunasTileset) * iLarguraTile, (iTile / iColunasTileset) * iAlturaTile,
+                iLarguraTile, iAlturaTile);
       }
     }
+    this.imgCache = Image.createRGBImage(iarPixels, iLargura, iAltura, true);
+    this.iAlteracoesCache = this.iAlteracoesVisuais;
+  }
+
+  // -- Câmera -----------------------------------------------------------------
+  /**
+   * Desloca a câmera sobre o mapa.
+   * @param iDx Deslocamento no eixo X, em pixels;
+   * @param iDy Deslocamento no eixo Y, em pixels.
+   */
+  public void moverCamera(int iDx, int iDy) {
+    this.posicionarCamera(this.iCameraX + iDx, this.iCameraY + iDy);
+  }
+
+  /**
+   * Posiciona a câmera sobre o mapa e reposiciona a layer na tela.
+   *
+   * Nos eixos com rolagem contínua a posição é normalizada para dentro do mapa;
+   * nos demais, a câmera é limitada às bordas do mapa.
+   * @param iX Coordenada X do mapa exibida no canto esquerdo da área visível;
+   * @param iY Coordenada Y do mapa exibida no topo da área visível.
+   */
+  public void posicionarCamera(int iX, int iY) {
+    int iLarguraTile = this.getCellWidth(),
+        iAlturaTile = this.getCellHeight(),
+        iLarguraMapa = this.fntTiles.retornaColunas() * iLarguraTile,
+        iAlturaMapa = this.fntTiles.retornaLinhas() * iAlturaTile;
+
+    if (GjME_TiledLayer.TL_ROLAGEM_X == this.iComportamento) {
+      int iNovoX = GjME_TiledLayer.modulo(iX, iLarguraMapa);
+      // -- A janela acompanha a volta da câmera para continuar válida
+      this.iColunaOrigem += ((iNovoX - iX) / iLarguraTile);
+      iX = iNovoX;
+    } else {
+      iX = Math.max(0, Math.min(iX, iLarguraMapa - this.iLarguraVisivel));
+    }
+    if (GjME_TiledLayer.TL_ROLAGEM_Y == this.iComportamento) {
+      int iNovoY = GjME_TiledLayer.modulo(iY, iAlturaMapa);
+      this.iLinhaOrigem += ((iNovoY - iY) / iAlturaTile);
+      iY = iNovoY;
+    } else {
+      iY = Math.max(0, Math.min(iY, iAlturaMapa - this.iAlturaVisivel));
+    }
+    this.iCameraX = iX;
+    this.iCameraY = iY;
+
+    // -- Recentra a janela se a área visível saiu dela
+    boolean bRecentrar = false;
+    int iPrimeira = iX / iLarguraTile,
+        iUltima = (iX + this.iLarguraVisivel - 1) / iLarguraTile;
+    if ((iPrimeira < this.iColunaOrigem) || (iUltima >= this.iColunaOrigem + this.getColumns())) {
+      this.iColunaOrigem = this.calcularOrigem(iPrimeira, iUltima, this.getColumns(),
+              this.fntTiles.retornaColunas(), GjME_TiledLayer.TL_ROLAGEM_X);
+      bRecentrar = true;
+    }
+    iPrimeira = iY / iAlturaTile;
+    iUltima = (iY + this.iAlturaVisivel - 1) / iAlturaTile;
+    if ((iPrimeira < this.iLinhaOrigem) || (iUltima >= this.iLinhaOrigem + this.getRows())) {
+      this.iLinhaOrigem = this.calcularOrigem(iPrimeira, iUltima, this.getRows(),
+              this.fntTiles.retornaLinhas(), GjME_TiledLayer.TL_ROLAGEM_Y);
+      bRecentrar = true;
+    }
+    if (bRecentrar) { this.posicionarTiles(); }
+
+    this.setPosition(this.iAreaX + this.iColunaOrigem * iLarguraTile - iX,
+            this.iAreaY + this.iLinhaOrigem * iAlturaTile - iY);
+  }
+
+  /**
+   * Calcula a nova origem da janela em um eixo, centrando o trecho visível.
+   * @param iPrimeira Primeira coluna/linha visível;
+   * @param iUltima Última coluna/linha visível;
+   * @param iTamanhoJanela Quantidade de colunas/linhas da janela;
+   * @param iTamanhoMapa Quantidade de colunas/linhas do mapa;
+   * @param iRolagem Comportamento em que o eixo tem rolagem contínua;
+   * @return Nova origem da janela.
+   */
+  private int calcularOrigem(int iPrimeira, int iUltima, int iTamanhoJanela,
+          int iTamanhoMapa, int iRolagem) {
+    int iOrigem = iPrimeira - (iTamanhoJanela - (iUltima - iPrimeira + 1)) / 2;
+    if (iRolagem != this.iComportamento) {
+      iOrigem = Math.max(0, Math.min(iOrigem, iTamanhoMapa - iTamanhoJanela));
+    }
+    return iOrigem;
+  }
+
+  /**
+   * Define a área da tela em que o mapa é exibido.
+   *
+   * A área deve ser menor ou igual à janela da tiled layer e, nas rolagens
+   * contínuas, ao menos um tile menor no eixo da rolagem.
+   * @param iX Coordenada X da área na tela;
+   * @param iY Coordenada Y da área na tela;
+   * @param iLargura Largura da área;
+   * @param iAltura Altura da área.
+   * @throws IllegalStateException Se a janela não cobrir a área mais um tile no eixo da rolagem.
+   */
+  public void defineAreaVisivel(int iX, int iY, int iLargura, int iAltura) {
+    this.validarRolagem(this.iComportamento, iLargura, iAltura);
+    this.iAreaX = iX;
+    this.iAreaY = iY;
+    this.iLarguraVisivel = iLargura;
+    this.iAlturaVisivel = iAltura;
+    this.posicionarCamera(this.iCameraX, this.iCameraY);
   }
 
-  public void atualizarPosicionamento() {
-   switch (this.iComportamento) {
-     case GjME_TiledLayer.TL_FIXA: break;
-     case GjME_TiledLayer.TL_ROLAGEM_X: break;
-     case GjME_TiledLayer.TL_ROLAGEM_Y: break;
-     case GjME_TiledLayer.TL_SEGUIDORA: break;
-     default: break;
-   }
+  /**
+   * Verifica se a janela comporta a rolagem contínua de uma área visível.
+   *
+   * A área visível que não começa no início de um tile ocupa um tile a mais;
+   * sem ele a janela seria recentrada, e relida da fonte, a cada frame.
+   */
+  private void validarRolagem(int iComp, int iLargura, int iAltura) {
+    if (((GjME_TiledLayer.TL_ROLAGEM_X == iComp)
+         && ((iLargura + this.getCellWidth() - 1) / this.getCellWidth() + 1 > this.getColumns()))
+        || ((GjME_TiledLayer.TL_ROLAGEM_Y == iComp)
+         && ((iAltura + this.getCellHeight() - 1) / this.getCellHeight() + 1 > this.getRows()))) {
+      throw new IllegalStateException("A janela não cobre a área visível mais um tile no eixo da rolagem.");
+    }
+  }
+
+  /**
+   * Define a velocidade das rolagens contínuas.
+   * @param iVelocidade Deslocamento da câmera em pixels por frame; valores
+   *   negativos invertem o sentido da rolagem.
+   */
+  public void defineVelocidadeRolagem(int iVelocidade) { this.iVelocidadeRolagem = iVelocidade; }
+
+  /**
+   * Define a layer acompanhada pelo comportamento GjME_TiledLayer.TL_SEGUIDORA.
+   *
+   * A posição atual da layer na tela passa a ser a posição em que ela será
+   * mantida enquanto a câmera puder acompanhá-la. Nas bordas do mapa a câmera
+   * para e a layer seguida volta a se deslocar pela tela.
+   * @param lyr Layer a ser seguida, geralmente o personagem do jogador.
+   */
+  public void seguir(Layer lyr) {
+    this.lyrSeguida = lyr;
+    if (null != lyr) {
+      this.iAncoraX = lyr.getX();
+      this.iAncoraY = lyr.getY();
+    }
+  }
+
+  /**
+   * Retorna a coordenada X do mapa exibida no canto esquerdo da área visível.
+   * @return Coordenada X da câmera.
+   */
+  public int retornaCameraX() { return this.iCameraX; }
+
+  /**
+   * Retorna a coordenada Y do mapa exibida no topo da área visível.
+   * @return Coordenada Y da câmera.
+   */
+  public int retornaCameraY() { return this.iCameraY; }
+
+  /**
+   * Retorna quanto a câmera se deslocou no eixo X na última atualização.
+   *
+   * Útil para deslocar outras layers (inimigos, itens) junto com o mapa.
+   * @return Deslocamento em pixels.
+   */
+  public int retornaDeslocamentoX() { return this.iDeslocamentoX; }
+
+  /**
+   * Retorna quanto a câmera se deslocou no eixo Y na última atualização.
+   * @return Deslocamento em pixels.
+   */
+  public int retornaDeslocamentoY() { return this.iDeslocamentoY; }
+
+  // -- Propriedades dos tiles e colisão --------------------------------------
+  /**
+   * Define as propriedades de um tile do tileset.
+   *
+   * Os planos de bits são refeitos a partir das células atuais da janela,
+   * preservando alterações feitas com setCell() e fillCells(); por isso, ao
+   * configurar muitos tiles prefira defineTabelaPropriedades().
+   * @param iTile Índice do tile (negativo para tiles animados);
+   * @param iPropriedades Combinação das constantes TILE_.
+   */
+  public void definePropriedadesTile(int iTile, int iPropriedades) {
+    if (iTile >= 0) {
+      this.iarPropriedadesTile = GjME_TiledLayer.garantirTamanho(this.iarPropriedadesTile, iTile + 1);
+      this.iarPropriedadesTile[iTile] = iPropriedades;
+    } else {
+      this.iarPropriedadesTileAnimado = GjME_TiledLayer.garantirTamanho(this.iarPropriedadesTileAnimado, -iTile + 1);
+      this.iarPropriedadesTileAnimado[-iTile] = iPropriedades;
+    }
+    this.recalcularPlanos();
+  }
+
+  /**
+   * Define as propriedades de todos os tiles estáticos do tileset de uma vez.
+   * @param iarPropriedades Propriedades indexadas pelo índice do tile.
+   * @see GjME_TiledLayer.definePropriedadesTile()
+   */
+  public void defineTabelaPropriedades(int[] iarPropriedades) {
+    this.iarPropriedadesTile = iarPropriedades;
+    this.recalcularPlanos();
+  }
+
+  /**
+   * Retorna as propriedades da célula que contém um ponto da tela.
+   * @param iX Coordenada X na tela;
+   * @param iY Coordenada Y na tela;
+   * @return Combinação das constantes TILE_, ou zero fora da janela.
+   */
+  public int retornaPropriedades(int iX, int iY) {
+    int iCol = GjME_TiledLayer.piso(iX - this.getX(), this.getCellWidth()),
+        iLin = GjME_TiledLayer.piso(iY - this.getY(), this.getCellHeight());
+    if ((iCol < 0) || (iLin < 0) || (iCol >= this.getColumns()) || (iLin >= this.getRows())) { return 0; }
+    int iPropriedades = 0,
+        iPalavra = iLin * this.iPalavrasPorLinha + (iCol >> 5),
+        iTamanhoPlano = this.getRows() * this.iPalavrasPorLinha;
+    for (int p = 0; p < GjME_TiledLayer.QTD_PROPRIEDADES; p++) {
+      if (0 != (this.iarPlanos[p * iTamanhoPlano + iPalavra] & (1 << (iCol & 31)))) {
+        iPropriedades |= (1 << p);
+      }
+    }
+    return iPropriedades;
+  }
+
+  /**
+   * Indica se alguma célula que toca um retângulo da tela possui as propriedades.
+   * @param iX Coordenada X do retângulo na tela;
+   * @param iY Coordenada Y do retângulo na tela;
+   * @param iLargura Largura do retângulo;
+   * @param iAltura Altura do retângulo;
+   * @param iPropriedades Combinação das constantes TILE_ procuradas;
+   * @return Verdadeiro ou falso.
+   */
+  public boolean possuiPropriedades(int iX, int iY, int iLargura, int iAltura, int iPropriedades) {
+    int iLarguraTile = this.getCellWidth(),
+        iAlturaTile = this.getCellHeight(),
+        iCol1 = GjME_TiledLayer.piso(iX - this.getX(), iLarguraTile),
+        iCol2 = GjME_TiledLayer.piso(iX - this.getX() + iLargura - 1, iLarguraTile),
+        iLin1 = GjME_TiledLayer.piso(iY - this.getY(), iAlturaTile),
+        iLin2 = GjME_TiledLayer.piso(iY - this.getY() + iAltura - 1, iAlturaTile);
+    for (int iLin = iLin1; iLin <= iLin2; iLin++) {
+      if (this.primeiraColuna(iPropriedades, iLin, iCol1, iCol2) >= 0) { return true; }
+    }
+    return false;
+  }
+
+  /**
+   * Limita o deslocamento horizontal de um retângulo da tela pelos tiles sólidos.
+   *
+   * Apenas as colunas percorridas pelo deslocamento são testadas.
+   * @param iX Coordenada X do retângulo na tela;
+   * @param iY Coordenada Y do retângulo na tela;
+   * @param iLargura Largura do retângulo;
+   * @param iAltura Altura do retângulo;
+   * @param iDx Deslocamento pretendido no eixo X;
+   * @return Deslocamento possível, com o mesmo sinal de iDx e módulo menor ou igual.
+   */
+  public int resolverDeslocamentoX(int iX, int iY, int iLargura, int iAltura, int iDx) {
+    if ((0 == iDx) || (iLargura <= 0) || (iAltura <= 0)) { return iDx; }
+    int iLarguraTile = this.getCellWidth(),
+        iAlturaTile = this.getCellHeight(),
+        iLocalX = iX - this.getX(),
+        iLocalY = iY - this.getY(),
+        iLin1 = GjME_TiledLayer.piso(iLocalY, iAlturaTile),
+        iLin2 = GjME_TiledLayer.piso(iLocalY + iAltura - 1, iAlturaTile);
+    if (iDx > 0) {
+      int iBorda = iLocalX + iLargura,
+          iCol1 = GjME_TiledLayer.piso(iBorda - 1, iLarguraTile) + 1,
+          iCol2 = GjME_TiledLayer.piso(iBorda - 1 + iDx, iLarguraTile),
+          iBloqueio = Integer.MAX_VALUE;
+      for (int iLin = iLin1; iLin <= iLin2; iLin++) {
+        int iCol = this.primeiraColuna(GjME_TiledLayer.TILE_SOLIDO, iLin, iCol1, iCol2);
+        if ((iCol >= 0) && (iCol < iBloqueio)) { iBloqueio = iCol; }
+      }
+      return (Integer.MAX_VALUE == iBloqueio) ? iDx : iBloqueio * iLarguraTile - iBorda;
+    }
+    int iCol2 = GjME_TiledLayer.piso(iLocalX, iLarguraTile) - 1,
+        iCol1 = GjME_TiledLayer.piso(iLocalX + iDx, iLarguraTile),
+        iBloqueio = Integer.MIN_VALUE;
+    for (int iLin = iLin1; iLin <= iLin2; iLin++) {
+      int iCol = this.ultimaColuna(GjME_TiledLayer.TILE_SOLIDO, iLin, iCol1, iCol2);
+      if (iCol > iBloqueio) { iBloqueio = iCol; }
+    }
+    return (Integer.MIN_VALUE == iBloqueio) ? iDx : (iBloqueio + 1) * iLarguraTile - iLocalX;
+  }
+
+  /**
+   * Limita o deslocamento vertical de um retângulo da tela pelos tiles sólidos.
+   *
+   * Ao descer, as plataformas também bloqueiam o deslocamento, desde que o
+   * retângulo esteja acima delas; ao subir, as plataformas são atravessadas.
+   * @param iX Coordenada X do retângulo na tela;
+   * @param iY Coordenada Y do retângulo na tela;
+   * @param iLargura Largura do retângulo;
+   * @param iAltura Altura do retângulo;
+   * @param iDy Deslocamento pretendido no eixo Y;
+   * @return Deslocamento possível, com o mesmo sinal de iDy e módulo menor ou igual.
+   */
+  public int resolverDeslocamentoY(int iX, int iY, int iLargura, int iAltura, int iDy) {
+    if ((0 == iDy) || (iLargura <= 0) || (iAltura <= 0)) { return iDy; }
+    int iLarguraTile = this.getCellWidth(),
+        iAlturaTile = this.getCellHeight(),
+        iLocalX = iX - this.getX(),
+        iLocalY = iY - this.getY(),
+        iCol1 = GjME_TiledLayer.piso(iLocalX, iLarguraTile),
+        iCol2 = GjME_TiledLayer.piso(iLocalX + iLargura - 1, iLarguraTile);
+    if (iDy > 0) {
+      int iBorda = iLocalY + iAltura,
+          iLin2 = GjME_TiledLayer.piso(iBorda - 1 + iDy, iAlturaTile);
+      for (int iLin = GjME_TiledLayer.piso(iBorda - 1, iAlturaTile) + 1; iLin <= iLin2; iLin++) {
+        if (this.primeiraColuna(GjME_TiledLayer.TILE_SOLIDO | GjME_TiledLayer.TILE_PLATAFORMA,
+                iLin, iCol1, iCol2) >= 0) {
+          return iLin * iAlturaTile - iBorda;
+        }
+      }
+      return iDy;
+    }
+    int iLin1 = GjME_TiledLayer.piso(iLocalY + iDy, iAlturaTile);
+    for (int iLin = GjME_TiledLayer.piso(iLocalY, iAlturaTile) - 1; iLin >= iLin1; iLin--) {
+      if (this.primeiraColuna(GjME_TiledLayer.TILE_SOLIDO, iLin, iCol1, iCol2) >= 0) {
+        return (iLin + 1) * iAlturaTile - iLocalY;
+      }
+    }
+    return iDy;
+  }
+
+  /**
+   * Retorna as propriedades de um tile.
+   */
+  private int propriedadesTile(int iTile) {
+    if (iTile >= 0) {
+      return (iTile < this.iarPropriedadesTile.length) ? this.iarPropriedadesTile[iTile] : 0;
+    }
+    return (-iTile < this.iarPropriedadesTileAnimado.length) ? this.iarPropriedadesTileAnimado[-iTile] : 0;
+  }
+
+  /**
+   * Refaz os planos de bits a partir das células atuais da janela, sem relê-las da fonte.
+   */
+  private void recalcularPlanos() {
+    int iColunas = this.getColumns(),
+        iLinhas = this.getRows();
+    for (int i = 0; i < this.iarPlanos.length; i++) { this.iarPlanos[i] = 0; }
+    for (int iLin = 0; iLin < iLinhas; iLin++) {
+      for (int iCol = 0; iCol < iColunas; iCol++) {
+        int iPropriedades = this.propriedadesTile(this.getCell(iCol, iLin));
+        if (0 != iPropriedades) { this.marcarPropriedades(iCol, iLin, iPropriedades); }
+      }
+    }
+  }
+
+  /**
+   * Atualiza os bits de uma célula da janela em todos os planos.
+   */
+  private void marcarPropriedades(int iCol, int iLin, int iPropriedades) {
+    int iTamanhoPlano = this.getRows() * this.iPalavrasPorLinha,
+        iPalavra = iLin * this.iPalavrasPorLinha + (iCol >> 5),
+        iBit = 1 << (iCol & 31);
+    for (int p = 0; p < GjME_TiledLayer.QTD_PROPRIEDADES; p++) {
+      if (0 != (iPropriedades & (1 << p))) {
+        this.iarPlanos[p * iTamanhoPlano + iPalavra] |= iBit;
+      } else { this.iarPlanos[p * iTamanhoPlano + iPalavra] &= ~iBit; }
+    }
+  }
+
+  /**
+   * Combina, para uma palavra de uma linha, os planos das propriedades pedidas.
+   */
+  private int palavraPropriedades(int iPropriedades, int iLin, int iPalavra) {
+    int iTamanhoPlano = this.getRows() * this.iPalavrasPorLinha,
+        iIndice = iLin * this.iPalavrasPorLinha + iPalavra,
+        iBits = 0;
+    for (int p = 0; p < GjME_TiledLayer.QTD_PROPRIEDADES; p++) {
+      if (0 != (iPropriedades & (1 << p))) { iBits |= this.iarPlanos[p * iTamanhoPlano + iIndice]; }
+    }
+    return iBits;
+  }
+
+  /**
+   * Retorna a primeira coluna de uma faixa da linha que possui as propriedades.
+   * @return A coluna ou -1 se nenhuma célula da faixa (dentro da janela) as possuir.
+   */
+  private int primeiraColuna(int iPropriedades, int iLin, int iCol1, int iCol2) {
+    if ((iLin < 0) || (iLin >= this.getRows())) { return -1; }
+    iCol1 = Math.max(iCol1, 0);
+    iCol2 = Math.min(iCol2, this.getColumns() - 1);
+    for (int w = iCol1 >> 5; w <= (iCol2 >> 5) && iCol1 <= iCol2; w++) {
+      int iBits = this.palavraPropriedades(iPropriedades, iLin, w)
+              & GjME_TiledLayer.mascaraFaixa(w, iCol1, iCol2);
+      if (0 != iBits) { return (w << 5) + GjME_TiledLayer.menorBit(iBits); }
+    }
+    return -1;
+  }
+
+  /**
+   * Retorna a última coluna de uma faixa da linha que possui as propriedades.
+   * @return A coluna ou Integer.MIN_VALUE se nenhuma célula da faixa as possuir.
+   */
+  private int ultimaColuna(int iPropriedades, int iLin, int iCol1, int iCol2) {
+    if ((iLin < 0) || (iLin >= this.getRows())) { return Integer.MIN_VALUE; }
+    iCol1 = Math.max(iCol1, 0);
+    iCol2 = Math.min(iCol2, this.getColumns() - 1);
+    for (int w = iCol2 >> 5; w >= (iCol1 >> 5) && iCol1 <= iCol2; w--) {
+      int iBits = this.palavraPropriedades(iPropriedades, iLin, w)
+              & GjME_TiledLayer.mascaraFaixa(w, iCol1, iCol2);
+      if (0 != iBits) { return (w << 5) + GjME_TiledLayer.maiorBit(iBits); }
+    }
+    return Integer.MIN_VALUE;
+  }
+
+  /**
+   * Máscara dos bits de uma palavra que pertencem à faixa de colunas.
+   */
+  private static int mascaraFaixa(int iPalavra, int iCol1, int iCol2) {
+    int iInicio = (iPalavra == (iCol1 >> 5)) ? (iCol1 & 31) : 0,
+        iFim = (iPalavra == (iCol2 >> 5)) ? (iCol2 & 31) : 31;
+    return (-1 << iInicio) & (-1 >>> (31 - iFim));
+  }
+
+  /**
+   * Posição do bit ligado menos significativo (a palavra não pode ser zero).
+   */
+  private static int menorBit(int iBits) {
+    int n = 0;
+    if (0 == (iBits & 0xFFFF)) { n += 16; iBits >>>= 16; }
+    if (0 == (iBits & 0xFF)) { n += 8; iBits >>>= 8; }
+    if (0 == (iBits & 0xF)) { n += 4; iBits >>>= 4; }
+    if (0 == (iBits & 0x3)) { n += 2; iBits >>>= 2; }
+    if (0 == (iBits & 0x1)) { n += 1; }
+    return n;
+  }
+
+  /**
+   * Posição do bit ligado mais significativo (a palavra não pode ser zero).
+   */
+  private static int maiorBit(int iBits) {
+    int n = 0;
+    if (0 != (iBits & 0xFFFF0000)) { n += 16; iBits >>>= 16; }
+    if (0 != (iBits & 0xFF00)) { n += 8; iBits >>>= 8; }
+    if (0 != (iBits & 0xF0)) { n += 4; iBits >>>= 4; }
+    if (0 != (iBits & 0xC)) { n += 2; iBits >>>= 2; }
+    if (0 != (iBits & 0x2)) { n += 1; }
+    return n;
+  }
+
+  /**
+   * Divisão arredondada para baixo, correta também para valores negativos.
+   */
+  private static int piso(int iValor, int iDivisor) {
+    int iQuociente = iValor / iDivisor;
+    return ((iValor % iDivisor != 0) && (iValor < 0)) ? iQuociente - 1 : iQuociente;
+  }
+
+  /**
+   * Retorna um array com pelo menos o tamanho pedido, preservando o conteúdo.
+   */
+  private static int[] garantirTamanho(int[] iar, int iTamanho) {
+    if (iar.length >= iTamanho) { return iar; }
+    int[] iarNovo = new int[iTamanho];
+    System.arraycopy(iar, 0, iarNovo, 0, iar.length);
+    return iarNovo;
+  }
+
+  /**
+   * Resto da divisão sempre positivo, utilizado para repetir o mapa.
+   */
+  private static int modulo(int iValor, int iDivisor) {
+    int iResto = iValor % iDivisor;
+    return (iResto < 0) ? iResto + iDivisor : iResto;
   }
 }
@@ -0,0 +1,443 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.personagem;
+
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+import javax.microedition.lcdui.game.Sprite;
+
+import br.com.upzone.gjme.GjME_CacheImagens;
+import br.com.upzone.gjme.GjME_Fisica;
+import br.com.upzone.gjme.GjME_IAtualizavel;
+
+/**
+ * Lote de personagens não controláveis simples (inimigos, itens, efeitos).
+ *
+ * Ao contrário de GjME_Personagem, os personagens do lote não são objetos:
+ * posição, velocidade, direção, ação atual e frame de cada um ficam em arrays
+ * paralelos de tipos primitivos. Todos são atualizados em um único laço e
+ * desenhados com um único Sprite, que é reposicionado para cada personagem.
+ * Isto permite centenas de personagens simples na tela, sem o custo de um
+ * Sprite, de uma tabela e de uma pilha de ações para cada um.
+ *
+ * As ações do lote são apenas seqüências de frames, contínuas ou não; para
+ * pré e pós ações ou comportamentos elaborados utilize GjME_Personagem.
+ * Os personagens são identificados pela posição no lote, que pode mudar
+ * quando outro personagem é removido.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @see br.com.upzone.gjme.tela.GjME_Tela.adicionarLote()
+ */
+public class GjME_LoteNPC implements GjME_IAtualizavel, IPersonagemNaoControlavel {
+
+  /**
+   * Sprite utilizado para desenhar todos os personagens do lote.
+   */
+  private final Sprite sprCarimbo;
+  /**
+   * SpriteSheet original do lote.
+   */
+  private final Image imgFolha;
+  /**
+   * Cópia espelhada da SpriteSheet; null se a cópia não estiver ativa.
+   * @see GjME_LoteNPC.ativarFolhaEspelhada()
+   */
+  private Image imgFolhaEspelhada = null;
+  /**
+   * Sprite que desenha os personagens virados à esquerda com a cópia espelhada;
+   * null se a cópia não estiver ativa.
+   *
+   * Cada SpriteSheet tem seu próprio Sprite para que o desenho nunca precise
+   * trocar a imagem com Sprite.setImage().
+   * @see GjME_LoteNPC.ativarFolhaEspelhada()
+   */
+  private Sprite sprEspelhado = null;
+  /**
+   * Largura dos frames.
+   */
+  private final int iLargura;
+  /**
+   * Altura dos frames.
+   */
+  private final int iAltura;
+
+  // -- Estado dos personagens -------------------------------------------------
+  /**
+   * Quantidade de personagens ativos no lote.
+   */
+  protected int iQtd = 0;
+  /**
+   * Coordenada X de cada personagem.
+   */
+  protected final int[] iarX;
+  /**
+   * Coordenada Y de cada personagem.
+   */
+  protected final int[] iarY;
+  /**
+   * Velocidade no eixo X de cada personagem, em pixels por frame.
+   */
+  protected final int[] iarVelX;
+  /**
+   * Velocidade no eixo Y de cada personagem, em pixels por frame.
+   */
+  protected final int[] iarVelY;
+  /**
+   * Direção de cada personagem (GjME_Fisica.DIREITA ou GjME_Fisica.ESQUERDA).
+   */
+  protected final int[] iarDirecao;
+  /**
+   * Ação atual de cada personagem.
+   */
+  protected final int[] iarAcao;
+  /**
+   * Posição na seqüência de frames da ação atual de cada personagem.
+   */
+  protected final int[] iarQuadro;
+
+  // -- Ações ------------------------------------------------------------------
+  /**
+   * Seqüência de frames de cada ação, indexada pelo ID da ação.
+   */
+  private int[][] iarFramesAcao = new int[4][];
+  /**
+   * Indica, para cada ação, se a animação reinicia ao chegar ao fim.
+   */
+  private boolean[] barAcaoContinua = new boolean[4];
+
+  /**
+   * Indica que os frames devem ser refletidos para personagens virados à esquerda.
+   * @see GjME_LoteNPC.ativarFolhaEspelhada()
+   */
+  protected boolean bRefletirSprite = false;
+
+  // -- Limites para o desenho parcial -----------------------------------------
+  /**
+   * Retângulo que envolve os personagens na última atualização: x1, y1, x2, y2.
+   */
+  private final int[] iarLimites = new int[4];
+  /**
+   * Retângulo que envolvia os personagens no último desenho: x1, y1, x2, y2.
+   */
+  private final int[] iarLimitesDesenhados = new int[4];
+
+  /**
+   * Cria um lote de personagens.
+   * @param imgSS SpriteSheet com os frames de animação dos personagens;
+   * @param iLargura Largura dos frames em pixels;
+   * @param iAltura Altura dos frames em pixels;
+   * @param iCapacidade Quantidade máxima de personagens no lote.
+   */
+  public GjME_LoteNPC(Image imgSS, int iLargura, int iAltura, int iCapacidade) {
+    this.sprCarimbo = new Sprite(imgSS, iLargura, iAltura);
+    this.imgFolha = imgSS;
+    this.iLargura = iLargura;
+    this.iAltura = iAltura;
+    this.iarX = new int[iCapacidade];
+    this.iarY = new int[iCapacidade];
+    this.iarVelX = new int[iCapacidade];
+    this.iarVelY = new int[iCapacidade];
+    this.iarDirecao = new int[iCapacidade];
+    this.iarAcao = new int[iCapacidade];
+    this.iarQuadro = new int[iCapacidade];
+  }
+
+  /**
+   * Define uma ação dos personagens do lote.
+   * @param iID ID da ação, maior ou igual a zero;
+   * @param iarFrames Seqüência de frames da ação;
+   * @param bContinua GjME_Acao.ANIMACAO_CONTINUA ou GjME_Acao.ANIMACAO_NAO_CONTINUA.
+   */
+  public void defineAcao(int iID, int[] iarFrames, boolean bContinua) {
+    if (iID >= this.iarFramesAcao.length) {
+      int[][] iarNovos = new int[iID + 1][];
+      System.arraycopy(this.iarFramesAcao, 0, iarNovos, 0, this.iarFramesAcao.length);
+      this.iarFramesAcao = iarNovos;
+      boolean[] barNovos = new boolean[iID + 1];
+      System.arraycopy(this.barAcaoContinua, 0, barNovos, 0, this.barAcaoContinua.length);
+      this.barAcaoContinua = barNovos;
+    }
+    this.iarFramesAcao[iID] = iarFrames;
+    this.barAcaoContinua[iID] = bContinua;
+  }
+
+  // -- Gerenciamento dos personagens ------------------------------------------
+  /**
+   * Adiciona um personagem ao lote.
+   * @param iX Coordenada X do personagem;
+   * @param iY Coordenada Y do personagem;
+   * @param iAcao Ação inicial do personagem;
+   * @return Posição do personagem no lote ou -1 se o lote estiver cheio.
+   */
+  public int adicionar(int iX, int iY, int iAcao) {
+    if (this.iQtd == this.iarX.length) { return -1; }
+    int i = this.iQtd++;
+    this.iarX[i] = iX;
+    this.iarY[i] = iY;
+    this.iarVelX[i] = 0;
+    this.iarVelY[i] = 0;
+    this.iarDirecao[i] = GjME_Fisica.DIREITA;
+    this.iarAcao[i] = iAcao;
+    this.iarQuadro[i] = 0;
+    return i;
+  }
+
+  /**
+   * Remove um personagem do lote.
+   *
+   * O último personagem do lote passa a ocupar a posição removida.
+   * @param i Posição do personagem no lote.
+   */
+  public void remover(int i) {
+    int iUltimo = --this.iQtd;
+    this.iarX[i] = this.iarX[iUltimo];
+    this.iarY[i] = this.iarY[iUltimo];
+    this.iarVelX[i] = this.iarVelX[iUltimo];
+    this.iarVelY[i] = this.iarVelY[iUltimo];
+    this.iarDirecao[i] = this.iarDirecao[iUltimo];
+    this.iarAcao[i] = this.iarAcao[iUltimo];
+    this.iarQuadro[i] = this.iarQuadro[iUltimo];
+  }
+
+  /**
+   * Remove todos os personagens do lote.
+   */
+  public void limpar() { this.iQtd = 0; }
+
+  /**
+   * Retorna a quantidade de personagens no lote.
+   * @return Quantidade de personagens.
+   */
+  public int quantidade() { return this.iQtd; }
+
+  /**
+   * Define a velocidade de um personagem.
+   * @param i Posição do personagem no lote;
+   * @param iVelX Velocidade no eixo X, em pixels por frame;
+   * @param iVelY Velocidade no eixo Y, em pixels por frame.
+   */
+  public void defineVelocidade(int i, int iVelX, int iVelY) {
+    this.iarVelX[i] = iVelX;
+    this.iarVelY[i] = iVelY;
+    if (iVelX > 0) {
+      this.iarDirecao[i] = GjME_Fisica.DIREITA;
+    } else if (iVelX < 0) { this.iarDirecao[i] = GjME_Fisica.ESQUERDA; }
+  }
+
+  /**
+   * Troca a ação de um personagem, reiniciando sua animação.
+   * @param i Posição do personagem no lote;
+   * @param iAcao ID da nova ação.
+   */
+  public void defineAcaoPersonagem(int i, int iAcao) {
+    if (this.iarAcao[i] != iAcao) {
+      this.iarAcao[i] = iAcao;
+      this.iarQuadro[i] = 0;
+    }
+  }
+
+  /**
+   * Retorna a coordenada X de um personagem.
+   * @param i Posição do personagem no lote;
+   * @return Coordenada X.
+   */
+  public int retornaX(int i) { return this.iarX[i]; }
+
+  /**
+   * Retorna a coordenada Y de um personagem.
+   * @param i Posição do personagem no lote;
+   * @return Coordenada Y.
+   */
+  public int retornaY(int i) { return this.iarY[i]; }
+
+  // -- Atualização e desenho --------------------------------------------------
+  /**
+   * Atualiza posição e animação de todos os personagens do lote.
+   *
+   * Subclasses podem sobrescrever este método para aplicar comportamentos
+   * próprios antes ou depois de chamar super.atualizar().
+   */
+  public void atualizar() {
+    int iX1 = Integer.MAX_VALUE, iY1 = Integer.MAX_VALUE,
+        iX2 = Integer.MIN_VALUE, iY2 = Integer.MIN_VALUE;
+    int[] iarX = this.iarX, iarY = this.iarY, iarQuadro = this.iarQuadro;
+    for (int i = 0; i < this.iQtd; i++) {
+      int iX = iarX[i] + this.iarVelX[i],
+          iY = iarY[i] + this.iarVelY[i];
+      iarX[i] = iX;
+      iarY[i] = iY;
+      int[] iarFrames = this.iarFramesAcao[this.iarAcao[i]];
+      int iProximo = iarQuadro[i] + 1;
+      if (iProximo < iarFrames.length) {
+        iarQuadro[i] = iProximo;
+      } else if (this.barAcaoContinua[this.iarAcao[i]]) { iarQuadro[i] = 0; }
+      if (iX < iX1) { iX1 = iX; }
+      if (iY < iY1) { iY1 = iY; }
+      if (iX > iX2) { iX2 = iX; }
+      if (iY > iY2) { iY2 = iY; }
+    }
+    if (0 == this.iQtd) {
+      iX1 = iY1 = iX2 = iY2 = 0;
+    } else {
+      iX2 += this.iLargura;
+      iY2 += this.iAltura;
+    }
+    this.iarLimites[0] = iX1;
+    this.iarLimites[1] = iY1;
+    this.iarLimites[2] = iX2;
+    this.iarLimites[3] = iY2;
+  }
+
+  /**
+   * Desenha todos os personagens do lote com o Sprite compartilhado.
+   * @param g Recurso de desenho do sistema.
+   */
+  public void desenhar(Graphics g) {
+    Sprite spr = this.sprCarimbo;
+    int iTransformacao = Sprite.TRANS_NONE;
+    spr.setTransform(iTransformacao);
+    // -- Com a cópia espelhada cada direção usa seu Sprite, sem trocar imagens
+    boolean bEspelhada = this.bRefletirSprite && (null != this.sprEspelhado);
+    boolean bTransformar = this.bRefletirSprite && !bEspelhada;
+    for (int i = 0; i < this.iQtd; i++) {
+      boolean bEsquerda = (GjME_Fisica.ESQUERDA == this.iarDirecao[i]);
+      if (bEspelhada) {
+        spr = bEsquerda ? this.sprEspelhado : this.sprCarimbo;
+      } else if (bTransformar) {
+        int iNova = bEsquerda ? Sprite.TRANS_MIRROR : Sprite.TRANS_NONE;
+        if (iNova != iTransformacao) {
+          iTransformacao = iNova;
+          spr.setTransform(iTransformacao);
+        }
+      }
+      spr.setFrame(this.iarFramesAcao[this.iarAcao[i]][this.iarQuadro[i]]);
+      spr.setPosition(this.iarX[i], this.iarY[i]);
+      spr.paint(g);
+    }
+    System.arraycopy(this.iarLimites, 0, this.iarLimitesDesenhados, 0, 4);
+  }
+
+  /**
+   * Copia o estado visual dos personagens para arrays externos, sem acessar o Sprite.
+   *
+   * Utilizado para desenhar o lote em outra thread: cada personagem recebe
+   * posição, frame na SpriteSheet e transformação (Sprite.TRANS_NONE ou
+   * Sprite.TRANS_MIRROR), a partir da posição iInicio dos arrays.
+   * @param iarX Coordenadas X;
+   * @param iarY Coordenadas Y;
+   * @param iarFrame Frames na SpriteSheet;
+   * @param iarTransformacao Transformações;
+   * @param iInicio Posição dos arrays que recebe o primeiro personagem.
+   * @see GjME_LoteNPC.retornaImagemEspelhada()
+   */
+  public void capturar(int[] iarX, int[] iarY, int[] iarFrame, int[] iarTransformacao, int iInicio) {
+    System.arraycopy(this.iarX, 0, iarX, iInicio, this.iQtd);
+    System.arraycopy(this.iarY, 0, iarY, iInicio, this.iQtd);
+    for (int i = 0; i < this.iQtd; i++) {
+      iarFrame[iInicio + i] = this.iarFramesAcao[this.iarAcao[i]][this.iarQuadro[i]];
+      iarTransformacao[iInicio + i] = (this.bRefletirSprite && (GjME_Fisica.ESQUERDA == this.iarDirecao[i]))
+                                      ? Sprite.TRANS_MIRROR : Sprite.TRANS_NONE;
+    }
+  }
+
+  /**
+   * Passa a refletir os personagens virados à esquerda com uma cópia espelhada
+   * da SpriteSheet em vez de Sprite.TRANS_MIRROR.
+   *
+   * A cópia é compartilhada via GjME_CacheImagens com os personagens que usam
+   * a mesma imagem e deve ser liberada com desativarFolhaEspelhada().
+   * @see GjME_Personagem.ativarFolhaEspelhada()
+   */
+  public void ativarFolhaEspelhada() {
+    if (null == this.imgFolhaEspelhada) {
+      this.imgFolhaEspelhada = GjME_CacheImagens.obterEspelhada(this.imgFolha, this.iLargura);
+      this.sprEspelhado = new Sprite(this.imgFolhaEspelhada, this.iLargura, this.iAltura);
+    }
+  }
+
+  /**
+   * Volta a usar Sprite.TRANS_MIRROR e libera a cópia espelhada da SpriteSheet.
+   */
+  public void desativarFolhaEspelhada() {
+    if (null != this.imgFolhaEspelhada) {
+      GjME_CacheImagens.liberarEspelhada(this.imgFolha, this.iLargura);
+      this.imgFolhaEspelhada = null;
+      this.sprEspelhado = null;
+    }
+  }
+
+  /**
+   * Retorna a SpriteSheet original do lote.
+   * @return SpriteSheet.
+   */
+  public Image retornaImagem() { return this.imgFolha; }
+
+  /**
+   * Retorna a cópia espelhada da SpriteSheet.
+   * @return SpriteSheet espelhada ou null se a cópia não estiver ativa.
+   * @see GjME_LoteNPC.ativarFolhaEspelhada()
+   */
+  public Image retornaImagemEspelhada() { return this.imgFolhaEspelhada; }
+
+  /**
+   * Retorna a largura dos frames.
+   * @return Largura em pixels.
+   */
+  public int retornaLarguraFrame() { return this.iLargura; }
+
+  /**
+   * Retorna a altura dos frames.
+   * @return Altura em pixels.
+   */
+  public int retornaAlturaFrame() { return this.iAltura; }
+
+  /**
+   * Retorna o retângulo que envolve os personagens na última atualização.
+   * @param iarDestino Array que recebe x1, y1, x2 e y2 (exclusivos).
+   */
+  public void retornaLimites(int[] iarDestino) {
+    System.arraycopy(this.iarLimites, 0, iarDestino, 0, 4);
+  }
+
+  /**
+   * Retorna o retângulo que envolvia os personagens no último desenho.
+   * @param iarDestino Array que recebe x1, y1, x2 e y2 (exclusivos).
+   */
+  public void retornaLimitesDesenhados(int[] iarDestino) {
+    System.arraycopy(this.iarLimitesDesenhados, 0, iarDestino, 0, 4);
+  }
+}
@@ -36,14 +36,18 @@
  */
 package br.com.upzone.gjme.personagem;
 
-import java.util.Hashtable;
-import java.util.Stack;
+import java.io.IOException;
 
 import javax.microedition.lcdui.Image;
 import javax.microedition.lcdui.game.Sprite;
 
+import br.com.upzone.gjme.GjME_CacheImagens;
 import br.com.upzone.gjme.GjME_Fisica;
+import br.com.upzone.gjme.GjME_IAtualizavel;
+import br.com.upzone.gjme.layer.GjME_TiledLayer;
 import br.com.upzone.gjme.personagem.acao.GjME_Acao;
+import br.com.upzone.gjme.personagem.acao.GjME_PilhaAcoes;
+import br.com.upzone.gjme.personagem.acao.GjME_TabelaAcoes;
 
 /**
  * Classe base para definição de personagens.
@@ -64,7 +68,7 @@ import br.com.upzone.gjme.personagem.acao.GjME_Acao;
  * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
  * @abstract
  */
-public abstract class GjME_Personagem extends Sprite {
+public abstract class GjME_Personagem extends Sprite implements GjME_IAtualizavel {
   
   /**
    * Indica a ação que o personagem assume assim que é criado.
@@ -80,13 +84,15 @@ public abstract class GjME_Personagem extends Sprite {
    *
    * As ações são identificados pelos valores de constantes iniciadas em ACAO_ que
    * definem identificadores para cada uma das ações criadas para o personagem.
+   * @see GjME_TabelaAcoes
    */
-  protected Hashtable hstAcoes = new Hashtable();
+  protected GjME_TabelaAcoes tblAcoes = new GjME_TabelaAcoes(8);
 
   /**
    * Indica que os frames do personagem devem ser refletidos ao mudar de direção.
    *
    * @see Personagem.setDirecaoPersonagem();
+   * @see GjME_Personagem.ativarFolhaEspelhada()
    */
   protected boolean bRefletirSprite = false;
 
@@ -111,6 +117,94 @@ public abstract class GjME_Personagem extends Sprite {
    */
   protected int iVelY = 0;
 
+  /**
+   * Tiled layer contra a qual o deslocamento do personagem é resolvido.
+   *
+   * Quando definida, o deslocamento de cada frame é limitado pelos tiles
+   * sólidos (e plataformas, ao descer) da layer, e a velocidade do eixo
+   * bloqueado é zerada. Quando nula, o personagem se desloca livremente.
+   * @see GjME_TiledLayer.definePropriedadesTile()
+   */
+  protected GjME_TiledLayer tlColisao = null;
+
+  // -- Física em ponto fixo ---------------------------------------------------
+  /**
+   * Indica que o personagem utiliza a física em ponto fixo.
+   *
+   * Neste modo, atualizarPersonagem() integra as propriedades terminadas em Fx
+   * (velocidade, aceleração, gravidade) com precisão menor que um pixel e
+   * escalada pelo passo de tempo, seguindo o mesmo modelo da física inteira:
+   * a gravidade é subtraída da velocidade Y apenas enquanto ela for diferente
+   * de zero (personagem no ar) e o atrito só atua no sentido da direção do
+   * personagem. iVelX e iVelY continuam valendo: após cada atualização recebem
+   * a parte inteira das velocidades, e um novo valor atribuído a eles entre
+   * duas atualizações substitui a velocidade em ponto fixo correspondente.
+   * @see GjME_Fisica.FX_BITS
+   */
+  protected boolean bFisicaFixa = false;
+  /**
+   * Velocidade no eixo X, em pixels por frame de referência (ponto fixo).
+   */
+  protected int iVelXFx = 0;
+  /**
+   * Velocidade no eixo Y, em pixels por frame de referência (ponto fixo).
+   */
+  protected int iVelYFx = 0;
+  /**
+   * Aceleração no eixo X (ponto fixo). Enquanto for zero, o atrito é aplicado.
+   */
+  protected int iAceleracaoXFx = 0;
+  /**
+   * Aceleração no eixo Y (ponto fixo), aplicada mesmo sem o personagem estar no ar.
+   */
+  protected int iAceleracaoYFx = 0;
+  /**
+   * Gravidade subtraída da velocidade Y enquanto o personagem está no ar
+   * (ponto fixo); zero desativa.
+   */
+  protected int iGravidadeFx = GjME_Fisica.GRAVIDADE_FX;
+  /**
+   * Desaceleração aplicada no eixo X sem aceleração (ponto fixo).
+   */
+  protected int iAtritoFx = GjME_Fisica.ATRITO_FX;
+  /**
+   * Velocidade máxima, em módulo, no eixo X (ponto fixo). Sem limite por padrão,
+   * como na física inteira.
+   */
+  protected int iVelMaximaXFx = Integer.MAX_VALUE;
+  /**
+   * Velocidade máxima, em módulo, no eixo Y (ponto fixo). Sem limite por padrão.
+   */
+  protected int iVelMaximaYFx = Integer.MAX_VALUE;
+  /**
+   * Fração de pixel acumulada no eixo X (ponto fixo, entre 0 e 1).
+   */
+  private int iRestoXFx = 0;
+  /**
+   * Fração de pixel acumulada no eixo Y (ponto fixo, entre 0 e 1).
+   */
+  private int iRestoYFx = 0;
+  /**
+   * Duração do frame atual em relação ao frame de referência (ponto fixo).
+   * @see GjME_Fisica.passoTempoFx()
+   */
+  private int iPassoTempoFx = GjME_Fisica.FX_UM;
+  /**
+   * Valores de iVelX e iVelY publicados pela última integração em ponto fixo,
+   * usados para detectar atribuições feitas fora dela.
+   */
+  private int iVelXPublicada = 0, iVelYPublicada = 0;
+
+  /**
+   * A cada quantas atualizações o frame da animação é trocado.
+   * @see GjME_Personagem.defineCadenciaAnimacao()
+   */
+  private int iCadenciaAnimacao = 1;
+  /**
+   * Atualizações desde a última troca de frame.
+   */
+  private int iAtualizacoesAnimacao = 0;
+
   /**
    * Pilha de ações para execução.
    *
@@ -119,8 +213,69 @@ public abstract class GjME_Personagem extends Sprite {
    * da pilha. O esquema de pré e pós ações será implementado com a ajuda desta
    * pilha, onde pré-ações são empilhadas após a ação atual e pós estados são
    * empilhados antes da ação atual.
+   * @see GjME_PilhaAcoes
+   */
+  protected GjME_PilhaAcoes stkAcoes = new GjME_PilhaAcoes(16);
+
+  /**
+   * IDs das ações sendo empilhadas em cada nível de empilharAcao(), usados
+   * para descrever ciclos de pré e pós ações.
+   */
+  private int[] iarCadeiaAcoes = new int[16];
+
+  /**
+   * Contador de alterações visuais que não mudam a posição do personagem.
+   *
+   * É incrementado sempre que a seqüência de frames ou a transformação do
+   * sprite é trocada, permitindo que a tela detecte que o personagem precisa
+   * ser redesenhado mesmo parado no mesmo lugar.
+   * @see GjME_Tela.desenhar()
+   */
+  private int iAlteracoesVisuais = 0;
+
+  /**
+   * Caminho da sprite sheet obtida de GjME_CacheImagens ou null se a imagem
+   * foi informada diretamente.
+   * @see GjME_Personagem.liberarImagem()
    */
-  protected Stack stkAcoes = new Stack();
+  private String sCaminhoImagem = null;
+
+  // -- Estado visual para captura de cenas ------------------------------------
+  // -- Sprite não expõe a imagem, a seqüência nem a transformação. Os atributos
+  // -- não têm inicializador porque são atualizados por métodos sobrescritos.
+  /**
+   * Sprite sheet atual do personagem.
+   * @see GjME_Cena
+   */
+  private Image imgFolha;
+  /**
+   * Largura dos frames da sprite sheet.
+   */
+  private int iLarguraFrame;
+  /**
+   * Altura dos frames da sprite sheet.
+   */
+  private int iAlturaFrame;
+  /**
+   * Seqüência de frames atual; null indica a seqüência padrão.
+   */
+  private int[] iarSequenciaAtual;
+  /**
+   * Transformação atual do sprite.
+   */
+  private int iTransformacao;
+
+  // -- Sprite sheet espelhada -------------------------------------------------
+  /**
+   * Sprite sheet com os frames voltados para a direita; null se a sprite sheet
+   * espelhada não estiver ativa.
+   * @see GjME_Personagem.ativarFolhaEspelhada()
+   */
+  private Image imgFolhaDireita = null;
+  /**
+   * Sprite sheet com os frames espelhados, obtida de GjME_CacheImagens.
+   */
+  private Image imgFolhaEsquerda = null;
 
   /**
    * Empilha as ações que o personagem deve realizar em ordem de execução.
@@ -134,30 +289,48 @@ public abstract class GjME_Personagem extends Sprite {
    * empilhadas, ou podem exigir que açoes anteriores sejam continuadas do ponto em
    * que foram interrompidas. Pensar em como resolver estes impasses e se eles são
    * mesmo necessários ou existem.
+   * @throws IllegalStateException Se as pré e pós ações formarem um ciclo ou
+   * uma cadeia mais profunda que a capacidade da pilha.
+   */
+  public void empilharAcao(int IDAcao) { this.empilharAcao(IDAcao, 0); }
+
+  /**
+   * Empilha uma ação e suas pré e pós ações, limitando a profundidade da cadeia.
+   *
+   * Uma pós ação é empilhada antes da própria ação, então um ciclo de pós
+   * ações nunca chegaria a encher a pilha; a profundidade é limitada à
+   * capacidade da pilha.
    */
-  public void empilharAcao(int IDAcao) { System.out.println(IDAcao);
+  private void empilharAcao(int IDAcao, int iProfundidade) {
+    int iLimite = this.stkAcoes.capacidade();
+    if (iProfundidade >= iLimite) {
+      StringBuffer sb = new StringBuffer("Ciclo de pré e pós ações: ");
+      for (int i = 0; i < iLimite; i++) { sb.append(this.iarCadeiaAcoes[i]).append(" -> "); }
+      throw new IllegalStateException(sb.append(IDAcao).toString());
+    }
+    if (this.iarCadeiaAcoes.length < iLimite) { this.iarCadeiaAcoes = new int[iLimite]; }
+    this.iarCadeiaAcoes[iProfundidade] = IDAcao;
     boolean bEmpilhar = false;
-    if (this.stkAcoes.empty()) { bEmpilhar = true;
+    if (this.stkAcoes.vazia()) { bEmpilhar = true;
     } else {
-      GjME_Acao acaoAtual = (GjME_Acao)this.stkAcoes.peek();
-      if (acaoAtual.retornaIDAcao() != IDAcao) {
+      if (this.stkAcoes.idTopo() != IDAcao) {
         bEmpilhar = true;
         // -- Reinicia a ação anterior para que ela possa ser iniciada posteriormente sem problemas
-        acaoAtual.defineEstadoExecucao(GjME_Acao.ACAO_NAO_INICIADA);
-      } else if (acaoAtual.acaoFinalizada()) {
-        acaoAtual.defineEstadoExecucao(GjME_Acao.ACAO_EM_EXECUCAO);
+        this.stkAcoes.defineEstadoTopo(GjME_Acao.ACAO_NAO_INICIADA);
+      } else if (GjME_Acao.ACAO_FINALIZADA == this.stkAcoes.estadoTopo()) {
+        this.stkAcoes.defineEstadoTopo(GjME_Acao.ACAO_EM_EXECUCAO);
       }
     }
 
     if (bEmpilhar) {
       // -- Adicionando as novas ações
-      GjME_Acao acao = (GjME_Acao)this.hstAcoes.get(new Integer(IDAcao));
+      GjME_Acao acao = this.tblAcoes.retornar(IDAcao);
       // -- Empilhando pós ação
-      if (acao.temPosAcao()) { this.empilharAcao(acao.retornaIDPosAcao()); }
+      if (acao.temPosAcao()) { this.empilharAcao(acao.retornaIDPosAcao(), iProfundidade + 1); }
       // -- Empilhando esta ação
-      this.stkAcoes.push(acao);
+      this.stkAcoes.empilhar(IDAcao, acao);
       // -- Empilhando pré ação
-      if (acao.temPreAcao()) { this.empilharAcao(acao.retornaIDPreAcao()); }
+      if (acao.temPreAcao()) { this.empilharAcao(acao.retornaIDPreAcao(), iProfundidade + 1); }
     }
   }
 
@@ -166,15 +339,29 @@ public abstract class GjME_Personagem extends Sprite {
    *
    * Cada uma das novas ações é identificada por uma constante definda em
    * GjME_Personagem ou em suas descendentes. É recomendado que estas constantes
-   * tem seu nome iniciado por ACAO_.
+   * tem seu nome iniciado por ACAO_. A ação não é alterada, então a mesma
+   * instância pode ser cadastrada com outros IDs em outros personagens.
    *
    * @param iID Valor de identificação da ação. Ex: Personagem.ACAO_PARAR;
    * @param acao Nova ação do personagem;
    * @see GjME_Acao;
    */
   protected void adicionarAcao(int iID, GjME_Acao acao) {
-    acao.defineIDAcao(iID);
-    this.hstAcoes.put(new Integer(iID), acao);
+    this.tblAcoes.adicionar(iID, acao);
+  }
+
+  /**
+   * Passa a utilizar uma tabela de ações compartilhada com outros personagens.
+   *
+   * As ações não guardam estado de execução, então personagens de um mesmo
+   * tipo podem utilizar a mesma tabela (preenchida uma única vez, por exemplo
+   * em um atributo estático da subclasse) em vez de criar cópias de todas as
+   * ações e de seus arrays de frames. Deve ser chamado antes de empilhar ações.
+   * @param tbl Tabela de ações compartilhada.
+   * @see GjME_TabelaAcoes
+   */
+  protected void compartilharAcoes(GjME_TabelaAcoes tbl) {
+    this.tblAcoes = tbl;
   }
 
   /**
@@ -193,7 +380,12 @@ public abstract class GjME_Personagem extends Sprite {
    * @see javax.microedition.lcdui.game.Sprite.setTransform();
    */
   public void direcaoPersonagem(int iNovaDirecao) {
-    if (this.bRefletirSprite && iNovaDirecao == GjME_Fisica.DIREITA) {
+    if (this.bRefletirSprite && (null != this.imgFolhaEsquerda)) {
+      // -- Troca de sprite sheet: o frame atual e a seqüência são mantidos
+      Image img = (GjME_Fisica.ESQUERDA == iNovaDirecao) ? this.imgFolhaEsquerda
+                                                          : this.imgFolhaDireita;
+      if (img != this.imgFolha) { this.trocarFolha(img); }
+    } else if (this.bRefletirSprite && iNovaDirecao == GjME_Fisica.DIREITA) {
       this.setTransform(Sprite.TRANS_NONE);
     } else if (this.bRefletirSprite && iNovaDirecao == GjME_Fisica.ESQUERDA) {
       this.setTransform(Sprite.TRANS_MIRROR);
@@ -218,10 +410,50 @@ public abstract class GjME_Personagem extends Sprite {
   public GjME_Personagem(Image imgSS, int iWidth, int iHeight,
           int iX, int iY, int iTelaLargura, int iTelaAltura) {
     super(imgSS, iWidth, iHeight);
+    this.imgFolha = imgSS;
+    this.iLarguraFrame = iWidth;
+    this.iAlturaFrame = iHeight;
     this.defineReferencePixel(iWidth / 2, iHeight / 2);
     this.setPosition(iX, iY);
   }
 
+  /**
+   * Cria um novo personagem com a sprite sheet obtida de GjME_CacheImagens.
+   *
+   * Personagens que utilizam o mesmo caminho compartilham a mesma imagem, que
+   * só é decodificada uma vez. A imagem deve ser liberada com liberarImagem()
+   * quando o personagem não for mais utilizado.
+   *
+   * @param sCaminhoSS Caminho da sprite sheet no JAR;
+   * @param iWidth Largura dos frames em pixels;
+   * @param iHeight Altura dos frames em pixels;
+   * @param iX Coordenada X para posicionamento do personagem;
+   * @param iY Coordenada Y para posicionamento do personagme;
+   * @param iTelaLargura Largura da tela para cálculos de deslocamento do personagem;
+   * @param iTelaAltura Altura da tela para cálculos de deslocamento do personagem;
+   * @throws IOException Se a sprite sheet não puder ser lida.
+   * @see GjME_CacheImagens
+   */
+  public GjME_Personagem(String sCaminhoSS, int iWidth, int iHeight,
+          int iX, int iY, int iTelaLargura, int iTelaAltura) throws IOException {
+    this(GjME_CacheImagens.obter(sCaminhoSS), iWidth, iHeight, iX, iY, iTelaLargura, iTelaAltura);
+    this.sCaminhoImagem = sCaminhoSS;
+  }
+
+  /**
+   * Libera a referência à sprite sheet obtida de GjME_CacheImagens.
+   *
+   * Não faz nada se a imagem foi informada diretamente ou se já foi liberada.
+   * @see GjME_CacheImagens.liberar()
+   */
+  public void liberarImagem() {
+    this.desativarFolhaEspelhada();
+    if (null != this.sCaminhoImagem) {
+      GjME_CacheImagens.liberar(this.sCaminhoImagem);
+      this.sCaminhoImagem = null;
+    }
+  }
+
   /**
    * Troca de seqüência de frames do Sprite.
    *
@@ -235,9 +467,134 @@ public abstract class GjME_Personagem extends Sprite {
    */
   public void setFrameSequence(int[] iaFrames) {
     super.setFrameSequence(iaFrames);
+    this.iarSequenciaAtual = iaFrames;
+    this.iAlteracoesVisuais++;
     //this.bSequenciaFramesTrocada = true;
   }
   
+  /**
+   * Troca a transformação aplicada aos frames do sprite.
+   *
+   * @see GjME_Personagem.iAlteracoesVisuais;
+   * @see javax.microedition.lcdui.game.Sprite.setTransform();
+   */
+  public void setTransform(int iTransformacao) {
+    super.setTransform(iTransformacao);
+    this.iTransformacao = iTransformacao;
+    this.iAlteracoesVisuais++;
+  }
+
+  /**
+   * Troca a sprite sheet do personagem.
+   *
+   * @see javax.microedition.lcdui.game.Sprite.setImage();
+   */
+  public void setImage(Image img, int iLargura, int iAltura) {
+    // -- Uma nova sprite sheet ou outra largura de frame substitui o par original/espelhada
+    if ((null != this.imgFolhaEsquerda)
+        && ((iLargura != this.iLarguraFrame)
+            || ((img != this.imgFolhaDireita) && (img != this.imgFolhaEsquerda)))) {
+      GjME_CacheImagens.liberarEspelhada(this.imgFolhaDireita, this.iLarguraFrame);
+      this.imgFolhaDireita = null;
+      this.imgFolhaEsquerda = null;
+    }
+    int iQtdFramesAnterior = this.getRawFrameCount();
+    super.setImage(img, iLargura, iAltura);
+    this.imgFolha = img;
+    this.iLarguraFrame = iLargura;
+    this.iAlturaFrame = iAltura;
+    // -- Com menos frames, Sprite volta à seqüência padrão
+    if (this.getRawFrameCount() < iQtdFramesAnterior) { this.iarSequenciaAtual = null; }
+    this.iAlteracoesVisuais++;
+  }
+
+  /**
+   * Passa a refletir o personagem trocando de sprite sheet em vez de usar
+   * Sprite.TRANS_MIRROR.
+   *
+   * Uma cópia da sprite sheet com cada frame espelhado é criada uma única vez
+   * e compartilhada, via GjME_CacheImagens, por todos os personagens que usam
+   * a mesma imagem. Ao virar para a esquerda o personagem passa a usar a
+   * cópia, de modo que todos os desenhos são feitos sem transformação e o
+   * pixel de referência não se desloca. Só tem efeito com bRefletirSprite.
+   * A cópia deve ser liberada com desativarFolhaEspelhada() ou liberarImagem().
+   * @see GjME_CacheImagens.obterEspelhada()
+   */
+  public void ativarFolhaEspelhada() {
+    if (null != this.imgFolhaEsquerda) { return; }
+    this.imgFolhaDireita = this.imgFolha;
+    this.imgFolhaEsquerda = GjME_CacheImagens.obterEspelhada(this.imgFolha, this.iLarguraFrame);
+    if (Sprite.TRANS_MIRROR == this.iTransformacao) {
+      this.setTransform(Sprite.TRANS_NONE);
+      this.trocarFolha(this.imgFolhaEsquerda);
+    }
+  }
+
+  /**
+   * Volta a refletir o personagem com Sprite.TRANS_MIRROR e libera a cópia
+   * espelhada da sprite sheet.
+   * @see GjME_Personagem.ativarFolhaEspelhada()
+   */
+  public void desativarFolhaEspelhada() {
+    if (null == this.imgFolhaEsquerda) { return; }
+    Image imgDireita = this.imgFolhaDireita;
+    boolean bEspelhado = (this.imgFolha == this.imgFolhaEsquerda);
+    GjME_CacheImagens.liberarEspelhada(imgDireita, this.iLarguraFrame);
+    this.imgFolhaDireita = null;
+    this.imgFolhaEsquerda = null;
+    if (bEspelhado) {
+      this.trocarFolha(imgDireita);
+      this.setTransform(Sprite.TRANS_MIRROR);
+    }
+  }
+
+  /**
+   * Troca a sprite sheet mantendo o tamanho dos frames.
+   */
+  private void trocarFolha(Image img) {
+    this.setImage(img, this.iLarguraFrame, this.iAlturaFrame);
+  }
+
+  /**
+   * Retorna a sprite sheet atual do personagem.
+   * @return Sprite sheet.
+   */
+  public Image retornaImagem() { return this.imgFolha; }
+
+  /**
+   * Retorna a largura dos frames da sprite sheet.
+   * @return Largura em pixels.
+   */
+  public int retornaLarguraFrame() { return this.iLarguraFrame; }
+
+  /**
+   * Retorna a altura dos frames da sprite sheet.
+   * @return Altura em pixels.
+   */
+  public int retornaAlturaFrame() { return this.iAlturaFrame; }
+
+  /**
+   * Retorna o índice, na sprite sheet, do frame exibido.
+   * @return Índice do frame na sprite sheet.
+   */
+  public int retornaFrameBruto() {
+    int[] iarSequencia = this.iarSequenciaAtual;
+    return (null == iarSequencia) ? this.getFrame() : iarSequencia[this.getFrame()];
+  }
+
+  /**
+   * Retorna a transformação atual do sprite.
+   * @return Uma das constantes TRANS_ de Sprite.
+   */
+  public int retornaTransformacao() { return this.iTransformacao; }
+
+  /**
+   * Retorna o contador de alterações visuais do personagem.
+   * @return Contador de alterações visuais.
+   * @see GjME_Personagem.iAlteracoesVisuais;
+   */
+  public int retornaAlteracoesVisuais() { return this.iAlteracoesVisuais; }
+
   /**
    * Troca o frame atual do sprite pelo próximo na seqüência e, se necessário, desempilha ações.
    *
@@ -249,50 +606,212 @@ public abstract class GjME_Personagem extends Sprite {
    * @see javax.microedition.lcdui.game.Sprite.setFrameSequence();
    */
   public final void nextFrame() {
-    GjME_Acao acao = (GjME_Acao)this.stkAcoes.peek();
-    if (acao.acaoIniciada()) { // -- Manutenção de ações em execução
-      // -- Se a ação não for do tipo contínua, não está finalizada e atingiu o
-      // -- o último frame da animação, o estado é finalizado e o frame não é
-      // -- atualizado.
-      if (!acao.animacaoContinua() && !acao.acaoFinalizada()
+    GjME_Acao acao = this.stkAcoes.topo();
+    // -- Ações finalizadas são removidas em laço (e não por recursão) até
+    // -- encontrar uma ação que ainda deva ser animada.
+    while ((null != acao) && (GjME_Acao.ACAO_FINALIZADA == this.stkAcoes.estadoTopo())) {
+      // -- Se a ação foi finalizada, remova-a da pilha. O estado de execução
+      // -- fica na pilha, então a ação pode ser reutilizada sem ajustes.
+      this.stkAcoes.desempilhar();
+      acao = this.stkAcoes.topo();
+    }
+    if (null == acao) { return; }
+
+    if (GjME_Acao.ACAO_NAO_INICIADA != this.stkAcoes.estadoTopo()) { // -- Manutenção de ações em execução
+      // -- Se a ação não for do tipo contínua e atingiu o último frame da
+      // -- animação, o estado é finalizado e o frame não é atualizado.
+      if (!acao.animacaoContinua()
           && (this.getFrame() == acao.retornaFrames().length - 1)) {
-        acao.defineEstadoExecucao(GjME_Acao.ACAO_FINALIZADA);
+        this.stkAcoes.defineEstadoTopo(GjME_Acao.ACAO_FINALIZADA);
         return;
-      } else if (acao.acaoFinalizada()) {
-        // -- Se a ação foi finalizada, remova-a da pilha e atualize seu estado
-        // -- para não iniciada permitindo que ela seja reutilizada posteriormente
-        // -- sem problemas.
-        acao = (GjME_Acao)this.stkAcoes.pop();
-        acao.defineEstadoExecucao(GjME_Acao.ACAO_NAO_INICIADA);
-        this.nextFrame();
       }
     } else {
       // -- Iniciando a execução de uma ação
-      acao.defineEstadoExecucao(GjME_Acao.ACAO_EM_EXECUCAO);
+      this.stkAcoes.defineEstadoTopo(GjME_Acao.ACAO_EM_EXECUCAO);
       this.setFrameSequence(acao.retornaFrames());
       this.setFrame(0);
     }
     super.nextFrame();
   }
 
+  /**
+   * Atualiza o personagem a cada frame do game.
+   * @see GjME_Personagem.atualizarPersonagem()
+   */
+  public final void atualizar() { this.atualizarPersonagem(); }
+
+  /**
+   * Atualiza o personagem avançando, de uma só vez, o tempo de várias atualizações.
+   *
+   * Usado pela tela quando atualizações de um personagem distante são puladas
+   * sob carga: o passo de tempo é multiplicado, de modo que o deslocamento
+   * acumulado é o mesmo. A animação avança um único frame. Só é exato na
+   * física em ponto fixo; na física inteira equivale a uma atualização.
+   * @param iPassos Quantidade de atualizações representadas.
+   * @see GjME_Personagem.usaFisicaFixa()
+   */
+  public final void atualizarPersonagem(int iPassos) {
+    int iPasso = this.iPassoTempoFx;
+    this.iPassoTempoFx = iPasso * iPassos;
+    this.atualizarPersonagem();
+    this.iPassoTempoFx = iPasso;
+  }
+
+  /**
+   * Indica se o personagem utiliza a física em ponto fixo.
+   * @return Valor de bFisicaFixa.
+   * @see GjME_Personagem.bFisicaFixa
+   */
+  public boolean usaFisicaFixa() { return this.bFisicaFixa; }
+
   public final void atualizarPersonagem() {
-    this.nextFrame();
+    if (++this.iAtualizacoesAnimacao >= this.iCadenciaAnimacao) {
+      this.iAtualizacoesAnimacao = 0;
+      this.nextFrame();
+    }
+    if (this.bFisicaFixa) {
+      this.integrarFisicaFixa();
+      return;
+    }
     if (GjME_Fisica.DIREITA == this.direcaoPersonagem) {
       if (this.iVelX > 0) { this.iVelX = Math.max(0, this.iVelX - GjME_Fisica.ATRITO); }
     } else if (GjME_Fisica.ESQUERDA == this.direcaoPersonagem) {
       if (this.iVelX < 0) { this.iVelX = Math.min(0, this.iVelX + GjME_Fisica.ATRITO); }
     }
     if (this.iVelY != 0) { this.iVelY = this.iVelY - GjME_Fisica.GRAVIDADE; }
-    this.setPosition(this.getX() + this.iVelX, this.getY() + this.iVelY);
+    int iDx = this.iVelX,
+        iDy = this.iVelY;
+    if (null != this.tlColisao) {
+      // -- Resolve um eixo de cada vez contra o mapa de propriedades da layer
+      iDx = this.tlColisao.resolverDeslocamentoX(this.getX(), this.getY(),
+              this.getWidth(), this.getHeight(), iDx);
+      if (iDx != this.iVelX) { this.iVelX = 0; }
+      iDy = this.tlColisao.resolverDeslocamentoY(this.getX() + iDx, this.getY(),
+              this.getWidth(), this.getHeight(), iDy);
+      if (iDy != this.iVelY) { this.iVelY = 0; }
+    }
+    this.setPosition(this.getX() + iDx, this.getY() + iDy);
+  }
+
+  /**
+   * Integra velocidade e posição do personagem em ponto fixo.
+   *
+   * A velocidade é atualizada antes da posição (Euler semi-implícito). As
+   * frações de pixel são acumuladas entre frames, de modo que velocidades
+   * pequenas ainda produzem deslocamento. Sinal da gravidade, condição de
+   * personagem no ar e atrito são os mesmos da física inteira.
+   */
+  private void integrarFisicaFixa() {
+    int iPasso = this.iPassoTempoFx;
+    // -- Atribuições a iVelX/iVelY desde a última integração prevalecem
+    if (this.iVelX != this.iVelXPublicada) {
+      this.iVelXFx = GjME_Fisica.paraFx(this.iVelX);
+      this.iRestoXFx = 0;
+    }
+    if (this.iVelY != this.iVelYPublicada) {
+      this.iVelYFx = GjME_Fisica.paraFx(this.iVelY);
+      this.iRestoYFx = 0;
+    }
+    // -- Velocidade
+    this.iVelXFx += GjME_Fisica.multiplicarFx(this.iAceleracaoXFx, iPasso);
+    if (0 == this.iAceleracaoXFx) {
+      int iAtrito = GjME_Fisica.multiplicarFx(this.iAtritoFx, iPasso);
+      if (GjME_Fisica.DIREITA == this.direcaoPersonagem) {
+        if (this.iVelXFx > 0) { this.iVelXFx = Math.max(0, this.iVelXFx - iAtrito); }
+      } else if (GjME_Fisica.ESQUERDA == this.direcaoPersonagem) {
+        if (this.iVelXFx < 0) { this.iVelXFx = Math.min(0, this.iVelXFx + iAtrito); }
+      }
+    }
+    if (0 != this.iVelYFx) {
+      this.iVelYFx -= GjME_Fisica.multiplicarFx(this.iGravidadeFx, iPasso);
+    }
+    this.iVelYFx += GjME_Fisica.multiplicarFx(this.iAceleracaoYFx, iPasso);
+    this.iVelXFx = Math.max(-this.iVelMaximaXFx, Math.min(this.iVelXFx, this.iVelMaximaXFx));
+    this.iVelYFx = Math.max(-this.iVelMaximaYFx, Math.min(this.iVelYFx, this.iVelMaximaYFx));
+
+    // -- Posição: a parte inteira desloca o sprite, a fração fica acumulada
+    int iTotalX = this.iRestoXFx + GjME_Fisica.multiplicarFx(this.iVelXFx, iPasso),
+        iTotalY = this.iRestoYFx + GjME_Fisica.multiplicarFx(this.iVelYFx, iPasso),
+        iDx = GjME_Fisica.deFx(iTotalX),
+        iDy = GjME_Fisica.deFx(iTotalY);
+    this.iRestoXFx = iTotalX - GjME_Fisica.paraFx(iDx);
+    this.iRestoYFx = iTotalY - GjME_Fisica.paraFx(iDy);
+
+    if (null != this.tlColisao) {
+      int iPermitido = this.tlColisao.resolverDeslocamentoX(this.getX(), this.getY(),
+              this.getWidth(), this.getHeight(), iDx);
+      if (iPermitido != iDx) {
+        this.iVelXFx = 0;
+        this.iRestoXFx = 0;
+        iDx = iPermitido;
+      }
+      iPermitido = this.tlColisao.resolverDeslocamentoY(this.getX() + iDx, this.getY(),
+              this.getWidth(), this.getHeight(), iDy);
+      if (iPermitido != iDy) {
+        this.iVelYFx = 0;
+        this.iRestoYFx = 0;
+        iDy = iPermitido;
+      }
+    }
+    this.iVelX = this.iVelXPublicada = GjME_Fisica.deFx(this.iVelXFx);
+    this.iVelY = this.iVelYPublicada = GjME_Fisica.deFx(this.iVelYFx);
+    this.setPosition(this.getX() + iDx, this.getY() + iDy);
   }
 
+  /**
+   * Define a duração do frame em relação ao frame de referência da física.
+   *
+   * Chamado pela tela com base na duração dos seus frames.
+   * @param iPassoTempoFx Passo de tempo em ponto fixo.
+   * @see GjME_Fisica.passoTempoFx()
+   */
+  public void definePassoTempo(int iPassoTempoFx) { this.iPassoTempoFx = iPassoTempoFx; }
+
+  /**
+   * Define a cada quantas atualizações o frame da animação é trocado.
+   *
+   * Usado pela tela para reduzir o trabalho sob carga; o movimento continua
+   * sendo atualizado a cada frame, mas as ações duram proporcionalmente mais.
+   * @param iCadencia Quantidade de atualizações, 1 para a cadência normal.
+   * @see br.com.upzone.gjme.tela.GjME_GovernadorCarga.OPCIONAL_ANIMACAO
+   */
+  public void defineCadenciaAnimacao(int iCadencia) { this.iCadenciaAnimacao = Math.max(1, iCadencia); }
+
+  /**
+   * Define a tiled layer contra a qual o deslocamento do personagem é resolvido.
+   * @param tl Tiled layer com as propriedades dos tiles, ou null para desativar.
+   * @see GjME_Personagem.tlColisao
+   */
+  public void defineMapaColisao(GjME_TiledLayer tl) { this.tlColisao = tl; }
+
   /**
    * Desempilha as ações da pilha de ações até chegar a GjME_Personagem.ACAO_AGUARDAR.
    */
   public final void desempilharAcoes() {
-    while (GjME_Personagem.ACAO_AGUARDAR != ((GjME_Acao)this.stkAcoes.peek()).retornaIDAcao()) {
-      GjME_Acao acao = (GjME_Acao)this.stkAcoes.pop();
-      acao.defineEstadoExecucao(GjME_Acao.ACAO_NAO_INICIADA);
+    while (!this.stkAcoes.vazia()
+            && (GjME_Personagem.ACAO_AGUARDAR != this.stkAcoes.idTopo())) {
+      this.stkAcoes.desempilhar();
+    }
+  }
+
+  /**
+   * Prepara o personagem para ser reutilizado, sem criar novos objetos.
+   *
+   * Esvazia a pilha de ações e zera as velocidades. As ações cadastradas são
+   * mantidas.
+   * @see br.com.upzone.gjme.tela.GjME_PoolPersonagens
+   */
+  public void reiniciar() {
+    while (!this.stkAcoes.vazia()) {
+      this.stkAcoes.desempilhar();
     }
+    this.iVelX = 0;
+    this.iVelY = 0;
+    this.iVelXFx = 0;
+    this.iVelYFx = 0;
+    this.iAceleracaoXFx = 0;
+    this.iAceleracaoYFx = 0;
+    this.iRestoXFx = 0;
+    this.iRestoYFx = 0;
   }
 }
\ No newline at end of file
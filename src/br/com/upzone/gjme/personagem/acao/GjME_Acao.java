@@ -66,6 +66,17 @@ import br.com.upzone.gjme.personagem.GjME_Personagem;
  * Geralmente, quando uma ação for avaliada como finalizada, serão executadas as
  * rotinas de finalização (como execução de outra ação) e ação será definida
  * com parada para poder ser executada novamente em outra ocasião.
+ *
+ * Uma ação é apenas a definição (frames, tipo de animação, pré e pós ações),
+ * informada na construção e imutável depois dela. O estado de execução e o
+ * ID com que a ação foi cadastrada ficam na pilha e na tabela de ações de cada
+ * personagem, então a mesma instância pode ser compartilhada por todos os
+ * personagens de um mesmo tipo e cadastrada com IDs diferentes em tabelas
+ * diferentes. O array de frames também é compartilhado e não deve ser
+ * alterado. Subclasses não devem guardar dados de um personagem específico em
+ * seus atributos.
+ * @see GjME_PilhaAcoes
+ * @see GjME_TabelaAcoes
  * @abstract
  */
 public abstract class GjME_Acao {
@@ -100,114 +111,39 @@ public abstract class GjME_Acao {
    * @see GjME_Acao.ANIMACAO_CONTINUA
    * @see GjME_Acao.ANIMACAO_NAO_CONTINUA
    */
-  protected boolean tipoAnimacao = GjME_Acao.ANIMACAO_CONTINUA;
-
-  /**
-   * Indica o estado de execução da ação.
-   * @see GjME_Acao.ACAO_NAO_INICIADA
-   * @see GjME_Acao.ACAO_EM_EXECUCAO
-   * @see GjME_Acao.ACAO_FINALIZADA
-   */
-  protected int estadoExecucao = GjME_Acao.ACAO_NAO_INICIADA;
+  protected final boolean tipoAnimacao;
 
   /**
    * Seqüência de frames da animação correspondente a esta ação.
    */
-  protected int[] iarFrames;
+  protected final int[] iarFrames;
 
-  /**
-   * ID desta ação.
-   */
-  protected int IDAcao;
   /**
    * ID da ação que deve ser executada antes desta ação.
    *
    * Exemplo de pré-ação:
    *   Abaixar para impulcionar um pulo.
    */
-  protected int IDPreAcao = GjME_Personagem.ACAO_INVALIDA;
+  protected final int IDPreAcao;
   /**
    * ID da ação que deve ser executada após a execução desta ação.
    * Exemplo de pós-acao:
    *   Agachar para amortecer o fim de um pulo.
    */
-  protected int IDPosAcao = GjME_Personagem.ACAO_INVALIDA;
+  protected final int IDPosAcao;
 
   // -- Métodos de acesso ------------------------------------------------------
-  /**
-   * Define o tipo de animação da ação.
-   * @param bTipoAnimação Valores válidos: GjME_Acao.ANIMACAO_CONTINUA e GjME_Acao.ANIMACAO_NAO_CONTINUA
-   * @return Referência para a instância de GjME_Acao.
-   */
-  public GjME_Acao defineTipoAnimacao(boolean bTipoAnimacao) {
-    this.tipoAnimacao = bTipoAnimacao;
-    return this;
-  }
-
-  /**
-   * Define o estado de execução da ação de fora da classe.
-   * @param iEstadoExecucao Valores válidos: GjME_Acao.ACAO_NAO_INICIADA, GjME_Acao.ACAO_EM_EXECUCAO e GjME_Acao.ACAO_FINALIZADA.
-   */
-  public GjME_Acao defineEstadoExecucao(int iEstadoExecucao) {
-    this.estadoExecucao = iEstadoExecucao;
-    return this;
-  }
-
   /**
    * Indica se a animação da ação é continua ou se congela no final da lista de frames.
    * @return Verdadeiro ou falso.
    */
   public boolean animacaoContinua() { return this.tipoAnimacao; }
 
-  /**
-   * Indica se a execução da ação já foi finalizada.
-   * @return Verdadeiro ou falso.
-   */
-  public boolean acaoFinalizada() {
-    return (GjME_Acao.ACAO_FINALIZADA == this.estadoExecucao);
-  }
-
-  /**
-   * Indica se a execução da ação já foi iniciada.
-   * @return Verdadeiro ou falso.
-   */
-  public boolean acaoIniciada() {
-    return (GjME_Acao.ACAO_NAO_INICIADA != this.estadoExecucao);
-  }
-
-  /**
-   * Define o ID de identificação da ação.
-   * @param ID ID de identificação.
-   */
-  public void defineIDAcao(int ID) { this.IDAcao = ID; }
-  /**
-   * Retorna o ID da ação.
-   * @return ID da ação.
-   */
-  public int retornaIDAcao() { return this.IDAcao; }
-  /**
-   * Define uma pré-ação para ser executada antes desta ação.
-   * @param IDAcao O identificador da ação que será utilizada como pré-ação.
-   * @return Referência para esta ação.
-   */
-  public GjME_Acao definePreAcao(int IDAcao) {
-    this.IDPreAcao = IDAcao;
-    return this;
-  }
   /**
    * Retorna o ID da pré-ação.
    * @return ID pré-ação.
    */
   public int retornaIDPreAcao() { return this.IDPreAcao; }
-  /**
-   * Define uma pós-ação para ser executada após esta ação.
-   * @param IDAcao O identificador da ação que será utilizada como pós-ação.
-   * @return Referência para esta ação.
-   */
-  public GjME_Acao definePosAcao(int IDAcao) {
-    this.IDPosAcao = IDAcao;
-    return this;
-  }
   /**
    * Retorna o ID da pós-ação.
    * @return ID pós-ação.
@@ -236,21 +172,59 @@ public abstract class GjME_Acao {
 
   // -- Construtores -----------------------------------------------------------
   /**
-   * Cria uma nova ação com uma seqüência de frames pré-determinada.
+   * Cria uma nova ação contínua, sem pré e pós ações, com uma seqüência de
+   * frames pré-determinada.
    * @param  iarFrames Seqüência pré-determinada de frames para a animação.
    */
-  protected GjME_Acao(int[] iarFrames) { this.iarFrames = iarFrames; }
+  protected GjME_Acao(int[] iarFrames) {
+    this(iarFrames, GjME_Acao.ANIMACAO_CONTINUA, GjME_Personagem.ACAO_INVALIDA,
+            GjME_Personagem.ACAO_INVALIDA);
+  }
   /**
-   * Cria uma nova ação com um intervalo de frames.
+   * Cria uma nova ação com uma seqüência de frames pré-determinada.
+   * @param iarFrames Seqüência pré-determinada de frames para a animação;
+   * @param bTipoAnimacao GjME_Acao.ANIMACAO_CONTINUA ou GjME_Acao.ANIMACAO_NAO_CONTINUA;
+   * @param IDPreAcao ID da pré-ação ou GjME_Personagem.ACAO_INVALIDA;
+   * @param IDPosAcao ID da pós-ação ou GjME_Personagem.ACAO_INVALIDA.
+   */
+  protected GjME_Acao(int[] iarFrames, boolean bTipoAnimacao, int IDPreAcao, int IDPosAcao) {
+    this.iarFrames = iarFrames;
+    this.tipoAnimacao = bTipoAnimacao;
+    this.IDPreAcao = IDPreAcao;
+    this.IDPosAcao = IDPosAcao;
+  }
+  /**
+   * Cria uma nova ação contínua, sem pré e pós ações, com um intervalo de frames.
    * @param iFrameInicial Frame inicial do intervalo de frames;
    * @param iFrameFinal Frame final do intervalo de frames;
    */
   public GjME_Acao(int iFrameInicial, int iFrameFinal) {
-    this.iarFrames = new int[iFrameFinal - iFrameInicial + 1];
+    this(iFrameInicial, iFrameFinal, GjME_Acao.ANIMACAO_CONTINUA,
+            GjME_Personagem.ACAO_INVALIDA, GjME_Personagem.ACAO_INVALIDA);
+  }
+  /**
+   * Cria uma nova ação com um intervalo de frames.
+   * @param iFrameInicial Frame inicial do intervalo de frames;
+   * @param iFrameFinal Frame final do intervalo de frames;
+   * @param bTipoAnimacao GjME_Acao.ANIMACAO_CONTINUA ou GjME_Acao.ANIMACAO_NAO_CONTINUA;
+   * @param IDPreAcao ID da pré-ação ou GjME_Personagem.ACAO_INVALIDA;
+   * @param IDPosAcao ID da pós-ação ou GjME_Personagem.ACAO_INVALIDA.
+   */
+  public GjME_Acao(int iFrameInicial, int iFrameFinal, boolean bTipoAnimacao,
+          int IDPreAcao, int IDPosAcao) {
+    this(GjME_Acao.intervalo(iFrameInicial, iFrameFinal), bTipoAnimacao, IDPreAcao, IDPosAcao);
+  }
+
+  /**
+   * Cria a seqüência de frames de um intervalo.
+   */
+  private static int[] intervalo(int iFrameInicial, int iFrameFinal) {
+    int[] iarFrames = new int[iFrameFinal - iFrameInicial + 1];
     int j = 0;
     for (int i = iFrameInicial; i <= iFrameFinal; i++) {
-      this.iarFrames[j++] = i;
+      iarFrames[j++] = i;
     }
+    return iarFrames;
   }
 
   // -- Métodos abstratos ------------------------------------------------------
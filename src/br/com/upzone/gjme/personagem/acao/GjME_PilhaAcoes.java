@@ -0,0 +1,174 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.personagem.acao;
+
+import br.com.upzone.gjme.personagem.GjME_Personagem;
+
+/**
+ * Pilha de ações de um personagem com capacidade fixa.
+ *
+ * Substitui java.util.Stack (que herda os métodos sincronizados de Vector) na
+ * execução das ações, que acontece a cada frame sempre na thread do game. Não
+ * há sincronização nem realocação: a capacidade é definida na criação e, se
+ * for excedida, é lançada uma exceção. Isto acontece, por exemplo, quando
+ * pré e pós ações formam um ciclo (A tem pré-ação B e B tem pré-ação A).
+ *
+ * O ID e o estado de execução de cada ação empilhada são guardados na própria
+ * pilha, em arrays paralelos, permitindo que as instâncias de GjME_Acao sejam
+ * compartilhadas entre personagens.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @final
+ */
+public final class GjME_PilhaAcoes {
+
+  /**
+   * Ações empilhadas; a ação do topo fica na posição iQtdAcoes - 1.
+   */
+  private final GjME_Acao[] acoes;
+
+  /**
+   * ID com que cada ação empilhada foi cadastrada na tabela do personagem.
+   */
+  private final int[] iarIDs;
+
+  /**
+   * Estado de execução de cada ação empilhada.
+   * @see GjME_Acao.ACAO_NAO_INICIADA
+   * @see GjME_Acao.ACAO_EM_EXECUCAO
+   * @see GjME_Acao.ACAO_FINALIZADA
+   */
+  private final byte[] estados;
+
+  /**
+   * Quantidade de ações empilhadas.
+   */
+  private int iQtdAcoes = 0;
+
+  /**
+   * Cria uma pilha vazia.
+   * @param iCapacidade Quantidade máxima de ações empilhadas ao mesmo tempo.
+   */
+  public GjME_PilhaAcoes(int iCapacidade) {
+    this.acoes = new GjME_Acao[Math.max(1, iCapacidade)];
+    this.estados = new byte[this.acoes.length];
+    this.iarIDs = new int[this.acoes.length];
+  }
+
+  /**
+   * Coloca uma ação no topo da pilha com o estado GjME_Acao.ACAO_NAO_INICIADA.
+   * @param iID ID da ação na tabela do personagem;
+   * @param acao Ação a ser empilhada;
+   * @throws IllegalStateException Se a capacidade da pilha for excedida.
+   */
+  public void empilhar(int iID, GjME_Acao acao) {
+    if (this.iQtdAcoes == this.acoes.length) {
+      throw new IllegalStateException("Pilha de ações cheia ao empilhar a ação "
+              + iID + ", verifique ciclos de pré e pós ações.");
+    }
+    this.estados[this.iQtdAcoes] = (byte) GjME_Acao.ACAO_NAO_INICIADA;
+    this.iarIDs[this.iQtdAcoes] = iID;
+    this.acoes[this.iQtdAcoes++] = acao;
+  }
+
+  /**
+   * Remove a ação do topo da pilha.
+   * @return A ação removida ou null se a pilha estiver vazia.
+   */
+  public GjME_Acao desempilhar() {
+    if (0 == this.iQtdAcoes) { return null; }
+    GjME_Acao acao = this.acoes[--this.iQtdAcoes];
+    this.acoes[this.iQtdAcoes] = null;
+    return acao;
+  }
+
+  /**
+   * Retorna a ação do topo da pilha sem removê-la.
+   * @return A ação do topo ou null se a pilha estiver vazia.
+   */
+  public GjME_Acao topo() {
+    if (0 == this.iQtdAcoes) { return null; }
+    return this.acoes[this.iQtdAcoes - 1];
+  }
+
+  /**
+   * Retorna o ID da ação do topo da pilha.
+   * @return ID da ação ou GjME_Personagem.ACAO_INVALIDA se a pilha estiver vazia.
+   */
+  public int idTopo() {
+    if (0 == this.iQtdAcoes) { return GjME_Personagem.ACAO_INVALIDA; }
+    return this.iarIDs[this.iQtdAcoes - 1];
+  }
+
+  /**
+   * Retorna o estado de execução da ação do topo da pilha.
+   * @return Estado de execução ou GjME_Acao.ACAO_NAO_INICIADA se a pilha estiver vazia.
+   */
+  public int estadoTopo() {
+    if (0 == this.iQtdAcoes) { return GjME_Acao.ACAO_NAO_INICIADA; }
+    return this.estados[this.iQtdAcoes - 1];
+  }
+
+  /**
+   * Define o estado de execução da ação do topo da pilha.
+   *
+   * Não faz nada se a pilha estiver vazia.
+   * @param iEstado Valores válidos: GjME_Acao.ACAO_NAO_INICIADA, GjME_Acao.ACAO_EM_EXECUCAO e GjME_Acao.ACAO_FINALIZADA.
+   */
+  public void defineEstadoTopo(int iEstado) {
+    if (0 == this.iQtdAcoes) { return; }
+    this.estados[this.iQtdAcoes - 1] = (byte) iEstado;
+  }
+
+  /**
+   * Indica se a pilha está vazia.
+   * @return Verdadeiro ou falso.
+   */
+  public boolean vazia() { return 0 == this.iQtdAcoes; }
+
+  /**
+   * Retorna a quantidade de ações empilhadas.
+   * @return Quantidade de ações.
+   */
+  public int tamanho() { return this.iQtdAcoes; }
+
+  /**
+   * Retorna a quantidade máxima de ações que a pilha comporta.
+   * @return Capacidade da pilha.
+   */
+  public int capacidade() { return this.acoes.length; }
+}
@@ -0,0 +1,107 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.personagem.acao;
+
+/**
+ * Tabela de ações de um personagem indexada diretamente pelo ID da ação.
+ *
+ * Os IDs de ação são constantes inteiras pequenas e seqüenciais (ACAO_AGUARDAR,
+ * ACAO_ANDAR, etc.), por isso as ações são guardadas em um array na posição do
+ * seu próprio ID. A consulta não cria objetos nem faz sincronização, ao
+ * contrário de um Hashtable com chaves Integer.
+ *
+ * Como as ações não guardam estado de execução nem o próprio ID, uma mesma
+ * tabela pode ser compartilhada por todos os personagens de um mesmo tipo, e
+ * uma mesma ação pode ser cadastrada em várias tabelas.
+ * @see GjME_Personagem.compartilharAcoes()
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @final
+ */
+public final class GjME_TabelaAcoes {
+
+  /**
+   * Ações armazenadas, na posição correspondente ao seu ID.
+   */
+  private GjME_Acao[] acoes;
+
+  /**
+   * Cria uma tabela de ações vazia.
+   * @param iCapacidade Quantidade inicial de IDs suportados sem realocação.
+   */
+  public GjME_TabelaAcoes(int iCapacidade) {
+    this.acoes = new GjME_Acao[Math.max(1, iCapacidade)];
+  }
+
+  /**
+   * Armazena uma ação na posição do seu ID, substituindo a ação anterior.
+   *
+   * Se o ID for maior que a capacidade atual, a tabela é realocada. Isto só
+   * acontece durante a configuração do personagem.
+   * @param iID ID da ação, deve ser maior ou igual a zero;
+   * @param acao Ação a ser armazenada;
+   * @throws IllegalArgumentException Se o ID for negativo.
+   */
+  public void adicionar(int iID, GjME_Acao acao) {
+    if (iID < 0) {
+      throw new IllegalArgumentException("ID de ação inválido: " + iID);
+    }
+    if (iID >= this.acoes.length) {
+      GjME_Acao[] novasAcoes = new GjME_Acao[Math.max(iID + 1, this.acoes.length * 2)];
+      System.arraycopy(this.acoes, 0, novasAcoes, 0, this.acoes.length);
+      this.acoes = novasAcoes;
+    }
+    this.acoes[iID] = acao;
+  }
+
+  /**
+   * Retorna a ação armazenada com o ID informado.
+   * @param iID ID da ação;
+   * @return A ação ou null se não houver ação com este ID.
+   */
+  public GjME_Acao retornar(int iID) {
+    if ((iID < 0) || (iID >= this.acoes.length)) { return null; }
+    return this.acoes[iID];
+  }
+
+  /**
+   * Indica se existe uma ação com o ID informado.
+   * @param iID ID da ação;
+   * @return Verdadeiro ou falso.
+   */
+  public boolean contem(int iID) { return null != this.retornar(iID); }
+}
@@ -0,0 +1,343 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.tela;
+
+import br.com.upzone.gjme.personagem.GjME_Personagem;
+
+/**
+ * Atualização dos personagens de uma tela dividida entre várias threads.
+ *
+ * Voltada ao uso do framework como motor de simulação em JVMs desktop com
+ * milhares de personagens. CLDC não possui pools de fork-join, então são
+ * usadas threads fixas, criadas na primeira atualização: a lista de
+ * personagens é dividida em faixas contínuas, uma por thread (a thread do game
+ * processa a primeira), e a atualização só termina quando todas as faixas
+ * terminam.
+ *
+ * Durante a fase paralela, cada personagem só pode alterar o próprio estado.
+ * Efeitos sobre outros objetos (criar projéteis, adicionar layers, alterar
+ * outros personagens) devem ser adiados com adiar(). Os efeitos adiados são
+ * executados pela thread do game após a fase paralela, na ordem das faixas e,
+ * dentro de cada faixa, na ordem em que foram adiados; como as faixas são
+ * fixas, o resultado não depende do escalonamento das threads.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @see GjME_Tela.parAtualizacao
+ * @final
+ */
+public final class GjME_AtualizacaoParalela {
+
+  /**
+   * Quantidade de faixas (threads, incluindo a thread do game).
+   */
+  private final int iQtdFaixas;
+
+  /**
+   * Threads auxiliares; a faixa 0 é processada pela thread do game.
+   */
+  private final Thread[] thrAuxiliares;
+
+  /**
+   * Thread do game durante a atualização em andamento.
+   */
+  private Thread thrPrincipal = null;
+
+  /**
+   * Monitor de coordenação entre as threads.
+   */
+  private final Object objMonitor = new Object();
+
+  /**
+   * Número da atualização em andamento; as threads auxiliares esperam que ele mude.
+   */
+  private int iGeracao = 0;
+  /**
+   * Faixas auxiliares ainda em processamento.
+   */
+  private int iFaixasPendentes = 0;
+  /**
+   * Indica se as threads auxiliares devem terminar.
+   */
+  private boolean bEncerrar = false;
+
+  /**
+   * Personagens da atualização em andamento.
+   */
+  private GjME_Personagem[] prsAtuais;
+  /**
+   * Quantidade de personagens da atualização em andamento.
+   */
+  private int iQtdAtuais;
+
+  /**
+   * Primeira exceção ou erro lançado por uma faixa, relançado pela thread do game.
+   */
+  private Throwable thwFalha = null;
+
+  /**
+   * Efeitos adiados de cada faixa.
+   */
+  private final Runnable[][] runAdiados;
+  /**
+   * Quantidade de efeitos adiados de cada faixa.
+   */
+  private final int[] iarQtdAdiados;
+
+  /**
+   * Cria uma atualização paralela.
+   * @param iThreads Quantidade de threads, incluindo a thread do game. Com 1
+   * thread, os personagens são atualizados em série, mas os efeitos continuam
+   * sendo adiados.
+   */
+  public GjME_AtualizacaoParalela(int iThreads) {
+    this.iQtdFaixas = Math.max(1, iThreads);
+    this.thrAuxiliares = new Thread[this.iQtdFaixas - 1];
+    this.runAdiados = new Runnable[this.iQtdFaixas][8];
+    this.iarQtdAdiados = new int[this.iQtdFaixas];
+  }
+
+  /**
+   * Atualiza os personagens em paralelo e depois executa os efeitos adiados.
+   *
+   * Deve ser chamado pela thread do game. Se alguma faixa falhar, inclusive
+   * com um Error, a primeira falha é relançada aqui depois que todas as
+   * faixas terminam, e os efeitos adiados são descartados.
+   * @param prs Personagens a serem atualizados;
+   * @param iQtd Quantidade de personagens.
+   */
+  public void atualizar(GjME_Personagem[] prs, int iQtd) {
+    this.thrPrincipal = Thread.currentThread();
+    if (this.iQtdFaixas > 1) {
+      this.iniciarThreads();
+      synchronized (this.objMonitor) {
+        this.prsAtuais = prs;
+        this.iQtdAtuais = iQtd;
+        this.iFaixasPendentes = this.iQtdFaixas - 1;
+        this.iGeracao++;
+        this.objMonitor.notifyAll();
+      }
+    }
+    try {
+      this.atualizarFaixa(prs, iQtd, 0);
+    } catch (Throwable thw) {
+      // -- As faixas auxiliares ainda precisam terminar antes da falha ser relançada
+      this.registrarFalha(thw);
+    }
+    if (this.iQtdFaixas > 1) {
+      synchronized (this.objMonitor) {
+        while (this.iFaixasPendentes > 0) {
+          try {
+            this.objMonitor.wait();
+          } catch (InterruptedException iex) {
+            // -- Continua aguardando as faixas
+          }
+        }
+        this.prsAtuais = null;
+      }
+    }
+    this.thrPrincipal = null;
+    if (null != this.thwFalha) {
+      Throwable thw = this.thwFalha;
+      this.thwFalha = null;
+      this.descartarAdiados();
+      if (thw instanceof Error) { throw (Error) thw; }
+      if (thw instanceof RuntimeException) { throw (RuntimeException) thw; }
+      throw new RuntimeException(thw.toString());
+    }
+    this.executarAdiados();
+  }
+
+  /**
+   * Adia um efeito para depois da fase paralela.
+   *
+   * Fora de uma atualização paralela, o efeito é executado imediatamente.
+   * @param run Efeito a ser executado pela thread do game.
+   */
+  public void adiar(Runnable run) {
+    int iFaixa = this.faixaAtual();
+    if (iFaixa < 0) {
+      run.run();
+      return;
+    }
+    Runnable[] runFaixa = this.runAdiados[iFaixa];
+    int iQtd = this.iarQtdAdiados[iFaixa];
+    if (iQtd == runFaixa.length) {
+      Runnable[] runNovos = new Runnable[runFaixa.length * 2];
+      System.arraycopy(runFaixa, 0, runNovos, 0, iQtd);
+      this.runAdiados[iFaixa] = runFaixa = runNovos;
+    }
+    runFaixa[iQtd] = run;
+    this.iarQtdAdiados[iFaixa] = iQtd + 1;
+  }
+
+  /**
+   * Termina as threads auxiliares. Elas são criadas novamente se houver outra
+   * atualização.
+   */
+  public void encerrar() {
+    synchronized (this.objMonitor) {
+      this.bEncerrar = true;
+      this.objMonitor.notifyAll();
+    }
+    for (int i = 0; i < this.thrAuxiliares.length; i++) {
+      Thread thr = this.thrAuxiliares[i];
+      if (null == thr) { continue; }
+      try {
+        thr.join();
+      } catch (InterruptedException iex) {
+        // -- A thread termina sozinha ao perceber bEncerrar
+      }
+      this.thrAuxiliares[i] = null;
+    }
+    synchronized (this.objMonitor) { this.bEncerrar = false; }
+  }
+
+  /**
+   * Retorna a quantidade de threads, incluindo a thread do game.
+   * @return Quantidade de threads.
+   */
+  public int retornaQtdThreads() { return this.iQtdFaixas; }
+
+  /**
+   * Cria as threads auxiliares que ainda não existem.
+   */
+  private void iniciarThreads() {
+    for (int i = 0; i < this.thrAuxiliares.length; i++) {
+      if (null != this.thrAuxiliares[i]) { continue; }
+      final int iFaixa = i + 1;
+      final int iGeracaoInicial;
+      synchronized (this.objMonitor) { iGeracaoInicial = this.iGeracao; }
+      this.thrAuxiliares[i] = new Thread(new Runnable() {
+        public void run() { GjME_AtualizacaoParalela.this.executarAuxiliar(iFaixa, iGeracaoInicial); }
+      });
+      this.thrAuxiliares[i].start();
+    }
+  }
+
+  /**
+   * Laço de uma thread auxiliar: aguarda uma nova geração e processa sua faixa.
+   */
+  private void executarAuxiliar(int iFaixa, int iGeracaoVista) {
+    while (true) {
+      GjME_Personagem[] prs;
+      int iQtd;
+      synchronized (this.objMonitor) {
+        while (!this.bEncerrar && (this.iGeracao == iGeracaoVista)) {
+          try {
+            this.objMonitor.wait();
+          } catch (InterruptedException iex) {
+            // -- Volta a verificar a geração
+          }
+        }
+        if (this.bEncerrar) { return; }
+        iGeracaoVista = this.iGeracao;
+        prs = this.prsAtuais;
+        iQtd = this.iQtdAtuais;
+      }
+      // -- Mesmo um Error (ex: OutOfMemoryError) precisa liberar a thread do game
+      try {
+        this.atualizarFaixa(prs, iQtd, iFaixa);
+      } catch (Throwable thw) {
+        this.registrarFalha(thw);
+      } finally {
+        synchronized (this.objMonitor) {
+          if (--this.iFaixasPendentes == 0) { this.objMonitor.notifyAll(); }
+        }
+      }
+    }
+  }
+
+  /**
+   * Guarda a primeira falha de uma faixa para relançá-la na thread do game.
+   */
+  private void registrarFalha(Throwable thw) {
+    synchronized (this.objMonitor) {
+      if (null == this.thwFalha) { this.thwFalha = thw; }
+    }
+  }
+
+  /**
+   * Atualiza os personagens de uma faixa.
+   */
+  private void atualizarFaixa(GjME_Personagem[] prs, int iQtd, int iFaixa) {
+    int iInicio = (int) ((long) iQtd * iFaixa / this.iQtdFaixas),
+        iFim = (int) ((long) iQtd * (iFaixa + 1) / this.iQtdFaixas);
+    for (int i = iInicio; i < iFim; i++) {
+      prs[i].atualizar();
+    }
+  }
+
+  /**
+   * Retorna a faixa da thread atual ou -1 fora de uma atualização.
+   */
+  private int faixaAtual() {
+    Thread thr = Thread.currentThread();
+    if (null == this.thrPrincipal) { return -1; }
+    if (thr == this.thrPrincipal) { return 0; }
+    for (int i = 0; i < this.thrAuxiliares.length; i++) {
+      if (thr == this.thrAuxiliares[i]) { return i + 1; }
+    }
+    return -1;
+  }
+
+  /**
+   * Executa os efeitos adiados, faixa por faixa.
+   */
+  private void executarAdiados() {
+    for (int f = 0; f < this.iQtdFaixas; f++) {
+      Runnable[] runFaixa = this.runAdiados[f];
+      // -- Efeitos podem adiar novos efeitos, que são executados imediatamente
+      int iQtd = this.iarQtdAdiados[f];
+      this.iarQtdAdiados[f] = 0;
+      for (int i = 0; i < iQtd; i++) {
+        Runnable run = runFaixa[i];
+        runFaixa[i] = null;
+        run.run();
+      }
+    }
+  }
+
+  /**
+   * Descarta os efeitos adiados de uma atualização que falhou.
+   */
+  private void descartarAdiados() {
+    for (int f = 0; f < this.iQtdFaixas; f++) {
+      for (int i = 0; i < this.iarQtdAdiados[f]; i++) { this.runAdiados[f][i] = null; }
+      this.iarQtdAdiados[f] = 0;
+    }
+  }
+}
@@ -0,0 +1,236 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.tela;
+
+/**
+ * Auditoria de alocações e chamadas lentas do laço de frames da tela.
+ *
+ * Modo de depuração para verificar se o caminho executado a cada frame
+ * (processarInput(), atualizarLayers() e desenhar()) está livre de alocações.
+ * Como CLDC não oferece contadores de alocação, a memória alocada é estimada
+ * pela diferença de Runtime.freeMemory() entre o início e o fim do frame;
+ * quando a memória livre aumenta, considera-se que o coletor de lixo executou.
+ * Cada fase do frame que demorar mais que o limite configurado é contada como
+ * uma chamada lenta.
+ *
+ * A cada intervalo de frames um relatório é impresso na saída padrão e os
+ * contadores são zerados. Somente o relatório aloca memória, e ele é emitido
+ * fora do trecho medido.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @final
+ */
+public final class GjME_Auditoria {
+
+  // -- Fases do frame ---------------------------------------------------------
+  /**
+   * Fase de leitura dos comandos do jogador.
+   */
+  public final static int FASE_INPUT = 0;
+  /**
+   * Fase de atualização das layers e personagens.
+   */
+  public final static int FASE_ATUALIZACAO = 1;
+  /**
+   * Fase de desenho da tela.
+   */
+  public final static int FASE_DESENHO = 2;
+
+  /**
+   * Nomes das fases utilizados no relatório.
+   */
+  private final static String[] NOMES_FASES = {"input", "atualizacao", "desenho"};
+
+  // -- Propriedades -----------------------------------------------------------
+  /**
+   * Tempo em milisegundos a partir do qual uma fase é considerada lenta.
+   */
+  private final int iLimiteLento;
+
+  /**
+   * Quantidade de frames entre dois relatórios.
+   */
+  private final int iIntervaloRelatorio;
+
+  /**
+   * Memória livre registrada no início do frame.
+   */
+  private long lMemoriaLivreInicial;
+
+  /**
+   * Momento de início da fase em execução.
+   */
+  private long lInicioFase;
+
+  /**
+   * Frames auditados desde o último relatório.
+   */
+  private int iFrames = 0;
+
+  /**
+   * Frames que alocaram memória desde o último relatório.
+   */
+  private int iFramesComAlocacao = 0;
+
+  /**
+   * Total de bytes alocados desde o último relatório.
+   */
+  private long lBytesAlocados = 0;
+
+  /**
+   * Maior quantidade de bytes alocada em um único frame.
+   */
+  private long lMaiorAlocacao = 0;
+
+  /**
+   * Quantidade de execuções do coletor de lixo percebidas.
+   */
+  private int iColetas = 0;
+
+  /**
+   * Quantidade de chamadas lentas por fase.
+   */
+  private final int[] iarChamadasLentas = new int[3];
+
+  /**
+   * Maior duração registrada por fase, em milisegundos.
+   */
+  private final long[] larMaiorDuracao = new long[3];
+
+  /**
+   * Cria uma auditoria de frames.
+   * @param iLimiteLento Duração em milisegundos a partir da qual uma fase é lenta;
+   * @param iIntervaloRelatorio Quantidade de frames entre relatórios.
+   */
+  public GjME_Auditoria(int iLimiteLento, int iIntervaloRelatorio) {
+    this.iLimiteLento = iLimiteLento;
+    this.iIntervaloRelatorio = Math.max(1, iIntervaloRelatorio);
+  }
+
+  /**
+   * Registra o início de um frame.
+   */
+  public void iniciarFrame() {
+    this.lMemoriaLivreInicial = Runtime.getRuntime().freeMemory();
+  }
+
+  /**
+   * Registra o início de uma fase do frame.
+   */
+  public void iniciarFase() { this.lInicioFase = System.currentTimeMillis(); }
+
+  /**
+   * Registra o fim de uma fase do frame e conta a chamada se ela foi lenta.
+   * @param iFase Uma das constantes FASE_.
+   */
+  public void finalizarFase(int iFase) {
+    long lDuracao = System.currentTimeMillis() - this.lInicioFase;
+    if (lDuracao > this.iLimiteLento) { this.iarChamadasLentas[iFase]++; }
+    if (lDuracao > this.larMaiorDuracao[iFase]) { this.larMaiorDuracao[iFase] = lDuracao; }
+  }
+
+  /**
+   * Registra o fim de um frame e, ao fim do intervalo, emite o relatório.
+   */
+  public void finalizarFrame() {
+    long lAlocado = this.lMemoriaLivreInicial - Runtime.getRuntime().freeMemory();
+    if (lAlocado > 0) {
+      this.iFramesComAlocacao++;
+      this.lBytesAlocados += lAlocado;
+      if (lAlocado > this.lMaiorAlocacao) { this.lMaiorAlocacao = lAlocado; }
+    } else if (lAlocado < 0) {
+      this.iColetas++;
+    }
+    if (++this.iFrames >= this.iIntervaloRelatorio) {
+      this.relatar();
+      this.zerar();
+    }
+  }
+
+  /**
+   * Imprime na saída padrão os contadores acumulados desde o último relatório.
+   */
+  public void relatar() {
+    StringBuffer sb = new StringBuffer("GjME auditoria: ");
+    sb.append(this.iFrames).append(" frames, ")
+      .append(this.iFramesComAlocacao).append(" com alocação, ")
+      .append(this.lBytesAlocados).append(" bytes (maior ")
+      .append(this.lMaiorAlocacao).append("), ")
+      .append(this.iColetas).append(" coletas");
+    for (int i = 0; i < this.iarChamadasLentas.length; i++) {
+      sb.append("; ").append(GjME_Auditoria.NOMES_FASES[i]).append(": ")
+        .append(this.iarChamadasLentas[i]).append(" lentas, maior ")
+        .append(this.larMaiorDuracao[i]).append("ms");
+    }
+    System.out.println(sb.toString());
+  }
+
+  /**
+   * Zera os contadores acumulados.
+   */
+  public void zerar() {
+    this.iFrames = 0;
+    this.iFramesComAlocacao = 0;
+    this.lBytesAlocados = 0;
+    this.lMaiorAlocacao = 0;
+    this.iColetas = 0;
+    for (int i = 0; i < this.iarChamadasLentas.length; i++) {
+      this.iarChamadasLentas[i] = 0;
+      this.larMaiorDuracao[i] = 0;
+    }
+  }
+
+  // -- Métodos de acesso ------------------------------------------------------
+  /**
+   * Retorna a quantidade de frames que alocaram memória desde o último relatório.
+   * @return Quantidade de frames.
+   */
+  public int retornaFramesComAlocacao() { return this.iFramesComAlocacao; }
+
+  /**
+   * Retorna o total estimado de bytes alocados desde o último relatório.
+   * @return Quantidade de bytes.
+   */
+  public long retornaBytesAlocados() { return this.lBytesAlocados; }
+
+  /**
+   * Retorna a quantidade de chamadas lentas de uma fase desde o último relatório.
+   * @param iFase Uma das constantes FASE_;
+   * @return Quantidade de chamadas lentas.
+   */
+  public int retornaChamadasLentas(int iFase) { return this.iarChamadasLentas[iFase]; }
+}
@@ -0,0 +1,438 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.tela;
+
+import javax.microedition.lcdui.Graphics;
+import javax.microedition.lcdui.Image;
+import javax.microedition.lcdui.game.Layer;
+import javax.microedition.lcdui.game.LayerManager;
+import javax.microedition.lcdui.game.Sprite;
+
+import br.com.upzone.gjme.layer.GjME_TiledLayer;
+import br.com.upzone.gjme.personagem.GjME_LoteNPC;
+import br.com.upzone.gjme.personagem.GjME_Personagem;
+
+/**
+ * Cópia do estado visual das layers de uma tela, desenhável sem acessar as layers.
+ *
+ * Utilizada no modo de duas threads de GjME_Tela: a thread de atualização
+ * captura a cena e a thread de desenho a desenha, enquanto a próxima cena já
+ * é atualizada. De cada GjME_Personagem são copiados posição, frame e
+ * transformação; de cada GjME_TiledLayer, posição e células. Outras layers
+ * não podem ser copiadas (Layer não expõe seu conteúdo) e são desenhadas
+ * diretamente, podendo mostrar um estado mais novo que o restante da cena.
+ * Dos lotes de personagens são copiados posição, frame e transformação de
+ * cada personagem, e do painel de desempenho, os valores exibidos. A janela de
+ * visualização do LayerManager também é copiada e aplicada às layers, como em
+ * LayerManager.paint(g, 0, 0); lotes e painel são desenhados em coordenadas da
+ * tela, como em GjME_Tela.
+ *
+ * Os arrays só crescem quando a cena cresce; capturar e desenhar não alocam
+ * memória no restante do tempo.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @see GjME_Tela.bDuasThreads
+ * @final
+ */
+final class GjME_Cena {
+
+  /**
+   * Elemento copiado de um GjME_Personagem.
+   */
+  private final static int TIPO_PERSONAGEM = 0;
+  /**
+   * Elemento copiado de uma GjME_TiledLayer.
+   */
+  private final static int TIPO_TILED_LAYER = 1;
+  /**
+   * Layer desenhada diretamente.
+   */
+  private final static int TIPO_LAYER = 2;
+  /**
+   * Tiled layer desenhada a partir da imagem pré-desenhada.
+   */
+  private final static int TIPO_IMAGEM = 3;
+  /**
+   * Elemento copiado de um GjME_LoteNPC.
+   */
+  private final static int TIPO_LOTE = 4;
+
+  /**
+   * Quantidade de elementos capturados.
+   */
+  private int iQtdElementos = 0;
+  /**
+   * Quantidade de elementos capturados do LayerManager, os primeiros do array.
+   */
+  private int iQtdElementosLayers = 0;
+
+  // -- Janela de visualização do LayerManager ---------------------------------
+  private int iJanelaX = 0;
+  private int iJanelaY = 0;
+  private int iJanelaLargura = Integer.MAX_VALUE;
+  private int iJanelaAltura = Integer.MAX_VALUE;
+
+  // -- Elementos em ordem de desenho ------------------------------------------
+  private int[] iarTipos = new int[16];
+  private int[] iarX = new int[16];
+  private int[] iarY = new int[16];
+  /**
+   * Personagem: frame na sprite sheet; tiled layer: início das células em
+   * iarCelulas; lote: início dos personagens em iarLoteX.
+   */
+  private int[] iarA = new int[16];
+  /**
+   * Personagem: transformação; tiled layer: quantidade de colunas; lote:
+   * quantidade de personagens.
+   */
+  private int[] iarB = new int[16];
+  /**
+   * Tiled layer: quantidade de linhas.
+   */
+  private int[] iarC = new int[16];
+  /**
+   * Largura do frame ou do tile.
+   */
+  private int[] iarLargura = new int[16];
+  /**
+   * Altura do frame ou do tile.
+   */
+  private int[] iarAltura = new int[16];
+  /**
+   * Imagem do personagem, tileset ou cache; a própria layer no caso de TIPO_LAYER.
+   */
+  private Object[] objs = new Object[16];
+  /**
+   * Lote: cópia espelhada da sprite sheet, se estiver ativa.
+   */
+  private Object[] objsEspelhadas = new Object[16];
+
+  /**
+   * Células de todas as tiled layers, com tiles animados já resolvidos.
+   */
+  private int[] iarCelulas = new int[256];
+  /**
+   * Quantidade de células utilizadas.
+   */
+  private int iQtdCelulas = 0;
+
+  // -- Personagens de todos os lotes ------------------------------------------
+  private int[] iarLoteX = new int[64];
+  private int[] iarLoteY = new int[64];
+  private int[] iarLoteFrame = new int[64];
+  private int[] iarLoteTransformacao = new int[64];
+  /**
+   * Quantidade de personagens de lotes utilizados.
+   */
+  private int iQtdLote = 0;
+
+  /**
+   * Valores do painel de desempenho.
+   * @see GjME_TemposFrame.capturarPainel()
+   */
+  private final int[] iarPainel = new int[GjME_TemposFrame.TAMANHO_PAINEL];
+  /**
+   * Indica se o painel de desempenho foi capturado.
+   */
+  private boolean bPainel = false;
+
+  /**
+   * Copia o estado visual das layers visíveis do LayerManager, dos lotes e do
+   * painel de desempenho.
+   *
+   * A janela de visualização só é conhecida no GjME_GerenciadorLayers da tela;
+   * com outro LayerManager é usada a janela inicial de LayerManager.
+   * @param lm LayerManager da tela;
+   * @param lts Lotes de personagens, desenhados sobre as layers;
+   * @param iQtdLotes Quantidade de lotes em lts;
+   * @param tmp Histórico do painel de desempenho ou null se o painel não é exibido.
+   */
+  void capturar(LayerManager lm, GjME_LoteNPC[] lts, int iQtdLotes, GjME_TemposFrame tmp) {
+    int iQtdLayers = lm.getSize();
+    this.garantirElementos(iQtdLayers + iQtdLotes);
+    this.iQtdElementos = 0;
+    this.iQtdCelulas = 0;
+    this.iQtdLote = 0;
+    if (lm instanceof GjME_GerenciadorLayers) {
+      GjME_GerenciadorLayers gl = (GjME_GerenciadorLayers) lm;
+      this.iJanelaX = gl.retornaJanelaX();
+      this.iJanelaY = gl.retornaJanelaY();
+      this.iJanelaLargura = gl.retornaJanelaLargura();
+      this.iJanelaAltura = gl.retornaJanelaAltura();
+    } else {
+      this.iJanelaX = 0;
+      this.iJanelaY = 0;
+      this.iJanelaLargura = Integer.MAX_VALUE;
+      this.iJanelaAltura = Integer.MAX_VALUE;
+    }
+    // -- A última layer do LayerManager é a primeira a ser desenhada
+    for (int i = iQtdLayers - 1; i >= 0; i--) {
+      Layer lyr = lm.getLayerAt(i);
+      if (!lyr.isVisible()) { continue; }
+      int e = this.iQtdElementos++;
+      this.iarX[e] = lyr.getX();
+      this.iarY[e] = lyr.getY();
+      if (lyr instanceof GjME_Personagem) {
+        GjME_Personagem prs = (GjME_Personagem) lyr;
+        this.iarTipos[e] = GjME_Cena.TIPO_PERSONAGEM;
+        this.iarA[e] = prs.retornaFrameBruto();
+        this.iarB[e] = prs.retornaTransformacao();
+        this.iarLargura[e] = prs.retornaLarguraFrame();
+        this.iarAltura[e] = prs.retornaAlturaFrame();
+        this.objs[e] = prs.retornaImagem();
+      } else if ((lyr instanceof GjME_TiledLayer)
+              && (null != ((GjME_TiledLayer) lyr).retornaCache())) {
+        // -- A imagem pré-desenhada é imutável e pode ser usada pela thread de desenho
+        this.iarTipos[e] = GjME_Cena.TIPO_IMAGEM;
+        this.objs[e] = ((GjME_TiledLayer) lyr).retornaCache();
+      } else if (lyr instanceof GjME_TiledLayer) {
+        GjME_TiledLayer tl = (GjME_TiledLayer) lyr;
+        int iColunas = tl.getColumns(), iLinhas = tl.getRows();
+        this.garantirCelulas(this.iQtdCelulas + iColunas * iLinhas);
+        this.iarTipos[e] = GjME_Cena.TIPO_TILED_LAYER;
+        this.iarA[e] = this.iQtdCelulas;
+        this.iarB[e] = iColunas;
+        this.iarC[e] = iLinhas;
+        this.iarLargura[e] = tl.getCellWidth();
+        this.iarAltura[e] = tl.getCellHeight();
+        this.objs[e] = tl.retornaTileset();
+        for (int l = 0; l < iLinhas; l++) {
+          for (int c = 0; c < iColunas; c++) {
+            int iTile = tl.getCell(c, l);
+            if (iTile < 0) { iTile = tl.getAnimatedTile(iTile); }
+            this.iarCelulas[this.iQtdCelulas++] = iTile;
+          }
+        }
+      } else {
+        this.iarTipos[e] = GjME_Cena.TIPO_LAYER;
+        this.objs[e] = lyr;
+      }
+    }
+    this.iQtdElementosLayers = this.iQtdElementos;
+    for (int i = 0; i < iQtdLotes; i++) { this.capturarLote(lts[i]); }
+    // -- Libera referências de layers que saíram da cena
+    for (int e = this.iQtdElementos; (e < this.objs.length) && (null != this.objs[e]); e++) {
+      this.objs[e] = null;
+      this.objsEspelhadas[e] = null;
+    }
+    this.bPainel = (null != tmp);
+    if (this.bPainel) { tmp.capturarPainel(this.iarPainel); }
+  }
+
+  /**
+   * Copia posição, frame e transformação dos personagens de um lote.
+   */
+  private void capturarLote(GjME_LoteNPC lt) {
+    int iQtd = lt.quantidade();
+    this.garantirLote(this.iQtdLote + iQtd);
+    int e = this.iQtdElementos++;
+    this.iarTipos[e] = GjME_Cena.TIPO_LOTE;
+    this.iarA[e] = this.iQtdLote;
+    this.iarB[e] = iQtd;
+    this.iarLargura[e] = lt.retornaLarguraFrame();
+    this.iarAltura[e] = lt.retornaAlturaFrame();
+    this.objs[e] = lt.retornaImagem();
+    this.objsEspelhadas[e] = lt.retornaImagemEspelhada();
+    lt.capturar(this.iarLoteX, this.iarLoteY, this.iarLoteFrame, this.iarLoteTransformacao,
+            this.iQtdLote);
+    this.iQtdLote += iQtd;
+  }
+
+  /**
+   * Desenha a cena capturada, respeitando o clip do Graphics.
+   *
+   * As layers são desenhadas com a translação e o recorte da janela de
+   * visualização capturada, que são desfeitos antes dos lotes e do painel.
+   * @param g Recurso de desenho do sistema.
+   */
+  void desenhar(Graphics g) {
+    int iClipX = g.getClipX(),
+        iClipY = g.getClipY(),
+        iClipLargura = g.getClipWidth(),
+        iClipAltura = g.getClipHeight();
+    g.translate(-this.iJanelaX, -this.iJanelaY);
+    g.clipRect(this.iJanelaX, this.iJanelaY, this.iJanelaLargura, this.iJanelaAltura);
+    for (int e = 0; e < this.iQtdElementosLayers; e++) { this.desenharElemento(g, e); }
+    g.translate(this.iJanelaX, this.iJanelaY);
+    g.setClip(iClipX, iClipY, iClipLargura, iClipAltura);
+    for (int e = this.iQtdElementosLayers; e < this.iQtdElementos; e++) { this.desenharElemento(g, e); }
+    if (this.bPainel) { GjME_TemposFrame.desenharPainel(g, 0, 0, this.iarPainel); }
+  }
+
+  /**
+   * Desenha um elemento capturado de acordo com o seu tipo.
+   */
+  private void desenharElemento(Graphics g, int e) {
+    switch (this.iarTipos[e]) {
+      case GjME_Cena.TIPO_PERSONAGEM:
+        this.desenharPersonagem(g, e);
+        break;
+      case GjME_Cena.TIPO_TILED_LAYER:
+        this.desenharTiledLayer(g, e);
+        break;
+      case GjME_Cena.TIPO_IMAGEM:
+        g.drawImage((Image) this.objs[e], this.iarX[e], this.iarY[e],
+                Graphics.TOP | Graphics.LEFT);
+        break;
+      case GjME_Cena.TIPO_LOTE:
+        this.desenharLote(g, e);
+        break;
+      default:
+        ((Layer) this.objs[e]).paint(g);
+    }
+  }
+
+  /**
+   * Desenha um frame da sprite sheet como Sprite.paint() faria.
+   */
+  private void desenharPersonagem(Graphics g, int e) {
+    Image img = (Image) this.objs[e];
+    int iLargura = this.iarLargura[e], iAltura = this.iarAltura[e],
+        iColunas = img.getWidth() / iLargura, iFrame = this.iarA[e];
+    g.drawRegion(img, (iFrame % iColunas) * iLargura, (iFrame / iColunas) * iAltura,
+            iLargura, iAltura, this.iarB[e], this.iarX[e], this.iarY[e],
+            Graphics.TOP | Graphics.LEFT);
+  }
+
+  /**
+   * Desenha os personagens de um lote como GjME_LoteNPC.desenhar() faria.
+   *
+   * Com a cópia espelhada ativa, os personagens refletidos são desenhados a
+   * partir dela, sem transformação.
+   */
+  private void desenharLote(Graphics g, int e) {
+    Image img = (Image) this.objs[e], imgEspelhada = (Image) this.objsEspelhadas[e];
+    int iLargura = this.iarLargura[e], iAltura = this.iarAltura[e],
+        iColunas = img.getWidth() / iLargura, iFim = this.iarA[e] + this.iarB[e];
+    for (int i = this.iarA[e]; i < iFim; i++) {
+      int iFrame = this.iarLoteFrame[i], iTransformacao = this.iarLoteTransformacao[i];
+      Image imgFrame = img;
+      if ((Sprite.TRANS_MIRROR == iTransformacao) && (null != imgEspelhada)) {
+        imgFrame = imgEspelhada;
+        iTransformacao = Sprite.TRANS_NONE;
+      }
+      g.drawRegion(imgFrame, (iFrame % iColunas) * iLargura, (iFrame / iColunas) * iAltura,
+              iLargura, iAltura, iTransformacao, this.iarLoteX[i], this.iarLoteY[i],
+              Graphics.TOP | Graphics.LEFT);
+    }
+  }
+
+  /**
+   * Desenha as células de uma tiled layer que estão dentro do clip.
+   */
+  private void desenharTiledLayer(Graphics g, int e) {
+    Image img = (Image) this.objs[e];
+    int iLarguraTile = this.iarLargura[e], iAlturaTile = this.iarAltura[e],
+        iColunas = this.iarB[e], iLinhas = this.iarC[e], iInicio = this.iarA[e],
+        iColunasTileset = img.getWidth() / iLarguraTile;
+    int iX = this.iarX[e], iY = this.iarY[e];
+    int iColIni = Math.max(0, GjME_Cena.dividir(g.getClipX() - iX, iLarguraTile)),
+        iLinIni = Math.max(0, GjME_Cena.dividir(g.getClipY() - iY, iAlturaTile)),
+        iColFim = Math.min(iColunas - 1,
+                GjME_Cena.dividir(g.getClipX() + g.getClipWidth() - 1 - iX, iLarguraTile)),
+        iLinFim = Math.min(iLinhas - 1,
+                GjME_Cena.dividir(g.getClipY() + g.getClipHeight() - 1 - iY, iAlturaTile));
+    for (int l = iLinIni; l <= iLinFim; l++) {
+      int iBase = iInicio + l * iColunas;
+      for (int c = iColIni; c <= iColFim; c++) {
+        int iTile = this.iarCelulas[iBase + c];
+        if (0 == iTile) { continue; }
+        iTile--;
+        g.drawRegion(img, (iTile % iColunasTileset) * iLarguraTile,
+                (iTile / iColunasTileset) * iAlturaTile, iLarguraTile, iAlturaTile,
+                Sprite.TRANS_NONE, iX + c * iLarguraTile, iY + l * iAlturaTile,
+                Graphics.TOP | Graphics.LEFT);
+      }
+    }
+  }
+
+  /**
+   * Divisão arredondada para baixo, também para valores negativos.
+   */
+  private static int dividir(int iValor, int iDivisor) {
+    return (iValor >= 0) ? iValor / iDivisor : -((-iValor + iDivisor - 1) / iDivisor);
+  }
+
+  /**
+   * Garante espaço para a quantidade de elementos informada.
+   */
+  private void garantirElementos(int iQtd) {
+    if (iQtd <= this.iarTipos.length) { return; }
+    int iTamanho = Math.max(iQtd, this.iarTipos.length * 2);
+    this.iarTipos = GjME_Cena.copiar(this.iarTipos, iTamanho);
+    this.iarX = GjME_Cena.copiar(this.iarX, iTamanho);
+    this.iarY = GjME_Cena.copiar(this.iarY, iTamanho);
+    this.iarA = GjME_Cena.copiar(this.iarA, iTamanho);
+    this.iarB = GjME_Cena.copiar(this.iarB, iTamanho);
+    this.iarC = GjME_Cena.copiar(this.iarC, iTamanho);
+    this.iarLargura = GjME_Cena.copiar(this.iarLargura, iTamanho);
+    this.iarAltura = GjME_Cena.copiar(this.iarAltura, iTamanho);
+    Object[] objsNovos = new Object[iTamanho];
+    System.arraycopy(this.objs, 0, objsNovos, 0, this.objs.length);
+    this.objs = objsNovos;
+    objsNovos = new Object[iTamanho];
+    System.arraycopy(this.objsEspelhadas, 0, objsNovos, 0, this.objsEspelhadas.length);
+    this.objsEspelhadas = objsNovos;
+  }
+
+  /**
+   * Garante espaço para a quantidade de células informada.
+   */
+  private void garantirCelulas(int iQtd) {
+    if (iQtd > this.iarCelulas.length) {
+      this.iarCelulas = GjME_Cena.copiar(this.iarCelulas, Math.max(iQtd, this.iarCelulas.length * 2));
+    }
+  }
+
+  /**
+   * Garante espaço para a quantidade de personagens de lotes informada.
+   */
+  private void garantirLote(int iQtd) {
+    if (iQtd <= this.iarLoteX.length) { return; }
+    int iTamanho = Math.max(iQtd, this.iarLoteX.length * 2);
+    this.iarLoteX = GjME_Cena.copiar(this.iarLoteX, iTamanho);
+    this.iarLoteY = GjME_Cena.copiar(this.iarLoteY, iTamanho);
+    this.iarLoteFrame = GjME_Cena.copiar(this.iarLoteFrame, iTamanho);
+    this.iarLoteTransformacao = GjME_Cena.copiar(this.iarLoteTransformacao, iTamanho);
+  }
+
+  private static int[] copiar(int[] iarOrigem, int iTamanho) {
+    int[] iarNovo = new int[iTamanho];
+    System.arraycopy(iarOrigem, 0, iarNovo, 0, iarOrigem.length);
+    return iarNovo;
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.tela;
+
+/**
+ * Fila circular de eventos de teclado com o momento em que cada evento ocorreu.
+ *
+ * É preenchida pela thread de eventos do sistema (keyPressed() e keyReleased()
+ * da tela) e esvaziada pela thread do game em processarInput(). Como há um
+ * único produtor e um único consumidor, cada índice é escrito por apenas uma
+ * thread e não é necessária sincronização. Assim, toques que começam e
+ * terminam entre duas leituras não são perdidos, como acontece com
+ * getKeyStates() em frame rates baixos.
+ *
+ * Se a fila estiver cheia, novos eventos são descartados e contados.
+ *
+ * Exemplo de consumo em processarInput():
+ *   while (this.filTeclado.proximo()) {
+ *     if (this.filTeclado.retornaPressionada()) { ... this.filTeclado.retornaAcao() ... }
+ *   }
+ * ou, para obter um estado no formato de getKeyStates():
+ *   int iTeclas = this.filTeclado.drenarEstados();
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @see GjME_Tela.filTeclado
+ * @final
+ */
+public final class GjME_FilaEventosTeclado {
+
+  /**
+   * Códigos das teclas dos eventos.
+   */
+  private final int[] iarCodigos;
+  /**
+   * Ações de game (Canvas.UP, Canvas.FIRE, etc.) dos eventos; zero se a tecla
+   * não corresponde a uma ação.
+   */
+  private final int[] iarAcoes;
+  /**
+   * Indica se cada evento é de tecla pressionada (ou solta).
+   */
+  private final boolean[] barPressionadas;
+  /**
+   * Momentos, em milisegundos, em que os eventos ocorreram.
+   */
+  private final long[] larMomentos;
+
+  /**
+   * Máscara para cálculo das posições; a capacidade é uma potência de 2.
+   */
+  private final int iMascara;
+
+  /**
+   * Quantidade de eventos publicados; escrito apenas pelo produtor.
+   */
+  private volatile int iEscritos = 0;
+  /**
+   * Quantidade de eventos consumidos; escrito apenas pelo consumidor.
+   */
+  private volatile int iLidos = 0;
+  /**
+   * Eventos descartados por falta de espaço; escrito apenas pelo produtor.
+   */
+  private int iDescartados = 0;
+
+  // -- Evento atual (consumidor) ----------------------------------------------
+  private int iCodigoAtual;
+  private int iAcaoAtual;
+  private boolean bPressionadaAtual;
+  private long lMomentoAtual;
+
+  /**
+   * Ações mantidas pressionadas, no formato de getKeyStates().
+   */
+  private int iEstadoTeclas = 0;
+
+  /**
+   * Cria uma fila vazia.
+   * @param iCapacidade Quantidade de eventos; é arredondada para a próxima potência de 2.
+   */
+  public GjME_FilaEventosTeclado(int iCapacidade) {
+    int iTamanho = 1;
+    while (iTamanho < iCapacidade) { iTamanho <<= 1; }
+    this.iarCodigos = new int[iTamanho];
+    this.iarAcoes = new int[iTamanho];
+    this.barPressionadas = new boolean[iTamanho];
+    this.larMomentos = new long[iTamanho];
+    this.iMascara = iTamanho - 1;
+  }
+
+  /**
+   * Publica um evento de teclado; chamado apenas pela thread de eventos.
+   * @param iCodigo Código da tecla;
+   * @param iAcao Ação de game da tecla ou zero;
+   * @param bPressionada Verdadeiro se a tecla foi pressionada, falso se foi solta.
+   */
+  public void publicar(int iCodigo, int iAcao, boolean bPressionada) {
+    int iPos = this.iEscritos;
+    if (iPos - this.iLidos > this.iMascara) {
+      this.iDescartados++;
+      return;
+    }
+    int i = iPos & this.iMascara;
+    this.iarCodigos[i] = iCodigo;
+    this.iarAcoes[i] = iAcao;
+    this.barPressionadas[i] = bPressionada;
+    this.larMomentos[i] = System.currentTimeMillis();
+    // -- O evento só fica visível ao consumidor depois de completamente escrito
+    this.iEscritos = iPos + 1;
+  }
+
+  /**
+   * Consome o próximo evento, que passa a ser o evento atual; chamado apenas
+   * pela thread do game.
+   * @return Falso se a fila estiver vazia.
+   */
+  public boolean proximo() {
+    int iPos = this.iLidos;
+    if (iPos == this.iEscritos) { return false; }
+    int i = iPos & this.iMascara;
+    this.iCodigoAtual = this.iarCodigos[i];
+    this.iAcaoAtual = this.iarAcoes[i];
+    this.bPressionadaAtual = this.barPressionadas[i];
+    this.lMomentoAtual = this.larMomentos[i];
+    // -- Libera a posição para o produtor somente após a cópia
+    this.iLidos = iPos + 1;
+    if ((this.iAcaoAtual > 0) && (this.iAcaoAtual < 32)) {
+      if (this.bPressionadaAtual) {
+        this.iEstadoTeclas |= 1 << this.iAcaoAtual;
+      } else {
+        this.iEstadoTeclas &= ~(1 << this.iAcaoAtual);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Consome todos os eventos pendentes e retorna as ações de game no formato
+   * de GameCanvas.getKeyStates().
+   *
+   * Uma ação aparece no resultado se estiver pressionada ou se foi pressionada
+   * em algum momento desde a chamada anterior, mesmo que já tenha sido solta.
+   * @return Máscara de bits das ações (ex: GameCanvas.LEFT_PRESSED).
+   */
+  public int drenarEstados() {
+    int iTravadas = 0;
+    while (this.proximo()) {
+      if (this.bPressionadaAtual && (this.iAcaoAtual > 0) && (this.iAcaoAtual < 32)) {
+        iTravadas |= 1 << this.iAcaoAtual;
+      }
+    }
+    return this.iEstadoTeclas | iTravadas;
+  }
+
+  // -- Métodos de acesso ------------------------------------------------------
+  /**
+   * Retorna o código da tecla do evento atual.
+   * @return Código da tecla.
+   */
+  public int retornaCodigo() { return this.iCodigoAtual; }
+
+  /**
+   * Retorna a ação de game do evento atual.
+   * @return Ação de game (ex: Canvas.LEFT) ou zero.
+   */
+  public int retornaAcao() { return this.iAcaoAtual; }
+
+  /**
+   * Indica se o evento atual é de tecla pressionada.
+   * @return Verdadeiro se pressionada, falso se solta.
+   */
+  public boolean retornaPressionada() { return this.bPressionadaAtual; }
+
+  /**
+   * Retorna o momento em que o evento atual ocorreu.
+   * @return Momento em milisegundos, no relógio de System.currentTimeMillis().
+   */
+  public long retornaMomento() { return this.lMomentoAtual; }
+
+  /**
+   * Retorna as ações de game mantidas pressionadas após os eventos consumidos.
+   * @return Máscara de bits das ações.
+   */
+  public int retornaEstadoTeclas() { return this.iEstadoTeclas; }
+
+  /**
+   * Retorna a quantidade de eventos aguardando consumo.
+   * @return Quantidade de eventos.
+   */
+  public int retornaPendentes() { return this.iEscritos - this.iLidos; }
+
+  /**
+   * Retorna a quantidade de eventos descartados por falta de espaço.
+   * @return Quantidade de eventos.
+   */
+  public int retornaDescartados() { return this.iDescartados; }
+}
@@ -0,0 +1,121 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.tela;
+
+import javax.microedition.lcdui.game.Layer;
+import javax.microedition.lcdui.game.LayerManager;
+
+/**
+ * LayerManager da tela, que conta as alterações da sua lista de layers e
+ * guarda a janela de visualização.
+ *
+ * Permite que GjME_Tela perceba, comparando um único inteiro, que layers foram
+ * incluídas ou removidas diretamente no LayerManager, sem passar pelos seus
+ * métodos de gerenciamento de layers. A janela de visualização, que
+ * LayerManager não expõe, é usada quando a tela desenha as layers sem
+ * LayerManager.paint().
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @see GjME_Tela.lm
+ * @final
+ */
+final class GjME_GerenciadorLayers extends LayerManager {
+
+  /**
+   * Contador de chamadas a append(), insert() e remove().
+   */
+  private int iAlteracoes = 0;
+
+  // -- Janela de visualização, com os valores iniciais de LayerManager ---------
+  private int iJanelaX = 0;
+  private int iJanelaY = 0;
+  private int iJanelaLargura = Integer.MAX_VALUE;
+  private int iJanelaAltura = Integer.MAX_VALUE;
+
+  public void append(Layer lyr) {
+    super.append(lyr);
+    this.iAlteracoes++;
+  }
+
+  public void insert(Layer lyr, int iPosicao) {
+    super.insert(lyr, iPosicao);
+    this.iAlteracoes++;
+  }
+
+  public void remove(Layer lyr) {
+    super.remove(lyr);
+    this.iAlteracoes++;
+  }
+
+  public void setViewWindow(int iX, int iY, int iLargura, int iAltura) {
+    super.setViewWindow(iX, iY, iLargura, iAltura);
+    this.iJanelaX = iX;
+    this.iJanelaY = iY;
+    this.iJanelaLargura = iLargura;
+    this.iJanelaAltura = iAltura;
+  }
+
+  /**
+   * Retorna o contador de alterações da lista de layers.
+   * @return Contador de alterações.
+   */
+  int retornaAlteracoes() { return this.iAlteracoes; }
+
+  /**
+   * Retorna a coordenada X da janela de visualização, no sistema das layers.
+   * @return Coordenada X.
+   */
+  int retornaJanelaX() { return this.iJanelaX; }
+
+  /**
+   * Retorna a coordenada Y da janela de visualização, no sistema das layers.
+   * @return Coordenada Y.
+   */
+  int retornaJanelaY() { return this.iJanelaY; }
+
+  /**
+   * Retorna a largura da janela de visualização.
+   * @return Largura.
+   */
+  int retornaJanelaLargura() { return this.iJanelaLargura; }
+
+  /**
+   * Retorna a altura da janela de visualização.
+   * @return Altura.
+   */
+  int retornaJanelaAltura() { return this.iJanelaAltura; }
+}
@@ -0,0 +1,322 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.tela;
+
+/**
+ * Governador de carga: decide quando deixar de desenhar frames e quanto
+ * trabalho opcional pode ser reduzido para manter a velocidade do game.
+ *
+ * A cada frame, GjME_Tela informa se está atrasada em relação ao relógio e
+ * quanto tempo o frame consumiu. Atrasada, a tela pode deixar de desenhar até
+ * defineSaltosMaximos() frames seguidos, mantendo a lógica no ritmo de iDelay.
+ * Se os frames estourarem o orçamento seguidamente, o nível de qualidade é
+ * reduzido; se houver folga por tempo suficiente, ele é restaurado um passo
+ * por vez. Cada nível define a cadência (a cada quantas atualizações) dos
+ * trabalhos opcionais:
+ *   OPCIONAL_PARALLAX: atualização das tiled layers com rolagem automática;
+ *   OPCIONAL_ANIMACAO: troca de frames das animações dos personagens;
+ *   OPCIONAL_DISTANTES: atualização de personagens não controláveis, com
+ *     física em ponto fixo, distantes da área visível.
+ * As atualizações puladas de rolagem e de personagens distantes são aplicadas
+ * de uma só vez na próxima atualização do objeto, então a velocidade do game
+ * não muda; só a animação fica mais lenta.
+ *
+ * As decisões ficam disponíveis em retornaNivel(), retornaCadencia() e nos
+ * contadores, para depuração ou para que o game reduza seus próprios efeitos.
+ * Não aloca memória durante a execução.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @see GjME_Tela.govCarga
+ * @final
+ */
+public final class GjME_GovernadorCarga {
+
+  /**
+   * Qualidade completa: nenhum trabalho opcional é reduzido.
+   */
+  public static final int NIVEL_MAXIMO = 0;
+  /**
+   * Menor qualidade possível.
+   */
+  public static final int NIVEL_MINIMO = 3;
+
+  /**
+   * Atualização das tiled layers com rolagem automática.
+   */
+  public static final int OPCIONAL_PARALLAX = 0;
+  /**
+   * Troca de frames das animações dos personagens.
+   */
+  public static final int OPCIONAL_ANIMACAO = 1;
+  /**
+   * Atualização dos personagens não controláveis, com física em ponto fixo,
+   * fora da área visível.
+   */
+  public static final int OPCIONAL_DISTANTES = 2;
+
+  /**
+   * Cadência de cada trabalho opcional em cada nível, indexada por [nível][opcional].
+   */
+  private static final int[][] CADENCIAS = {
+    {1, 1, 1},
+    {2, 1, 2},
+    {2, 2, 4},
+    {4, 2, 8}
+  };
+
+  /**
+   * Tempo disponível para cada frame, em milisegundos.
+   */
+  private int iOrcamento;
+
+  /**
+   * Nível de qualidade atual.
+   */
+  private int iNivel = GjME_GovernadorCarga.NIVEL_MAXIMO;
+  /**
+   * Nível de qualidade mais baixo que o governador pode adotar.
+   */
+  private int iNivelLimite = GjME_GovernadorCarga.NIVEL_MINIMO;
+
+  /**
+   * Frames seguidos acima do orçamento necessários para reduzir o nível.
+   */
+  private int iFramesDegradar = 8;
+  /**
+   * Frames seguidos com folga necessários para restaurar um nível.
+   */
+  private int iFramesRecuperar = 60;
+  /**
+   * Percentual do orçamento abaixo do qual um frame é considerado com folga.
+   */
+  private int iPercentualFolga = 75;
+  /**
+   * Quantidade máxima de frames seguidos sem desenho.
+   */
+  private int iSaltosMaximos = 2;
+
+  /**
+   * Frames seguidos acima do orçamento.
+   */
+  private int iSeguidosAcima = 0;
+  /**
+   * Frames seguidos com folga.
+   */
+  private int iSeguidosFolga = 0;
+  /**
+   * Frames seguidos que não foram desenhados.
+   */
+  private int iSaltosSeguidos = 0;
+
+  /**
+   * Total de frames não desenhados.
+   */
+  private int iTotalSaltos = 0;
+  /**
+   * Total de reduções de nível.
+   */
+  private int iTotalDegradacoes = 0;
+  /**
+   * Total de restaurações de nível.
+   */
+  private int iTotalRecuperacoes = 0;
+
+  /**
+   * Cria um governador.
+   * @param iOrcamento Tempo disponível para cada frame, em milisegundos
+   * (normalmente GjME_Tela.iDelay).
+   */
+  public GjME_GovernadorCarga(int iOrcamento) {
+    this.iOrcamento = iOrcamento;
+  }
+
+  /**
+   * Decide se o frame atual deve ser desenhado.
+   *
+   * Chamado uma vez por frame, depois da atualização da lógica.
+   * @param bAtrasado Indica se a tela já passou do horário do próximo frame;
+   * @return false se o desenho deve ser pulado.
+   */
+  public boolean deveDesenhar(boolean bAtrasado) {
+    if (bAtrasado && (this.iSaltosSeguidos < this.iSaltosMaximos)) {
+      this.iSaltosSeguidos++;
+      this.iTotalSaltos++;
+      return false;
+    }
+    this.iSaltosSeguidos = 0;
+    return true;
+  }
+
+  /**
+   * Registra a duração de um frame e ajusta o nível de qualidade.
+   *
+   * Frames não desenhados contam como acima do orçamento, já que seu tempo
+   * não inclui o desenho que foi evitado.
+   * @param lDuracao Tempo gasto no frame, sem contar a espera, em milisegundos;
+   * @param bDesenhado Indica se o frame foi desenhado.
+   */
+  public void registrarFrame(long lDuracao, boolean bDesenhado) {
+    if (!bDesenhado || (lDuracao > this.iOrcamento)) {
+      this.iSeguidosFolga = 0;
+      if (++this.iSeguidosAcima >= this.iFramesDegradar) {
+        this.iSeguidosAcima = 0;
+        if (this.iNivel < this.iNivelLimite) {
+          this.iNivel++;
+          this.iTotalDegradacoes++;
+        }
+      }
+    } else if (lDuracao * 100 <= (long) this.iOrcamento * this.iPercentualFolga) {
+      this.iSeguidosAcima = 0;
+      if (++this.iSeguidosFolga >= this.iFramesRecuperar) {
+        this.iSeguidosFolga = 0;
+        if (this.iNivel > GjME_GovernadorCarga.NIVEL_MAXIMO) {
+          this.iNivel--;
+          this.iTotalRecuperacoes++;
+        }
+      }
+    } else {
+      // -- Dentro do orçamento, mas sem folga: mantém o nível
+      this.iSeguidosAcima = 0;
+      this.iSeguidosFolga = 0;
+    }
+  }
+
+  /**
+   * Indica se um trabalho opcional deve ser executado em uma atualização.
+   * @param iOpcional Uma das constantes OPCIONAL_;
+   * @param iAtualizacao Número da atualização, que pode ser deslocado por
+   * objeto para distribuir o trabalho entre as atualizações;
+   * @return true se o trabalho deve ser executado.
+   */
+  public boolean deveExecutar(int iOpcional, int iAtualizacao) {
+    return 0 == ((iAtualizacao & 0x7FFFFFFF) % GjME_GovernadorCarga.CADENCIAS[this.iNivel][iOpcional]);
+  }
+
+  /**
+   * Retorna a cadência atual de um trabalho opcional.
+   * @param iOpcional Uma das constantes OPCIONAL_;
+   * @return A cada quantas atualizações o trabalho é executado.
+   */
+  public int retornaCadencia(int iOpcional) {
+    return GjME_GovernadorCarga.CADENCIAS[this.iNivel][iOpcional];
+  }
+
+  /**
+   * Retorna o nível de qualidade atual.
+   * @return Valor entre NIVEL_MAXIMO e NIVEL_MINIMO.
+   */
+  public int retornaNivel() { return this.iNivel; }
+
+  /**
+   * Define o nível de qualidade atual, que continua sendo ajustado pela carga.
+   * @param iNivel Valor entre NIVEL_MAXIMO e o limite de nível.
+   */
+  public void defineNivel(int iNivel) {
+    this.iNivel = Math.max(GjME_GovernadorCarga.NIVEL_MAXIMO, Math.min(iNivel, this.iNivelLimite));
+    this.iSeguidosAcima = 0;
+    this.iSeguidosFolga = 0;
+  }
+
+  /**
+   * Define o nível de qualidade mais baixo que pode ser adotado.
+   *
+   * Com NIVEL_MAXIMO, apenas o salto de frames permanece ativo.
+   * @param iNivelLimite Valor entre NIVEL_MAXIMO e NIVEL_MINIMO.
+   */
+  public void defineNivelLimite(int iNivelLimite) {
+    this.iNivelLimite = Math.max(GjME_GovernadorCarga.NIVEL_MAXIMO,
+            Math.min(iNivelLimite, GjME_GovernadorCarga.NIVEL_MINIMO));
+    if (this.iNivel > this.iNivelLimite) { this.iNivel = this.iNivelLimite; }
+  }
+
+  /**
+   * Define o tempo disponível para cada frame.
+   * @param iOrcamento Orçamento em milisegundos.
+   */
+  public void defineOrcamento(int iOrcamento) { this.iOrcamento = iOrcamento; }
+
+  /**
+   * Define quantos frames seguidos podem deixar de ser desenhados.
+   * @param iSaltosMaximos Quantidade de frames; zero desativa o salto.
+   */
+  public void defineSaltosMaximos(int iSaltosMaximos) {
+    this.iSaltosMaximos = Math.max(0, iSaltosMaximos);
+  }
+
+  /**
+   * Define a sensibilidade do governador.
+   * @param iFramesDegradar Frames seguidos acima do orçamento para reduzir o nível;
+   * @param iFramesRecuperar Frames seguidos com folga para restaurar um nível;
+   * @param iPercentualFolga Percentual do orçamento que caracteriza folga.
+   */
+  public void defineSensibilidade(int iFramesDegradar, int iFramesRecuperar, int iPercentualFolga) {
+    this.iFramesDegradar = Math.max(1, iFramesDegradar);
+    this.iFramesRecuperar = Math.max(1, iFramesRecuperar);
+    this.iPercentualFolga = Math.max(0, Math.min(iPercentualFolga, 100));
+  }
+
+  /**
+   * Retorna o total de frames que não foram desenhados.
+   * @return Quantidade de frames.
+   */
+  public int retornaTotalSaltos() { return this.iTotalSaltos; }
+
+  /**
+   * Retorna o total de reduções de nível.
+   * @return Quantidade de reduções.
+   */
+  public int retornaTotalDegradacoes() { return this.iTotalDegradacoes; }
+
+  /**
+   * Retorna o total de restaurações de nível.
+   * @return Quantidade de restaurações.
+   */
+  public int retornaTotalRecuperacoes() { return this.iTotalRecuperacoes; }
+
+  /**
+   * Volta ao nível máximo e zera os contadores.
+   */
+  public void zerar() {
+    this.iNivel = GjME_GovernadorCarga.NIVEL_MAXIMO;
+    this.iSeguidosAcima = 0;
+    this.iSeguidosFolga = 0;
+    this.iSaltosSeguidos = 0;
+    this.iTotalSaltos = 0;
+    this.iTotalDegradacoes = 0;
+    this.iTotalRecuperacoes = 0;
+  }
+}
@@ -0,0 +1,203 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.tela;
+
+import br.com.upzone.gjme.personagem.GjME_IFabricaPersonagem;
+import br.com.upzone.gjme.personagem.GjME_Personagem;
+
+/**
+ * Pool de personagens de vida curta (projéteis, efeitos, inimigos temporários).
+ *
+ * Todos os personagens são criados na construção do pool. Obter um personagem
+ * o adiciona à tela e devolvê-lo o remove da tela e reinicia sua pilha de
+ * ações, de modo que disparos e explosões não criem objetos durante o game e
+ * não provoquem pausas do coletor de lixo. Deve ser utilizado na thread do
+ * game: em processarInput() (um disparo do jogador), em processarColisoes()
+ * (explosões, remoção de projéteis) ou na atualização de um atualizável. Nos
+ * dois últimos casos a tela está percorrendo o registro de atualizáveis, e as
+ * inclusões e remoções só valem ao final da atualização: um personagem obtido
+ * começa a ser atualizado na próxima, e um devolvido ainda pode ser atualizado
+ * uma última vez. Com GjME_AtualizacaoParalela, chamadas feitas durante a
+ * atualização dos personagens devem ser adiadas com adiar().
+ *
+ * O pool registra o pico de uso e a quantidade de pedidos não atendidos,
+ * permitindo ajustar sua capacidade.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @final
+ */
+public final class GjME_PoolPersonagens {
+
+  /**
+   * Tela na qual os personagens obtidos são adicionados.
+   */
+  private final GjME_Tela tela;
+
+  /**
+   * Personagens livres, prontos para uso.
+   */
+  private final GjME_Personagem[] prsLivres;
+  /**
+   * Quantidade de personagens livres.
+   */
+  private int iQtdLivres;
+
+  /**
+   * Personagens em uso.
+   */
+  private final GjME_Personagem[] prsEmUso;
+  /**
+   * Quantidade de personagens em uso.
+   */
+  private int iQtdEmUso = 0;
+
+  /**
+   * Maior quantidade de personagens em uso ao mesmo tempo.
+   */
+  private int iPicoUso = 0;
+  /**
+   * Quantidade de pedidos feitos com o pool vazio.
+   */
+  private int iPedidosNegados = 0;
+
+  /**
+   * Cria um pool e todos os seus personagens.
+   * @param tela Tela na qual os personagens serão exibidos;
+   * @param fab Fábrica utilizada para criar os personagens;
+   * @param iCapacidade Quantidade de personagens do pool.
+   */
+  public GjME_PoolPersonagens(GjME_Tela tela, GjME_IFabricaPersonagem fab, int iCapacidade) {
+    this.tela = tela;
+    this.prsLivres = new GjME_Personagem[iCapacidade];
+    this.prsEmUso = new GjME_Personagem[iCapacidade];
+    for (int i = 0; i < iCapacidade; i++) {
+      this.prsLivres[i] = fab.criar();
+    }
+    this.iQtdLivres = iCapacidade;
+  }
+
+  /**
+   * Obtém um personagem livre, posiciona-o e o adiciona à tela.
+   *
+   * Não é seguro durante a fase paralela de GjME_AtualizacaoParalela; nesse
+   * caso, a chamada deve ser adiada com adiar().
+   * @param iX Coordenada X do personagem;
+   * @param iY Coordenada Y do personagem;
+   * @param IDAcao Ação inicial do personagem;
+   * @return O personagem ou null se todos estiverem em uso.
+   */
+  public GjME_Personagem obter(int iX, int iY, int IDAcao) {
+    if (0 == this.iQtdLivres) {
+      this.iPedidosNegados++;
+      return null;
+    }
+    GjME_Personagem prs = this.prsLivres[--this.iQtdLivres];
+    this.prsLivres[this.iQtdLivres] = null;
+    this.prsEmUso[this.iQtdEmUso++] = prs;
+    if (this.iQtdEmUso > this.iPicoUso) { this.iPicoUso = this.iQtdEmUso; }
+
+    prs.setPosition(iX, iY);
+    prs.setVisible(true);
+    prs.empilharAcao(IDAcao);
+    this.tela.adicionarLayer(prs);
+    return prs;
+  }
+
+  /**
+   * Remove um personagem da tela e o devolve ao pool.
+   *
+   * Personagens que não estão em uso são ignorados. Durante a fase paralela
+   * de GjME_AtualizacaoParalela, a chamada deve ser adiada com adiar().
+   * @param prs Personagem obtido deste pool.
+   */
+  public void devolver(GjME_Personagem prs) {
+    for (int i = 0; i < this.iQtdEmUso; i++) {
+      if (this.prsEmUso[i] == prs) {
+        this.prsEmUso[i] = this.prsEmUso[--this.iQtdEmUso];
+        this.prsEmUso[this.iQtdEmUso] = null;
+        this.tela.removerLayer(prs);
+        prs.reiniciar();
+        this.prsLivres[this.iQtdLivres++] = prs;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Devolve ao pool todos os personagens em uso.
+   */
+  public void devolverTodos() {
+    while (this.iQtdEmUso > 0) {
+      this.devolver(this.prsEmUso[this.iQtdEmUso - 1]);
+    }
+  }
+
+  // -- Estatísticas -----------------------------------------------------------
+  /**
+   * Retorna a quantidade de personagens em uso.
+   * @return Quantidade de personagens.
+   */
+  public int retornaQtdEmUso() { return this.iQtdEmUso; }
+
+  /**
+   * Retorna a maior quantidade de personagens em uso ao mesmo tempo.
+   * @return Pico de uso.
+   */
+  public int retornaPicoUso() { return this.iPicoUso; }
+
+  /**
+   * Retorna a quantidade de pedidos feitos com o pool vazio.
+   *
+   * Valores diferentes de zero indicam que a capacidade deve ser aumentada.
+   * @return Quantidade de pedidos negados.
+   */
+  public int retornaPedidosNegados() { return this.iPedidosNegados; }
+
+  /**
+   * Retorna a capacidade do pool.
+   * @return Quantidade total de personagens.
+   */
+  public int retornaCapacidade() { return this.prsLivres.length; }
+
+  /**
+   * Zera o pico de uso e os pedidos negados, mantendo os personagens em uso.
+   */
+  public void zerarEstatisticas() {
+    this.iPicoUso = this.iQtdEmUso;
+    this.iPedidosNegados = 0;
+  }
+}
@@ -40,9 +40,15 @@ import javax.microedition.lcdui.Graphics;
 import javax.microedition.lcdui.game.GameCanvas;
 import javax.microedition.lcdui.game.Layer;
 import javax.microedition.lcdui.game.LayerManager;
+import javax.microedition.lcdui.game.Sprite;
 
+import br.com.upzone.gjme.GjME_Fisica;
+import br.com.upzone.gjme.GjME_IAtualizavel;
+import br.com.upzone.gjme.colisao.GjME_GradeColisao;
 import br.com.upzone.gjme.layer.GjME_TiledLayer;
+import br.com.upzone.gjme.personagem.GjME_LoteNPC;
 import br.com.upzone.gjme.personagem.GjME_Personagem;
+import br.com.upzone.gjme.personagem.IPersonagemNaoControlavel;
 
 /**
  * Implementação de um GameCanvas para tratamento das telas do game.
@@ -58,10 +64,24 @@ public abstract class GjME_Tela extends GameCanvas implements Runnable {
   protected boolean bTelaAtiva = false;
 
   /**
-   * Tempo de pausa entre atualizações da tela.
+   * Duração de cada frame do game em milisegundos.
+   *
+   * É o passo fixo de tempo da lógica: cada chamada a atualizarLayers() avança
+   * o game exatamente este intervalo, independente da velocidade do aparelho.
    */
   protected int iDelay = 100;
 
+  /**
+   * Quantidade máxima de atualizações executadas em um único frame.
+   *
+   * Quando o aparelho não consegue manter o ritmo definido em iDelay, a lógica
+   * é atualizada mais de uma vez antes de desenhar para recuperar o atraso. Este
+   * limite evita que um atraso muito grande trave a tela em atualizações; o
+   * tempo que exceder o limite é descartado.
+   * @see GjME_Tela.iDelay
+   */
+  protected int iMaxAtualizacoes = 5;
+
   /**
    * RGB da cor utilizada como fundo do game.
    */
@@ -69,71 +89,1246 @@ public abstract class GjME_Tela extends GameCanvas implements Runnable {
 
   /**
    * Gerenciador de camadas do game.
+   *
+   * Layers devem ser adicionadas e removidas preferencialmente através de
+   * adicionarLayer(), inserirLayer() e removerLayer(), que mantêm o registro
+   * de objetos atualizáveis em sincronia. Alterações feitas diretamente no
+   * LayerManager são percebidas por um contador e o registro é refeito na
+   * próxima atualização. Se lm for substituído por outro LayerManager, essa
+   * verificação passa a comparar as layers uma a uma.
+   * @see GjME_Tela.adicionarLayer()
+   */
+  protected LayerManager lm = new GjME_GerenciadorLayers();
+
+  /**
+   * Objetos atualizados a cada frame, na ordem em que foram registrados.
+   * @see GjME_IAtualizavel
+   */
+  private GjME_IAtualizavel[] atuRegistrados = new GjME_IAtualizavel[16];
+
+  /**
+   * Atualizações puladas pelo governador de carga para cada objeto de
+   * atuRegistrados, aplicadas de uma só vez na próxima atualização dele.
+   * @see GjME_Tela.govCarga
+   */
+  private int[] iarAtrasos = new int[16];
+
+  /**
+   * Quantidade de objetos registrados em atuRegistrados.
+   */
+  private int iQtdAtualizaveis = 0;
+
+  /**
+   * Indica que atualizarLayers() está percorrendo o registro.
+   *
+   * Enquanto verdadeiro, inclusões e remoções no registro são enfileiradas em
+   * atuPendentes e aplicadas ao final da atualização.
+   */
+  private boolean bAtualizando = false;
+
+  /**
+   * Objetos incluídos ou removidos do registro durante a atualização.
+   */
+  private GjME_IAtualizavel[] atuPendentes = new GjME_IAtualizavel[8];
+
+  /**
+   * Indica, para cada objeto de atuPendentes, se ele é incluído ou removido.
+   */
+  private boolean[] barPendentesInclusao = new boolean[8];
+
+  /**
+   * Quantidade de alterações em atuPendentes.
+   */
+  private int iQtdPendentes = 0;
+
+  /**
+   * Personagens registrados como atualizáveis, utilizados pela grade de colisão.
+   */
+  private GjME_Personagem[] prsRegistrados = new GjME_Personagem[16];
+
+  /**
+   * Quantidade de personagens em prsRegistrados.
+   */
+  private int iQtdPersonagens = 0;
+
+  /**
+   * Grade de colisão reconstruída a cada atualização com a posição dos personagens.
+   *
+   * Desativada quando nula. Após a reconstrução é chamado processarColisoes().
+   * @see GjME_GradeColisao
+   * @see GjME_Tela.processarColisoes()
+   */
+  protected GjME_GradeColisao grdColisao = null;
+
+  /**
+   * LayerManager cujo conteúdo foi sincronizado com o registro.
+   *
+   * Se lm for substituído, o registro é reconstruído no próximo frame.
+   */
+  private LayerManager lmRegistrado = null;
+
+  /**
+   * Contador de alterações de lm quando o registro foi sincronizado.
+   * @see GjME_GerenciadorLayers.retornaAlteracoes()
+   */
+  private int iAlteracoesRegistradas = 0;
+
+  /**
+   * Quantidade de layers do LayerManager quando o registro foi sincronizado.
+   *
+   * Usada apenas quando lm não é um GjME_GerenciadorLayers.
+   */
+  private int iQtdLayersRegistradas = 0;
+
+  /**
+   * Layers do LayerManager, na ordem dele, quando o registro foi sincronizado.
+   *
+   * Usadas apenas quando lm não é um GjME_GerenciadorLayers, para detectar
+   * trocas que não mudam a quantidade de layers, como lm.remove(a) seguido de
+   * lm.append(b).
+   */
+  private Layer[] lyrRegistradas = new Layer[0];
+
+  /**
+   * Indica que apenas as regiões alteradas da tela devem ser redesenhadas.
+   *
+   * Neste modo, a tela compara os limites (e o estado visual) de cada layer do
+   * LayerManager com os do frame anterior e redesenha somente as regiões
+   * alteradas, cada uma com seu flushGraphics(x, y, w, h). Regiões que se
+   * sobrepõem ou estão próximas são unidas; se passarem de QTD_MAX_REGIOES, a
+   * tela inteira é redesenhada. Os limites das layers são convertidos para
+   * coordenadas de tela pela janela de visualização do LayerManager, e uma
+   * mudança da janela redesenha a tela inteira. Alterações que a tela não
+   * consegue detectar sozinha devem ser informadas com invalidarRegiao().
+   * @see GjME_Tela.invalidarRegiao()
+   */
+  protected boolean bDesenhoParcial = false;
+
+  /**
+   * Auditoria de alocações e chamadas lentas por frame.
+   *
+   * Desativada quando nula. Deve ser usada apenas em depuração.
+   * @see GjME_Auditoria
+   */
+  protected GjME_Auditoria audFrames = null;
+
+  /**
+   * Histórico das durações das fases dos últimos frames.
+   *
+   * Desativado quando nulo. Não aloca memória e pode ser usado em produção.
+   * @see GjME_TemposFrame
+   */
+  protected GjME_TemposFrame tmpFrames = null;
+
+  /**
+   * Indica se o painel de desempenho de tmpFrames é desenhado no canto
+   * superior esquerdo da tela.
+   * @see GjME_TemposFrame.desenhar()
+   */
+  protected boolean bExibirDesempenho = false;
+
+  /**
+   * Eventos de teclado recebidos desde o último processarInput().
+   *
+   * Deve ser esvaziada em processarInput(), seja evento a evento ou com
+   * drenarEstados(), que substitui getKeyStates() sem perder toques curtos.
+   * @see GjME_FilaEventosTeclado
+   */
+  protected final GjME_FilaEventosTeclado filTeclado = new GjME_FilaEventosTeclado(32);
+
+  /**
+   * Atualização dos personagens dividida entre várias threads.
+   *
+   * Desativada quando nula. Destinada a cenas grandes em JVMs desktop; com ela,
+   * ações que afetem outros objetos devem usar parAtualizacao.adiar(), inclusive
+   * GjME_PoolPersonagens.obter() e adicionarLayer().
+   * @see GjME_AtualizacaoParalela
+   */
+  protected GjME_AtualizacaoParalela parAtualizacao = null;
+
+  /**
+   * Governador de carga, que pula desenhos e reduz trabalho opcional quando
+   * os frames estouram o orçamento.
+   *
+   * Desativado quando nulo. Com parAtualizacao definida, todos os personagens
+   * são atualizados, mesmo os distantes.
+   * @see GjME_GovernadorCarga
+   */
+  protected GjME_GovernadorCarga govCarga = null;
+
+  /**
+   * Distância além das bordas da tela a partir da qual um personagem não
+   * controlável é considerado distante pelo governador de carga.
+   * @see GjME_GovernadorCarga.OPCIONAL_DISTANTES
+   */
+  protected int iMargemDistantes = 32;
+
+  /**
+   * Quantidade de atualizações da lógica, usada na cadência do trabalho opcional.
+   */
+  private int iAtualizacao = 0;
+
+  /**
+   * Cadência de animação aplicada aos personagens registrados.
+   */
+  private int iCadenciaAplicada = 1;
+
+  // -- Controle de regiões alteradas ------------------------------------------
+  /**
+   * Quantidade de campos armazenados por layer em iarEstadoLayers.
+   */
+  private static final int QTD_CAMPOS_ESTADO = 7;
+
+  /**
+   * Layers desenhadas no frame anterior, na ordem do LayerManager.
+   */
+  private Layer[] lyrDesenhadas = new Layer[16];
+
+  /**
+   * Estado das layers desenhadas no frame anterior.
+   *
+   * Para cada layer são armazenados: x, y, largura, altura, visibilidade,
+   * frame atual e contador de alterações visuais.
+   */
+  private int[] iarEstadoLayers = new int[16 * GjME_Tela.QTD_CAMPOS_ESTADO];
+
+  /**
+   * Quantidade de layers desenhadas no frame anterior.
+   */
+  private int iQtdLayersDesenhadas = 0;
+
+  /**
+   * Quantidade máxima de regiões alteradas separadas por frame.
+   *
+   * Passando disso, a tela inteira é redesenhada.
+   */
+  private static final int QTD_MAX_REGIOES = 8;
+
+  /**
+   * Distância, em pixels, abaixo da qual duas regiões alteradas são unidas.
+   */
+  private static final int DISTANCIA_UNIAO_REGIOES = 8;
+
+  /**
+   * Regiões alteradas desde o último desenho, em coordenadas de tela.
+   *
+   * Para cada região são armazenados: x1, y1, x2 e y2.
+   */
+  private int[] iarRegioesAlteradas = new int[GjME_Tela.QTD_MAX_REGIOES * 4];
+
+  /**
+   * Quantidade de regiões em iarRegioesAlteradas.
+   */
+  private int iQtdRegioes = 0;
+
+  /**
+   * Janela de visualização do LayerManager no frame anterior: x, y, largura e altura.
+   */
+  private int[] iarJanelaDesenhada = new int[4];
+
+  /**
+   * Indica que toda a tela deve ser redesenhada no próximo frame.
    */
-  protected LayerManager lm = new LayerManager();
+  private boolean bRedesenharTudo = true;
+
+  // -- Lotes de personagens ---------------------------------------------------
+  /**
+   * Lotes de personagens não controláveis, desenhados após o LayerManager.
+   * @see GjME_LoteNPC
+   */
+  private GjME_LoteNPC[] ltsLotes = new GjME_LoteNPC[4];
+
+  /**
+   * Quantidade de lotes em ltsLotes.
+   */
+  private int iQtdLotes = 0;
+
+  /**
+   * Área auxiliar para consulta dos limites dos lotes.
+   */
+  private final int[] iarLimitesLote = new int[4];
+
+  /**
+   * Graphics utilizado por avancarFrame(), obtido na primeira chamada.
+   */
+  private Graphics gPasso = null;
+
+  // -- Modo de duas threads ---------------------------------------------------
+  /**
+   * Indica se a atualização e o desenho são executados em threads separadas.
+   *
+   * A thread de atualização captura uma cópia da cena (GjME_Cena) a cada frame
+   * e a thread de desenho desenha a cópia mais recente, de modo que a lógica do
+   * próximo frame é executada enquanto o frame atual é desenhado. São usadas
+   * três cópias: a que está sendo capturada, a pronta e a que está sendo
+   * desenhada; a troca entre elas é a única sincronização e não depende da
+   * duração do trabalho da outra thread. Neste modo o desenho é sempre completo
+   * (bDesenhoParcial é ignorado). Deve ser definido antes de start().
+   * @see GjME_Cena
+   */
+  protected boolean bDuasThreads = false;
+
+  /**
+   * Valor de bDuasThreads na última chamada a start().
+   */
+  private boolean bDuasThreadsAtivo = false;
+
+  /**
+   * Cena sendo capturada pela thread de atualização.
+   */
+  private GjME_Cena cenCaptura;
+  /**
+   * Última cena capturada, aguardando o desenho.
+   */
+  private GjME_Cena cenPronta;
+  /**
+   * Cena sendo desenhada pela thread de desenho.
+   */
+  private GjME_Cena cenDesenho;
+  /**
+   * Indica se cenPronta ainda não foi desenhada.
+   */
+  private boolean bCenaNova = false;
+  /**
+   * Monitor das trocas de cenas.
+   */
+  private final Object objTrocaCenas = new Object();
+  /**
+   * Duração, em milisegundos, do último desenho da thread de desenho.
+   */
+  private volatile long lDuracaoDesenho = 0;
 
  /**
   * Construtor de telas.
+  *
+  * Os eventos de teclado das teclas de game não são suprimidos, pois alimentam
+  * filTeclado.
   */
   public GjME_Tela() {
-    super(true);
+    super(false);
     this.setFullScreenMode(true);
   }
 
+  /**
+   * Publica o evento de tecla pressionada em filTeclado.
+   * @param iCodigo Código da tecla.
+   */
+  protected void keyPressed(int iCodigo) {
+    this.filTeclado.publicar(iCodigo, this.getGameAction(iCodigo), true);
+  }
+
+  /**
+   * Publica o evento de tecla solta em filTeclado.
+   * @param iCodigo Código da tecla.
+   */
+  protected void keyReleased(int iCodigo) {
+    this.filTeclado.publicar(iCodigo, this.getGameAction(iCodigo), false);
+  }
+
   /**
    * Inicia a thread de atualização da tela do game.
    */
   public void start() {
     this.bTelaAtiva = true;
+    this.bDuasThreadsAtivo = this.bDuasThreads;
+    if (this.bDuasThreadsAtivo) {
+      if (null == this.cenCaptura) {
+        this.cenCaptura = new GjME_Cena();
+        this.cenPronta = new GjME_Cena();
+        this.cenDesenho = new GjME_Cena();
+      }
+      this.bCenaNova = false;
+      new Thread(new Runnable() {
+        public void run() { GjME_Tela.this.executarDesenho(); }
+      }).start();
+    }
     new Thread(this).start();
   }
 
   /**
    * Finaliza a thread de atualização da tela do game.
    */
-  public void stop() { this.bTelaAtiva = false; }
+  public void stop() {
+    this.bTelaAtiva = false;
+    // -- Acorda a thread de desenho para que ela perceba o fim da execução
+    synchronized (this.objTrocaCenas) { this.objTrocaCenas.notify(); }
+    if (null != this.parAtualizacao) { this.parAtualizacao.encerrar(); }
+  }
 
   /**
    * Código de execução da thread faz leitura de inputs e desenha o conteúdo do layermanager.
+   *
+   * O laço trabalha com passo fixo de tempo: a lógica é atualizada uma vez a
+   * cada iDelay milisegundos decorridos e a thread dorme apenas o que restar do
+   * frame. Se o frame atrasar, são feitas atualizações extras (até
+   * iMaxAtualizacoes) antes de desenhar novamente.
+   * O laço não aloca memória; se audFrames estiver definida, cada fase é
+   * auditada, e se tmpFrames estiver definido, as durações são guardadas.
+   * Com govCarga definido, o desenho pode ser pulado quando não há mais tempo
+   * no frame, de modo que a lógica mantém o ritmo.
+   * @see GjME_Tela.iDelay
+   * @see GjME_Tela.iMaxAtualizacoes
+   * @see GjME_Tela.govCarga
    */
   public void run() {
     Graphics g = this.getGraphics();
+    // -- A física dos personagens é escalada pela duração do frame
+    int iPassoTempo = GjME_Fisica.passoTempoFx(this.iDelay);
+    for (int i = 0; i < this.iQtdPersonagens; i++) {
+      this.prsRegistrados[i].definePassoTempo(iPassoTempo);
+    }
+    long lProximoFrame = System.currentTimeMillis();
     while (this.bTelaAtiva) {
+      long lInicioFrame = System.currentTimeMillis();
+      GjME_Auditoria aud = this.audFrames;
+      if (null != aud) {
+        aud.iniciarFrame();
+        aud.iniciarFase();
+      }
       this.processarInput();
-      this.atualizarLayers();
-      this.desenhar(g);
-      try {
-        Thread.sleep(this.iDelay);
-      } catch (InterruptedException iex) {
-        System.out.println(iex.getMessage());
+      if (null != aud) {
+        aud.finalizarFase(GjME_Auditoria.FASE_INPUT);
+        aud.iniciarFase();
+      }
+      // -- Atualiza a lógica quantas vezes forem necessárias para alcançar o relógio
+      long lAgora = System.currentTimeMillis();
+      int iAtualizacoes = 0;
+      do {
+        this.atualizarLayers();
+        lProximoFrame += this.iDelay;
+        iAtualizacoes++;
+      } while ((lProximoFrame <= lAgora) && (iAtualizacoes < this.iMaxAtualizacoes));
+      // -- Atraso além do limite de atualizações é descartado
+      if (lProximoFrame < lAgora) { lProximoFrame = lAgora; }
+      if (null != aud) {
+        aud.finalizarFase(GjME_Auditoria.FASE_ATUALIZACAO);
+        aud.iniciarFase();
       }
+      long lFimAtualizacao = System.currentTimeMillis();
+      GjME_GovernadorCarga gov = this.govCarga;
+      boolean bDesenhar = (null == gov) || gov.deveDesenhar(lFimAtualizacao >= lProximoFrame);
+      // -- Sem tempo para desenhar, o próximo frame desenha o estado mais recente
+      if (bDesenhar) {
+        if (this.bDuasThreadsAtivo) {
+          this.publicarCena();
+        } else {
+          this.desenhar(g);
+        }
+      }
+      if (null != aud) {
+        aud.finalizarFase(GjME_Auditoria.FASE_DESENHO);
+        aud.finalizarFrame();
+      }
+      if (null != this.tmpFrames) {
+        // -- Com duas threads, o desenho é medido na thread de desenho
+        this.tmpFrames.registrarFrame(lAgora - lInicioFrame, lFimAtualizacao - lAgora,
+                this.bDuasThreadsAtivo ? this.lDuracaoDesenho
+                                       : System.currentTimeMillis() - lFimAtualizacao);
+      }
+      if (null != gov) { gov.registrarFrame(System.currentTimeMillis() - lInicioFrame, bDesenhar); }
+      // -- Dorme somente o tempo que resta do frame atual
+      long lEspera = lProximoFrame - System.currentTimeMillis();
+      if (lEspera > 0) {
+        try {
+          Thread.sleep(lEspera);
+        } catch (InterruptedException iex) {
+          // -- Interrupção apenas antecipa o próximo frame
+        }
+      } else { Thread.yield(); }
     }
   }
 
+  /**
+   * Executa um único frame (input, uma atualização e desenho) sem consultar o relógio.
+   *
+   * Permite conduzir a tela frame a frame fora da thread do game, por exemplo
+   * no executor headless ou em medições de desempenho. Não deve ser chamado
+   * enquanto a thread da tela estiver em execução.
+   * @see GjME_Tela.run()
+   */
+  public void avancarFrame() {
+    if (null == this.gPasso) { this.gPasso = this.getGraphics(); }
+    this.processarInput();
+    this.atualizarLayers();
+    this.desenhar(this.gPasso);
+  }
+
   /**
    * Define a cor de fundo da tela do game e pinta o conteúdo do LayerManager.
+   *
+   * Se o desenho parcial estiver ativo, apenas as regiões alteradas desde o
+   * último frame são pintadas e enviadas para a tela.
    * @param g Recurso de desenho do sistema.
+   * @see GjME_Tela.bDesenhoParcial
    */
   private void desenhar(Graphics g) {
-    g.setColor(this.iCorFundo);
-    g.fillRect(0, 0, this.getWidth(), this.getHeight());
-    this.lm.paint(g, 0, 0);
-    this.flushGraphics();
+    int iLargura = this.getWidth(),
+        iAltura = this.getHeight();
+    if (!this.bDesenhoParcial) {
+      g.setColor(this.iCorFundo);
+      g.fillRect(0, 0, iLargura, iAltura);
+      this.desenharLayers(g);
+      this.desenharLotes(g);
+      this.desenharDesempenho(g);
+      this.flushGraphics();
+      return;
+    }
+
+    this.calcularRegiaoAlterada();
+    // -- Lotes são redesenhados por inteiro: onde estavam e onde estão
+    for (int i = 0; i < this.iQtdLotes; i++) {
+      int[] iarL = this.iarLimitesLote;
+      this.ltsLotes[i].retornaLimitesDesenhados(iarL);
+      this.invalidarRegiao(iarL[0], iarL[1], iarL[2] - iarL[0], iarL[3] - iarL[1]);
+      this.ltsLotes[i].retornaLimites(iarL);
+      this.invalidarRegiao(iarL[0], iarL[1], iarL[2] - iarL[0], iarL[3] - iarL[1]);
+    }
+    // -- O painel de desempenho muda a cada frame
+    if (this.bExibirDesempenho && (null != this.tmpFrames)) {
+      this.invalidarRegiao(0, 0, GjME_TemposFrame.LARGURA_PAINEL, GjME_TemposFrame.ALTURA_PAINEL);
+    }
+    if (this.bRedesenharTudo) {
+      this.iQtdRegioes = 0;
+      this.adicionarRegiao(0, 0, iLargura, iAltura);
+      this.bRedesenharTudo = false;
+    }
+
+    int[] iarR = this.iarRegioesAlteradas;
+    for (int i = 0; i < this.iQtdRegioes; i++) {
+      // -- Limita a região alterada à área da tela
+      int iPos = i * 4,
+          iX1 = Math.max(0, iarR[iPos]),
+          iY1 = Math.max(0, iarR[iPos + 1]),
+          iX2 = Math.min(iLargura, iarR[iPos + 2]),
+          iY2 = Math.min(iAltura, iarR[iPos + 3]);
+      if ((iX1 >= iX2) || (iY1 >= iY2)) { continue; }
+      g.setClip(iX1, iY1, iX2 - iX1, iY2 - iY1);
+      g.setColor(this.iCorFundo);
+      g.fillRect(iX1, iY1, iX2 - iX1, iY2 - iY1);
+      this.desenharLayers(g);
+      this.desenharLotes(g);
+      this.desenharDesempenho(g);
+      this.flushGraphics(iX1, iY1, iX2 - iX1, iY2 - iY1);
+    }
+    this.iQtdRegioes = 0;
+    g.setClip(0, 0, iLargura, iAltura);
   }
 
   /**
-   * Atualiza as GjME_TiledLayer armazenadas no LayerManager.
+   * Captura a cena atual e a entrega à thread de desenho.
+   *
+   * A cena capturada troca de lugar com a cena pronta; se a cena pronta ainda
+   * não foi desenhada, ela é descartada em favor da mais nova.
    */
-  private void atualizarLayers() {
+  private void publicarCena() {
+    this.cenCaptura.capturar(this.lm, this.ltsLotes, this.iQtdLotes,
+            this.bExibirDesempenho ? this.tmpFrames : null);
+    synchronized (this.objTrocaCenas) {
+      GjME_Cena cen = this.cenPronta;
+      this.cenPronta = this.cenCaptura;
+      this.cenCaptura = cen;
+      this.bCenaNova = true;
+      this.objTrocaCenas.notify();
+    }
+  }
+
+  /**
+   * Laço da thread de desenho no modo de duas threads.
+   *
+   * Aguarda uma cena nova, troca-a pela cena desenhada anteriormente e a
+   * desenha por completo.
+   * @see GjME_Tela.bDuasThreads
+   */
+  private void executarDesenho() {
+    Graphics g = this.getGraphics();
+    int iLargura = this.getWidth(),
+        iAltura = this.getHeight();
+    while (this.bTelaAtiva) {
+      synchronized (this.objTrocaCenas) {
+        if (!this.bCenaNova) {
+          try {
+            this.objTrocaCenas.wait(this.iDelay);
+          } catch (InterruptedException iex) {
+            // -- Interrupção apenas antecipa a verificação
+          }
+          continue;
+        }
+        GjME_Cena cen = this.cenDesenho;
+        this.cenDesenho = this.cenPronta;
+        this.cenPronta = cen;
+        this.bCenaNova = false;
+      }
+      long lInicio = System.currentTimeMillis();
+      g.setColor(this.iCorFundo);
+      g.fillRect(0, 0, iLargura, iAltura);
+      // -- Lotes e painel de desempenho fazem parte da cena capturada
+      this.cenDesenho.desenhar(g);
+      this.flushGraphics();
+      this.lDuracaoDesenho = System.currentTimeMillis() - lInicio;
+    }
+  }
+
+  /**
+   * Desenha as layers do LayerManager, da última para a primeira.
+   *
+   * Sem tiled layers com cache ativo, chama lm.paint(g, 0, 0). Com elas, as
+   * layers são percorridas aqui, com a mesma translação e o mesmo recorte da
+   * janela de visualização que LayerManager.paint() aplicaria, e as tiled
+   * layers com cache são desenhadas a partir da imagem pré-desenhada. Se lm
+   * foi substituído por outro LayerManager, cuja janela não é conhecida, o
+   * cache é ignorado.
+   * @param g Recurso de desenho do sistema.
+   * @see GjME_TiledLayer.defineCache()
+   */
+  private void desenharLayers(Graphics g) {
+    LayerManager lm = this.lm;
+    if (!(lm instanceof GjME_GerenciadorLayers) || !GjME_Tela.possuiCache(lm)) {
+      lm.paint(g, 0, 0);
+      return;
+    }
+    GjME_GerenciadorLayers gl = (GjME_GerenciadorLayers)lm;
+    int iJanelaX = gl.retornaJanelaX(),
+        iJanelaY = gl.retornaJanelaY(),
+        iClipX = g.getClipX(),
+        iClipY = g.getClipY(),
+        iClipLargura = g.getClipWidth(),
+        iClipAltura = g.getClipHeight();
+    g.translate(-iJanelaX, -iJanelaY);
+    g.clipRect(iJanelaX, iJanelaY, gl.retornaJanelaLargura(), gl.retornaJanelaAltura());
+    for (int i = lm.getSize() - 1; i >= 0; i--) {
+      Layer lyr = lm.getLayerAt(i);
+      if (!lyr.isVisible()) { continue; }
+      if (!(lyr instanceof GjME_TiledLayer) || !((GjME_TiledLayer)lyr).desenharCache(g)) {
+        lyr.paint(g);
+      }
+    }
+    g.translate(iJanelaX, iJanelaY);
+    g.setClip(iClipX, iClipY, iClipLargura, iClipAltura);
+  }
+
+  /**
+   * Indica se alguma tiled layer visível do LayerManager usa o cache.
+   */
+  private static boolean possuiCache(LayerManager lm) {
+    for (int i = lm.getSize() - 1; i >= 0; i--) {
+      Layer lyr = lm.getLayerAt(i);
+      if ((lyr instanceof GjME_TiledLayer) && lyr.isVisible() && ((GjME_TiledLayer)lyr).usaCache()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Desenha os lotes de personagens sobre o conteúdo do LayerManager.
+   * @param g Recurso de desenho do sistema.
+   */
+  private void desenharLotes(Graphics g) {
+    for (int i = 0; i < this.iQtdLotes; i++) {
+      this.ltsLotes[i].desenhar(g);
+    }
+  }
+
+  /**
+   * Desenha o painel de desempenho, se estiver ativo.
+   * @param g Recurso de desenho do sistema.
+   * @see GjME_Tela.bExibirDesempenho
+   */
+  private void desenharDesempenho(Graphics g) {
+    if (this.bExibirDesempenho && (null != this.tmpFrames)) {
+      this.tmpFrames.desenhar(g, 0, 0);
+    }
+  }
+
+  /**
+   * Marca uma região da tela para ser redesenhada no próximo frame.
+   *
+   * Deve ser utilizado quando o conteúdo de uma layer muda sem alterar sua
+   * posição, tamanho, frame ou células (ex: Sprite.setImage()). As coordenadas
+   * são de tela; para uma layer deslocada pela janela de visualização do
+   * LayerManager, subtraia a origem da janela.
+   * @param iX Coordenada X da região;
+   * @param iY Coordenada Y da região;
+   * @param iLargura Largura da região;
+   * @param iAltura Altura da região;
+   * @see GjME_Tela.bDesenhoParcial
+   */
+  public void invalidarRegiao(int iX, int iY, int iLargura, int iAltura) {
+    if ((iLargura <= 0) || (iAltura <= 0) || this.bRedesenharTudo) { return; }
+    this.adicionarRegiao(iX, iY, iX + iLargura, iY + iAltura);
+  }
+
+  /**
+   * Adiciona uma região, em coordenadas de tela, à lista de regiões alteradas.
+   *
+   * Regiões que se sobrepõem à nova, ou que estão a menos de
+   * DISTANCIA_UNIAO_REGIOES dela, são unidas a ela e retiradas da lista, até
+   * que nenhuma outra esteja próxima. Se a lista estiver cheia, toda a tela é
+   * marcada para ser redesenhada.
+   * @param iX1 Coordenada X inicial;
+   * @param iY1 Coordenada Y inicial;
+   * @param iX2 Coordenada X final (exclusiva);
+   * @param iY2 Coordenada Y final (exclusiva).
+   */
+  private void adicionarRegiao(int iX1, int iY1, int iX2, int iY2) {
+    int[] iarR = this.iarRegioesAlteradas;
+    int iDistancia = GjME_Tela.DISTANCIA_UNIAO_REGIOES;
+    int i = 0;
+    while (i < this.iQtdRegioes) {
+      int iPos = i * 4;
+      if ((iX1 > iarR[iPos + 2] + iDistancia) || (iarR[iPos] > iX2 + iDistancia)
+              || (iY1 > iarR[iPos + 3] + iDistancia) || (iarR[iPos + 1] > iY2 + iDistancia)) {
+        i++;
+        continue;
+      }
+      // -- Une as duas, retira a antiga (a última ocupa seu lugar) e recomeça a busca
+      iX1 = Math.min(iX1, iarR[iPos]);
+      iY1 = Math.min(iY1, iarR[iPos + 1]);
+      iX2 = Math.max(iX2, iarR[iPos + 2]);
+      iY2 = Math.max(iY2, iarR[iPos + 3]);
+      this.iQtdRegioes--;
+      System.arraycopy(iarR, this.iQtdRegioes * 4, iarR, iPos, 4);
+      i = 0;
+    }
+    if (this.iQtdRegioes == GjME_Tela.QTD_MAX_REGIOES) {
+      this.iQtdRegioes = 0;
+      this.bRedesenharTudo = true;
+      return;
+    }
+    int iPos = this.iQtdRegioes * 4;
+    iarR[iPos] = iX1;
+    iarR[iPos + 1] = iY1;
+    iarR[iPos + 2] = iX2;
+    iarR[iPos + 3] = iY2;
+    this.iQtdRegioes++;
+  }
+
+  /**
+   * Marca uma região, em coordenadas das layers, para ser redesenhada.
+   *
+   * A região é deslocada pela origem da janela de visualização e limitada ao
+   * seu tamanho, como em LayerManager.paint(g, 0, 0). Um LayerManager que não
+   * seja GjME_GerenciadorLayers não informa a janela; a região é usada como está.
+   * @param iX Coordenada X da região;
+   * @param iY Coordenada Y da região;
+   * @param iLargura Largura da região;
+   * @param iAltura Altura da região.
+   */
+  private void invalidarRegiaoLayers(int iX, int iY, int iLargura, int iAltura) {
+    if (!(this.lm instanceof GjME_GerenciadorLayers)) {
+      this.invalidarRegiao(iX, iY, iLargura, iAltura);
+      return;
+    }
+    GjME_GerenciadorLayers gl = (GjME_GerenciadorLayers)this.lm;
+    int iX1 = iX - gl.retornaJanelaX(),
+        iY1 = iY - gl.retornaJanelaY(),
+        iX2 = Math.min(iX1 + iLargura, gl.retornaJanelaLargura()),
+        iY2 = Math.min(iY1 + iAltura, gl.retornaJanelaAltura());
+    iX1 = Math.max(0, iX1);
+    iY1 = Math.max(0, iY1);
+    this.invalidarRegiao(iX1, iY1, iX2 - iX1, iY2 - iY1);
+  }
+
+  /**
+   * Marca toda a tela para ser redesenhada no próximo frame.
+   *
+   * Útil ao trocar a cor de fundo ou reorganizar o LayerManager.
+   */
+  public void invalidarTela() { this.bRedesenharTudo = true; }
+
+  /**
+   * Compara o estado atual das layers com o do frame anterior.
+   *
+   * Toda layer que mudou de posição, tamanho, visibilidade ou aparência tem seus
+   * limites antigos e novos adicionados à região alterada. Layers adicionadas ou
+   * removidas do LayerManager também são consideradas. Se a janela de
+   * visualização mudou, toda a tela é marcada para ser redesenhada.
+   */
+  private void calcularRegiaoAlterada() {
+    if (this.lm instanceof GjME_GerenciadorLayers) {
+      GjME_GerenciadorLayers gl = (GjME_GerenciadorLayers)this.lm;
+      int[] iarJ = this.iarJanelaDesenhada;
+      if ((iarJ[0] != gl.retornaJanelaX()) || (iarJ[1] != gl.retornaJanelaY())
+              || (iarJ[2] != gl.retornaJanelaLargura()) || (iarJ[3] != gl.retornaJanelaAltura())) {
+        iarJ[0] = gl.retornaJanelaX();
+        iarJ[1] = gl.retornaJanelaY();
+        iarJ[2] = gl.retornaJanelaLargura();
+        iarJ[3] = gl.retornaJanelaAltura();
+        this.bRedesenharTudo = true;
+      }
+    }
     int iQtdLayers = this.lm.getSize();
-    for (int i = 0; i < iQtdLayers; i++) {
+    if (iQtdLayers > this.lyrDesenhadas.length) {
+      // -- Aumenta a capacidade preservando o estado já registrado
+      int iCapacidade = Math.max(iQtdLayers, this.lyrDesenhadas.length * 2);
+      Layer[] lyrNovas = new Layer[iCapacidade];
+      System.arraycopy(this.lyrDesenhadas, 0, lyrNovas, 0, this.iQtdLayersDesenhadas);
+      this.lyrDesenhadas = lyrNovas;
+      int[] iarNovoEstado = new int[iCapacidade * GjME_Tela.QTD_CAMPOS_ESTADO];
+      System.arraycopy(this.iarEstadoLayers, 0, iarNovoEstado, 0,
+              this.iQtdLayersDesenhadas * GjME_Tela.QTD_CAMPOS_ESTADO);
+      this.iarEstadoLayers = iarNovoEstado;
+    }
+
+    int iQtdMaxima = Math.max(iQtdLayers, this.iQtdLayersDesenhadas);
+    for (int i = 0; i < iQtdMaxima; i++) {
+      int iPos = i * GjME_Tela.QTD_CAMPOS_ESTADO;
+      if (i >= iQtdLayers) {
+        // -- Layer removida: a região que ela ocupava deve ser redesenhada
+        this.invalidarEstado(iPos);
+        this.lyrDesenhadas[i] = null;
+        continue;
+      }
       Layer lyr = this.lm.getLayerAt(i);
-      if (lyr instanceof GjME_TiledLayer) {
-        ((GjME_TiledLayer)lyr).atualizarPosicionamento();
-      } else if (lyr instanceof GjME_Personagem) {
-        ((GjME_Personagem)lyr).atualizarPersonagem();
+      int iX = lyr.getX(),
+          iY = lyr.getY(),
+          iLargura = lyr.getWidth(),
+          iAltura = lyr.getHeight(),
+          iVisivel = lyr.isVisible() ? 1 : 0,
+          iFrame = 0,
+          iAlteracoes = 0;
+      if (lyr instanceof GjME_Personagem) {
+        iFrame = ((GjME_Personagem)lyr).getFrame();
+        iAlteracoes = ((GjME_Personagem)lyr).retornaAlteracoesVisuais();
+      } else if (lyr instanceof Sprite) {
+        iFrame = ((Sprite)lyr).getFrame();
+      } else if (lyr instanceof GjME_TiledLayer) {
+        iAlteracoes = ((GjME_TiledLayer)lyr).retornaAlteracoesVisuais();
+      }
+
+      if ((i >= this.iQtdLayersDesenhadas) || (this.lyrDesenhadas[i] != lyr)) {
+        // -- Layer nova nesta posição: redesenha onde estava a antiga e onde está a nova
+        if (i < this.iQtdLayersDesenhadas) { this.invalidarEstado(iPos); }
+        if (iVisivel == 1) { this.invalidarRegiaoLayers(iX, iY, iLargura, iAltura); }
+      } else if ((this.iarEstadoLayers[iPos] != iX)
+              || (this.iarEstadoLayers[iPos + 1] != iY)
+              || (this.iarEstadoLayers[iPos + 2] != iLargura)
+              || (this.iarEstadoLayers[iPos + 3] != iAltura)
+              || (this.iarEstadoLayers[iPos + 4] != iVisivel)
+              || (this.iarEstadoLayers[iPos + 5] != iFrame)
+              || (this.iarEstadoLayers[iPos + 6] != iAlteracoes)) {
+        this.invalidarEstado(iPos);
+        if (iVisivel == 1) { this.invalidarRegiaoLayers(iX, iY, iLargura, iAltura); }
+      }
+
+      this.lyrDesenhadas[i] = lyr;
+      this.iarEstadoLayers[iPos] = iX;
+      this.iarEstadoLayers[iPos + 1] = iY;
+      this.iarEstadoLayers[iPos + 2] = iLargura;
+      this.iarEstadoLayers[iPos + 3] = iAltura;
+      this.iarEstadoLayers[iPos + 4] = iVisivel;
+      this.iarEstadoLayers[iPos + 5] = iFrame;
+      this.iarEstadoLayers[iPos + 6] = iAlteracoes;
+    }
+    this.iQtdLayersDesenhadas = iQtdLayers;
+  }
+
+  /**
+   * Adiciona às regiões alteradas os limites registrados de uma layer, se ela estava visível.
+   * @param iPos Posição inicial do estado da layer em iarEstadoLayers.
+   */
+  private void invalidarEstado(int iPos) {
+    if (this.iarEstadoLayers[iPos + 4] == 1) {
+      this.invalidarRegiaoLayers(this.iarEstadoLayers[iPos], this.iarEstadoLayers[iPos + 1],
+              this.iarEstadoLayers[iPos + 2], this.iarEstadoLayers[iPos + 3]);
+    }
+  }
+
+  /**
+   * Atualiza os objetos registrados como atualizáveis.
+   *
+   * Tiled layers GjME_TiledLayer.TL_FIXA também são registradas, para que
+   * passem a se mover se o comportamento mudar, mas sua atualização retorna
+   * imediatamente. Com parAtualizacao definida, os personagens são atualizados primeiro, em
+   * paralelo, e os demais atualizáveis depois, em série. Com govCarga
+   * definido, o trabalho opcional segue a cadência do nível atual.
+   * Layers e atualizáveis adicionados ou removidos durante a atualização (por
+   * outro atualizável, por um efeito adiado ou por processarColisoes()) só
+   * entram ou saem do registro ao final dela.
+   * @see GjME_IAtualizavel
+   * @see GjME_Tela.parAtualizacao
+   * @see GjME_Tela.govCarga
+   */
+  private void atualizarLayers() {
+    if (this.registroDesatualizado()) { this.reconstruirRegistro(); }
+    GjME_GovernadorCarga gov = this.govCarga;
+    int iAtualizacao = this.iAtualizacao++;
+    if (null != gov) {
+      this.aplicarCadenciaAnimacao(gov.retornaCadencia(GjME_GovernadorCarga.OPCIONAL_ANIMACAO));
+    }
+    this.bAtualizando = true;
+    try {
+      if (null == this.parAtualizacao) {
+        GjME_IAtualizavel[] atu = this.atuRegistrados;
+        int iQtd = this.iQtdAtualizaveis;
+        for (int i = 0; i < iQtd; i++) {
+          if (null == gov) {
+            atu[i].atualizar();
+          } else {
+            // -- O deslocamento por índice distribui o trabalho reduzido entre as atualizações
+            this.atualizarGovernado(gov, i, iAtualizacao + i);
+          }
+        }
+      } else {
+        this.parAtualizacao.atualizar(this.prsRegistrados, this.iQtdPersonagens);
+        // -- Lidos após a fase paralela, que executa os efeitos adiados
+        GjME_IAtualizavel[] atu = this.atuRegistrados;
+        int iQtd = this.iQtdAtualizaveis;
+        for (int i = 0; i < iQtd; i++) {
+          if (atu[i] instanceof GjME_Personagem) { continue; }
+          if (null == gov) {
+            atu[i].atualizar();
+          } else {
+            this.atualizarGovernado(gov, i, iAtualizacao + i);
+          }
+        }
+      }
+    } finally {
+      this.bAtualizando = false;
+      this.aplicarPendentes();
+    }
+    if (null != this.grdColisao) {
+      this.grdColisao.atualizar(this.prsRegistrados, this.iQtdPersonagens);
+      // -- Personagens criados ou removidos nas colisões também são enfileirados
+      this.bAtualizando = true;
+      try {
+        this.processarColisoes();
+      } finally {
+        this.bAtualizando = false;
+        this.aplicarPendentes();
+      }
+    }
+  }
+
+  /**
+   * Aplica ao registro as inclusões e remoções feitas durante a atualização,
+   * na ordem em que ocorreram.
+   */
+  private void aplicarPendentes() {
+    for (int i = 0; i < this.iQtdPendentes; i++) {
+      GjME_IAtualizavel atu = this.atuPendentes[i];
+      this.atuPendentes[i] = null;
+      if (this.barPendentesInclusao[i]) {
+        this.registrarAtualizavel(atu);
+      } else {
+        this.removerAtualizavel(atu);
+      }
+    }
+    this.iQtdPendentes = 0;
+  }
+
+  /**
+   * Enfileira uma alteração do registro feita durante a atualização.
+   */
+  private void enfileirarPendente(GjME_IAtualizavel atu, boolean bInclusao) {
+    if (this.iQtdPendentes == this.atuPendentes.length) {
+      GjME_IAtualizavel[] atuNovos = new GjME_IAtualizavel[this.atuPendentes.length * 2];
+      boolean[] barNovos = new boolean[atuNovos.length];
+      System.arraycopy(this.atuPendentes, 0, atuNovos, 0, this.iQtdPendentes);
+      System.arraycopy(this.barPendentesInclusao, 0, barNovos, 0, this.iQtdPendentes);
+      this.atuPendentes = atuNovos;
+      this.barPendentesInclusao = barNovos;
+    }
+    this.atuPendentes[this.iQtdPendentes] = atu;
+    this.barPendentesInclusao[this.iQtdPendentes++] = bInclusao;
+  }
+
+  /**
+   * Atualiza um objeto do registro segundo o nível do governador de carga.
+   *
+   * Tiled layers com rolagem automática seguem OPCIONAL_PARALLAX e personagens
+   * não controláveis em ponto fixo fora da tela seguem OPCIONAL_DISTANTES; os
+   * demais são sempre atualizados. As atualizações puladas são acumuladas e
+   * aplicadas de uma só vez na próxima, para que a rolagem e o movimento
+   * mantenham a velocidade do game.
+   * @param gov Governador de carga;
+   * @param i Posição do objeto em atuRegistrados;
+   * @param iAtualizacao Número da atualização, deslocado pela posição.
+   * @see GjME_GovernadorCarga.deveExecutar()
+   */
+  private void atualizarGovernado(GjME_GovernadorCarga gov, int i, int iAtualizacao) {
+    GjME_IAtualizavel atu = this.atuRegistrados[i];
+    int iOpcional = this.retornaOpcional(atu);
+    if ((iOpcional >= 0) && !gov.deveExecutar(iOpcional, iAtualizacao)) {
+      this.iarAtrasos[i]++;
+      return;
+    }
+    int iPassos = this.iarAtrasos[i] + 1;
+    this.iarAtrasos[i] = 0;
+    if (1 == iPassos) {
+      atu.atualizar();
+    } else if (atu instanceof GjME_TiledLayer) {
+      ((GjME_TiledLayer)atu).atualizarPosicionamento(iPassos);
+    } else {
+      ((GjME_Personagem)atu).atualizarPersonagem(iPassos);
+    }
+  }
+
+  /**
+   * Retorna o trabalho opcional (constante OPCIONAL_) ao qual a atualização de
+   * um objeto pertence, ou -1 se ela for obrigatória.
+   */
+  private int retornaOpcional(GjME_IAtualizavel atu) {
+    if (atu instanceof GjME_TiledLayer) {
+      int iComp = ((GjME_TiledLayer)atu).retornaComportamento();
+      if ((GjME_TiledLayer.TL_ROLAGEM_X == iComp) || (GjME_TiledLayer.TL_ROLAGEM_Y == iComp)) {
+        return GjME_GovernadorCarga.OPCIONAL_PARALLAX;
+      }
+    } else if ((atu instanceof IPersonagemNaoControlavel) && (atu instanceof GjME_Personagem)) {
+      // -- Na física inteira o passo de tempo não é usado e o atraso não seria recuperado
+      GjME_Personagem prs = (GjME_Personagem)atu;
+      int iMargem = this.iMargemDistantes;
+      if (prs.usaFisicaFixa()
+          && ((prs.getX() + prs.getWidth() < -iMargem) || (prs.getY() + prs.getHeight() < -iMargem)
+              || (prs.getX() > this.getWidth() + iMargem) || (prs.getY() > this.getHeight() + iMargem))) {
+        return GjME_GovernadorCarga.OPCIONAL_DISTANTES;
       }
     }
+    return -1;
+  }
+
+
+  /**
+   * Aplica uma nova cadência de animação a todos os personagens registrados.
+   * @param iCadencia A cada quantas atualizações o frame é trocado.
+   * @see GjME_Personagem.defineCadenciaAnimacao()
+   */
+  private void aplicarCadenciaAnimacao(int iCadencia) {
+    if (iCadencia == this.iCadenciaAplicada) { return; }
+    this.iCadenciaAplicada = iCadencia;
+    for (int i = 0; i < this.iQtdPersonagens; i++) {
+      this.prsRegistrados[i].defineCadenciaAnimacao(iCadencia);
+    }
+  }
+
+  /**
+   * Trata as colisões entre personagens após a atualização da grade de colisão.
+   *
+   * Executado a cada atualização quando grdColisao está definida. As telas
+   * podem sobrescrever este método e consultar a grade para testar com
+   * precisão apenas os personagens próximos.
+   * @see GjME_Tela.grdColisao
+   */
+  protected void processarColisoes() { }
+
+  // -- Gerenciamento de layers ------------------------------------------------
+  /**
+   * Adiciona uma layer ao final do LayerManager e a registra, se for atualizável.
+   * @param lyr Layer a ser adicionada.
+   * @see javax.microedition.lcdui.game.LayerManager.append();
+   */
+  public void adicionarLayer(Layer lyr) {
+    this.lm.append(lyr);
+    this.registrarLayer(lyr);
+    this.sincronizarLayers();
+  }
+
+  /**
+   * Insere uma layer no LayerManager e a registra, se for atualizável.
+   * @param lyr Layer a ser inserida;
+   * @param iPosicao Posição da layer no LayerManager.
+   * @see javax.microedition.lcdui.game.LayerManager.insert();
+   */
+  public void inserirLayer(Layer lyr, int iPosicao) {
+    this.lm.insert(lyr, iPosicao);
+    this.registrarLayer(lyr);
+    this.sincronizarLayers();
+  }
+
+  /**
+   * Remove uma layer do LayerManager e do registro de atualizáveis.
+   * @param lyr Layer a ser removida.
+   * @see javax.microedition.lcdui.game.LayerManager.remove();
+   */
+  public void removerLayer(Layer lyr) {
+    this.lm.remove(lyr);
+    if (lyr instanceof GjME_IAtualizavel) { this.removerAtualizavel((GjME_IAtualizavel)lyr); }
+    this.sincronizarLayers();
+  }
+
+  /**
+   * Adiciona um lote de personagens à tela.
+   *
+   * O lote é atualizado a cada frame e desenhado sobre as layers do
+   * LayerManager.
+   * @param lt Lote de personagens.
+   * @see GjME_LoteNPC
+   */
+  public void adicionarLote(GjME_LoteNPC lt) {
+    if (this.iQtdLotes == this.ltsLotes.length) {
+      GjME_LoteNPC[] ltsNovos = new GjME_LoteNPC[this.ltsLotes.length * 2];
+      System.arraycopy(this.ltsLotes, 0, ltsNovos, 0, this.iQtdLotes);
+      this.ltsLotes = ltsNovos;
+    }
+    this.ltsLotes[this.iQtdLotes++] = lt;
+    this.registrarAtualizavel(lt);
+  }
+
+  /**
+   * Remove um lote de personagens da tela.
+   * @param lt Lote de personagens.
+   */
+  public void removerLote(GjME_LoteNPC lt) {
+    for (int i = 0; i < this.iQtdLotes; i++) {
+      if (this.ltsLotes[i] == lt) {
+        System.arraycopy(this.ltsLotes, i + 1, this.ltsLotes, i, this.iQtdLotes - i - 1);
+        this.ltsLotes[--this.iQtdLotes] = null;
+        break;
+      }
+    }
+    this.removerAtualizavel(lt);
+    this.invalidarTela();
+  }
+
+  /**
+   * Registra um objeto para ser atualizado a cada frame.
+   *
+   * Pode ser utilizado para objetos que não são layers; layers atualizáveis
+   * são registradas por adicionarLayer() e inserirLayer(). Objetos já
+   * registrados são ignorados. Durante a atualização,
+   * a inclusão só é aplicada ao final dela.
+   * @param atu Objeto atualizável.
+   */
+  public void registrarAtualizavel(GjME_IAtualizavel atu) {
+    if (this.bAtualizando) {
+      this.enfileirarPendente(atu, true);
+      return;
+    }
+    for (int i = 0; i < this.iQtdAtualizaveis; i++) {
+      if (this.atuRegistrados[i] == atu) { return; }
+    }
+    if (this.iQtdAtualizaveis == this.atuRegistrados.length) {
+      GjME_IAtualizavel[] atuNovos = new GjME_IAtualizavel[this.atuRegistrados.length * 2];
+      System.arraycopy(this.atuRegistrados, 0, atuNovos, 0, this.iQtdAtualizaveis);
+      this.atuRegistrados = atuNovos;
+      int[] iarNovos = new int[atuNovos.length];
+      System.arraycopy(this.iarAtrasos, 0, iarNovos, 0, this.iQtdAtualizaveis);
+      this.iarAtrasos = iarNovos;
+    }
+    this.iarAtrasos[this.iQtdAtualizaveis] = 0;
+    this.atuRegistrados[this.iQtdAtualizaveis++] = atu;
+    if (atu instanceof GjME_Personagem) {
+      if (this.iQtdPersonagens == this.prsRegistrados.length) {
+        GjME_Personagem[] prsNovos = new GjME_Personagem[this.prsRegistrados.length * 2];
+        System.arraycopy(this.prsRegistrados, 0, prsNovos, 0, this.iQtdPersonagens);
+        this.prsRegistrados = prsNovos;
+      }
+      this.prsRegistrados[this.iQtdPersonagens++] = (GjME_Personagem)atu;
+      ((GjME_Personagem)atu).definePassoTempo(GjME_Fisica.passoTempoFx(this.iDelay));
+      ((GjME_Personagem)atu).defineCadenciaAnimacao(this.iCadenciaAplicada);
+    }
+  }
+
+  /**
+   * Remove um objeto do registro de atualizáveis, preservando a ordem dos demais.
+   *
+   * Durante a atualização, a remoção só é aplicada ao final dela.
+   * @param atu Objeto atualizável.
+   */
+  public void removerAtualizavel(GjME_IAtualizavel atu) {
+    if (this.bAtualizando) {
+      this.enfileirarPendente(atu, false);
+      return;
+    }
+    for (int i = 0; i < this.iQtdAtualizaveis; i++) {
+      if (this.atuRegistrados[i] == atu) {
+        System.arraycopy(this.atuRegistrados, i + 1, this.atuRegistrados, i,
+                this.iQtdAtualizaveis - i - 1);
+        System.arraycopy(this.iarAtrasos, i + 1, this.iarAtrasos, i, this.iQtdAtualizaveis - i - 1);
+        this.atuRegistrados[--this.iQtdAtualizaveis] = null;
+        break;
+      }
+    }
+    for (int i = 0; i < this.iQtdPersonagens; i++) {
+      if (this.prsRegistrados[i] == atu) {
+        System.arraycopy(this.prsRegistrados, i + 1, this.prsRegistrados, i,
+                this.iQtdPersonagens - i - 1);
+        this.prsRegistrados[--this.iQtdPersonagens] = null;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Registra uma layer como atualizável, se ela implementar GjME_IAtualizavel.
+   *
+   * Tiled layers são registradas mesmo com o comportamento
+   * GjME_TiledLayer.TL_FIXA, que pode ser alterado depois de adicionadas.
+   * @param lyr Layer adicionada ao LayerManager.
+   */
+  private void registrarLayer(Layer lyr) {
+    if (lyr instanceof GjME_IAtualizavel) { this.registrarAtualizavel((GjME_IAtualizavel)lyr); }
+  }
+
+  /**
+   * Refaz o registro de atualizáveis a partir do conteúdo do LayerManager.
+   *
+   * Executado apenas quando o LayerManager foi alterado sem passar pelos
+   * métodos de gerenciamento de layers da tela. Objetos registrados que não
+   * são layers são mantidos.
+   */
+  private void reconstruirRegistro() {
+    int iMantidos = 0;
+    for (int i = 0; i < this.iQtdAtualizaveis; i++) {
+      GjME_IAtualizavel atu = this.atuRegistrados[i];
+      int iAtraso = this.iarAtrasos[i];
+      this.atuRegistrados[i] = null;
+      if (!(atu instanceof Layer)) {
+        this.iarAtrasos[iMantidos] = iAtraso;
+        this.atuRegistrados[iMantidos++] = atu;
+      }
+    }
+    this.iQtdAtualizaveis = iMantidos;
+    // -- Personagens são layers e serão registrados novamente
+    for (int i = 0; i < this.iQtdPersonagens; i++) { this.prsRegistrados[i] = null; }
+    this.iQtdPersonagens = 0;
+    int iQtdLayers = this.lm.getSize();
+    for (int i = 0; i < iQtdLayers; i++) {
+      this.registrarLayer(this.lm.getLayerAt(i));
+    }
+    this.sincronizarLayers();
+  }
+
+  /**
+   * Indica se o LayerManager foi alterado sem passar pelos métodos de
+   * gerenciamento de layers da tela.
+   *
+   * Com o GjME_GerenciadorLayers da tela basta comparar o contador de
+   * alterações. Se lm foi substituído por outro LayerManager, são comparadas a
+   * quantidade e a identidade de cada layer.
+   */
+  private boolean registroDesatualizado() {
+    LayerManager lm = this.lm;
+    if (lm != this.lmRegistrado) { return true; }
+    if (lm instanceof GjME_GerenciadorLayers) {
+      return ((GjME_GerenciadorLayers)lm).retornaAlteracoes() != this.iAlteracoesRegistradas;
+    }
+    int iQtdLayers = lm.getSize();
+    if (iQtdLayers != this.iQtdLayersRegistradas) { return true; }
+    Layer[] lyr = this.lyrRegistradas;
+    for (int i = 0; i < iQtdLayers; i++) {
+      if (lm.getLayerAt(i) != lyr[i]) { return true; }
+    }
+    return false;
+  }
+
+  /**
+   * Guarda o conteúdo atual do LayerManager como sincronizado com o registro.
+   */
+  private void sincronizarLayers() {
+    this.lmRegistrado = this.lm;
+    if (this.lm instanceof GjME_GerenciadorLayers) {
+      this.iAlteracoesRegistradas = ((GjME_GerenciadorLayers)this.lm).retornaAlteracoes();
+      return;
+    }
+    int iQtdLayers = this.lm.getSize();
+    if (iQtdLayers > this.lyrRegistradas.length) {
+      this.lyrRegistradas = new Layer[Math.max(iQtdLayers, this.lyrRegistradas.length * 2)];
+    }
+    for (int i = 0; i < iQtdLayers; i++) { this.lyrRegistradas[i] = this.lm.getLayerAt(i); }
+    // -- Libera referências a layers removidas
+    for (int i = iQtdLayers; i < this.iQtdLayersRegistradas; i++) { this.lyrRegistradas[i] = null; }
+    this.iQtdLayersRegistradas = iQtdLayers;
   }
 
   /**
@@ -141,6 +1336,9 @@ public abstract class GjME_Tela extends GameCanvas implements Runnable {
    *
    * Dependendo da implementação da tela, podem ser comandos de movimentação
    * dos personagens, navegação em um menu, etc.
+   * Os eventos de teclado recebidos desde o último frame estão em filTeclado,
+   * ex: prs.processarInput(this.filTeclado.drenarEstados(), this.lm).
+   * @see GjME_Tela.filTeclado
    */
   public abstract void processarInput();
 }
@@ -0,0 +1,406 @@
+/**
+ * GjME - Game JavaME
+ * A Framework to build JavaME games quickly.
+ * Copyright (c) 2009-2010 Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * -----------------------------------------------------------------------------
+ * The contents of this file are subject to the Mozilla Public License
+ * Version 1.1 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * The Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ *
+ * The Initial Developer of the Original Code is
+ *   Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>.
+ * Portions created by Initial Developer are Copyright (C) 2009
+ * Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s): None
+ *
+ * Alternatively, the contents of this file may be used under the terms
+ * of the New BSD license (the "New BSD License"), in which case the
+ * provisions of New BSD License are applicable instead of those
+ * above. If you wish to allow use of your version of this file only
+ * under the terms of the New BSD License and not to allow others to use
+ * your version of this file under the MPL, indicate your decision by
+ * deleting the provisions above and replace them with the notice and
+ * other provisions required by the New BSD License. If you do not delete
+ * the provisions above, a recipient may use your version of this file
+ * under either the MPL or the New BSD License.
+ */
+package br.com.upzone.gjme.tela;
+
+import javax.microedition.lcdui.Graphics;
+
+/**
+ * Histórico das durações das fases dos últimos frames da tela.
+ *
+ * As durações de input, atualização e desenho (e a soma delas, o tempo de
+ * trabalho do frame) são guardadas em um buffer circular de tamanho fixo, e
+ * sobre a janela guardada são calculados mínimo, média, máximo, percentis e a
+ * quantidade de frames que estouraram o orçamento. Registrar um frame não
+ * aloca memória, então o histórico pode ficar ativo em aparelhos de produção.
+ *
+ * Também desenha um painel compacto, sem textos, para diagnóstico na própria
+ * tela: uma barra por fase com a média (barra) e o máximo (traço), na escala
+ * do orçamento, e o gráfico dos últimos frames, em vermelho os que estouraram.
+ *
+ * @author Maykel "Gardner" dos Santos Braz <maykelsb@yahoo.com.br>
+ * @see GjME_Tela.tmpFrames
+ * @final
+ */
+public final class GjME_TemposFrame {
+
+  /**
+   * Série com o tempo de trabalho do frame (soma das fases).
+   *
+   * As demais séries são as constantes FASE_ de GjME_Auditoria.
+   * @see GjME_Auditoria.FASE_INPUT
+   */
+  public final static int FRAME = 3;
+
+  /**
+   * Quantidade de séries registradas.
+   */
+  private final static int QTD_SERIES = 4;
+
+  /**
+   * Largura do painel de desempenho em pixels.
+   */
+  public final static int LARGURA_PAINEL = 64;
+  /**
+   * Altura do painel de desempenho em pixels.
+   */
+  public final static int ALTURA_PAINEL = 32;
+  /**
+   * Tamanho do array preenchido por capturarPainel().
+   * @see GjME_TemposFrame.capturarPainel()
+   */
+  public final static int TAMANHO_PAINEL = 8 + GjME_TemposFrame.LARGURA_PAINEL - 2;
+
+  /**
+   * Cores das barras de input, atualização e desenho no painel.
+   */
+  private final static int[] CORES_FASES = {0x00FFFF, 0xFFFF00, 0xFF00FF};
+
+  // -- Propriedades -----------------------------------------------------------
+  /**
+   * Quantidade de frames guardados.
+   */
+  private final int iCapacidade;
+
+  /**
+   * Durações em milisegundos; a série s ocupa as posições s * iCapacidade até
+   * (s + 1) * iCapacidade - 1.
+   */
+  private final int[] iarDuracoes;
+
+  /**
+   * Soma das durações guardadas de cada série.
+   */
+  private final int[] iarSomas = new int[GjME_TemposFrame.QTD_SERIES];
+
+  /**
+   * Área auxiliar para cálculo de percentis.
+   */
+  private final int[] iarOrdenacao;
+
+  /**
+   * Valores do painel utilizados por desenhar().
+   */
+  private final int[] iarPainel = new int[GjME_TemposFrame.TAMANHO_PAINEL];
+
+  /**
+   * Posição em que será guardado o próximo frame.
+   */
+  private int iProximo = 0;
+
+  /**
+   * Quantidade de frames guardados.
+   */
+  private int iQtdAmostras = 0;
+
+  /**
+   * Duração máxima, em milisegundos, do trabalho de um frame.
+   */
+  private int iOrcamento;
+
+  /**
+   * Frames guardados cujo trabalho excedeu o orçamento.
+   */
+  private int iAcimaOrcamento = 0;
+
+  /**
+   * Frames registrados desde a criação ou a última chamada a zerar().
+   */
+  private int iTotalFrames = 0;
+
+  /**
+   * Frames registrados que excederam o orçamento desde a criação ou a última
+   * chamada a zerar().
+   */
+  private int iTotalAcimaOrcamento = 0;
+
+  /**
+   * Cria um histórico de frames.
+   * @param iCapacidade Quantidade de frames guardados;
+   * @param iOrcamento Duração máxima, em milisegundos, do trabalho de um frame.
+   */
+  public GjME_TemposFrame(int iCapacidade, int iOrcamento) {
+    this.iCapacidade = Math.max(1, iCapacidade);
+    this.iarDuracoes = new int[GjME_TemposFrame.QTD_SERIES * this.iCapacidade];
+    this.iarOrdenacao = new int[this.iCapacidade];
+    this.iOrcamento = Math.max(1, iOrcamento);
+  }
+
+  /**
+   * Registra as durações das fases de um frame, descartando o frame mais antigo
+   * se o histórico estiver cheio.
+   * @param lInput Duração da leitura dos comandos;
+   * @param lAtualizacao Duração das atualizações;
+   * @param lDesenho Duração do desenho.
+   */
+  public void registrarFrame(long lInput, long lAtualizacao, long lDesenho) {
+    int iTotal = (int) (lInput + lAtualizacao + lDesenho);
+    if (this.iQtdAmostras == this.iCapacidade) {
+      // -- A posição do próximo frame guarda o frame mais antigo
+      if (this.iarDuracoes[GjME_TemposFrame.FRAME * this.iCapacidade + this.iProximo]
+              > this.iOrcamento) {
+        this.iAcimaOrcamento--;
+      }
+    } else {
+      this.iQtdAmostras++;
+    }
+    this.guardar(GjME_Auditoria.FASE_INPUT, (int) lInput);
+    this.guardar(GjME_Auditoria.FASE_ATUALIZACAO, (int) lAtualizacao);
+    this.guardar(GjME_Auditoria.FASE_DESENHO, (int) lDesenho);
+    this.guardar(GjME_TemposFrame.FRAME, iTotal);
+    if (iTotal > this.iOrcamento) {
+      this.iAcimaOrcamento++;
+      this.iTotalAcimaOrcamento++;
+    }
+    this.iTotalFrames++;
+    this.iProximo = (this.iProximo + 1) % this.iCapacidade;
+  }
+
+  /**
+   * Substitui a duração da posição atual de uma série.
+   */
+  private void guardar(int iSerie, int iDuracao) {
+    int iPos = iSerie * this.iCapacidade + this.iProximo;
+    this.iarSomas[iSerie] += iDuracao - this.iarDuracoes[iPos];
+    this.iarDuracoes[iPos] = iDuracao;
+  }
+
+  /**
+   * Descarta o histórico e os totais.
+   */
+  public void zerar() {
+    for (int i = 0; i < this.iarDuracoes.length; i++) { this.iarDuracoes[i] = 0; }
+    for (int i = 0; i < this.iarSomas.length; i++) { this.iarSomas[i] = 0; }
+    this.iProximo = 0;
+    this.iQtdAmostras = 0;
+    this.iAcimaOrcamento = 0;
+    this.iTotalFrames = 0;
+    this.iTotalAcimaOrcamento = 0;
+  }
+
+  // -- Estatísticas -----------------------------------------------------------
+  /**
+   * Retorna a menor duração guardada de uma série.
+   * @param iSerie GjME_TemposFrame.FRAME ou uma das constantes FASE_ de GjME_Auditoria;
+   * @return Duração em milisegundos ou zero se não houver frames.
+   */
+  public int retornaMinimo(int iSerie) {
+    if (0 == this.iQtdAmostras) { return 0; }
+    int iBase = iSerie * this.iCapacidade, iMinimo = Integer.MAX_VALUE;
+    for (int i = 0; i < this.iQtdAmostras; i++) {
+      iMinimo = Math.min(iMinimo, this.iarDuracoes[iBase + i]);
+    }
+    return iMinimo;
+  }
+
+  /**
+   * Retorna a maior duração guardada de uma série.
+   * @param iSerie GjME_TemposFrame.FRAME ou uma das constantes FASE_ de GjME_Auditoria;
+   * @return Duração em milisegundos ou zero se não houver frames.
+   */
+  public int retornaMaximo(int iSerie) {
+    int iBase = iSerie * this.iCapacidade, iMaximo = 0;
+    for (int i = 0; i < this.iQtdAmostras; i++) {
+      iMaximo = Math.max(iMaximo, this.iarDuracoes[iBase + i]);
+    }
+    return iMaximo;
+  }
+
+  /**
+   * Retorna a duração média guardada de uma série.
+   * @param iSerie GjME_TemposFrame.FRAME ou uma das constantes FASE_ de GjME_Auditoria;
+   * @return Duração em milisegundos ou zero se não houver frames.
+   */
+  public int retornaMedia(int iSerie) {
+    if (0 == this.iQtdAmostras) { return 0; }
+    return this.iarSomas[iSerie] / this.iQtdAmostras;
+  }
+
+  /**
+   * Retorna um percentil das durações guardadas de uma série.
+   *
+   * Ordena uma cópia da série; deve ser chamado apenas para relatórios e não a
+   * cada frame.
+   * @param iSerie GjME_TemposFrame.FRAME ou uma das constantes FASE_ de GjME_Auditoria;
+   * @param iPercentil Percentil entre 0 e 100. Ex: 95;
+   * @return Duração em milisegundos ou zero se não houver frames.
+   */
+  public int retornaPercentil(int iSerie, int iPercentil) {
+    if (0 == this.iQtdAmostras) { return 0; }
+    int[] iarOrd = this.iarOrdenacao;
+    int iQtd = this.iQtdAmostras;
+    System.arraycopy(this.iarDuracoes, iSerie * this.iCapacidade, iarOrd, 0, iQtd);
+    // -- Ordenação por inserção: os tempos de frame costumam estar quase ordenados
+    for (int i = 1; i < iQtd; i++) {
+      int iValor = iarOrd[i], j = i - 1;
+      while ((j >= 0) && (iarOrd[j] > iValor)) {
+        iarOrd[j + 1] = iarOrd[j];
+        j--;
+      }
+      iarOrd[j + 1] = iValor;
+    }
+    // -- Percentil pelo método do posto mais próximo
+    int iPosto = (iPercentil * iQtd + 99) / 100;
+    return iarOrd[Math.max(0, Math.min(iQtd - 1, iPosto - 1))];
+  }
+
+  /**
+   * Retorna a quantidade de frames guardados.
+   * @return Quantidade de frames.
+   */
+  public int retornaQtdAmostras() { return this.iQtdAmostras; }
+
+  /**
+   * Retorna a quantidade de frames guardados que excederam o orçamento.
+   * @return Quantidade de frames.
+   */
+  public int retornaAcimaOrcamento() { return this.iAcimaOrcamento; }
+
+  /**
+   * Retorna a quantidade de frames registrados desde a última chamada a zerar().
+   * @return Quantidade de frames.
+   */
+  public int retornaTotalFrames() { return this.iTotalFrames; }
+
+  /**
+   * Retorna a quantidade de frames registrados que excederam o orçamento desde
+   * a última chamada a zerar().
+   * @return Quantidade de frames.
+   */
+  public int retornaTotalAcimaOrcamento() { return this.iTotalAcimaOrcamento; }
+
+  /**
+   * Define a duração máxima do trabalho de um frame.
+   *
+   * A contagem de frames guardados acima do orçamento é refeita.
+   * @param iOrcamento Duração em milisegundos.
+   */
+  public void defineOrcamento(int iOrcamento) {
+    this.iOrcamento = Math.max(1, iOrcamento);
+    this.iAcimaOrcamento = 0;
+    int iBase = GjME_TemposFrame.FRAME * this.iCapacidade;
+    for (int i = 0; i < this.iQtdAmostras; i++) {
+      if (this.iarDuracoes[iBase + i] > this.iOrcamento) { this.iAcimaOrcamento++; }
+    }
+  }
+
+  /**
+   * Retorna a duração máxima do trabalho de um frame.
+   * @return Duração em milisegundos.
+   */
+  public int retornaOrcamento() { return this.iOrcamento; }
+
+  // -- Painel -----------------------------------------------------------------
+  /**
+   * Desenha o painel de desempenho sem alocar memória.
+   *
+   * As barras usam a escala do orçamento: uma barra com toda a largura do
+   * painel corresponde a uma fase que consome o orçamento inteiro.
+   * @param g Recurso de desenho do sistema;
+   * @param iX Coordenada X do canto superior esquerdo do painel;
+   * @param iY Coordenada Y do canto superior esquerdo do painel.
+   */
+  public void desenhar(Graphics g, int iX, int iY) {
+    this.capturarPainel(this.iarPainel);
+    GjME_TemposFrame.desenharPainel(g, iX, iY, this.iarPainel);
+  }
+
+  /**
+   * Copia os valores exibidos pelo painel, para desenhá-lo em outra thread.
+   *
+   * O array recebe as médias e os máximos das fases, o orçamento, a
+   * quantidade de colunas do gráfico e as durações dos últimos frames, do mais
+   * antigo ao mais recente.
+   * @param iarPainel Array com GjME_TemposFrame.TAMANHO_PAINEL posições.
+   * @see GjME_TemposFrame.desenharPainel()
+   */
+  public void capturarPainel(int[] iarPainel) {
+    for (int f = 0; f < GjME_TemposFrame.FRAME; f++) {
+      iarPainel[f] = this.retornaMedia(f);
+      iarPainel[3 + f] = this.retornaMaximo(f);
+    }
+    int iColunas = Math.min(this.iQtdAmostras, GjME_TemposFrame.LARGURA_PAINEL - 2),
+        iBase = GjME_TemposFrame.FRAME * this.iCapacidade;
+    iarPainel[6] = this.iOrcamento;
+    iarPainel[7] = iColunas;
+    for (int i = 0; i < iColunas; i++) {
+      int iPos = (this.iProximo - iColunas + i + this.iCapacidade) % this.iCapacidade;
+      iarPainel[8 + i] = this.iarDuracoes[iBase + iPos];
+    }
+  }
+
+  /**
+   * Desenha o painel de desempenho a partir dos valores copiados por capturarPainel().
+   * @param g Recurso de desenho do sistema;
+   * @param iX Coordenada X do canto superior esquerdo do painel;
+   * @param iY Coordenada Y do canto superior esquerdo do painel;
+   * @param iarPainel Valores copiados por capturarPainel().
+   */
+  public static void desenharPainel(Graphics g, int iX, int iY, int[] iarPainel) {
+    int iLargura = GjME_TemposFrame.LARGURA_PAINEL - 2,
+        iOrcamento = iarPainel[6];
+    g.setColor(0x000000);
+    g.fillRect(iX, iY, GjME_TemposFrame.LARGURA_PAINEL, GjME_TemposFrame.ALTURA_PAINEL);
+    // -- Uma barra por fase: média preenchida e máximo como traço vertical
+    for (int f = 0; f < GjME_TemposFrame.FRAME; f++) {
+      int iBarraY = iY + 1 + f * 4;
+      g.setColor(GjME_TemposFrame.CORES_FASES[f]);
+      g.fillRect(iX + 1, iBarraY, GjME_TemposFrame.escalar(iarPainel[f], iLargura, iOrcamento), 3);
+      int iMaxX = iX + 1 + GjME_TemposFrame.escalar(iarPainel[3 + f], iLargura - 1, iOrcamento);
+      g.drawLine(iMaxX, iBarraY, iMaxX, iBarraY + 2);
+    }
+    // -- Gráfico dos últimos frames, do mais antigo ao mais recente
+    int iGraficoY = iY + 14,
+        iGraficoAltura = GjME_TemposFrame.ALTURA_PAINEL - 15,
+        iColunas = iarPainel[7];
+    for (int i = 0; i < iColunas; i++) {
+      int iDuracao = iarPainel[8 + i],
+          iAltura = Math.min(iGraficoAltura,
+                  Math.max(1, iDuracao * iGraficoAltura / iOrcamento));
+      g.setColor((iDuracao > iOrcamento) ? 0xFF0000 : 0x00FF00);
+      int iColunaX = iX + 1 + iLargura - iColunas + i;
+      g.drawLine(iColunaX, iGraficoY + iGraficoAltura - iAltura,
+              iColunaX, iGraficoY + iGraficoAltura - 1);
+    }
+  }
+
+  /**
+   * Converte uma duração para pixels na escala do orçamento, limitada à largura.
+   */
+  private static int escalar(int iDuracao, int iLargura, int iOrcamento) {
+    return Math.min(iLargura, iDuracao * iLargura / iOrcamento);
+  }
+}